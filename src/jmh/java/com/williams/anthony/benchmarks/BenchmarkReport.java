@@ -0,0 +1,345 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 Anthony Williams.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.williams.anthony.benchmarks;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compares two JMH result files (<code>-rf json</code>) and prints, for every benchmark, how far the current score
+ * moved from the baseline.
+ *
+ * A benchmark counts as regressed when it got worse by more than the threshold and by more than the two runs' error
+ * margins combined, so noise alone does not fail the comparison. Exits with status 1 when anything regressed.
+ *
+ * Usage: <code>java -cp target/benchmarks.jar com.williams.anthony.benchmarks.BenchmarkReport baseline.json
+ * target/jmh-result.json [threshold percent, default 5]</code>
+ *
+ * @author Anthony Williams
+ */
+public final class BenchmarkReport {
+
+	private static final double DEFAULT_THRESHOLD_PERCENT = 5.0;
+
+	private BenchmarkReport() {
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.err.println("Usage: BenchmarkReport <baseline.json> <current.json> [threshold percent]");
+			System.exit(2);
+		}
+
+		double thresholdPercent = args.length > 2 ? Double.parseDouble(args[2]) : DEFAULT_THRESHOLD_PERCENT;
+		Map<String, Score> baseline = readScores(Path.of(args[0]));
+		Map<String, Score> current = readScores(Path.of(args[1]));
+		List<String> lines = new ArrayList<String>();
+		int regressionCount = compare(baseline, current, thresholdPercent, lines);
+
+		for (String line : lines) {
+			System.out.println(line);
+		}
+		System.out.printf("%n%d of %d benchmarks regressed by more than %.1f%%%n", regressionCount, current.size(),
+				thresholdPercent);
+		if (regressionCount > 0) {
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * @param baseline The scores to compare against
+	 * @param current The scores of the run being checked
+	 * @param thresholdPercent How much worse (in percent) a score may get before it counts as a regression
+	 * @param lines Receives the report, one line per benchmark
+	 * @return The number of benchmarks that regressed
+	 */
+	static int compare(Map<String, Score> baseline, Map<String, Score> current, double thresholdPercent,
+			List<String> lines) {
+		int regressionCount = 0;
+
+		lines.add(String.format(Locale.ROOT, "%-70s %14s %14s %9s  %s", "Benchmark", "Baseline", "Current", "Change",
+				"Verdict"));
+		for (Map.Entry<String, Score> entry : current.entrySet()) {
+			Score now = entry.getValue();
+			Score before = baseline.get(entry.getKey());
+
+			if (before == null) {
+				lines.add(String.format(Locale.ROOT, "%-70s %14s %14s %9s  %s", entry.getKey(), "-", now, "-", "new"));
+				continue;
+			}
+
+			double changePercent = (now.value - before.value) / before.value * 100;
+			// NOTE: for throughput higher is better, for every time based mode lower is
+			double worsePercent = now.isHigherBetter ? -changePercent : changePercent;
+			boolean isBeyondNoise = Math.abs(now.value - before.value) > before.error + now.error;
+			String verdict;
+
+			if (worsePercent > thresholdPercent && isBeyondNoise) {
+				verdict = "REGRESSED";
+				regressionCount++;
+			} else if (-worsePercent > thresholdPercent && isBeyondNoise) {
+				verdict = "improved";
+			} else {
+				verdict = "same";
+			}
+			lines.add(String.format(Locale.ROOT, "%-70s %14s %14s %+8.1f%%  %s", entry.getKey(), before, now,
+					changePercent, verdict));
+		}
+
+		return regressionCount;
+	}
+
+	/**
+	 * @param file A JMH result file in the JSON format
+	 * @return The primary score of each benchmark, keyed by its name and parameters
+	 * @throws IOException
+	 */
+	static Map<String, Score> readScores(Path file) throws IOException {
+		return toScores(new JsonReader(new String(Files.readAllBytes(file), StandardCharsets.UTF_8)).readValue());
+	}
+
+	@SuppressWarnings("unchecked")
+	static Map<String, Score> toScores(Object json) {
+		Map<String, Score> scores = new TreeMap<String, Score>();
+
+		for (Object item : (List<Object>) json) {
+			Map<String, Object> result = (Map<String, Object>) item;
+			Map<String, Object> metric = (Map<String, Object>) result.get("primaryMetric");
+			Object params = result.get("params");
+			String name = shortName((String) result.get("benchmark"));
+
+			if (params instanceof Map) {
+				name += ((Map<String, Object>) params).toString();
+			}
+			scores.put(name, new Score(toDouble(metric.get("score")), toDouble(metric.get("scoreError")),
+					(String) metric.get("scoreUnit"), "thrpt".equals(result.get("mode"))));
+		}
+
+		return scores;
+	}
+
+	private static String shortName(String benchmark) {
+		String packageName = BenchmarkReport.class.getPackage().getName() + ".";
+
+		return benchmark.startsWith(packageName) ? benchmark.substring(packageName.length()) : benchmark;
+	}
+
+	/**
+	 * JMH writes "NaN" (as a string) for the error of a single measurement
+	 */
+	private static double toDouble(Object value) {
+		if (value instanceof Number) {
+			return ((Number) value).doubleValue();
+		}
+
+		return 0;
+	}
+
+	/**
+	 * The primary metric of one benchmark run
+	 */
+	static final class Score {
+		private final double value;
+		private final double error;
+		private final String unit;
+		private final boolean isHigherBetter;
+
+		Score(double value, double error, String unit, boolean isHigherBetter) {
+			this.value = value;
+			this.error = Double.isNaN(error) ? 0 : error;
+			this.unit = unit;
+			this.isHigherBetter = isHigherBetter;
+		}
+
+		@Override
+		public String toString() {
+			return String.format(Locale.ROOT, "%.3f %s", value, unit);
+		}
+	}
+
+	/**
+	 * Just enough of a JSON reader for JMH's result files: objects become <code>LinkedHashMap</code>s, arrays
+	 * <code>ArrayList</code>s, numbers <code>Double</code>s
+	 */
+	private static final class JsonReader {
+		private final String text;
+		private int position;
+
+		private JsonReader(String text) {
+			this.text = text;
+		}
+
+		private Object readValue() {
+			skipWhitespace();
+
+			char next = text.charAt(position);
+
+			switch (next) {
+				case '{':
+					return readObject();
+				case '[':
+					return readArray();
+				case '"':
+					return readString();
+				case 't':
+					return readLiteral("true", Boolean.TRUE);
+				case 'f':
+					return readLiteral("false", Boolean.FALSE);
+				case 'n':
+					return readLiteral("null", null);
+				default:
+					return readNumber();
+			}
+		}
+
+		private Map<String, Object> readObject() {
+			Map<String, Object> object = new LinkedHashMap<String, Object>();
+
+			expect('{');
+			skipWhitespace();
+			if (text.charAt(position) == '}') {
+				position++;
+				return object;
+			}
+			do {
+				skipWhitespace();
+				String key = readString();
+
+				skipWhitespace();
+				expect(':');
+				object.put(key, readValue());
+				skipWhitespace();
+			} while (text.charAt(position++) == ',');
+			checkClosed('}');
+
+			return object;
+		}
+
+		private List<Object> readArray() {
+			List<Object> array = new ArrayList<Object>();
+
+			expect('[');
+			skipWhitespace();
+			if (text.charAt(position) == ']') {
+				position++;
+				return array;
+			}
+			do {
+				array.add(readValue());
+				skipWhitespace();
+			} while (text.charAt(position++) == ',');
+			checkClosed(']');
+
+			return array;
+		}
+
+		private String readString() {
+			StringBuilder value = new StringBuilder();
+
+			expect('"');
+			for (char next = text.charAt(position++); next != '"'; next = text.charAt(position++)) {
+				if (next == '\\') {
+					char escaped = text.charAt(position++);
+
+					switch (escaped) {
+						case 'n':
+							value.append('\n');
+							break;
+						case 't':
+							value.append('\t');
+							break;
+						case 'r':
+							value.append('\r');
+							break;
+						case 'b':
+							value.append('\b');
+							break;
+						case 'f':
+							value.append('\f');
+							break;
+						case 'u':
+							value.append((char) Integer.parseInt(text.substring(position, position + 4), 16));
+							position += 4;
+							break;
+						default:
+							value.append(escaped);
+					}
+				} else {
+					value.append(next);
+				}
+			}
+
+			return value.toString();
+		}
+
+		private Double readNumber() {
+			int start = position;
+
+			while (position < text.length() && "+-0123456789.eE".indexOf(text.charAt(position)) >= 0) {
+				position++;
+			}
+			if (start == position) {
+				throw new IllegalArgumentException("Unexpected character at " + position);
+			}
+
+			return Double.valueOf(text.substring(start, position));
+		}
+
+		private Object readLiteral(String literal, Object value) {
+			if (!text.startsWith(literal, position)) {
+				throw new IllegalArgumentException("Unexpected character at " + position);
+			}
+			position += literal.length();
+
+			return value;
+		}
+
+		private void expect(char expected) {
+			if (text.charAt(position) != expected) {
+				throw new IllegalArgumentException(String.format("Expected '%s' at %d", expected, position));
+			}
+			position++;
+		}
+
+		private void checkClosed(char expected) {
+			if (text.charAt(position - 1) != expected) {
+				throw new IllegalArgumentException(String.format("Expected '%s' at %d", expected, position - 1));
+			}
+		}
+
+		private void skipWhitespace() {
+			while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+				position++;
+			}
+		}
+	}
+}
@@ -0,0 +1,179 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 Anthony Williams.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.williams.anthony.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import com.williams.anthony.BatchPrompter;
+import com.williams.anthony.Prompter;
+import com.williams.anthony.models.PrompterChoiceResult;
+import com.williams.anthony.models.PrompterIntResult;
+
+/**
+ * Measures the <code>Prompter</code> validation loops over a scripted input of many rejected answers followed by an
+ * accepted one, with the prompts written to a stream that discards them.
+ *
+ * The <code>validate...</code> benchmarks check a dirty answer file (nine answers in ten rejected) line by line, with
+ * <code>Integer.parseInt</code> and a caught exception per rejection (as the loops used to) and with
+ * <code>Prompter.TryParseInt</code>; <code>batchPromptUserForIntsInRange</code> reads the same file through a
+ * <code>BatchPrompter</code>.
+ *
+ * @author Anthony Williams
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PrompterBenchmark {
+
+	private static final String PROMPT = "Input a number and press [Enter]";
+	private static final String ERROR = "Please enter a valid number";
+	private static final String[] CHOICES = { "Untrained", "Trained", "Skilled", "Expert" };
+	// NOTE: the mistakes people make, words, decimals, blanks...
+	private static final String[] NOT_NUMBERS = { "abc", "4.5", "", "twelve", "0x10", " 7" };
+	// NOTE: ...and, where a range applies, numbers outside it
+	private static final String[] OUT_OF_RANGE = { "abc", "4.5", "", "99", "twelve", "0x10", " 7", "-1" };
+	private static final int MIN = 1;
+	private static final int MAX = 10;
+
+	/** The number of rejected answers before the accepted one */
+	@Param({ "100", "10000" })
+	public int rejectedAnswers;
+
+	private final PrintStream writer = new PrintStream(OutputStream.nullOutputStream());
+	private String intScript;
+	private String rangeScript;
+	private String choiceScript;
+	private Scanner intReader;
+	private Scanner rangeReader;
+	private Scanner choiceReader;
+	private String[] dirtyAnswers;
+	private byte[] dirtyScript;
+	private BatchPrompter batchPrompter;
+
+	@Setup(Level.Trial)
+	public void buildScripts() {
+		intScript = script(NOT_NUMBERS, "42");
+		rangeScript = script(OUT_OF_RANGE, "3");
+		choiceScript = script(OUT_OF_RANGE, "2");
+		dirtyAnswers = new String[rejectedAnswers];
+		for (int a = 0; a < dirtyAnswers.length; a++) {
+			dirtyAnswers[a] = a % 10 == 9 ? String.valueOf(a % MAX + MIN) : OUT_OF_RANGE[a % OUT_OF_RANGE.length];
+		}
+		dirtyScript = (String.join("\n", dirtyAnswers) + "\n").getBytes(StandardCharsets.UTF_8);
+	}
+
+	// NOTE: a Scanner is used up by each call, the scripts are long enough for the setup cost not to matter
+	@Setup(Level.Invocation)
+	public void openReaders() {
+		intReader = new Scanner(intScript);
+		rangeReader = new Scanner(rangeScript);
+		choiceReader = new Scanner(choiceScript);
+		batchPrompter = new BatchPrompter(new ByteArrayInputStream(dirtyScript), OutputStream.nullOutputStream(),
+				false);
+	}
+
+	@Benchmark
+	public PrompterIntResult promptUserForInt() {
+		return Prompter.PromptUserForInt(intReader, writer, PROMPT, ERROR);
+	}
+
+	@Benchmark
+	public PrompterIntResult promptUserForIntInRange() {
+		return Prompter.PromptUserForIntInRange(rangeReader, writer, PROMPT, ERROR, MIN, MAX);
+	}
+
+	@Benchmark
+	public PrompterChoiceResult promptUserForChoice() {
+		return Prompter.PromptUserForChoice(choiceReader, writer, PROMPT, ERROR, CHOICES);
+	}
+
+	@Benchmark
+	public int validateWithParseInt() {
+		int accepted = 0;
+
+		for (String answer : dirtyAnswers) {
+			try {
+				int potentialInt = Integer.parseInt(answer);
+
+				if (potentialInt >= MIN && potentialInt <= MAX) {
+					accepted++;
+				}
+			} catch (NumberFormatException numberFormatEx) {
+				// NOTE: rejected
+			}
+		}
+
+		return accepted;
+	}
+
+	@Benchmark
+	public int validateWithTryParseInt() {
+		int accepted = 0;
+
+		for (String answer : dirtyAnswers) {
+			long potentialInt = Prompter.TryParseInt(answer);
+
+			if (potentialInt >= MIN && potentialInt <= MAX) {
+				accepted++;
+			}
+		}
+
+		return accepted;
+	}
+
+	@Benchmark
+	public long batchPromptUserForIntsInRange() {
+		return batchPrompter.PromptUserForIntsInRange(PROMPT, ERROR, MIN, MAX).count();
+	}
+
+	private String script(String[] rejected, String accepted) {
+		StringBuilder script = new StringBuilder();
+
+		for (int a = 0; a < rejectedAnswers; a++) {
+			script.append(rejected[a % rejected.length]).append('\n');
+		}
+		script.append(accepted).append('\n');
+
+		return script.toString();
+	}
+}
@@ -0,0 +1,138 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 Anthony Williams.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.williams.anthony.benchmarks;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import com.williams.anthony.http.HttpResponse;
+import com.williams.anthony.http.HttpStatus;
+import com.williams.anthony.http.ResponseBody;
+import com.williams.anthony.http.ResponseEncoder;
+
+/**
+ * Measures turning a handler's response into bytes on the wire: encoding the head and the gathering write of head and
+ * body, into a channel that throws the bytes away so the socket is left out of it
+ *
+ * @author Anthony Williams
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResponseWriteBenchmark {
+
+	@Param({ "0", "1024", "65536" })
+	public int bodySize;
+
+	private final ByteBuffer headBuffer = ByteBuffer.allocateDirect(1024);
+	private final DiscardingChannel channel = new DiscardingChannel();
+	private byte[] body;
+
+	@Setup
+	public void setUp() {
+		body = new byte[bodySize];
+		Arrays.fill(body, (byte) 'x');
+	}
+
+	@Benchmark
+	public ByteBuffer encodeHead() {
+		headBuffer.clear();
+		ResponseEncoder.encodeHead(response(), true, headBuffer);
+		return headBuffer;
+	}
+
+	@Benchmark
+	public boolean encodeAndWrite() throws IOException {
+		HttpResponse response = response();
+
+		headBuffer.clear();
+		ResponseEncoder.encodeHead(response, true, headBuffer);
+		headBuffer.flip();
+
+		try (ResponseBody responseBody = response.getBody()) {
+			return responseBody.writeTo(channel, headBuffer);
+		}
+	}
+
+	private HttpResponse response() {
+		return new HttpResponse(HttpStatus.OK, body)
+				.withHeader("Content-Type", "application/octet-stream")
+				.withHeader("Cache-Control", "max-age=60");
+	}
+
+	/**
+	 * Accepts every byte straight away, like a socket with an empty send buffer
+	 */
+	private static final class DiscardingChannel implements GatheringByteChannel {
+
+		@Override
+		public int write(ByteBuffer source) {
+			int length = source.remaining();
+
+			source.position(source.limit());
+			return length;
+		}
+
+		@Override
+		public long write(ByteBuffer[] sources, int offset, int length) {
+			long total = 0;
+
+			for (int index = offset; index < offset + length; index++) {
+				total += write(sources[index]);
+			}
+
+			return total;
+		}
+
+		@Override
+		public long write(ByteBuffer[] sources) {
+			return write(sources, 0, sources.length);
+		}
+
+		@Override
+		public boolean isOpen() {
+			return true;
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+}
@@ -24,20 +24,42 @@
 package com.williams.anthony;
 
 import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+import com.williams.anthony.handlers.DateHandler;
+import com.williams.anthony.handlers.MetricsHandler;
+import com.williams.anthony.handlers.ResponseCache;
+import com.williams.anthony.handlers.StaticFileHandler;
+import com.williams.anthony.http.Router;
+import com.williams.anthony.models.PrompterChoiceResult;
+import com.williams.anthony.models.PrompterIntResult;
+import com.williams.anthony.models.PrompterResult;
+import com.williams.anthony.models.PrompterSessionResult;
+import com.williams.anthony.models.PrompterStringResult;
+import com.williams.anthony.server.ServerConfig;
+import com.williams.anthony.server.ServerMetrics;
 
 /**
  * @author Anthony Williams
  */
 public final class App {
 
-	// private static final String[] CHOICES_SKILL_LEVEL = new String[] { "Untrained", "Trained", "Skilled", "Expert" };
-	// private static final String ERROR_INVALID_AGE = "Age must be an integer number (e.g.: 1, 15, 50...)";
-	// private static final String ERROR_INVALID_SKILLLEVEL = "Please select a valid skill level";
-	// private static final String ERROR_USERNAME_EMPTY = "Username cannot be empty";
+	private static final ChoiceMenu CHOICES_SKILL_LEVEL = new ChoiceMenu(
+			new String[] { "Untrained", "Trained", "Skilled", "Expert" });
+	private static final String ERROR_INVALID_AGE = "Age must be an integer number (e.g.: 1, 15, 50...)";
+	private static final String ERROR_INVALID_SKILLLEVEL = "Please select a valid skill level";
+	private static final String ERROR_USERNAME_EMPTY = "Username cannot be empty";
 	private static final String GREETING = "Ello! 😊";
-	// private static final String PROMPT_TEXT_AGE = "Input an age (integer) and press [Enter]";
-	// private static final String PROMPT_TEXT_SKILLLEVEL = "Input a skill level number from the list and press [Enter]";
-	// private static final String PROMPT_TEXT_USERNAME = "Input a username and press [Enter]";
+	private static final String ENGINE_BLOCKING = "blocking";
+	private static final String ENGINE_PROMPTER = "prompter";
+	private static final String ENGINE_SELECTOR = "selector";
+	private static final long DATE_CACHE_TTL_MILLIS = 1000;
+	private static final long RESULTS_PRINT_INTERVAL_MILLIS = 1000;
+	private static final int SERVER_PORT = 9090;
+	private static final String PROMPT_TEXT_AGE = "Input an age (integer) and press [Enter]";
+	private static final String PROMPT_TEXT_SKILLLEVEL = "Input a skill level number from the list and press [Enter]";
+	private static final String PROMPT_TEXT_USERNAME = "Input a username and press [Enter]";
 
 	/**
 	 * @param args the command line arguments
@@ -48,20 +70,142 @@ public final class App {
 		System.out.printf("[App.main()] %s%n", GREETING);
 
 		try {
-			SimpleServer server = new SimpleServer();
-			server.spinUpServer(9090);
+			ServerConfig config = ServerConfig.fromSystemProperties();
+			ServerEngine server = createServer(config);
+
+			// NOTE: Ctrl+C (or a SIGTERM) lets in-flight requests finish before the process exits
+			Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+				try {
+					server.shutdown(config.getDrainTimeoutMillis(), TimeUnit.MILLISECONDS);
+				} catch (IOException ioException) {
+					ioException.printStackTrace();
+				}
+			}, "server-shutdown"));
+			server.spinUpServer(SERVER_PORT);
 		} catch (IOException ioException) {
 			ioException.printStackTrace();
 		}
-		// Prompter prompter = new Prompter(new Scanner(System.in), System.out);
-		// PrompterStringResult usernameResult = prompter.PromptUserForString(PROMPT_TEXT_USERNAME, ERROR_USERNAME_EMPTY);
-		// PrompterIntResult ageResult = prompter.PromptUserForInt(PROMPT_TEXT_AGE, ERROR_INVALID_AGE);
-		// PrompterChoiceResult skillLevelResult = prompter.PromptUserForChoice(PROMPT_TEXT_SKILLLEVEL,
-		// 		ERROR_INVALID_SKILLLEVEL, CHOICES_SKILL_LEVEL);
-
-		// System.out.printf("\tUsername = %s%n", usernameResult.getValue());
-		// System.out.printf("\tAge = %d%n", ageResult.getValue());
-		// System.out.printf("\tSkill = %d.) %s%n", skillLevelResult.getChoiceIndex() + 1,
-		// 		skillLevelResult.getChoiceText());
+	}
+
+	/**
+	 * Asks a user for a username, an age and a skill level, then reads the answers back to them
+	 *
+	 * @param prompter Prompts the user
+	 * @param writer Where the answers are read back
+	 */
+	static void promptForProfile(Prompter prompter, PrintStream writer) {
+		PrompterStringResult usernameResult = prompter.PromptUserForString(PROMPT_TEXT_USERNAME, ERROR_USERNAME_EMPTY);
+		PrompterIntResult ageResult = prompter.PromptUserForInt(PROMPT_TEXT_AGE, ERROR_INVALID_AGE);
+		PrompterChoiceResult skillLevelResult = prompter.PromptUserForChoice(PROMPT_TEXT_SKILLLEVEL,
+				ERROR_INVALID_SKILLLEVEL, CHOICES_SKILL_LEVEL);
+
+		writer.printf("\tUsername = %s%n", usernameResult.getValue());
+		writer.printf("\tAge = %d%n", ageResult.getValue());
+		writer.printf("\tSkill = %d.) %s%n", skillLevelResult.getChoiceIndex() + 1, skillLevelResult.getChoiceText());
+	}
+
+	/**
+	 * Prints the responses of the prompter sessions as they come in, from a background thread so no session waits on
+	 * the console
+	 *
+	 * @param results Where the sessions report their responses
+	 */
+	private static void startResultsPrinter(PrompterResults results) {
+		Thread printer = new Thread(() -> {
+			try {
+				while (true) {
+					results.drainTo(App::printResult);
+					Thread.sleep(RESULTS_PRINT_INTERVAL_MILLIS);
+				}
+			} catch (InterruptedException interruptedException) {
+				// NOTE: the process is exiting
+			}
+		}, "prompter-results");
+
+		printer.setDaemon(true);
+		printer.start();
+	}
+
+	private static void printResult(PrompterSessionResult sessionResult) {
+		PrompterResult result = sessionResult.getResult();
+		Object value;
+
+		if (result instanceof PrompterChoiceResult) {
+			value = ((PrompterChoiceResult) result).getChoiceText();
+		} else if (result instanceof PrompterIntResult) {
+			value = ((PrompterIntResult) result).getValue();
+		} else {
+			value = ((PrompterStringResult) result).getValue();
+		}
+		System.out.printf("[App.printResult()] Session %d answered '%s' (attempts = %d)%n",
+				sessionResult.getSessionId(), value, result.getAttempts());
+	}
+
+	/**
+	 * Registers every route the server answers
+	 *
+	 * @param config The server settings
+	 * @param metrics The metrics of the server the routes are for
+	 * @return The routes, ready to hand to a server
+	 */
+	private static Router createRouter(ServerConfig config, ServerMetrics metrics) {
+		Router router = new Router();
+
+		// NOTE: the date only changes once a second, so neither does the response (-Dserver.responseCacheBytes=0
+		// turns caching off)
+		if (config.getResponseCacheBytes() > 0) {
+			ResponseCache responseCache = createResponseCache(config);
+
+			router.add("GET", "/*", responseCache.cache(new DateHandler(), DATE_CACHE_TTL_MILLIS));
+		} else {
+			router.add("GET", "/*", new DateHandler());
+		}
+		// NOTE: e.g. java -Dserver.documentRoot=./public ... serves ./public/index.html as /static/index.html
+		if (config.getDocumentRoot() != null) {
+			router.add("GET", "/static/*", new StaticFileHandler(Paths.get(config.getDocumentRoot())));
+		}
+		// NOTE: e.g. curl http://localhost:9090/metrics (-Dserver.metricsPath= turns it off)
+		if (config.getMetricsPath() != null) {
+			router.add("GET", config.getMetricsPath(), new MetricsHandler(metrics));
+		}
+
+		return router;
+	}
+
+	/**
+	 * @param config The server settings
+	 * @return A response cache of <code>config.getResponseCacheBytes()</code>, coalescing concurrent misses unless
+	 *         the handlers run on the selector engine's event loops (which must never wait on each other)
+	 */
+	static ResponseCache createResponseCache(ServerConfig config) {
+		return new ResponseCache(config.getResponseCacheBytes(), !ENGINE_SELECTOR.equalsIgnoreCase(config.getEngine()));
+	}
+
+	/**
+	 * Picks the server implementation named by the <code>server.engine</code> system property
+	 *
+	 * @param config The server settings (see <code>ServerConfig.fromSystemProperties()</code>)
+	 * @return The configured (but not yet started) server
+	 */
+	static ServerEngine createServer(ServerConfig config) {
+		ServerMetrics metrics = new ServerMetrics();
+
+		// NOTE: e.g. java -Dserver.engine=selector -Dserver.eventLoops=4 ...
+		if (ENGINE_SELECTOR.equalsIgnoreCase(config.getEngine())) {
+			return new SelectorServer(config, createRouter(config, metrics), metrics);
+		}
+		// NOTE: e.g. java -Dserver.engine=prompter ... then telnet localhost 9090 (one session per connection)
+		if (ENGINE_PROMPTER.equalsIgnoreCase(config.getEngine())) {
+			PrompterResults results = new PrompterResults();
+
+			startResultsPrinter(results);
+			return new PrompterServer(config, App::promptForProfile, results);
+		}
+		// NOTE: e.g. java -Dserver.workers=8 -Dserver.queue=64 ... (0 workers handles requests on the accept thread)
+		if (ENGINE_BLOCKING.equalsIgnoreCase(config.getEngine())) {
+			return new SimpleServer(config, createRouter(config, metrics), metrics);
+		}
+
+		throw new IllegalArgumentException(String.format("Unknown server.engine '%s'", config.getEngine()));
 	}
 }
@@ -0,0 +1,465 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 Anthony Williams.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.williams.anthony;
+
+import java.io.PrintStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import com.williams.anthony.models.PrompterChoiceResult;
+import com.williams.anthony.models.PrompterIntResult;
+import com.williams.anthony.models.PrompterResult;
+import com.williams.anthony.models.PrompterStringResult;
+
+/**
+ * Asynchronous counterpart of <code>Prompter</code>: every <code>PromptUserFor...Async</code> method returns at
+ * once with a <code>CompletableFuture</code>, and no thread waits for the user to answer. Instead, whoever reads
+ * the input (e.g.: a selector loop doing non-blocking reads) pushes it in with {@link #offerInput(CharSequence)} or
+ * {@link #offerLine(String)}, and each line is validated exactly as <code>Prompter</code> would have validated it.
+ *
+ * Prompts are answered in the order they were made; a prompt is only displayed once the ones before it have been
+ * answered, and lines typed ahead wait for the next prompt. A prompt given a timeout (by the overloads taking one)
+ * or whose future is cancelled stops taking lines, so the next one is displayed. That only works on the future a
+ * prompt method returns: <code>CompletableFuture</code> does not pass the timeout or cancellation of a future derived
+ * from it (e.g.: by <code>thenCompose</code>) back upstream, so such a prompt would keep waiting and hold up every
+ * later one. At end of input every prompt still waiting fails with a <code>NoSuchElementException</code>, as
+ * <code>Scanner.nextLine()</code> does.
+ *
+ * <pre>
+ * prompter.PromptUserForStringAsync("Input a username", "Username cannot be empty", 5, TimeUnit.MINUTES)
+ *         .thenCompose(username -&gt; prompter.PromptUserForIntAsync("Input an age", "Age must be an integer",
+ *                 5, TimeUnit.MINUTES));
+ * </pre>
+ *
+ * @author Anthony Williams
+ */
+public final class AsyncPrompter {
+
+	private final PrintStream writer;
+	private final ArrayDeque<PendingPrompt<?>> pendingPrompts = new ArrayDeque<PendingPrompt<?>>();
+	private final ArrayDeque<String> unansweredLines = new ArrayDeque<String>();
+	private final StringBuilder partialLine = new StringBuilder();
+	private boolean isEndOfInput = false;
+
+	/**
+	 * @param writer Where prompts and errors are written (e.g.: the connection the input is read from)
+	 */
+	public AsyncPrompter(PrintStream writer) {
+		this.writer = writer;
+	}
+
+	/**
+	 * Asks the user for a string value, once the prompts before this one have been answered
+	 *
+	 * @param prompt The <code>String</code> message to display to user (to prompt for input)
+	 * @param errorMsg The <code>String</code> message to display to user when response is invalid
+	 * @return A future of the <code>PrompterStringResult</code>, completed once the user has responded
+	 */
+	public CompletableFuture<PrompterStringResult> PromptUserForStringAsync(String prompt, String errorMsg) {
+		return enqueue(new PendingPrompt<PrompterStringResult>(prompt, null, errorMsg,
+				(line, attempts) -> line.length() < 1 ? null : new PrompterStringResult(line, attempts)));
+	}
+
+	/**
+	 * Asks the user for a string value, giving up once the timeout has passed
+	 *
+	 * @param prompt The <code>String</code> message to display to user (to prompt for input)
+	 * @param errorMsg The <code>String</code> message to display to user when response is invalid
+	 * @param timeout How long to wait for a valid response, counted from now
+	 * @param unit The unit of the timeout
+	 * @return A future of the <code>PrompterStringResult</code>, failed with a <code>TimeoutException</code> when the
+	 *         user has not responded in time
+	 */
+	public CompletableFuture<PrompterStringResult> PromptUserForStringAsync(
+		String prompt,
+		String errorMsg,
+		long timeout,
+		TimeUnit unit) {
+		// NOTE: the timeout must be on the prompt's own future, so the prompt gives up its place when it fires
+		return PromptUserForStringAsync(prompt, errorMsg).orTimeout(timeout, unit);
+	}
+
+	/**
+	 * Asks the user for an integer value, once the prompts before this one have been answered
+	 *
+	 * @param prompt The <code>String</code> message to display to user (to prompt for input)
+	 * @param errorMsg The <code>String</code> message to display to user when response is invalid
+	 * @return A future of the <code>PrompterIntResult</code>, completed once the user has responded
+	 */
+	public CompletableFuture<PrompterIntResult> PromptUserForIntAsync(String prompt, String errorMsg) {
+		return PromptUserForIntInRangeAsync(prompt, errorMsg, Integer.MIN_VALUE, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Asks the user for an integer value, giving up once the timeout has passed
+	 *
+	 * @param prompt The <code>String</code> message to display to user (to prompt for input)
+	 * @param errorMsg The <code>String</code> message to display to user when response is invalid
+	 * @param timeout How long to wait for a valid response, counted from now
+	 * @param unit The unit of the timeout
+	 * @return A future of the <code>PrompterIntResult</code>, failed with a <code>TimeoutException</code> when the
+	 *         user has not responded in time
+	 */
+	public CompletableFuture<PrompterIntResult> PromptUserForIntAsync(
+		String prompt,
+		String errorMsg,
+		long timeout,
+		TimeUnit unit) {
+		return PromptUserForIntAsync(prompt, errorMsg).orTimeout(timeout, unit);
+	}
+
+	/**
+	 * Asks the user for an integer value within a range, once the prompts before this one have been answered
+	 *
+	 * @param prompt The <code>String</code> message to display to user (to prompt for input)
+	 * @param errorMsg The <code>String</code> message to display to user when response is invalid
+	 * @param min The <code>Integer</code> minimum value to accept from the user (inclusive)
+	 * @param max The <code>Integer</code> maximum value to accept from the user (inclusive)
+	 * @return A future of the <code>PrompterIntResult</code>, completed once the user has responded
+	 */
+	public CompletableFuture<PrompterIntResult> PromptUserForIntInRangeAsync(
+		String prompt,
+		String errorMsg,
+		int min,
+		int max) {
+		return enqueue(new PendingPrompt<PrompterIntResult>(prompt, null, errorMsg, (line, attempts) -> {
+			long potentialInt = Prompter.TryParseInt(line);
+
+			// NOTE: NOT_AN_INT is below every int, so it fails the range check too
+			return potentialInt >= min && potentialInt <= max
+					? new PrompterIntResult((int) potentialInt, attempts)
+					: null;
+		}));
+	}
+
+	/**
+	 * Asks the user for an integer value within a range, giving up once the timeout has passed
+	 *
+	 * @param prompt The <code>String</code> message to display to user (to prompt for input)
+	 * @param errorMsg The <code>String</code> message to display to user when response is invalid
+	 * @param min The <code>Integer</code> minimum value to accept from the user (inclusive)
+	 * @param max The <code>Integer</code> maximum value to accept from the user (inclusive)
+	 * @param timeout How long to wait for a valid response, counted from now
+	 * @param unit The unit of the timeout
+	 * @return A future of the <code>PrompterIntResult</code>, failed with a <code>TimeoutException</code> when the
+	 *         user has not responded in time
+	 */
+	public CompletableFuture<PrompterIntResult> PromptUserForIntInRangeAsync(
+		String prompt,
+		String errorMsg,
+		int min,
+		int max,
+		long timeout,
+		TimeUnit unit) {
+		return PromptUserForIntInRangeAsync(prompt, errorMsg, min, max).orTimeout(timeout, unit);
+	}
+
+	/**
+	 * Asks the user to select one of the choices, once the prompts before this one have been answered
+	 *
+	 * @param prompt The <code>String</code> message to display to user (to prompt for input)
+	 * @param errorMsg The <code>String</code> message to display to user when response is invalid
+	 * @param choices The <code>String[]</code> of choices the user may select
+	 * @return A future of the <code>PrompterChoiceResult</code>, completed once the user has responded
+	 */
+	public CompletableFuture<PrompterChoiceResult> PromptUserForChoiceAsync(
+		String prompt,
+		String errorMsg,
+		String[] choices) {
+		return PromptUserForChoiceAsync(prompt, errorMsg, new ChoiceMenu(choices));
+	}
+
+	/**
+	 * Asks the user to select one of the choices, giving up once the timeout has passed
+	 *
+	 * @param prompt The <code>String</code> message to display to user (to prompt for input)
+	 * @param errorMsg The <code>String</code> message to display to user when response is invalid
+	 * @param choices The <code>String[]</code> of choices the user may select
+	 * @param timeout How long to wait for a valid response, counted from now
+	 * @param unit The unit of the timeout
+	 * @return A future of the <code>PrompterChoiceResult</code>, failed with a <code>TimeoutException</code> when the
+	 *         user has not responded in time
+	 */
+	public CompletableFuture<PrompterChoiceResult> PromptUserForChoiceAsync(
+		String prompt,
+		String errorMsg,
+		String[] choices,
+		long timeout,
+		TimeUnit unit) {
+		return PromptUserForChoiceAsync(prompt, errorMsg, new ChoiceMenu(choices)).orTimeout(timeout, unit);
+	}
+
+	/**
+	 * Asks the user to select from the menu (by number, text or unique prefix, see <code>ChoiceMenu</code>), once the
+	 * prompts before this one have been answered
+	 *
+	 * @param prompt The <code>String</code> message to display to user (to prompt for input)
+	 * @param errorMsg The <code>String</code> message to display to user when response is invalid
+	 * @param menu The <code>ChoiceMenu</code> of choices the user may select
+	 * @return A future of the <code>PrompterChoiceResult</code>, completed once the user has responded
+	 */
+	public CompletableFuture<PrompterChoiceResult> PromptUserForChoiceAsync(
+		String prompt,
+		String errorMsg,
+		ChoiceMenu menu) {
+		return enqueue(new PendingPrompt<PrompterChoiceResult>(prompt, menu, errorMsg, (line, attempts) -> {
+			int userChoice = menu.select(line);
+
+			return userChoice == ChoiceMenu.NO_CHOICE
+					? null
+					: new PrompterChoiceResult(userChoice, menu.getChoice(userChoice), attempts);
+		}));
+	}
+
+	/**
+	 * Asks the user to select from the menu, giving up once the timeout has passed
+	 *
+	 * @param prompt The <code>String</code> message to display to user (to prompt for input)
+	 * @param errorMsg The <code>String</code> message to display to user when response is invalid
+	 * @param menu The <code>ChoiceMenu</code> of choices the user may select
+	 * @param timeout How long to wait for a valid response, counted from now
+	 * @param unit The unit of the timeout
+	 * @return A future of the <code>PrompterChoiceResult</code>, failed with a <code>TimeoutException</code> when the
+	 *         user has not responded in time
+	 */
+	public CompletableFuture<PrompterChoiceResult> PromptUserForChoiceAsync(
+		String prompt,
+		String errorMsg,
+		ChoiceMenu menu,
+		long timeout,
+		TimeUnit unit) {
+		return PromptUserForChoiceAsync(prompt, errorMsg, menu).orTimeout(timeout, unit);
+	}
+
+	/**
+	 * Takes input as it arrives, in chunks that need not end on a line break (e.g.: whatever one non-blocking read
+	 * returned). Every complete line (ended by LF or CRLF) answers the prompt waiting for it.
+	 *
+	 * @param chunk The characters read
+	 */
+	public void offerInput(CharSequence chunk) {
+		List<PendingPrompt<?>> answered = new ArrayList<PendingPrompt<?>>();
+
+		synchronized (this) {
+			for (int c = 0; c < chunk.length(); c++) {
+				char character = chunk.charAt(c);
+
+				if (character != '\n') {
+					partialLine.append(character);
+					continue;
+				}
+
+				int length = partialLine.length();
+
+				if (length > 0 && partialLine.charAt(length - 1) == '\r') {
+					length--;
+				}
+				unansweredLines.addLast(partialLine.substring(0, length));
+				partialLine.setLength(0);
+			}
+			answerPrompts(answered);
+		}
+		complete(answered);
+	}
+
+	/**
+	 * Takes one complete line of input, which answers the prompt waiting for it
+	 *
+	 * @param line The line, without its line break
+	 */
+	public void offerLine(String line) {
+		List<PendingPrompt<?>> answered = new ArrayList<PendingPrompt<?>>();
+
+		synchronized (this) {
+			unansweredLines.addLast(line);
+			answerPrompts(answered);
+		}
+		complete(answered);
+	}
+
+	/**
+	 * Marks the end of input (e.g.: the user hung up): a last line not ended by a line break still counts, then every
+	 * prompt still waiting (and any made later) fails with a <code>NoSuchElementException</code>
+	 */
+	public void endOfInput() {
+		List<PendingPrompt<?>> answered = new ArrayList<PendingPrompt<?>>();
+
+		synchronized (this) {
+			if (partialLine.length() > 0) {
+				unansweredLines.addLast(partialLine.toString());
+				partialLine.setLength(0);
+			}
+			isEndOfInput = true;
+			answerPrompts(answered);
+		}
+		complete(answered);
+	}
+
+	/**
+	 * @return The number of prompts not answered yet
+	 */
+	public synchronized int getPendingCount() {
+		return pendingPrompts.size();
+	}
+
+	private <R extends PrompterResult> CompletableFuture<R> enqueue(PendingPrompt<R> pendingPrompt) {
+		List<PendingPrompt<?>> answered = new ArrayList<PendingPrompt<?>>();
+
+		synchronized (this) {
+			pendingPrompts.addLast(pendingPrompt);
+			answerPrompts(answered);
+		}
+		// NOTE: a cancelled or timed out prompt gives up its place, so the next one is displayed
+		pendingPrompt.future.whenComplete((result, failure) -> {
+			if (failure != null) {
+				abandon(pendingPrompt);
+			}
+		});
+		complete(answered);
+
+		return pendingPrompt.future;
+	}
+
+	private void abandon(PendingPrompt<?> pendingPrompt) {
+		List<PendingPrompt<?>> answered = new ArrayList<PendingPrompt<?>>();
+
+		synchronized (this) {
+			if (!pendingPrompts.remove(pendingPrompt)) {
+				return;
+			}
+			answerPrompts(answered);
+		}
+		complete(answered);
+	}
+
+	/**
+	 * Hands the unanswered lines to the prompts in order, displaying each prompt as it comes up. Must hold the lock.
+	 *
+	 * @param answered Collects the prompts that are done, to be completed once the lock is released
+	 */
+	private void answerPrompts(List<PendingPrompt<?>> answered) {
+		PendingPrompt<?> pendingPrompt;
+
+		while ((pendingPrompt = pendingPrompts.peekFirst()) != null) {
+			// NOTE: cancelled or timed out, but abandon() has not run yet
+			if (pendingPrompt.future.isDone()) {
+				pendingPrompts.removeFirst();
+				continue;
+			}
+			if (!pendingPrompt.isDisplayed) {
+				pendingPrompt.display(writer);
+			}
+
+			String line = unansweredLines.pollFirst();
+
+			if (line == null) {
+				if (isEndOfInput) {
+					pendingPrompts.removeFirst();
+					answered.add(pendingPrompt);
+				}
+				return;
+			}
+			if (pendingPrompt.answer(line, writer)) {
+				pendingPrompts.removeFirst();
+				answered.add(pendingPrompt);
+			}
+		}
+	}
+
+	/**
+	 * Completes the futures outside the lock, since that runs whatever the caller chained on them (which may well
+	 * prompt again)
+	 *
+	 * @param answered
+	 */
+	private static void complete(List<PendingPrompt<?>> answered) {
+		for (PendingPrompt<?> pendingPrompt : answered) {
+			pendingPrompt.complete();
+		}
+	}
+
+	/**
+	 * One prompt waiting for a valid answer
+	 *
+	 * @param <R> The type of result
+	 */
+	private static final class PendingPrompt<R extends PrompterResult> {
+		private final String prompt;
+		private final ChoiceMenu menu;
+		private final String errorMsg;
+		private final BiFunction<String, Integer, R> validator;
+		private final CompletableFuture<R> future = new CompletableFuture<R>();
+		private boolean isDisplayed = false;
+		private int attempts = 0;
+		private R result = null;
+
+		/**
+		 * @param prompt
+		 * @param menu The choices displayed after the prompt, or null
+		 * @param errorMsg
+		 * @param validator Turns a line and the attempts so far into a result, or null when the line is invalid
+		 */
+		PendingPrompt(String prompt, ChoiceMenu menu, String errorMsg, BiFunction<String, Integer, R> validator) {
+			this.prompt = prompt;
+			this.menu = menu;
+			this.errorMsg = errorMsg;
+			this.validator = validator;
+		}
+
+		void display(PrintStream writer) {
+			isDisplayed = true;
+			writer.println(prompt);
+			if (menu != null) {
+				writer.print(menu.getText());
+			}
+		}
+
+		/**
+		 * @return Whether the line was valid (otherwise the error and the prompt are displayed again)
+		 */
+		boolean answer(String line, PrintStream writer) {
+			attempts++;
+			result = validator.apply(line, attempts);
+			if (result != null) {
+				return true;
+			}
+			writer.println(errorMsg);
+			display(writer);
+
+			return false;
+		}
+
+		void complete() {
+			if (result != null) {
+				future.complete(result);
+			} else {
+				future.completeExceptionally(new NoSuchElementException("No line found"));
+			}
+		}
+	}
+}
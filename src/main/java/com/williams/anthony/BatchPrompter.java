@@ -0,0 +1,347 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 Anthony Williams.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.williams.anthony;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import com.williams.anthony.models.PrompterChoiceResult;
+import com.williams.anthony.models.PrompterIntResult;
+import com.williams.anthony.models.PrompterStringResult;
+
+/**
+ * Non-interactive counterpart of <code>Prompter</code>, for answers piped in from a file rather than typed.
+ *
+ * Answers are validated exactly as <code>Prompter</code> validates them (a rejected answer counts as an attempt and
+ * the next line is tried), but input goes through a {@link LineReader} and the prompts and errors are either
+ * dropped or collected in a large buffer that is only written out when it fills, on {@link #flush()} or on
+ * {@link #close()}. The <code>PromptUserFor...s</code> methods answer the same prompt over and over, as a lazy
+ * <code>Stream</code> of results that ends with the input.
+ *
+ * <pre>
+ * try (BatchPrompter prompter = new BatchPrompter(System.in, System.out, false)) {
+ *     prompter.PromptUserForInts("Input an age", "Age must be an integer").forEach(...);
+ * }
+ * </pre>
+ *
+ * @author Anthony Williams
+ */
+public final class BatchPrompter implements Closeable, Flushable {
+
+	private static final int ECHO_BUFFER_SIZE = 64 * 1024;
+
+	private final LineReader reader;
+	private final Writer echo;
+
+	/**
+	 * @param input The stream of answers, one per line (e.g.: <code>System.in</code>)
+	 * @param output Where prompts and errors are echoed (e.g.: <code>System.out</code>)
+	 * @param isEchoed Whether to echo prompts and errors at all, rather than drop them
+	 */
+	public BatchPrompter(InputStream input, OutputStream output, boolean isEchoed) {
+		this(new LineReader(input), isEchoed
+				? new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8), ECHO_BUFFER_SIZE)
+				: null);
+	}
+
+	/**
+	 * @param reader The answers, one per line
+	 * @param echo Where prompts and errors are echoed, or <code>null</code> to drop them
+	 */
+	public BatchPrompter(LineReader reader, Writer echo) {
+		this.reader = reader;
+		this.echo = echo;
+	}
+
+	/**
+	 * Same as <code>Prompter.PromptUserForString</code>
+	 *
+	 * @param prompt The <code>String</code> message to echo (to prompt for input)
+	 * @param errorMsg The <code>String</code> message to echo when an answer is invalid
+	 * @return A <code>PrompterStringResult</code> containing response information
+	 * @throws NoSuchElementException When the input ends before a valid answer
+	 */
+	public PrompterStringResult PromptUserForString(String prompt, String errorMsg) {
+		return orThrow(readString(prompt, errorMsg));
+	}
+
+	/**
+	 * Same as <code>Prompter.PromptUserForInt</code>
+	 *
+	 * @param prompt The <code>String</code> message to echo (to prompt for input)
+	 * @param errorMsg The <code>String</code> message to echo when an answer is invalid
+	 * @return A <code>PrompterIntResult</code> containing response information
+	 * @throws NoSuchElementException When the input ends before a valid answer
+	 */
+	public PrompterIntResult PromptUserForInt(String prompt, String errorMsg) {
+		return orThrow(readInt(prompt, errorMsg, Integer.MIN_VALUE, Integer.MAX_VALUE));
+	}
+
+	/**
+	 * Same as <code>Prompter.PromptUserForIntInRange</code>
+	 *
+	 * @param prompt The <code>String</code> message to echo (to prompt for input)
+	 * @param errorMsg The <code>String</code> message to echo when an answer is invalid
+	 * @param min The <code>Integer</code> minimum value to accept (inclusive)
+	 * @param max The <code>Integer</code> maximum value to accept (inclusive)
+	 * @return A <code>PrompterIntResult</code> containing response information
+	 * @throws NoSuchElementException When the input ends before a valid answer
+	 */
+	public PrompterIntResult PromptUserForIntInRange(String prompt, String errorMsg, int min, int max) {
+		return orThrow(readInt(prompt, errorMsg, min, max));
+	}
+
+	/**
+	 * Same as <code>Prompter.PromptUserForChoice</code>
+	 *
+	 * @param prompt The <code>String</code> message to echo (to prompt for input)
+	 * @param errorMsg The <code>String</code> message to echo when an answer is invalid
+	 * @param choices The <code>String[]</code> of choices to select from
+	 * @return A <code>PrompterChoiceResult</code> containing response information
+	 * @throws NoSuchElementException When the input ends before a valid answer
+	 */
+	public PrompterChoiceResult PromptUserForChoice(String prompt, String errorMsg, String[] choices) {
+		return PromptUserForChoice(prompt, errorMsg, new ChoiceMenu(choices));
+	}
+
+	/**
+	 * Same as <code>Prompter.PromptUserForChoice</code>, given a menu built once and reused
+	 *
+	 * @param prompt The <code>String</code> message to echo (to prompt for input)
+	 * @param errorMsg The <code>String</code> message to echo when an answer is invalid
+	 * @param menu The <code>ChoiceMenu</code> of choices to select from
+	 * @return A <code>PrompterChoiceResult</code> containing response information
+	 * @throws NoSuchElementException When the input ends before a valid answer
+	 */
+	public PrompterChoiceResult PromptUserForChoice(String prompt, String errorMsg, ChoiceMenu menu) {
+		return orThrow(readChoice(prompt, errorMsg, menu));
+	}
+
+	/**
+	 * @param prompt The <code>String</code> message to echo (to prompt for input)
+	 * @param errorMsg The <code>String</code> message to echo when an answer is invalid
+	 * @return One result per valid answer, until the input ends
+	 */
+	public Stream<PrompterStringResult> PromptUserForStrings(String prompt, String errorMsg) {
+		return stream(() -> readString(prompt, errorMsg));
+	}
+
+	/**
+	 * @param prompt The <code>String</code> message to echo (to prompt for input)
+	 * @param errorMsg The <code>String</code> message to echo when an answer is invalid
+	 * @return One result per valid answer, until the input ends
+	 */
+	public Stream<PrompterIntResult> PromptUserForInts(String prompt, String errorMsg) {
+		return stream(() -> readInt(prompt, errorMsg, Integer.MIN_VALUE, Integer.MAX_VALUE));
+	}
+
+	/**
+	 * @param prompt The <code>String</code> message to echo (to prompt for input)
+	 * @param errorMsg The <code>String</code> message to echo when an answer is invalid
+	 * @param min The <code>Integer</code> minimum value to accept (inclusive)
+	 * @param max The <code>Integer</code> maximum value to accept (inclusive)
+	 * @return One result per valid answer, until the input ends
+	 */
+	public Stream<PrompterIntResult> PromptUserForIntsInRange(String prompt, String errorMsg, int min, int max) {
+		return stream(() -> readInt(prompt, errorMsg, min, max));
+	}
+
+	/**
+	 * @param prompt The <code>String</code> message to echo (to prompt for input)
+	 * @param errorMsg The <code>String</code> message to echo when an answer is invalid
+	 * @param choices The <code>String[]</code> of choices to select from
+	 * @return One result per valid answer, until the input ends
+	 */
+	public Stream<PrompterChoiceResult> PromptUserForChoices(String prompt, String errorMsg, String[] choices) {
+		return PromptUserForChoices(prompt, errorMsg, new ChoiceMenu(choices));
+	}
+
+	/**
+	 * @param prompt The <code>String</code> message to echo (to prompt for input)
+	 * @param errorMsg The <code>String</code> message to echo when an answer is invalid
+	 * @param menu The <code>ChoiceMenu</code> of choices to select from
+	 * @return One result per valid answer, until the input ends
+	 */
+	public Stream<PrompterChoiceResult> PromptUserForChoices(String prompt, String errorMsg, ChoiceMenu menu) {
+		return stream(() -> readChoice(prompt, errorMsg, menu));
+	}
+
+	/**
+	 * Writes out the prompts and errors echoed so far
+	 */
+	@Override
+	public void flush() throws IOException {
+		if (echo != null) {
+			echo.flush();
+		}
+	}
+
+	/**
+	 * Writes out the prompts and errors echoed so far, then closes the input (the output is only flushed, so
+	 * <code>System.out</code> stays usable)
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			flush();
+		} finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * @return The result, or <code>null</code> when the input ended first
+	 */
+	private PrompterStringResult readString(String prompt, String errorMsg) {
+		int attempts = 0;
+
+		while (true) {
+			attempts++;
+			if (attempts > 1) {
+				echoLine(errorMsg);
+			}
+			echoLine(prompt);
+
+			String userEntry = reader.readLine();
+
+			if (userEntry == null) {
+				return null;
+			}
+			if (userEntry.length() > 0) {
+				return new PrompterStringResult(userEntry, attempts);
+			}
+		}
+	}
+
+	/**
+	 * @return The result, or <code>null</code> when the input ended first
+	 */
+	private PrompterIntResult readInt(String prompt, String errorMsg, int min, int max) {
+		int attempts = 0;
+
+		while (true) {
+			attempts++;
+			echoLine(prompt);
+
+			String userEnteredLine = reader.readLine();
+
+			if (userEnteredLine == null) {
+				return null;
+			}
+			long potentialInt = Prompter.TryParseInt(userEnteredLine);
+
+			// NOTE: NOT_AN_INT is below every int, so it fails the range check too
+			if (potentialInt >= min && potentialInt <= max) {
+				return new PrompterIntResult((int) potentialInt, attempts);
+			}
+			echoLine(errorMsg);
+		}
+	}
+
+	/**
+	 * @return The result, or <code>null</code> when the input ended first
+	 */
+	private PrompterChoiceResult readChoice(String prompt, String errorMsg, ChoiceMenu menu) {
+		int attempts = 0;
+
+		while (true) {
+			attempts++;
+			echoLine(prompt);
+			echo(menu.getText());
+
+			String userEnteredLine = reader.readLine();
+
+			if (userEnteredLine == null) {
+				return null;
+			}
+
+			int choiceIndex = menu.select(userEnteredLine);
+
+			if (choiceIndex != ChoiceMenu.NO_CHOICE) {
+				return new PrompterChoiceResult(choiceIndex, menu.getChoice(choiceIndex), attempts);
+			}
+			echoLine(errorMsg);
+		}
+	}
+
+	private void echoLine(String line) {
+		echo(line);
+		echo(System.lineSeparator());
+	}
+
+	private void echo(String text) {
+		if (echo == null) {
+			return;
+		}
+
+		try {
+			echo.write(text);
+		} catch (IOException ioException) {
+			throw new UncheckedIOException(ioException);
+		}
+	}
+
+	private static <T> T orThrow(T result) {
+		if (result == null) {
+			throw new NoSuchElementException("No line found");
+		}
+
+		return result;
+	}
+
+	/**
+	 * @param next Reads the next result, <code>null</code> once the input has ended
+	 */
+	private static <T> Stream<T> stream(Supplier<T> next) {
+		Spliterator<T> results = new Spliterators.AbstractSpliterator<T>(Long.MAX_VALUE,
+				Spliterator.ORDERED | Spliterator.NONNULL) {
+			@Override
+			public boolean tryAdvance(Consumer<? super T> action) {
+				T result = next.get();
+
+				if (result == null) {
+					return false;
+				}
+				action.accept(result);
+				return true;
+			}
+		};
+
+		return StreamSupport.stream(results, false);
+	}
+}
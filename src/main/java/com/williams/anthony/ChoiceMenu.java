@@ -0,0 +1,182 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 Anthony Williams.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.williams.anthony;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * A numbered list of choices, rendered once so a prompt can write the whole menu in a single call on every attempt,
+ * and indexed so an answer can name a choice by number, by text or by a prefix of the text.
+ *
+ * Build one per list of choices and reuse it; building it costs a sort of the choices, answering against it a binary
+ * search. Immutable, so it can be shared between threads.
+ *
+ * @author Anthony Williams
+ */
+public final class ChoiceMenu {
+
+	/** Returned by {@link #select(String)} when the answer does not pick exactly one choice */
+	public static final int NO_CHOICE = -1;
+
+	private static final Comparator<String> TEXT_ORDER = String.CASE_INSENSITIVE_ORDER;
+
+	private final String[] choices;
+	private final String text;
+	// NOTE: the choices sorted case insensitively, with the index of each in the original order
+	private final String[] sortedChoices;
+	private final int[] sortedIndexes;
+	private volatile EncodedText encodedText;
+
+	/**
+	 * @param choices The choices, in the order they are numbered (from 1)
+	 */
+	public ChoiceMenu(String[] choices) {
+		this.choices = choices.clone();
+
+		StringBuilder menu = new StringBuilder();
+		Integer[] order = new Integer[this.choices.length];
+
+		for (int a = 0; a < this.choices.length; a++) {
+			menu.append(a + 1).append(".) ").append(this.choices[a]).append(System.lineSeparator());
+			order[a] = a;
+		}
+		this.text = menu.toString();
+
+		// NOTE: a stable sort, so of two choices equal but for case the first listed comes first
+		Arrays.sort(order, (left, right) -> TEXT_ORDER.compare(this.choices[left], this.choices[right]));
+		this.sortedChoices = new String[order.length];
+		this.sortedIndexes = new int[order.length];
+		for (int a = 0; a < order.length; a++) {
+			sortedChoices[a] = this.choices[order[a]];
+			sortedIndexes[a] = order[a];
+		}
+	}
+
+	/**
+	 * @return The number of choices
+	 */
+	public int size() {
+		return choices.length;
+	}
+
+	/**
+	 * @param index The zero based index of the choice
+	 * @return The text of the choice
+	 */
+	public String getChoice(int index) {
+		return choices[index];
+	}
+
+	/**
+	 * @return The menu, one <code>number.) choice</code> line per choice, each ending with the line separator
+	 */
+	public String getText() {
+		return text;
+	}
+
+	/**
+	 * @param charset The charset to encode the menu with
+	 * @return The menu encoded once per charset (the same array on every call, which must not be modified)
+	 */
+	public byte[] getBytes(Charset charset) {
+		EncodedText encoded = encodedText;
+
+		if (encoded == null || !encoded.charset.equals(charset)) {
+			encoded = new EncodedText(charset, text.getBytes(charset));
+			encodedText = encoded;
+		}
+
+		return encoded.bytes;
+	}
+
+	/**
+	 * Works out which choice an answer picks: its number (from 1), its text, or a prefix of the text that only one
+	 * choice starts with (text is compared ignoring case)
+	 *
+	 * @param answer The answer as entered
+	 * @return The zero based index of the choice, or <code>NO_CHOICE</code> when the answer is out of range, matches
+	 *         nothing or matches several choices
+	 */
+	public int select(String answer) {
+		long number = Prompter.TryParseInt(answer);
+
+		if (number != Prompter.NOT_AN_INT) {
+			return number >= 1 && number <= choices.length ? (int) number - 1 : NO_CHOICE;
+		}
+		if (answer.isEmpty()) {
+			return NO_CHOICE;
+		}
+
+		int first = lowerBound(answer);
+
+		if (first == sortedChoices.length || !startsWithIgnoreCase(sortedChoices[first], answer)) {
+			return NO_CHOICE;
+		}
+		// NOTE: a choice spelled exactly like the answer sorts ahead of the longer ones it is a prefix of
+		if (sortedChoices[first].length() == answer.length()) {
+			return sortedIndexes[first];
+		}
+		if (first + 1 < sortedChoices.length && startsWithIgnoreCase(sortedChoices[first + 1], answer)) {
+			return NO_CHOICE;
+		}
+
+		return sortedIndexes[first];
+	}
+
+	/**
+	 * @return The index of the first sorted choice not ordered before the answer
+	 */
+	private int lowerBound(String answer) {
+		int low = 0;
+		int high = sortedChoices.length;
+
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+
+			if (TEXT_ORDER.compare(sortedChoices[middle], answer) < 0) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+
+		return low;
+	}
+
+	private static boolean startsWithIgnoreCase(String choice, String prefix) {
+		return choice.regionMatches(true, 0, prefix, 0, prefix.length());
+	}
+
+	private static final class EncodedText {
+		private final Charset charset;
+		private final byte[] bytes;
+
+		private EncodedText(Charset charset, byte[] bytes) {
+			this.charset = charset;
+			this.bytes = bytes;
+		}
+	}
+}
@@ -0,0 +1,158 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 Anthony Williams.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.williams.anthony;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Reads lines from a stream through one large buffer, splitting them on the raw bytes so the only per line work is
+ * decoding the line itself. Unlike a <code>Scanner</code> there is no regular expression matching and no
+ * intermediate <code>CharBuffer</code>, which is what makes reading a piped answer file line by line slow.
+ *
+ * Lines end with LF or CRLF (the terminator is not part of the line); a last line without a terminator is still a
+ * line, and a line longer than the buffer grows it. Not thread safe.
+ *
+ * @author Anthony Williams
+ */
+public final class LineReader implements Closeable {
+
+	/** The buffer size used unless one is given, large enough that a read is rarely shorter than the disk's */
+	public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+	private final InputStream input;
+	private final Charset charset;
+	private byte[] buffer;
+	private int position = 0;
+	private int limit = 0;
+	private boolean isEndOfInput = false;
+
+	/**
+	 * Constructs a reader of UTF-8 lines with the default buffer size
+	 *
+	 * @param input The stream to read (e.g.: <code>System.in</code>)
+	 */
+	public LineReader(InputStream input) {
+		this(input, StandardCharsets.UTF_8, DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 * @param input The stream to read (e.g.: <code>System.in</code>)
+	 * @param charset The charset of the lines, which must encode LF and CR as single bytes (e.g.: UTF-8, ISO-8859-1)
+	 * @param bufferSize The initial size (in bytes) of the buffer
+	 */
+	public LineReader(InputStream input, Charset charset, int bufferSize) {
+		if (bufferSize < 1) {
+			throw new IllegalArgumentException("bufferSize must be positive");
+		}
+		this.input = input;
+		this.charset = charset;
+		this.buffer = new byte[bufferSize];
+	}
+
+	/**
+	 * Reads the next line, blocking until it has fully arrived
+	 *
+	 * @return The line without its terminator, or <code>null</code> once the input is exhausted
+	 * @throws UncheckedIOException When reading the stream fails
+	 */
+	public String readLine() {
+		int scanned = position;
+
+		while (true) {
+			for (int a = scanned; a < limit; a++) {
+				if (buffer[a] == '\n') {
+					int end = a > position && buffer[a - 1] == '\r' ? a - 1 : a;
+					String line = new String(buffer, position, end - position, charset);
+
+					position = a + 1;
+					return line;
+				}
+			}
+			if (isEndOfInput) {
+				if (position == limit) {
+					return null;
+				}
+
+				String line = new String(buffer, position, limit - position, charset);
+
+				position = limit;
+				return line;
+			}
+			// NOTE: the line so far has already been scanned, only the bytes still to arrive need a look
+			scanned = limit - position;
+			fill();
+			scanned += position;
+		}
+	}
+
+	/**
+	 * @return Whether another line can be read (blocks until a byte arrives or the input ends)
+	 * @throws UncheckedIOException When reading the stream fails
+	 */
+	public boolean hasNextLine() {
+		if (position == limit && !isEndOfInput) {
+			fill();
+		}
+
+		return position < limit;
+	}
+
+	@Override
+	public void close() throws IOException {
+		input.close();
+	}
+
+	/**
+	 * Moves the unread bytes to the start of the buffer (growing it when they fill it) and reads more after them
+	 */
+	private void fill() {
+		int unread = limit - position;
+
+		if (unread == buffer.length) {
+			buffer = Arrays.copyOf(buffer, buffer.length * 2);
+		} else if (position > 0) {
+			System.arraycopy(buffer, position, buffer, 0, unread);
+		}
+		position = 0;
+		limit = unread;
+
+		try {
+			int bytesRead = input.read(buffer, limit, buffer.length - limit);
+
+			if (bytesRead < 0) {
+				isEndOfInput = true;
+			} else {
+				limit += bytesRead;
+			}
+		} catch (IOException ioException) {
+			throw new UncheckedIOException(ioException);
+		}
+	}
+}
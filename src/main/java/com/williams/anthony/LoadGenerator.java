@@ -0,0 +1,474 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 Anthony Williams.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.williams.anthony;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import com.williams.anthony.server.AccessLog;
+import com.williams.anthony.server.LatencyHistogram;
+import com.williams.anthony.server.ServerConfig;
+
+/**
+ * Starts a server on a loopback port and drives it with concurrent HTTP clients, then reports the throughput, the
+ * error rate and the latency percentiles, so the engines and their settings can be compared on one machine.
+ *
+ * In a closed loop (<code>load.rate=0</code>) each client sends its next request as soon as the previous response
+ * is in. In an open loop the clients share a fixed request rate and each request has an intended start time; when
+ * the server stalls, the requests queued behind the stall are measured from when they should have been sent rather
+ * than from when they were sent, which corrects for coordinated omission (see "How NOT to Measure Latency", Gil
+ * Tene). Both the corrected and the raw service times are reported.
+ *
+ * The server is configured with the usual <code>server.*</code> properties, the load with <code>load.*</code>
+ * (e.g.: <code>java -Dserver.engine=selector -Dload.keepAliveConnections=48 -Dload.closeConnections=16 ...</code>).
+ * Keep-alive clients re-use one connection while close clients open a new one for every request, and the two groups
+ * are reported separately as well as together.
+ *
+ * @author Anthony Williams
+ */
+public final class LoadGenerator {
+
+	private static final double[] PERCENTILES = { 0.5, 0.9, 0.99, 0.999 };
+	private static final int SOCKET_TIMEOUT_MILLIS = 10_000;
+	private static final long SERVER_STOP_TIMEOUT_MILLIS = 1000;
+
+	private final int connections;
+	private final long durationMillis;
+	private final long warmupMillis;
+	private final int rate;
+	private final ClientGroup keepAliveGroup;
+	private final ClientGroup closeGroup;
+	private final LatencyHistogram correctedLatencies = new LatencyHistogram();
+	private final LatencyHistogram serviceTimes = new LatencyHistogram();
+	private final LongAdder requestCount = new LongAdder();
+	private final LongAdder errorCount = new LongAdder();
+
+	/**
+	 * @param keepAliveConnections The number of concurrent clients re-using their connection
+	 * @param closeConnections The number of concurrent clients opening a new connection for every request
+	 * @param durationMillis How long to measure for, after the warmup
+	 * @param warmupMillis How long to send requests for before measuring
+	 * @param rate The total number of requests per second to send (shared by every client), 0 for as many as the
+	 *        server answers (closed loop)
+	 * @param path The request target
+	 */
+	public LoadGenerator(int keepAliveConnections, int closeConnections, long durationMillis, long warmupMillis,
+			int rate, String path) {
+		if (keepAliveConnections < 0 || closeConnections < 0 || keepAliveConnections + closeConnections < 1) {
+			throw new IllegalArgumentException("connections must not be negative, and at least one is needed");
+		}
+		if (rate < 0) {
+			throw new IllegalArgumentException("rate must not be negative");
+		}
+		this.connections = keepAliveConnections + closeConnections;
+		this.durationMillis = durationMillis;
+		this.warmupMillis = warmupMillis;
+		this.rate = rate;
+		this.keepAliveGroup = new ClientGroup("keep-alive", keepAliveConnections, true, path);
+		this.closeGroup = new ClientGroup("close", closeConnections, false, path);
+	}
+
+	/**
+	 * @param args the command line arguments
+	 * @throws Exception
+	 */
+	public static void main(String[] args) throws Exception {
+		ServerConfig config = ServerConfig.fromSystemProperties();
+
+		// NOTE: the access log would measure the console, not the server
+		if (System.getProperty("server.accessLogLevel") == null) {
+			config.setAccessLogLevel(AccessLog.Level.OFF);
+		}
+
+		LoadGenerator generator = new LoadGenerator(
+				Integer.getInteger("load.keepAliveConnections", 16),
+				Integer.getInteger("load.closeConnections", 0),
+				TimeUnit.SECONDS.toMillis(Integer.getInteger("load.durationSeconds", 10)),
+				TimeUnit.SECONDS.toMillis(Integer.getInteger("load.warmupSeconds", 2)),
+				Integer.getInteger("load.rate", 0),
+				System.getProperty("load.path", "/"));
+		ServerEngine server = App.createServer(config);
+
+		server.start(0);
+		System.out.printf("[LoadGenerator.main()] engine = %s, workers = %d, virtual threads = %s, event loops = %d%n",
+				config.getEngine(), config.getWorkerCount(), config.isVirtualThreads(), config.getEventLoopCount());
+		generator.run(new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getLocalPort()));
+		generator.printReport(System.out);
+		server.shutdown(SERVER_STOP_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Runs the clients through the warmup and the measurement, returning once they have all finished
+	 *
+	 * @param target The server to load
+	 * @throws InterruptedException
+	 */
+	public void run(InetSocketAddress target) throws InterruptedException {
+		long startNanos = System.nanoTime();
+		long measureStartNanos = startNanos + TimeUnit.MILLISECONDS.toNanos(warmupMillis);
+		long endNanos = measureStartNanos + TimeUnit.MILLISECONDS.toNanos(durationMillis);
+		// NOTE: each client takes an equal share of the rate, staggered so they do not all fire at once
+		long intervalNanos = rate == 0 ? 0 : TimeUnit.SECONDS.toNanos(1) * connections / rate;
+		List<Thread> clients = new ArrayList<Thread>();
+
+		for (int a = 0; a < connections; a++) {
+			ClientGroup group = a < keepAliveGroup.connections ? keepAliveGroup : closeGroup;
+			Client client = new Client(group, target, startNanos + intervalNanos * a / connections, intervalNanos,
+					measureStartNanos, endNanos);
+			Thread clientThread = new Thread(client, "load-client-" + (a + 1));
+
+			clientThread.setDaemon(true);
+			clientThread.start();
+			clients.add(clientThread);
+		}
+		for (Thread clientThread : clients) {
+			clientThread.join();
+		}
+	}
+
+	/**
+	 * @param out Where to print the throughput, error rate and latency percentiles of the measured period
+	 */
+	public void printReport(PrintStream out) {
+		long requests = requestCount.sum();
+		long errors = errorCount.sum();
+		double seconds = durationMillis / 1000.0;
+
+		out.printf(Locale.ROOT, "connections = %d keep-alive + %d close, %s, measured for %.1fs%n",
+				keepAliveGroup.connections, closeGroup.connections,
+				rate == 0 ? "closed loop" : "open loop at " + rate + " req/s", seconds);
+		out.printf(Locale.ROOT, "requests  %d (%.1f req/s)%n", requests, requests / seconds);
+		out.printf(Locale.ROOT, "errors    %d (%.3f%%)%n", errors, requests == 0 ? 0 : 100.0 * errors / requests);
+		out.printf(Locale.ROOT, "%-10s %14s %14s%n", "latency", "corrected", "service time");
+		for (double percentile : PERCENTILES) {
+			out.printf(Locale.ROOT, "p%-9s %12.3fms %12.3fms%n", percentileLabel(percentile),
+					correctedLatencies.getQuantileMicros(percentile) / 1000.0,
+					serviceTimes.getQuantileMicros(percentile) / 1000.0);
+		}
+		out.printf(Locale.ROOT, "%-10s %12.3fms %12.3fms%n", "max", correctedLatencies.getMaxMicros() / 1000.0,
+				serviceTimes.getMaxMicros() / 1000.0);
+		// NOTE: only worth splitting up when both kinds of client ran
+		if (keepAliveGroup.connections > 0 && closeGroup.connections > 0) {
+			out.printf(Locale.ROOT, "%-10s %10s %9s %12s %12s%n", "group", "req/s", "errors", "p50", "p99");
+			printGroup(out, keepAliveGroup, seconds);
+			printGroup(out, closeGroup, seconds);
+		}
+	}
+
+	/**
+	 * @return The latencies measured from each request's intended start time (the same as the service times in a
+	 *         closed loop)
+	 */
+	public LatencyHistogram getCorrectedLatencies() {
+		return correctedLatencies;
+	}
+
+	/**
+	 * @return The number of requests sent (and answered or failed) during the measured period
+	 */
+	public long getRequestCount() {
+		return requestCount.sum();
+	}
+
+	/**
+	 * @return The number of requests that failed (error status, timeout or broken connection) during the measured
+	 *         period
+	 */
+	public long getErrorCount() {
+		return errorCount.sum();
+	}
+
+	/**
+	 * @return The number of requests sent by the keep-alive clients during the measured period
+	 */
+	public long getKeepAliveRequestCount() {
+		return keepAliveGroup.requestCount.sum();
+	}
+
+	/**
+	 * @return The number of requests sent by the clients opening a connection per request during the measured period
+	 */
+	public long getCloseRequestCount() {
+		return closeGroup.requestCount.sum();
+	}
+
+	private static void printGroup(PrintStream out, ClientGroup group, double seconds) {
+		long requests = group.requestCount.sum();
+		long errors = group.errorCount.sum();
+
+		out.printf(Locale.ROOT, "%-10s %10.1f %8.3f%% %10.3fms %10.3fms%n", group.label, requests / seconds,
+				requests == 0 ? 0 : 100.0 * errors / requests, group.correctedLatencies.getQuantileMicros(0.5) / 1000.0,
+				group.correctedLatencies.getQuantileMicros(0.99) / 1000.0);
+	}
+
+	private static String percentileLabel(double percentile) {
+		String label = String.format(Locale.ROOT, "%s", percentile * 100);
+
+		return label.endsWith(".0") ? label.substring(0, label.length() - 2) : label;
+	}
+
+	/**
+	 * The clients sharing a connection policy, and their share of the measurements
+	 */
+	private static final class ClientGroup {
+		private final String label;
+		private final int connections;
+		private final boolean keepAlive;
+		private final byte[] request;
+		private final LatencyHistogram correctedLatencies = new LatencyHistogram();
+		private final LongAdder requestCount = new LongAdder();
+		private final LongAdder errorCount = new LongAdder();
+
+		private ClientGroup(String label, int connections, boolean keepAlive, String path) {
+			this.label = label;
+			this.connections = connections;
+			this.keepAlive = keepAlive;
+			this.request = String.format("GET %s HTTP/1.1\r\nHost: localhost\r\n%s\r\n", path,
+					keepAlive ? "" : "Connection: close\r\n").getBytes(StandardCharsets.ISO_8859_1);
+		}
+	}
+
+	/**
+	 * One connection's worth of load: a blocking HTTP/1.1 client sending the same request over and over
+	 */
+	private final class Client implements Runnable {
+		private final ClientGroup group;
+		private final InetSocketAddress target;
+		private final long intervalNanos;
+		private final long measureStartNanos;
+		private final long endNanos;
+		private final byte[] readBuffer = new byte[8 * 1024];
+		private long nextIntendedNanos;
+		private Socket socket;
+		private InputStream in;
+		private OutputStream out;
+
+		private Client(ClientGroup group, InetSocketAddress target, long firstIntendedNanos, long intervalNanos,
+				long measureStartNanos, long endNanos) {
+			this.group = group;
+			this.target = target;
+			this.nextIntendedNanos = firstIntendedNanos;
+			this.intervalNanos = intervalNanos;
+			this.measureStartNanos = measureStartNanos;
+			this.endNanos = endNanos;
+		}
+
+		@Override
+		public void run() {
+			try {
+				while (true) {
+					long intendedNanos;
+
+					if (intervalNanos > 0) {
+						intendedNanos = nextIntendedNanos;
+						nextIntendedNanos += intervalNanos;
+						// NOTE: when running late, send straight away, the lateness is charged to the latency
+						while (System.nanoTime() < intendedNanos) {
+							LockSupport.parkNanos(intendedNanos - System.nanoTime());
+						}
+					} else {
+						intendedNanos = System.nanoTime();
+					}
+					if (intendedNanos >= endNanos) {
+						return;
+					}
+
+					long sendNanos = System.nanoTime();
+					boolean isError = !sendRequest();
+					long doneNanos = System.nanoTime();
+
+					if (intendedNanos >= measureStartNanos) {
+						requestCount.increment();
+						group.requestCount.increment();
+						correctedLatencies.record(doneNanos - intendedNanos);
+						group.correctedLatencies.record(doneNanos - intendedNanos);
+						serviceTimes.record(doneNanos - sendNanos);
+						if (isError) {
+							errorCount.increment();
+							group.errorCount.increment();
+						}
+					}
+				}
+			} finally {
+				closeSocket();
+			}
+		}
+
+		/**
+		 * @return Whether the server answered with a 2xx or 3xx
+		 */
+		private boolean sendRequest() {
+			try {
+				if (socket == null) {
+					socket = new Socket();
+					socket.setTcpNoDelay(true);
+					socket.setSoTimeout(SOCKET_TIMEOUT_MILLIS);
+					socket.connect(target, SOCKET_TIMEOUT_MILLIS);
+					in = new BufferedInputStream(socket.getInputStream(), readBuffer.length);
+					out = socket.getOutputStream();
+				}
+				out.write(group.request);
+				out.flush();
+
+				int statusCode = readResponse();
+
+				return statusCode >= 200 && statusCode < 400;
+			} catch (IOException | NumberFormatException responseException) {
+				// NOTE: a malformed response leaves the connection out of step, so it is counted and dropped
+				closeSocket();
+				return false;
+			}
+		}
+
+		/**
+		 * Reads one response, closing the connection afterwards when either side asked for it (or when the body runs
+		 * until the server closes it)
+		 *
+		 * @return The response status
+		 */
+		private int readResponse() throws IOException {
+			String statusLine = readLine();
+			long contentLength = -1;
+			boolean isChunked = false;
+			boolean isClosing = !group.keepAlive;
+
+			if (statusLine.length() < 12) {
+				throw new IOException("Malformed status line: " + statusLine);
+			}
+
+			int statusCode = Integer.parseInt(statusLine.substring(9, 12));
+
+			for (String header = readLine(); !header.isEmpty(); header = readLine()) {
+				int colon = header.indexOf(':');
+
+				if (colon < 0) {
+					continue;
+				}
+
+				String name = header.substring(0, colon).trim();
+				String value = header.substring(colon + 1).trim();
+
+				if (name.equalsIgnoreCase("Content-Length")) {
+					contentLength = Long.parseLong(value);
+				} else if (name.equalsIgnoreCase("Transfer-Encoding")) {
+					isChunked = value.toLowerCase(Locale.ROOT).endsWith("chunked");
+				} else if (name.equalsIgnoreCase("Connection") && value.equalsIgnoreCase("close")) {
+					isClosing = true;
+				}
+			}
+			if (statusCode < 200 || statusCode == 204 || statusCode == 304) {
+				// NOTE: never has a body, whatever the headers say
+			} else if (isChunked) {
+				skipChunkedBody();
+			} else if (contentLength >= 0) {
+				skipBody(contentLength);
+			} else {
+				int bytesRead;
+
+				// NOTE: no length, the body runs until the server closes the connection
+				do {
+					bytesRead = in.read(readBuffer);
+				} while (bytesRead >= 0);
+				isClosing = true;
+			}
+			if (isClosing) {
+				closeSocket();
+			}
+
+			return statusCode;
+		}
+
+		private void skipChunkedBody() throws IOException {
+			for (long chunkSize = readChunkSize(); chunkSize > 0; chunkSize = readChunkSize()) {
+				skipBody(chunkSize);
+				if (!readLine().isEmpty()) {
+					throw new IOException("Malformed chunk");
+				}
+			}
+			String trailer;
+
+			// NOTE: skip any trailers, up to the blank line that ends the body
+			do {
+				trailer = readLine();
+			} while (!trailer.isEmpty());
+		}
+
+		private long readChunkSize() throws IOException {
+			String sizeLine = readLine();
+			int extension = sizeLine.indexOf(';');
+
+			return Long.parseLong((extension < 0 ? sizeLine : sizeLine.substring(0, extension)).trim(), 16);
+		}
+
+		private void skipBody(long byteCount) throws IOException {
+			while (byteCount > 0) {
+				int bytesRead = in.read(readBuffer, 0, (int) Math.min(readBuffer.length, byteCount));
+
+				if (bytesRead < 0) {
+					throw new IOException("Connection closed mid-body");
+				}
+				byteCount -= bytesRead;
+			}
+		}
+
+		private String readLine() throws IOException {
+			StringBuilder line = new StringBuilder();
+
+			for (int next = in.read(); next != '\n'; next = in.read()) {
+				if (next < 0) {
+					throw new IOException("Connection closed mid-head");
+				}
+				if (next != '\r') {
+					line.append((char) next);
+				}
+			}
+
+			return line.toString();
+		}
+
+		private void closeSocket() {
+			if (socket == null) {
+				return;
+			}
+			try {
+				socket.close();
+			} catch (IOException ioException) {
+				// NOTE: nothing left to do with it
+			}
+			socket = null;
+		}
+	}
+}
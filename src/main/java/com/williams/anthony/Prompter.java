@@ -25,8 +25,10 @@ package com.williams.anthony;
 
 import java.io.PrintStream;
 import java.util.Scanner;
+import java.util.function.Consumer;
 import com.williams.anthony.models.PrompterChoiceResult;
 import com.williams.anthony.models.PrompterIntResult;
+import com.williams.anthony.models.PrompterResult;
 import com.williams.anthony.models.PrompterStringResult;
 
 /**
@@ -36,8 +38,12 @@ import com.williams.anthony.models.PrompterStringResult;
  */
 public class Prompter {
 
+    /** Returned by {@link #TryParseInt(CharSequence)} when the text is not an int */
+    public static final long NOT_AN_INT = Long.MIN_VALUE;
+
     private final Scanner reader;
     private final PrintStream writer;
+    private final Consumer<? super PrompterResult> results;
 
     /**
      * Constructs a new instance of the Prompter class
@@ -46,8 +52,22 @@ public class Prompter {
      * @param writer The <code>PrintStream</code> to use whenever writing output
      */
     public Prompter(Scanner reader, PrintStream writer) {
+        this(reader, writer, result -> {
+        });
+    }
+
+    /**
+     * Constructs a new instance of the Prompter class that also reports every response it obtains
+     *
+     * @param reader The <code>Scanner</code> to use whenever reading input
+     * @param writer The <code>PrintStream</code> to use whenever writing output
+     * @param results Given every result, as soon as the user has responded (e.g.: to collect them in a
+     *        <code>PrompterResults</code>)
+     */
+    public Prompter(Scanner reader, PrintStream writer, Consumer<? super PrompterResult> results) {
         this.reader = reader;
         this.writer = writer;
+        this.results = results;
     }
 
     /**
@@ -58,7 +78,7 @@ public class Prompter {
      * @return A <code>PrompterStringResult</code> containing response information
      */
     public PrompterStringResult PromptUserForString(String prompt, String errorMsg) {
-        return PromptUserForString(this.reader, this.writer, prompt, errorMsg);
+        return report(PromptUserForString(this.reader, this.writer, prompt, errorMsg));
     }
 
     /**
@@ -69,7 +89,7 @@ public class Prompter {
      * @return A <code>PrompterIntResult</code> containing response information
      */
     public PrompterIntResult PromptUserForInt(String prompt, String errorMsg) {
-        return PromptUserForInt(this.reader, this.writer, prompt, errorMsg);
+        return report(PromptUserForInt(this.reader, this.writer, prompt, errorMsg));
     }
 
     /**
@@ -86,7 +106,7 @@ public class Prompter {
         String errorMsg,
         int min,
         int max) {
-        return PromptUserForIntInRange(this.reader, this.writer, prompt, errorMsg, min, max);
+        return report(PromptUserForIntInRange(this.reader, this.writer, prompt, errorMsg, min, max));
     }
 
     /**
@@ -101,7 +121,27 @@ public class Prompter {
         String prompt,
         String errorMsg,
         String[] choices) {
-        return PromptUserForChoice(this.reader, this.writer, prompt, errorMsg, choices);
+        return PromptUserForChoice(prompt, errorMsg, new ChoiceMenu(choices));
+    }
+
+    /**
+     * This method is used to obtain a selection from the user, given a menu built once and reused
+     *
+     * @param prompt The <code>String</code> message to display to user (to prompt for input)
+     * @param errorMsg The <code>String</code> message to display to user when response is invalid
+     * @param menu The <code>ChoiceMenu</code> of choices for selection by the user
+     * @return A <code>PrompterChoiceResult</code> containing response information
+     */
+    public PrompterChoiceResult PromptUserForChoice(
+        String prompt,
+        String errorMsg,
+        ChoiceMenu menu) {
+        return report(PromptUserForChoice(this.reader, this.writer, prompt, errorMsg, menu));
+    }
+
+    private <T extends PrompterResult> T report(T result) {
+        results.accept(result);
+        return result;
     }
 
     /**
@@ -163,10 +203,11 @@ public class Prompter {
             writer.println(prompt);
             String userEnteredLine = reader.nextLine();
 
-            try {
-                int potentialInt = Integer.parseInt(userEnteredLine);
-                userEnteredInt = potentialInt;
-            } catch (NumberFormatException numberFormatEx) {
+            long potentialInt = TryParseInt(userEnteredLine);
+
+            if (potentialInt != NOT_AN_INT) {
+                userEnteredInt = (int) potentialInt;
+            } else {
                 // NOTE: validation failed, display error
                 writer.println(errorMsg);
             }
@@ -204,16 +245,12 @@ public class Prompter {
             writer.println(prompt);
             String userEnteredLine = reader.nextLine();
 
-            try {
-                int potentialInt = Integer.parseInt(userEnteredLine);
+            long potentialInt = TryParseInt(userEnteredLine);
 
-                if (potentialInt >= min && potentialInt <= max) {
-                    userEnteredInt = potentialInt;
-                } else {
-                    // NOTE: validation failed, display error
-                    writer.println(errorMsg);
-                }
-            } catch (NumberFormatException numberFormatEx) {
+            // NOTE: NOT_AN_INT is below every int, so it fails the range check too
+            if (potentialInt >= min && potentialInt <= max) {
+                userEnteredInt = (int) potentialInt;
+            } else {
                 // NOTE: validation failed, display error
                 writer.println(errorMsg);
             }
@@ -239,39 +276,90 @@ public class Prompter {
         String prompt,
         String errorMsg,
         String[] choices) {
-        int userChoice = -1;
+        return PromptUserForChoice(reader, writer, prompt, errorMsg, new ChoiceMenu(choices));
+    }
+
+    /**
+     * This method is used to obtain a selection from the user, given a menu. The user may answer with the number of
+     * a choice, its text or a prefix of the text that only one choice starts with (see <code>ChoiceMenu</code>).
+     *
+     * @param reader A <code>Scanner</code> to read input from (usually created with System.in)
+     * @param writer A <code>PrintStream</code> to write output to (usually System.out)
+     * @param prompt The <code>String</code> message to display to user (to prompt for input)
+     * @param errorMsg The <code>String</code> message to display to user when response is invalid
+     * @param menu The <code>ChoiceMenu</code> of choices the user may select
+     *
+     * @return A <code>PrompterIntResult</code> containing user response information
+     */
+    public static PrompterChoiceResult PromptUserForChoice(
+        Scanner reader,
+        PrintStream writer,
+        String prompt,
+        String errorMsg,
+        ChoiceMenu menu) {
+        int userChoice = ChoiceMenu.NO_CHOICE;
         int attempts = 0;
 
         // NOTE: keep trying as long as long as value is invalid
-        while (userChoice == -1) {
+        while (userChoice == ChoiceMenu.NO_CHOICE) {
             attempts++;
             // NOTE: display prompt and obtain (wait for) next input
             writer.println(prompt);
 
-            // NOTE: display each choice
-            for (int a = 0; a < choices.length; a++) {
-                writer.println(String.format("%d.) %s", a + 1, choices[a]));
-            }
+            // NOTE: display every choice at once, the menu was rendered when it was built
+            writer.print(menu.getText());
 
             String userEnteredLine = reader.nextLine();
 
-            try {
-                int potentialInt = Integer.parseInt(userEnteredLine);
-                // NOTE: decrement to account for zero index
-                potentialInt--;
-
-                if (potentialInt >= 0 && potentialInt <= choices.length) {
-                    userChoice = potentialInt;
-                } else {
-                    // NOTE: validation failed, display error
-                    writer.println(errorMsg);
-                }
-            } catch (NumberFormatException numberFormatEx) {
+            userChoice = menu.select(userEnteredLine);
+            if (userChoice == ChoiceMenu.NO_CHOICE) {
                 // NOTE: validation failed, display error
                 writer.println(errorMsg);
             }
         }
 
-        return new PrompterChoiceResult(userChoice, choices[userChoice], attempts);
+        return new PrompterChoiceResult(userChoice, menu.getChoice(userChoice), attempts);
+    }
+
+    /**
+     * Parses a decimal int the way <code>Integer.parseInt</code> does, but reports bad input with a sentinel value
+     * instead of a <code>NumberFormatException</code>. Most of the lines in a dirty answer file are rejected, and
+     * building an exception (and its stack trace) for each one costs far more than the parse itself.
+     *
+     * @param text The <code>CharSequence</code> to parse (an optional sign followed by digits)
+     * @return The int value, or <code>NOT_AN_INT</code> when the text is not an int (or does not fit one)
+     */
+    public static long TryParseInt(CharSequence text) {
+        int length = text.length();
+
+        if (length == 0) {
+            return NOT_AN_INT;
+        }
+
+        char first = text.charAt(0);
+        boolean isNegative = first == '-';
+        int start = isNegative || first == '+' ? 1 : 0;
+        long value = 0;
+
+        if (start == length) {
+            return NOT_AN_INT;
+        }
+        for (int a = start; a < length; a++) {
+            int digit = Character.digit(text.charAt(a), 10);
+
+            if (digit < 0) {
+                return NOT_AN_INT;
+            }
+            value = value * 10 + digit;
+            // NOTE: stop before the long could overflow, -(MAX_VALUE + 1) is the only int this large
+            if (value > (long) Integer.MAX_VALUE + 1) {
+                return NOT_AN_INT;
+            }
+        }
+        if (isNegative) {
+            return -value;
+        }
+
+        return value > Integer.MAX_VALUE ? NOT_AN_INT : value;
     }
 }
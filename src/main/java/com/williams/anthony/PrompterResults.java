@@ -0,0 +1,138 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 Anthony Williams.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.williams.anthony;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import com.williams.anthony.models.PrompterResult;
+import com.williams.anthony.models.PrompterSessionResult;
+
+/**
+ * Collects the responses of many concurrent prompter sessions without locking: sessions append to a lock-free queue
+ * and a single consumer takes them off in the order they arrived. Responses nobody takes are capped: once
+ * <code>capacity</code> are waiting, further ones are dropped (and counted) rather than piling up for the life of
+ * the process.
+ *
+ * @author Anthony Williams
+ */
+public final class PrompterResults {
+
+	private static final int DEFAULT_CAPACITY = 100_000;
+
+	private final int capacity;
+	private final ConcurrentLinkedQueue<PrompterSessionResult> results =
+			new ConcurrentLinkedQueue<PrompterSessionResult>();
+	// NOTE: ConcurrentLinkedQueue.size() walks the whole queue
+	private final AtomicLong pendingCount = new AtomicLong();
+	private final LongAdder totalCount = new LongAdder();
+	private final LongAdder droppedCount = new LongAdder();
+
+	/**
+	 * Creates a sink holding up to 100,000 responses not yet taken
+	 */
+	public PrompterResults() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * @param capacity The most responses kept waiting to be taken
+	 */
+	public PrompterResults(int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("capacity must be positive");
+		}
+		this.capacity = capacity;
+	}
+
+	/**
+	 * @param sessionId The id of the session the response came from
+	 * @param result The response
+	 * @return Whether the response was kept (otherwise the sink is full and it was dropped)
+	 */
+	public boolean add(long sessionId, PrompterResult result) {
+		totalCount.increment();
+		if (pendingCount.incrementAndGet() > capacity) {
+			pendingCount.decrementAndGet();
+			droppedCount.increment();
+			return false;
+		}
+		results.offer(new PrompterSessionResult(sessionId, result));
+
+		return true;
+	}
+
+	/**
+	 * @return The oldest response not yet taken, or <code>null</code> when there is none
+	 */
+	public PrompterSessionResult poll() {
+		PrompterSessionResult result = results.poll();
+
+		if (result != null) {
+			pendingCount.decrementAndGet();
+		}
+
+		return result;
+	}
+
+	/**
+	 * Takes every response collected so far
+	 *
+	 * @param consumer Given each response, oldest first
+	 * @return The number of responses taken
+	 */
+	public int drainTo(Consumer<? super PrompterSessionResult> consumer) {
+		int drained = 0;
+		PrompterSessionResult result;
+
+		while ((result = poll()) != null) {
+			consumer.accept(result);
+			drained++;
+		}
+
+		return drained;
+	}
+
+	/**
+	 * @return The number of responses waiting to be taken (approximate while sessions are adding)
+	 */
+	public long getPendingCount() {
+		return pendingCount.get();
+	}
+
+	/**
+	 * @return The number of responses collected since the sink was created
+	 */
+	public long getTotalCount() {
+		return totalCount.sum();
+	}
+
+	/**
+	 * @return The number of responses dropped because the sink was full
+	 */
+	public long getDroppedCount() {
+		return droppedCount.sum();
+	}
+}
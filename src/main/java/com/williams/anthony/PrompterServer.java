@@ -0,0 +1,290 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 Anthony Williams.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.williams.anthony;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.net.Socket;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Scanner;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import com.williams.anthony.server.AdmissionControl;
+import com.williams.anthony.server.Listeners;
+import com.williams.anthony.server.ServerConfig;
+import com.williams.anthony.server.VirtualThreads;
+
+/**
+ * Prompts many remote users at once over a telnet style line protocol: every connection gets a
+ * <code>Prompter</code> of its own, running a <code>PrompterSession</code> on a thread of its own, and every
+ * response lands in one shared <code>PrompterResults</code>.
+ *
+ * Sessions run on virtual threads when the JVM has them, otherwise on platform threads with a small stack (a session
+ * spends nearly all its time parked waiting for the user to type). <code>server.maxConnections</code> caps the
+ * number of sessions and <code>server.sessionTimeoutMillis</code> closes a session whose user stops answering.
+ *
+ * @author Anthony Williams
+ */
+public final class PrompterServer implements ServerEngine {
+	private static final String BUSY_MESSAGE = "Too many sessions, please try again later";
+	private static final String RATE_LIMITED_MESSAGE = "Too many connections from your address, please slow down";
+	private static final long SESSION_STACK_BYTES = 256 * 1024;
+
+	private final ServerConfig config;
+	private final PrompterSession session;
+	private final PrompterResults results;
+	private final AdmissionControl admissionControl;
+	private final Set<Socket> openConnections = ConcurrentHashMap.newKeySet();
+	private final List<Thread> acceptThreads = new ArrayList<Thread>();
+	private final AtomicLong sessionIds = new AtomicLong();
+	private final AtomicBoolean isClosed = new AtomicBoolean();
+	private final CountDownLatch closed = new CountDownLatch(1);
+	private List<ServerSocketChannel> listeners = Collections.emptyList();
+	private ExecutorService sessionPool = null;
+	private int localPort = -1;
+	private volatile boolean isRunning = false;
+
+	/**
+	 * @param config The listener, connection cap and session timeout settings
+	 * @param session The prompts every connection goes through
+	 * @param results Where the responses of every session are collected
+	 */
+	public PrompterServer(ServerConfig config, PrompterSession session, PrompterResults results) {
+		this.config = config;
+		this.session = session;
+		this.results = results;
+		this.admissionControl = AdmissionControl.fromConfig(config);
+	}
+
+	/**
+	 * Binds the listeners and starts one accepting thread for each
+	 *
+	 * @param port The TCP port to listen on (0 picks a free port)
+	 * @throws IOException When the port cannot be bound
+	 */
+	@Override
+	public void start(int port) throws IOException {
+		if (!listeners.isEmpty()) {
+			throw new IllegalStateException("The server has already been started");
+		}
+		System.out.printf("[PrompterServer.start()] Starting up... port = %d, threads = %s%n", port,
+				VirtualThreads.isAvailable() ? "virtual" : "platform");
+		listeners = Listeners.bind(port, config);
+		localPort = listeners.get(0).socket().getLocalPort();
+		sessionPool = createSessionPool();
+		isRunning = true;
+
+		for (int a = 0; a < listeners.size(); a++) {
+			ServerSocketChannel listener = listeners.get(a);
+			Thread acceptThread = new Thread(() -> acceptConnections(listener));
+
+			acceptThread.setName("prompter-server-acceptor-" + (a + 1));
+			acceptThreads.add(acceptThread);
+			acceptThread.start();
+		}
+		System.out.println("[PrompterServer.start()] Great Success 🎂");
+	}
+
+	@Override
+	public int getLocalPort() {
+		return localPort;
+	}
+
+	@Override
+	public boolean isRunning() {
+		return isRunning;
+	}
+
+	@Override
+	public void stopAccepting() {
+		isRunning = false;
+		Listeners.close(listeners);
+	}
+
+	/**
+	 * Waits for the sessions still open to finish; a session is only ever waiting on its user, so none is cut short
+	 * until <code>close()</code>
+	 */
+	@Override
+	public boolean drain(long timeout, TimeUnit unit) throws InterruptedException {
+		long deadlineNanos = System.nanoTime() + unit.toNanos(timeout);
+
+		stopAccepting();
+		System.out.printf("[PrompterServer.drain()] Draining %d open sessions...%n", openConnections.size());
+		for (Thread acceptThread : acceptThreads) {
+			TimeUnit.NANOSECONDS.timedJoin(acceptThread, Math.max(0, deadlineNanos - System.nanoTime()));
+		}
+		if (sessionPool != null) {
+			sessionPool.shutdown();
+			if (!sessionPool.awaitTermination(Math.max(0, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+				System.out.println("[PrompterServer.drain()] Drain timed out");
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	@Override
+	public void close() {
+		if (!isClosed.compareAndSet(false, true)) {
+			return;
+		}
+		stopAccepting();
+		System.out.println("[PrompterServer.close()] Shutting down...");
+		if (sessionPool != null) {
+			sessionPool.shutdownNow();
+		}
+		// NOTE: a closed socket ends the blocked read, and with it the session
+		for (Socket openConnection : openConnections) {
+			closeQuietly(openConnection);
+		}
+		closed.countDown();
+		System.out.printf("[PrompterServer.close()] Collected %d results (%d dropped). Goodbye! 👍%n",
+				results.getTotalCount(), results.getDroppedCount());
+	}
+
+	@Override
+	public void awaitClose() throws InterruptedException {
+		closed.await();
+	}
+
+	/**
+	 * Accepts connections from one listener until it is closed, starting a session for each
+	 *
+	 * @param listener
+	 */
+	private void acceptConnections(ServerSocketChannel listener) {
+		try {
+			while (isRunning) {
+				Socket connection = listener.accept().socket();
+
+				AdmissionControl.Decision decision = admissionControl.admit(connection.getInetAddress());
+
+				if (decision != AdmissionControl.Decision.ADMIT) {
+					rejectConnection(connection, decision);
+					continue;
+				}
+				try {
+					sessionPool.execute(() -> runSession(connection));
+				} catch (RejectedExecutionException rejectedException) {
+					// NOTE: the server is shutting down
+					admissionControl.release();
+					closeQuietly(connection);
+				}
+			}
+		} catch (ClosedChannelException closedException) {
+			// NOTE: stopAccepting() closed the listener
+		} catch (IOException ioException) {
+			ioException.printStackTrace();
+		}
+	}
+
+	/**
+	 * Runs the session on the connection, then closes it
+	 *
+	 * @param connection
+	 */
+	private void runSession(Socket connection) {
+		long sessionId = sessionIds.incrementAndGet();
+
+		openConnections.add(connection);
+		try {
+			// NOTE: a read that times out ends the Scanner's input, so the prompter gives up on the user
+			connection.setSoTimeout(config.getSessionTimeoutMillis());
+
+			Scanner reader = new Scanner(connection.getInputStream(), StandardCharsets.UTF_8);
+			PrintStream writer = new PrintStream(new BufferedOutputStream(connection.getOutputStream()), true,
+					StandardCharsets.UTF_8);
+			Prompter prompter = new Prompter(reader, writer, result -> results.add(sessionId, result));
+
+			session.run(prompter, writer);
+			writer.flush();
+		} catch (NoSuchElementException endOfInput) {
+			// NOTE: the user hung up, stopped answering, or close() closed the connection
+		} catch (IOException ioException) {
+			if (isRunning) {
+				ioException.printStackTrace();
+			}
+		} finally {
+			openConnections.remove(connection);
+			admissionControl.release();
+			closeQuietly(connection);
+		}
+	}
+
+	private ExecutorService createSessionPool() {
+		if (VirtualThreads.isAvailable()) {
+			return VirtualThreads.newThreadPerTaskExecutor();
+		}
+
+		AtomicLong threadCount = new AtomicLong();
+
+		return Executors.newCachedThreadPool(runnable -> new Thread(null, runnable,
+				"prompter-session-" + threadCount.incrementAndGet(), SESSION_STACK_BYTES));
+	}
+
+	private static void rejectConnection(Socket connection, AdmissionControl.Decision decision) {
+		String message = decision == AdmissionControl.Decision.RATE_LIMITED ? RATE_LIMITED_MESSAGE : BUSY_MESSAGE;
+
+		try {
+			connection.getOutputStream().write((message + "\r\n").getBytes(StandardCharsets.UTF_8));
+
+			// NOTE: closing with unread bytes resets the connection, which can destroy the message before the client
+			// reads it, so skip whatever the client has already typed
+			InputStream input = connection.getInputStream();
+
+			while (input.available() > 0) {
+				input.skip(input.available());
+			}
+		} catch (IOException ioException) {
+			// NOTE: the client is already gone, which must not stop the accept loop
+		} finally {
+			closeQuietly(connection);
+		}
+	}
+
+	private static void closeQuietly(Socket connection) {
+		try {
+			connection.close();
+		} catch (IOException ioException) {
+			// NOTE: shutting down regardless
+		}
+	}
+}
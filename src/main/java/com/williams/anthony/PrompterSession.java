@@ -0,0 +1,44 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 Anthony Williams.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.williams.anthony;
+
+import java.io.PrintStream;
+
+/**
+ * The prompts one remote user goes through, run by a <code>PrompterServer</code> once for every connection
+ *
+ * @author Anthony Williams
+ */
+@FunctionalInterface
+public interface PrompterSession {
+
+	/**
+	 * Prompts the user, returning once the session is over (the server then closes the connection). A user who hangs
+	 * up or stops answering ends the session with a <code>NoSuchElementException</code> from the prompter.
+	 *
+	 * @param prompter Prompts the user on the connection, reporting every result to the server's results
+	 * @param writer The connection's output, for anything besides prompts
+	 */
+	void run(Prompter prompter, PrintStream writer);
+}
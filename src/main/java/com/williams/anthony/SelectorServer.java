@@ -0,0 +1,1005 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 Anthony Williams.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.williams.anthony;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ProtocolException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import com.williams.anthony.http.CannedResponses;
+import com.williams.anthony.http.ChunkedDecoder;
+import com.williams.anthony.http.HttpRequest;
+import com.williams.anthony.http.HttpRequestParser;
+import com.williams.anthony.http.HttpResponse;
+import com.williams.anthony.http.RequestBody;
+import com.williams.anthony.http.ResponseBody;
+import com.williams.anthony.http.ResponseEncoder;
+import com.williams.anthony.http.Router;
+import com.williams.anthony.server.AccessLog;
+import com.williams.anthony.server.AdmissionControl;
+import com.williams.anthony.server.ByteBufferPool;
+import com.williams.anthony.server.Listeners;
+import com.williams.anthony.server.ResponseCompressor;
+import com.williams.anthony.server.ServerConfig;
+import com.williams.anthony.server.ServerMetrics;
+
+/**
+ * Non-blocking alternative to <code>SimpleServer</code>: one thread accepts connections and a small number of
+ * event loops multiplex every open socket with a <code>Selector</code>, so an idle client costs a registration
+ * rather than a thread.
+ *
+ * Handlers run on the event loop thread, so a handler that blocks stalls every connection on its loop. For the same
+ * reason a request body is read in full (up to <code>config.getMaxRequestBodyBytes()</code>) before the handler is
+ * called, rather than streamed to it, and a <code>ResponseCache</code> in front of a handler is created without
+ * coalescing (see <code>App.createRouter()</code>).
+ *
+ * Read, response head, request body and refusal discard buffers are leased from one pool of direct buffers. A body
+ * larger than a pooled buffer grows on the heap and stays unpooled, as do the buffers of a response compressed on
+ * the fly (the <code>Deflater</code> works on arrays).
+ *
+ * @author Anthony Williams
+ */
+public final class SelectorServer implements ServerEngine {
+	private static final int BUFFER_SIZE = 8 * 1024;
+	private static final long IDLE_SWEEP_INTERVAL_MILLIS = 1000;
+	private static final long LOOP_STOP_WAIT_MILLIS = 1000;
+	private static final String HTTP_1_0 = "HTTP/1.0";
+
+	private final ServerConfig config;
+	private final Router router;
+	private final ServerMetrics metrics;
+	private final AccessLog accessLog;
+	private final ResponseCompressor responseCompressor;
+	private final AdmissionControl admissionControl;
+	private final ByteBufferPool bufferPool;
+	private final List<Thread> acceptThreads = new ArrayList<Thread>();
+	private final AtomicBoolean isClosed = new AtomicBoolean();
+	private final CountDownLatch closed = new CountDownLatch(1);
+	// NOTE: the request body bytes held by every loop, bounded by config.getMaxBufferedBodyBytes()
+	private final AtomicLong bufferedBodyBytes = new AtomicLong();
+	private List<ServerSocketChannel> listeners = Collections.emptyList();
+	private EventLoop[] eventLoops = new EventLoop[0];
+	private int localPort = -1;
+	private volatile boolean isRunning = false;
+	// NOTE: set once the accepting threads have exited, so a loop with no connections left stays drained
+	private volatile boolean isDraining = false;
+
+	/**
+	 * @param config The event loop and connection settings
+	 * @param router The routes to dispatch requests to
+	 */
+	public SelectorServer(ServerConfig config, Router router) {
+		this(config, router, new ServerMetrics());
+	}
+
+	/**
+	 * @param config The event loop and connection settings
+	 * @param router The routes to dispatch requests to
+	 * @param metrics Where to record connections, traffic and request latencies
+	 */
+	public SelectorServer(ServerConfig config, Router router, ServerMetrics metrics) {
+		this.config = config;
+		this.router = router;
+		this.metrics = metrics;
+		this.accessLog = AccessLog.fromConfig(config);
+		this.responseCompressor = ResponseCompressor.fromConfig(config);
+		this.admissionControl = AdmissionControl.fromConfig(config);
+		// NOTE: a whole request head has to fit in a read buffer
+		this.bufferPool = new ByteBufferPool(Math.max(BUFFER_SIZE, config.getMaxHeaderBytes()),
+				config.getMaxPooledBuffers(), true, config.isBufferLeakDetection());
+		metrics.setBufferPool(bufferPool);
+	}
+
+	/**
+	 * Binds the listeners, starts the event loops and starts one accepting thread for each listener
+	 *
+	 * @param port The TCP port to listen on (0 picks a free port)
+	 * @throws IOException When the port cannot be bound
+	 */
+	@Override
+	public void start(int port) throws IOException {
+		if (!listeners.isEmpty()) {
+			throw new IllegalStateException("The server has already been started");
+		}
+		System.out.printf("[SelectorServer.start()] Starting up... port = %d, event loops = %d, listeners = %d%n",
+				port, config.getEventLoopCount(), config.getListenerCount());
+		listeners = Listeners.bind(port, config);
+		localPort = listeners.get(0).socket().getLocalPort();
+		eventLoops = startEventLoops();
+		metrics.setQueueDepth(this::countPendingChannels);
+		isRunning = true;
+
+		for (int a = 0; a < listeners.size(); a++) {
+			ServerSocketChannel listener = listeners.get(a);
+			int firstLoop = a % eventLoops.length;
+			Thread acceptThread = new Thread(() -> acceptConnections(listener, firstLoop));
+
+			acceptThread.setName("selector-server-acceptor-" + (a + 1));
+			acceptThreads.add(acceptThread);
+			acceptThread.start();
+		}
+		System.out.println("[SelectorServer.start()] Great Success 🎂");
+	}
+
+	@Override
+	public int getLocalPort() {
+		return localPort;
+	}
+
+	@Override
+	public boolean isRunning() {
+		return isRunning;
+	}
+
+	@Override
+	public void stopAccepting() {
+		isRunning = false;
+		Listeners.close(listeners);
+		// NOTE: wake the loops so they close their idle connections now rather than at the next sweep
+		for (EventLoop eventLoop : eventLoops) {
+			eventLoop.selector.wakeup();
+		}
+	}
+
+	@Override
+	public boolean drain(long timeout, TimeUnit unit) throws InterruptedException {
+		long deadlineNanos = System.nanoTime() + unit.toNanos(timeout);
+
+		stopAccepting();
+		System.out.printf("[SelectorServer.drain()] Draining %d open connections...%n",
+				admissionControl.getOpenConnections());
+		// NOTE: once the accepting threads are gone no connection can be handed to a loop that has drained
+		for (Thread acceptThread : acceptThreads) {
+			TimeUnit.NANOSECONDS.timedJoin(acceptThread, Math.max(0, deadlineNanos - System.nanoTime()));
+		}
+		isDraining = true;
+		for (EventLoop eventLoop : eventLoops) {
+			eventLoop.selector.wakeup();
+		}
+		for (EventLoop eventLoop : eventLoops) {
+			if (!eventLoop.drained.await(Math.max(0, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+				System.out.println("[SelectorServer.drain()] Drain timed out");
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (!isClosed.compareAndSet(false, true)) {
+			return;
+		}
+		stopAccepting();
+		System.out.println("[SelectorServer.close()] Shutting down...");
+		stopEventLoops(LOOP_STOP_WAIT_MILLIS);
+		if (config.isBufferLeakDetection()) {
+			bufferPool.reportLeaks(System.out);
+		}
+		accessLog.close();
+		closed.countDown();
+		System.out.println("[SelectorServer.close()] Goodbye! 👍");
+	}
+
+	@Override
+	public void awaitClose() throws InterruptedException {
+		closed.await();
+	}
+
+	/**
+	 * Has every event loop close its own connections and waits (up to the given time) for the loop threads to exit.
+	 * The loops own their keys and buffers, so they are never closed from this thread while a loop may be using them.
+	 */
+	private void stopEventLoops(long timeoutMillis) {
+		long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+
+		try {
+			// NOTE: an accepting thread may still be handing a channel over, let it finish first
+			for (Thread acceptThread : acceptThreads) {
+				TimeUnit.NANOSECONDS.timedJoin(acceptThread, Math.max(0, deadlineNanos - System.nanoTime()));
+			}
+			for (EventLoop eventLoop : eventLoops) {
+				eventLoop.shutdown();
+			}
+			for (EventLoop eventLoop : eventLoops) {
+				if (eventLoop.thread != Thread.currentThread()) {
+					TimeUnit.NANOSECONDS.timedJoin(eventLoop.thread, Math.max(0, deadlineNanos - System.nanoTime()));
+				}
+				if (eventLoop.thread.isAlive()) {
+					System.out.printf("[SelectorServer.close()] %s did not stop in time%n", eventLoop.thread.getName());
+				} else {
+					// NOTE: a channel handed over after the loop drained its queue
+					eventLoop.closePendingChannels();
+				}
+			}
+		} catch (InterruptedException interruptedException) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Accepts connections from one listener until it is closed, spreading them round robin over the event loops
+	 *
+	 * @param listener
+	 * @param nextLoop The event loop to hand the first connection to
+	 */
+	private void acceptConnections(ServerSocketChannel listener, int nextLoop) {
+		try {
+			while (isRunning) {
+				SocketChannel clientChannel = listener.accept();
+				AdmissionControl.Decision decision = admissionControl.admit(clientChannel.socket().getInetAddress());
+
+				// NOTE: refuse before reading anything, a refused connection never reaches an event loop
+				if (decision == AdmissionControl.Decision.OVER_CAPACITY) {
+					rejectConnection(clientChannel, CannedResponses.SERVICE_UNAVAILABLE, 503);
+					continue;
+				}
+				if (decision == AdmissionControl.Decision.RATE_LIMITED) {
+					rejectConnection(clientChannel, CannedResponses.TOO_MANY_REQUESTS, 429);
+					continue;
+				}
+
+				// NOTE: each loop owns its sockets for their whole life
+				eventLoops[nextLoop].register(clientChannel);
+				nextLoop = (nextLoop + 1) % eventLoops.length;
+			}
+		} catch (ClosedChannelException closedException) {
+			// NOTE: stopAccepting() closed the listener
+		} catch (IOException ioException) {
+			accessLog.logError(null, "accept failed", ioException);
+		}
+	}
+
+	/**
+	 * @return The number of accepted connections not yet picked up by their event loop
+	 */
+	private int countPendingChannels() {
+		int pendingCount = 0;
+
+		for (EventLoop eventLoop : eventLoops) {
+			pendingCount += eventLoop.pendingChannels.size();
+		}
+
+		return pendingCount;
+	}
+
+	private EventLoop[] startEventLoops() throws IOException {
+		EventLoop[] loops = new EventLoop[config.getEventLoopCount()];
+
+		for (int a = 0; a < loops.length; a++) {
+			loops[a] = new EventLoop(Selector.open());
+			loops[a].thread = new Thread(loops[a], "selector-server-loop-" + (a + 1));
+			loops[a].thread.start();
+		}
+
+		return loops;
+	}
+
+	/**
+	 * Writes a canned refusal on the (still blocking) channel from the accepting thread and closes it
+	 *
+	 * @param channel A freshly accepted channel
+	 * @param response One of the <code>CannedResponses</code>
+	 * @param statusCode The status code of the canned response, for the metrics and access log
+	 */
+	private void rejectConnection(SocketChannel channel, byte[] response, int statusCode) {
+		InetAddress remoteAddress = channel.socket().getInetAddress();
+		ByteBuffer discard = bufferPool.acquire();
+
+		try (SocketChannel closing = channel) {
+			closing.write(ByteBuffer.wrap(response));
+			metrics.recordRejected(statusCode);
+			accessLog.logRejected(remoteAddress, statusCode, response.length);
+			metrics.bytesSent(response.length);
+
+			// NOTE: closing with unread bytes resets the connection, which can destroy the response before the client
+			// reads it, so skip the part of the request that has already arrived
+			closing.configureBlocking(false);
+			while (closing.read(discard) > 0) {
+				discard.clear();
+			}
+		} catch (IOException ioException) {
+			// NOTE: the client is already gone, which must not stop the accept loop
+		} finally {
+			bufferPool.release(discard);
+		}
+	}
+
+	/**
+	 * Per-connection state, attached to the connection's <code>SelectionKey</code>
+	 */
+	private static final class Connection {
+		private final SocketChannel channel;
+		private final InetAddress remoteAddress;
+		private final HttpRequestParser requestParser;
+		private ByteBuffer readBuffer;
+		// NOTE: non-null while the body of the parsed request is still arriving
+		private ByteBuffer requestBody;
+		private ChunkedDecoder chunkedDecoder;
+		private ByteBuffer writeBuffer;
+		private boolean isWritePooled;
+		private boolean isBodyPooled;
+		private ResponseBody responseBody;
+		private long responseLength;
+		// NOTE: 0 for a canned response, which is not timed
+		private long requestStartNanos;
+		private String route;
+		private int statusCode;
+		private String method;
+		private String path;
+		private String version;
+		private boolean keepAlive = true;
+		private int requestCount = 0;
+		private long lastActivityMillis;
+		// NOTE: the header timeout of the first request runs from accept, of later ones from their first byte
+		private boolean isHeadStarted = true;
+		private long headStartNanos = System.nanoTime();
+		private long deadlineNanos = HttpRequest.NO_DEADLINE;
+
+		private Connection(SocketChannel channel, ByteBuffer readBuffer, HttpRequestParser requestParser,
+				long nowMillis) {
+			this.channel = channel;
+			this.remoteAddress = channel.socket().getInetAddress();
+			this.readBuffer = readBuffer;
+			this.requestParser = requestParser;
+			this.lastActivityMillis = nowMillis;
+		}
+
+		/**
+		 * @return Whether the connection has served a request and holds no part of another one
+		 */
+		private boolean isBetweenRequests() {
+			return requestCount > 0 && writeBuffer == null && requestBody == null && readBuffer.position() == 0;
+		}
+	}
+
+	/**
+	 * A single selector thread and the connections registered with it
+	 */
+	private final class EventLoop implements Runnable {
+		private final Selector selector;
+		private final Queue<SocketChannel> pendingChannels = new ConcurrentLinkedQueue<SocketChannel>();
+		private final CountDownLatch drained = new CountDownLatch(1);
+		private long lastIdleSweepMillis = System.currentTimeMillis();
+		private int connectionCount = 0;
+		private Thread thread;
+		private volatile boolean isStopping = false;
+
+		private EventLoop(Selector selector) {
+			this.selector = selector;
+		}
+
+		/**
+		 * Queues the channel for registration; it is picked up by the loop thread on its next wakeup
+		 *
+		 * @param channel A freshly accepted channel
+		 * @throws IOException
+		 */
+		private void register(SocketChannel channel) throws IOException {
+			channel.configureBlocking(false);
+			pendingChannels.offer(channel);
+			selector.wakeup();
+		}
+
+		/**
+		 * Asks the loop to close its connections and exit; only the loop thread itself touches its keys and buffers
+		 */
+		private void shutdown() {
+			isStopping = true;
+			selector.wakeup();
+		}
+
+		/**
+		 * Closes the channels accepted but not yet registered, freeing their admission slots
+		 */
+		private void closePendingChannels() {
+			SocketChannel channel;
+
+			while ((channel = pendingChannels.poll()) != null) {
+				admissionControl.release();
+				try {
+					channel.close();
+				} catch (IOException ioException) {
+					// NOTE: shutting down regardless
+				}
+			}
+		}
+
+		@Override
+		public void run() {
+			try {
+				while (!isStopping) {
+					selector.select(IDLE_SWEEP_INTERVAL_MILLIS);
+					registerPendingChannels();
+
+					Iterator<SelectionKey> selectedKeys = selector.selectedKeys().iterator();
+
+					while (selectedKeys.hasNext()) {
+						SelectionKey key = selectedKeys.next();
+						selectedKeys.remove();
+						handleKey(key);
+					}
+					closeTimedOutConnections();
+				}
+			} catch (IOException ioException) {
+				accessLog.logError(null, "event loop failed", ioException);
+			} finally {
+				closeEverything();
+			}
+		}
+
+		private void closeEverything() {
+			for (SelectionKey key : selector.keys()) {
+				closeConnection(key);
+			}
+			closePendingChannels();
+			try {
+				selector.close();
+			} catch (IOException ioException) {
+				accessLog.logError(null, "closing the selector failed", ioException);
+			}
+		}
+
+		private void registerPendingChannels() throws IOException {
+			SocketChannel channel;
+
+			while ((channel = pendingChannels.poll()) != null) {
+				HttpRequestParser requestParser = new HttpRequestParser(config.getMaxLineBytes(),
+						config.getMaxHeaderCount(), config.getMaxHeaderBytes());
+				Connection connection = new Connection(channel, bufferPool.acquire(), requestParser,
+						System.currentTimeMillis());
+				channel.register(selector, SelectionKey.OP_READ, connection);
+				connectionCount++;
+				metrics.connectionOpened();
+				accessLog.logConnection(connection.remoteAddress, "connection opened");
+			}
+		}
+
+		/**
+		 * Closes connections waiting for their next request for longer than the idle timeout (or at all once the
+		 * server has stopped accepting), and answers a request whose head or body has stalled or run past its
+		 * deadline with a 408
+		 */
+		private void closeTimedOutConnections() {
+			long nowMillis = System.currentTimeMillis();
+			long nowNanos = System.nanoTime();
+			long headerTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(config.getHeaderTimeoutMillis());
+
+			// NOTE: while stopping, sweep on every wakeup so a connection closes as soon as nothing is in flight
+			if (isRunning && nowMillis - lastIdleSweepMillis < IDLE_SWEEP_INTERVAL_MILLIS) {
+				return;
+			}
+			lastIdleSweepMillis = nowMillis;
+
+			for (SelectionKey key : selector.keys()) {
+				Connection connection = (Connection) key.attachment();
+
+				// NOTE: a response being written is not timed out here
+				if (!key.isValid() || connection.writeBuffer != null) {
+					continue;
+				}
+
+				long idleMillis = nowMillis - connection.lastActivityMillis;
+				boolean isHeadExpired = connection.isHeadStarted
+						&& nowNanos - connection.headStartNanos > headerTimeoutNanos;
+
+				if (connection.requestBody == null && connection.readBuffer.position() == 0) {
+					// NOTE: nothing of the next request has arrived, so there is nobody to answer
+					if (idleMillis > config.getIdleTimeoutMillis() || isHeadExpired
+							|| !isRunning && connection.isBetweenRequests()) {
+						closeConnection(key);
+					}
+				} else if (idleMillis > config.getReadTimeoutMillis()
+						|| (connection.requestBody == null ? isHeadExpired : isPastDeadline(connection, nowNanos))) {
+					timeOutRequest(key, connection);
+				}
+			}
+			if (isDraining && connectionCount == 0 && pendingChannels.isEmpty()) {
+				drained.countDown();
+			}
+		}
+
+		private boolean isPastDeadline(Connection connection, long nowNanos) {
+			return connection.deadlineNanos != HttpRequest.NO_DEADLINE && nowNanos - connection.deadlineNanos > 0;
+		}
+
+		private void timeOutRequest(SelectionKey key, Connection connection) {
+			dropRequestBody(connection);
+			connection.keepAlive = false;
+			try {
+				startCannedResponse(key, connection, CannedResponses.REQUEST_TIMEOUT, 408);
+			} catch (IOException ioException) {
+				closeConnection(key);
+			}
+		}
+
+		private void handleKey(SelectionKey key) {
+			try {
+				if (key.isValid() && key.isReadable()) {
+					handleRead(key);
+				}
+				if (key.isValid() && key.isWritable()) {
+					handleWrite(key);
+				}
+			} catch (IOException ioException) {
+				closeConnection(key);
+			}
+		}
+
+		private void handleRead(SelectionKey key) throws IOException {
+			Connection connection = (Connection) key.attachment();
+			int bytesRead = connection.channel.read(connection.readBuffer);
+
+			if (bytesRead < 0) {
+				closeConnection(key);
+				return;
+			}
+			metrics.bytesReceived(bytesRead);
+			connection.lastActivityMillis = System.currentTimeMillis();
+			processBufferedRequest(key, connection);
+		}
+
+		/**
+		 * Answers the next complete request sitting in the read buffer, if there is one
+		 */
+		private void processBufferedRequest(SelectionKey key, Connection connection) throws IOException {
+			ByteBuffer readBuffer = connection.readBuffer;
+			HttpRequestParser requestParser = connection.requestParser;
+			// NOTE: once the head is parsed only the body is still missing, the head is not parsed again
+			HttpRequestParser.Result result = connection.requestBody != null
+					? HttpRequestParser.Result.COMPLETE
+					: requestParser.parse(readBuffer, readBuffer.position());
+
+			if (result == HttpRequestParser.Result.COMPLETE) {
+				if (connection.requestBody == null) {
+					startRequestClock(connection);
+				}
+				if (requestParser.hasBody()) {
+					try {
+						if (!bufferRequestBody(key, connection)) {
+							return;
+						}
+					} catch (ProtocolException protocolException) {
+						dropRequestBody(connection);
+						connection.keepAlive = false;
+						if (connection.chunkedDecoder != null && connection.chunkedDecoder.isTrailerTooLarge()) {
+							startCannedResponse(key, connection, CannedResponses.HEADERS_TOO_LARGE, 431);
+						} else {
+							startCannedResponse(key, connection, CannedResponses.BAD_REQUEST, 400);
+						}
+						return;
+					}
+				}
+				dispatchRequest(key, connection);
+			} else if (result == HttpRequestParser.Result.INVALID) {
+				connection.keepAlive = false;
+				startCannedResponse(key, connection, CannedResponses.BAD_REQUEST, 400);
+			} else if (result == HttpRequestParser.Result.VERSION_NOT_SUPPORTED) {
+				connection.keepAlive = false;
+				startCannedResponse(key, connection, CannedResponses.VERSION_NOT_SUPPORTED, 505);
+			} else if (result == HttpRequestParser.Result.URI_TOO_LONG) {
+				connection.keepAlive = false;
+				startCannedResponse(key, connection, CannedResponses.URI_TOO_LONG, 414);
+			} else if (result == HttpRequestParser.Result.HEADERS_TOO_LARGE || !readBuffer.hasRemaining()) {
+				connection.keepAlive = false;
+				startCannedResponse(key, connection, CannedResponses.HEADERS_TOO_LARGE, 431);
+			} else {
+				startHeadClock(connection);
+			}
+		}
+
+		/**
+		 * Starts the header timeout once the first byte of a request has arrived
+		 */
+		private void startHeadClock(Connection connection) {
+			if (!connection.isHeadStarted && connection.readBuffer.position() > 0) {
+				connection.isHeadStarted = true;
+				connection.headStartNanos = System.nanoTime();
+			}
+		}
+
+		/**
+		 * Sets the deadline of a request whose head has just been parsed, counting from its first byte
+		 */
+		private void startRequestClock(Connection connection) {
+			startHeadClock(connection);
+			connection.deadlineNanos = config.getRequestTimeoutMillis() == 0
+					? HttpRequest.NO_DEADLINE
+					: connection.headStartNanos + TimeUnit.MILLISECONDS.toNanos(config.getRequestTimeoutMillis());
+		}
+
+		/**
+		 * Moves the body bytes that arrived after the head out of the read buffer, so the buffer keeps room for the
+		 * rest of the body while the head stays where the parsed request expects it
+		 *
+		 * @return Whether the whole body has arrived, <code>false</code> while it is still incomplete or when it was
+		 *         refused (with a 413, or a 503 once the bodies buffered across the server use up their budget)
+		 * @throws ProtocolException When the chunked body is malformed
+		 */
+		private boolean bufferRequestBody(SelectionKey key, Connection connection) throws IOException {
+			ByteBuffer readBuffer = connection.readBuffer;
+			HttpRequestParser requestParser = connection.requestParser;
+			// NOTE: the body has to fit in a single array
+			long maxBodyBytes = Math.min(config.getMaxRequestBodyBytes(), Integer.MAX_VALUE - 8);
+			int headLength = requestParser.getHeadLength();
+
+			if (connection.requestBody == null) {
+				if (requestParser.getContentLength() > maxBodyBytes || headLength == readBuffer.capacity()) {
+					connection.keepAlive = false;
+					startCannedResponse(key, connection, CannedResponses.PAYLOAD_TOO_LARGE, 413);
+					return false;
+				}
+				if (requestParser.isChunked()) {
+					if (connection.chunkedDecoder == null) {
+						connection.chunkedDecoder = new ChunkedDecoder(config.getMaxLineBytes(),
+								config.getMaxHeaderBytes());
+					}
+					connection.chunkedDecoder.reset();
+				}
+
+				int bodyCapacity = requestParser.isChunked()
+						? (int) Math.min(BUFFER_SIZE, maxBodyBytes)
+						: (int) requestParser.getContentLength();
+
+				// NOTE: a body that fits a pooled buffer leases one (its limit marks the body's end), the whole
+				// buffer is charged to the budget as that is what it pins
+				boolean isPooled = bodyCapacity <= bufferPool.getBufferSize();
+
+				if (!reserveBodyBytes(isPooled ? bufferPool.getBufferSize() : bodyCapacity)) {
+					connection.keepAlive = false;
+					startCannedResponse(key, connection, CannedResponses.SERVICE_UNAVAILABLE, 503);
+					return false;
+				}
+				connection.requestBody = isPooled
+						? bufferPool.acquire().limit(bodyCapacity)
+						: ByteBuffer.allocate(bodyCapacity);
+				connection.isBodyPooled = isPooled;
+			}
+
+			ByteBuffer source = readBuffer.duplicate();
+			boolean isComplete;
+
+			source.limit(readBuffer.position()).position(headLength);
+			if (requestParser.isChunked()) {
+				isComplete = connection.chunkedDecoder.decode(source, connection.requestBody);
+				// NOTE: the decoder only stops short with input left when the body buffer is full
+				while (!isComplete && source.hasRemaining()) {
+					int capacity = connection.requestBody.limit();
+
+					if (capacity >= maxBodyBytes) {
+						dropRequestBody(connection);
+						connection.keepAlive = false;
+						startCannedResponse(key, connection, CannedResponses.PAYLOAD_TOO_LARGE, 413);
+						return false;
+					}
+
+					int grownCapacity = (int) Math.min(Math.max(16, capacity * 2L), maxBodyBytes);
+
+					if (!reserveBodyBytes(grownCapacity - connection.requestBody.capacity())) {
+						dropRequestBody(connection);
+						connection.keepAlive = false;
+						startCannedResponse(key, connection, CannedResponses.SERVICE_UNAVAILABLE, 503);
+						return false;
+					}
+
+					// NOTE: pooled buffers all have the same size, a body outgrowing one continues on the heap
+					ByteBuffer grown = grow(connection.requestBody, grownCapacity);
+
+					if (connection.isBodyPooled) {
+						bufferPool.release(connection.requestBody);
+						connection.isBodyPooled = false;
+					}
+					connection.requestBody = grown;
+					isComplete = connection.chunkedDecoder.decode(source, connection.requestBody);
+				}
+			} else {
+				int length = Math.min(source.remaining(), connection.requestBody.remaining());
+
+				source.limit(source.position() + length);
+				connection.requestBody.put(source);
+				source.limit(readBuffer.position());
+				isComplete = !connection.requestBody.hasRemaining();
+			}
+
+			// NOTE: slide whatever followed the consumed body bytes back to just after the head
+			int remaining = source.remaining();
+			ByteBuffer target = readBuffer.duplicate();
+
+			target.clear().position(headLength);
+			target.put(source);
+			readBuffer.position(headLength + remaining);
+			return isComplete;
+		}
+
+		/**
+		 * Runs the handler for the parsed request (whose body, if any, has fully arrived) and starts the response
+		 */
+		private void dispatchRequest(SelectionKey key, Connection connection) throws IOException {
+			ByteBuffer readBuffer = connection.readBuffer;
+			HttpRequestParser requestParser = connection.requestParser;
+			ByteBuffer requestBody = connection.requestBody;
+			boolean isBodyPooled = connection.isBodyPooled;
+			HttpRequest request = requestParser.toRequest(requestBody == null
+					? RequestBody.EMPTY
+					: RequestBody.of(requestBody.flip()), connection.deadlineNanos);
+
+			// NOTE: the body stays charged to the budget until the handler is done with it
+			connection.requestBody = null;
+			connection.isHeadStarted = false;
+			connection.requestCount++;
+			// NOTE: the first request was paid for when the connection was admitted
+			if (connection.requestCount > 1 && !admissionControl.admitRequest(connection.remoteAddress)) {
+				releaseBodyBytes(requestBody, isBodyPooled);
+				connection.keepAlive = false;
+				startCannedResponse(key, connection, CannedResponses.TOO_MANY_REQUESTS, 429);
+				return;
+			}
+			connection.keepAlive = request.isKeepAlive()
+					&& connection.requestCount < config.getMaxRequestsPerConnection();
+			connection.requestStartNanos = System.nanoTime();
+			HttpResponse response;
+
+			try {
+				response = responseCompressor.compress(request, router.dispatch(request));
+			} finally {
+				releaseBodyBytes(requestBody, isBodyPooled);
+			}
+			if (request.getFailure() != null) {
+				accessLog.logError(connection.remoteAddress, request.getMethod() + " " + request.getPath() + " failed",
+						request.getFailure());
+			}
+			// NOTE: once the server stops accepting, tell the client to take its next request elsewhere
+			if (!isRunning) {
+				connection.keepAlive = false;
+			}
+			connection.route = request.getRoutePattern();
+			connection.statusCode = response.getStatusCode();
+			connection.method = request.getMethod();
+			connection.path = request.getPath();
+			connection.version = request.getVersion();
+			ResponseBody responseBody = response.getBody();
+
+			if (responseBody.getLength() < 0) {
+				// NOTE: without chunked framing (HTTP/1.0) only closing the connection marks the end of the body
+				if (HTTP_1_0.equals(request.getVersion())) {
+					connection.keepAlive = false;
+				} else if (connection.keepAlive && ResponseEncoder.hasContent(response.getStatusCode())) {
+					responseBody = ResponseBody.chunked(responseBody);
+				}
+			}
+
+			ByteBuffer responseHead = bufferPool.acquire();
+			boolean isHeadPooled = true;
+
+			try {
+				ResponseEncoder.encodeHead(response, connection.keepAlive, responseHead);
+				responseHead.flip();
+			} catch (BufferOverflowException overflowException) {
+				// NOTE: unusually large headers, encode them on their own
+				bufferPool.release(responseHead);
+				responseHead = ResponseEncoder.encodeHead(response, connection.keepAlive);
+				isHeadPooled = false;
+			}
+
+			if ("HEAD".equals(request.getMethod())) {
+				responseBody.close();
+				responseBody = null;
+			}
+
+			// NOTE: drop the consumed request, keeping any pipelined bytes that followed it
+			readBuffer.flip();
+			readBuffer.position(requestParser.getHeadLength());
+			readBuffer.compact();
+			requestParser.reset();
+
+			startResponse(key, connection, responseHead, isHeadPooled, responseBody);
+		}
+
+		/**
+		 * @return A buffer of the given capacity holding the same bytes, in write mode
+		 */
+		private ByteBuffer grow(ByteBuffer buffer, int capacity) {
+			return ByteBuffer.allocate(capacity).put(buffer.flip());
+		}
+
+		/**
+		 * Charges a request body buffer to the budget shared by every loop
+		 *
+		 * @return Whether the budget had room for it
+		 */
+		private boolean reserveBodyBytes(long bytes) {
+			while (true) {
+				long buffered = bufferedBodyBytes.get();
+
+				if (buffered + bytes > config.getMaxBufferedBodyBytes()) {
+					return false;
+				}
+				if (bufferedBodyBytes.compareAndSet(buffered, buffered + bytes)) {
+					return true;
+				}
+			}
+		}
+
+		/**
+		 * Hands a request body buffer's bytes back to the budget, and the buffer itself back to the pool it was leased
+		 * from
+		 */
+		private void releaseBodyBytes(ByteBuffer requestBody, boolean isPooled) {
+			if (requestBody == null) {
+				return;
+			}
+			bufferedBodyBytes.addAndGet(-requestBody.capacity());
+			if (isPooled) {
+				bufferPool.release(requestBody);
+			}
+		}
+
+		/**
+		 * Forgets the body of a request that will not be dispatched, handing its bytes back to the budget
+		 */
+		private void dropRequestBody(Connection connection) {
+			releaseBodyBytes(connection.requestBody, connection.isBodyPooled);
+			connection.requestBody = null;
+		}
+
+		private void handleWrite(SelectionKey key) throws IOException {
+			Connection connection = (Connection) key.attachment();
+
+			connection.lastActivityMillis = System.currentTimeMillis();
+			continueResponse(key, connection);
+		}
+
+		/**
+		 * @param head The encoded status line and headers, ready to be written
+		 * @param isHeadPooled Whether the head buffer came from the pool and goes back to it afterwards
+		 * @param body The body to send after the head, or <code>null</code>
+		 */
+		private void startResponse(SelectionKey key, Connection connection, ByteBuffer head, boolean isHeadPooled,
+				ResponseBody body) throws IOException {
+			connection.writeBuffer = head;
+			connection.isWritePooled = isHeadPooled;
+			connection.responseBody = body;
+			// NOTE: the length of a streamed body is not known, only its head is counted
+			connection.responseLength = head.remaining() + (body == null ? 0 : Math.max(0, body.getLength()));
+
+			// NOTE: try the write straight away, most responses fit the socket buffer and never need OP_WRITE
+			continueResponse(key, connection);
+		}
+
+		/**
+		 * @param response One of the <code>CannedResponses</code>
+		 * @param statusCode The status code of the canned response, for the metrics
+		 */
+		private void startCannedResponse(SelectionKey key, Connection connection, byte[] response, int statusCode)
+				throws IOException {
+			metrics.recordRejected(statusCode);
+			accessLog.logRejected(connection.remoteAddress, statusCode, response.length);
+			connection.requestStartNanos = 0;
+			startResponse(key, connection, ByteBuffer.wrap(response), false, null);
+		}
+
+		/**
+		 * Writes as much of the pending head and body as the socket takes, waiting for OP_WRITE when it fills up
+		 */
+		private void continueResponse(SelectionKey key, Connection connection) throws IOException {
+			ByteBuffer writeBuffer = connection.writeBuffer;
+			boolean isComplete;
+
+			if (connection.responseBody == null) {
+				connection.channel.write(writeBuffer);
+				isComplete = !writeBuffer.hasRemaining();
+			} else {
+				// NOTE: an in-memory body leaves together with the head in one gathering write
+				isComplete = connection.responseBody.writeTo(connection.channel, writeBuffer);
+			}
+
+			if (isComplete) {
+				finishResponse(key, connection);
+			} else {
+				// NOTE: stop reading until the response is out, pipelined requests wait in the read buffer
+				key.interestOps(SelectionKey.OP_WRITE);
+			}
+		}
+
+		private void finishResponse(SelectionKey key, Connection connection) throws IOException {
+			metrics.bytesSent(connection.responseLength);
+			if (connection.requestStartNanos != 0) {
+				long durationNanos = System.nanoTime() - connection.requestStartNanos;
+
+				metrics.recordRequest(connection.route, connection.statusCode, durationNanos);
+				accessLog.logRequest(connection.remoteAddress, connection.method, connection.path,
+						connection.version, connection.statusCode, connection.responseLength, durationNanos);
+			}
+			if (connection.isWritePooled) {
+				bufferPool.release(connection.writeBuffer);
+			}
+			connection.writeBuffer = null;
+			closeResponseBody(connection);
+
+			if (!connection.keepAlive) {
+				closeConnection(key);
+				return;
+			}
+			key.interestOps(SelectionKey.OP_READ);
+			processBufferedRequest(key, connection);
+		}
+
+		private void closeConnection(SelectionKey key) {
+			Connection connection = (Connection) key.attachment();
+
+			if (connection.readBuffer == null) {
+				// NOTE: already closed
+				return;
+			}
+			key.cancel();
+			connectionCount--;
+			// NOTE: free the slot before the client can see the close and reconnect
+			admissionControl.release();
+			try {
+				connection.channel.close();
+			} catch (IOException ioException) {
+				accessLog.logError(connection.remoteAddress, "closing the connection failed", ioException);
+			}
+			bufferPool.release(connection.readBuffer);
+			if (connection.isWritePooled) {
+				bufferPool.release(connection.writeBuffer);
+			}
+			connection.readBuffer = null;
+			connection.writeBuffer = null;
+			dropRequestBody(connection);
+			closeResponseBody(connection);
+			metrics.connectionClosed();
+			accessLog.logConnection(connection.remoteAddress, "connection closed");
+		}
+
+		private void closeResponseBody(Connection connection) {
+			if (connection.responseBody == null) {
+				return;
+			}
+			try {
+				connection.responseBody.close();
+			} catch (IOException ioException) {
+				accessLog.logError(connection.remoteAddress, "closing the response body failed", ioException);
+			}
+			connection.responseBody = null;
+		}
+	}
+}
@@ -0,0 +1,125 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 Anthony Williams.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.williams.anthony;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Common entry point for the interchangeable HTTP server implementations.
+ *
+ * A server goes through <code>start</code>, <code>stopAccepting</code>, <code>drain</code> and <code>close</code>
+ * in that order; <code>shutdown</code> runs the last three. Once it stops accepting, persistent connections are
+ * closed after their in-flight request instead of waiting for another one.
+ *
+ * @author Anthony Williams
+ */
+public interface ServerEngine extends Closeable {
+
+	/**
+	 * Binds to the given port and starts accepting connections on background threads
+	 *
+	 * @param port The TCP port to listen on (0 picks a free port)
+	 * @throws IOException When the port cannot be bound
+	 */
+	void start(int port) throws IOException;
+
+	/**
+	 * @return The port the server is listening on, once started
+	 */
+	int getLocalPort();
+
+	/**
+	 * @return Whether the server is accepting new connections
+	 */
+	boolean isRunning();
+
+	/**
+	 * Closes the listening sockets, so new connections are refused (or, with <code>SO_REUSEPORT</code>, go to
+	 * another server on the same port), and tells open connections to close after their current request
+	 */
+	void stopAccepting();
+
+	/**
+	 * Waits for the connections still open to finish their in-flight requests, closing idle ones straight away
+	 *
+	 * @param timeout The longest to wait
+	 * @param unit The unit of <code>timeout</code>
+	 * @return Whether every connection finished in time
+	 * @throws InterruptedException
+	 */
+	boolean drain(long timeout, TimeUnit unit) throws InterruptedException;
+
+	/**
+	 * Closes every remaining connection and releases the server's threads, whether or not it has drained
+	 *
+	 * @throws IOException
+	 */
+	@Override
+	void close() throws IOException;
+
+	/**
+	 * Blocks until the server has been closed
+	 *
+	 * @throws InterruptedException
+	 */
+	void awaitClose() throws InterruptedException;
+
+	/**
+	 * Stops accepting, gives in-flight requests up to <code>timeout</code> to finish and closes the server
+	 *
+	 * @param timeout The longest to wait for in-flight requests
+	 * @param unit The unit of <code>timeout</code>
+	 * @return Whether every connection finished in time
+	 * @throws IOException
+	 */
+	default boolean shutdown(long timeout, TimeUnit unit) throws IOException {
+		stopAccepting();
+		try {
+			return drain(timeout, unit);
+		} catch (InterruptedException interruptedException) {
+			Thread.currentThread().interrupt();
+			return false;
+		} finally {
+			close();
+		}
+	}
+
+	/**
+	 * Binds to the given port and serves requests until the server is closed
+	 *
+	 * @param port The TCP port to listen on
+	 * @throws IOException
+	 */
+	default void spinUpServer(int port) throws IOException {
+		start(port);
+		try {
+			awaitClose();
+		} catch (InterruptedException interruptedException) {
+			Thread.currentThread().interrupt();
+			close();
+		}
+	}
+}
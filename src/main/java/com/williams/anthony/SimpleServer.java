@@ -23,14 +23,56 @@
  */
 package com.williams.anthony;
 
+import java.io.EOFException;
 import java.io.IOException;
-import java.io.PrintWriter;
-import java.net.ServerSocket;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ProtocolException;
 import java.net.Socket;
-import java.util.Date;
-import java.util.Dictionary;
-import java.util.Hashtable;
-import java.util.Scanner;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import com.williams.anthony.http.CannedResponses;
+import com.williams.anthony.http.ChunkedDecoder;
+import com.williams.anthony.http.HttpRequest;
+import com.williams.anthony.http.HttpRequestParser;
+import com.williams.anthony.http.HttpResponse;
+import com.williams.anthony.http.RequestBody;
+import com.williams.anthony.http.ResponseBody;
+import com.williams.anthony.http.ResponseEncoder;
+import com.williams.anthony.http.Router;
+import com.williams.anthony.http.StreamingRequestBody;
+import com.williams.anthony.handlers.DateHandler;
+import com.williams.anthony.server.AccessLog;
+import com.williams.anthony.server.AdmissionControl;
+import com.williams.anthony.server.ByteBufferPool;
+import com.williams.anthony.server.Listeners;
+import com.williams.anthony.server.ResponseCompressor;
+import com.williams.anthony.server.ServerConfig;
+import com.williams.anthony.server.ServerMetrics;
+import com.williams.anthony.server.VirtualThreads;
 
 /**
  * Inspired by http://cs.lmu.edu/~ray/notes/javanetexamples/#date
@@ -43,140 +85,657 @@ import java.util.Scanner;
  *
  * @author Anthony Williams
  */
-public final class SimpleServer {
-	private boolean isRunning = false;
+public final class SimpleServer implements ServerEngine {
+	private static final int REQUEST_BUFFER_SIZE = 8 * 1024;
+	private static final long LEAK_CHECK_WAIT_MILLIS = 1000;
+	private static final String HTTP_1_0 = "HTTP/1.0";
+
+	private final ServerConfig config;
+	private final Router router;
+	private final ServerMetrics metrics;
+	private final AccessLog accessLog;
+	private final ResponseCompressor responseCompressor;
+	private final AdmissionControl admissionControl;
+	private final ByteBufferPool bufferPool;
+	private final Set<Socket> openConnections = ConcurrentHashMap.newKeySet();
+	private final Set<Socket> idleConnections = ConcurrentHashMap.newKeySet();
+	private final List<Thread> acceptThreads = new ArrayList<Thread>();
+	private final AtomicBoolean isClosed = new AtomicBoolean();
+	private final CountDownLatch closed = new CountDownLatch(1);
+	private List<ServerSocketChannel> listeners = Collections.emptyList();
+	private ExecutorService workerPool = null;
+	private int localPort = -1;
+	private volatile boolean isRunning = false;
+
+	/**
+	 * Constructs a server that answers every <code>GET</code> with the date, on the accepting thread
+	 */
+	public SimpleServer() {
+		this(new ServerConfig(), new Router().add("GET", "/*", new DateHandler()));
+	}
 
 	/**
+	 * Constructs a server that hands accepted connections to a bounded pool of worker threads when
+	 * <code>config.getWorkerCount()</code> is positive, or to a virtual thread each when
+	 * <code>config.isVirtualThreads()</code> (falling back to the worker pool on a JDK without them)
 	 *
-	 * @param port
+	 * @param config The worker pool and connection settings
+	 * @param router The routes to dispatch requests to
+	 */
+	public SimpleServer(ServerConfig config, Router router) {
+		this(config, router, new ServerMetrics());
+	}
+
+	/**
+	 * @param config The worker pool and connection settings
+	 * @param router The routes to dispatch requests to
+	 * @param metrics Where to record connections, traffic and request latencies
+	 */
+	public SimpleServer(ServerConfig config, Router router, ServerMetrics metrics) {
+		this.config = config;
+		this.router = router;
+		this.metrics = metrics;
+		this.accessLog = AccessLog.fromConfig(config);
+		this.responseCompressor = ResponseCompressor.fromConfig(config);
+		this.admissionControl = AdmissionControl.fromConfig(config);
+		// NOTE: heap buffers, socket streams read into arrays (the JDK copies through its own direct buffer anyway)
+		this.bufferPool = new ByteBufferPool(Math.max(REQUEST_BUFFER_SIZE, config.getMaxHeaderBytes()),
+				config.getMaxPooledBuffers(), false, config.isBufferLeakDetection());
+		metrics.setBufferPool(bufferPool);
+	}
+
+	/**
+	 * Binds the listeners and starts one accepting thread for each
+	 *
+	 * @param port The TCP port to listen on (0 picks a free port)
+	 * @throws IOException When the port cannot be bound
+	 */
+	@Override
+	public void start(int port) throws IOException {
+		if (!listeners.isEmpty()) {
+			throw new IllegalStateException("The server has already been started");
+		}
+		System.out.printf("[SimpleServer.start()] Starting up... port = %d, threads = %s, listeners = %d%n", port,
+				isVirtualThreads() ? "virtual" : "platform", config.getListenerCount());
+		// NOTE: sockets accepted from a channel have one, which lets file bodies go out with sendfile
+		listeners = Listeners.bind(port, config);
+		localPort = listeners.get(0).socket().getLocalPort();
+		workerPool = createWorkerPool();
+		if (workerPool instanceof ThreadPoolExecutor) {
+			BlockingQueue<Runnable> queue = ((ThreadPoolExecutor) workerPool).getQueue();
+			metrics.setQueueDepth(queue::size);
+		}
+		isRunning = true;
+
+		for (int a = 0; a < listeners.size(); a++) {
+			ServerSocketChannel listener = listeners.get(a);
+			Thread acceptThread = new Thread(() -> acceptConnections(listener));
+
+			acceptThread.setName("simple-server-acceptor-" + (a + 1));
+			acceptThreads.add(acceptThread);
+			acceptThread.start();
+		}
+		System.out.println("[SimpleServer.start()] Great Success 🎂");
+	}
+
+	@Override
+	public int getLocalPort() {
+		return localPort;
+	}
+
+	@Override
+	public boolean isRunning() {
+		return isRunning;
+	}
+
+	@Override
+	public void stopAccepting() {
+		isRunning = false;
+		Listeners.close(listeners);
+	}
+
+	@Override
+	public boolean drain(long timeout, TimeUnit unit) throws InterruptedException {
+		long deadlineNanos = System.nanoTime() + unit.toNanos(timeout);
+
+		stopAccepting();
+		System.out.printf("[SimpleServer.drain()] Draining %d open connections...%n", openConnections.size());
+		// NOTE: a connection waiting for its next request has nothing in flight
+		for (Socket idleConnection : idleConnections) {
+			closeQuietly(idleConnection);
+		}
+		if (workerPool != null) {
+			workerPool.shutdown();
+			if (!workerPool.awaitTermination(Math.max(0, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+				System.out.println("[SimpleServer.drain()] Drain timed out");
+				return false;
+			}
+		}
+		// NOTE: without workers the accepting threads serve the connections themselves
+		for (Thread acceptThread : acceptThreads) {
+			TimeUnit.NANOSECONDS.timedJoin(acceptThread, Math.max(0, deadlineNanos - System.nanoTime()));
+			if (acceptThread.isAlive()) {
+				System.out.println("[SimpleServer.drain()] Drain timed out");
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	@Override
+	public void close() {
+		if (!isClosed.compareAndSet(false, true)) {
+			return;
+		}
+		stopAccepting();
+		System.out.println("[SimpleServer.close()] Shutting down...");
+		if (workerPool != null) {
+			workerPool.shutdownNow();
+		}
+		for (Socket openConnection : openConnections) {
+			closeQuietly(openConnection);
+		}
+		if (config.isBufferLeakDetection()) {
+			// NOTE: the workers let go of their buffers once their sockets close, give them a moment to do so
+			awaitWorkers(LEAK_CHECK_WAIT_MILLIS);
+			bufferPool.reportLeaks(System.out);
+		}
+		accessLog.close();
+		closed.countDown();
+		System.out.println("[SimpleServer.close()] Goodbye! 👍");
+	}
+
+	@Override
+	public void awaitClose() throws InterruptedException {
+		closed.await();
+	}
+
+	/**
+	 * Accepts connections from one listener until it is closed, serving each on a worker (or inline when there are
+	 * no workers)
+	 *
+	 * @param listener
+	 */
+	private void acceptConnections(ServerSocketChannel listener) {
+		try {
+			while (isRunning) {
+				Socket clientConnection = listener.accept().socket();
+				AdmissionControl.Decision decision = admissionControl.admit(clientConnection.getInetAddress());
+
+				// NOTE: refuse before reading anything, a refused connection never reaches a worker
+				if (decision == AdmissionControl.Decision.OVER_CAPACITY) {
+					rejectRequest(clientConnection, CannedResponses.SERVICE_UNAVAILABLE, 503);
+				} else if (decision == AdmissionControl.Decision.RATE_LIMITED) {
+					rejectRequest(clientConnection, CannedResponses.TOO_MANY_REQUESTS, 429);
+				} else if (workerPool == null) {
+					try {
+						handleRequest(clientConnection);
+					} catch (IOException ioException) {
+						accessLog.logError(clientConnection.getInetAddress(), "connection failed", ioException);
+					}
+				} else {
+					dispatchRequest(clientConnection);
+				}
+			}
+		} catch (ClosedChannelException closedException) {
+			// NOTE: stopAccepting() closed the listener
+		} catch (IOException ioException) {
+			accessLog.logError(null, "accept failed", ioException);
+		}
+	}
+
+	/**
+	 * Serves requests from the connection until the client closes it, asks to close it, goes idle for longer than
+	 * the idle timeout or reaches the per-connection request limit. Pipelined requests are answered in order.
+	 *
+	 * @param clientConnection
 	 * @throws IOException
 	 */
-	public void spinUpServer(int port) throws IOException {
-		ServerSocket listener = null;
+	public void handleRequest(Socket clientConnection) throws IOException {
+		InetAddress remoteAddress = clientConnection.getInetAddress();
+
+		metrics.connectionOpened();
+		accessLog.logConnection(remoteAddress, "connection opened");
+		openConnections.add(clientConnection);
+
+		ByteBuffer requestBuffer = bufferPool.acquire();
+		ByteBuffer responseHeadBuffer = bufferPool.acquire();
+		ByteBuffer bodyBuffer = null;
+		ChunkedDecoder chunkedDecoder = null;
 
 		try {
-			System.out.printf("[App.spinUpServer()] Starting up... port = %d%n", port);
-			System.out.println("[App.spinUpServer()] Creating server...");
-			listener = new ServerSocket(port);
-			isRunning = true;
-			System.out.println("[App.spinUpServer()] Great Success 🎂");
+			InputStream requestStream = clientConnection.getInputStream();
+			OutputStream responseStream = clientConnection.getOutputStream();
+			WritableByteChannel responseChannel = clientConnection.getChannel() != null
+					? clientConnection.getChannel()
+					: Channels.newChannel(responseStream);
+			HttpRequestParser requestParser = new HttpRequestParser(config.getMaxLineBytes(),
+					config.getMaxHeaderCount(), config.getMaxHeaderBytes());
+			// NOTE: without workers an idle persistent connection would block the accept loop, so close after each
+			int maxRequests = workerPool == null ? 1 : config.getMaxRequestsPerConnection();
+			boolean keepAlive = true;
+			int requestCount = 0;
 
-			while (isRunning) {
-				Socket clientConnection = listener.accept();
-				handleRequest(clientConnection);
+			while (keepAlive) {
+				if (requestCount > 0) {
+					// NOTE: between requests nothing is in flight, so drain() may close the connection
+					idleConnections.add(clientConnection);
+					if (!isRunning) {
+						break;
+					}
+				}
+
+				HttpRequest request = parseRequestInformation(clientConnection, requestStream, requestBuffer,
+						requestParser, responseStream, remoteAddress, requestCount == 0);
+
+				idleConnections.remove(clientConnection);
+				if (request == null) {
+					break;
+				}
+				requestCount++;
+				// NOTE: the first request was paid for when the connection was admitted
+				if (requestCount > 1 && !admissionControl.admitRequest(remoteAddress)) {
+					writeCannedResponse(responseStream, CannedResponses.TOO_MANY_REQUESTS, 429, remoteAddress);
+					break;
+				}
+				keepAlive = request.isKeepAlive() && requestCount < maxRequests;
+
+				StreamingRequestBody requestBody = null;
+
+				if (requestParser.hasBody()) {
+					if (requestParser.getContentLength() > config.getMaxRequestBodyBytes()) {
+						writeCannedResponse(responseStream, CannedResponses.PAYLOAD_TOO_LARGE, 413, remoteAddress);
+						break;
+					}
+					// NOTE: each read of the body may stall this long, the request's deadline bounds the whole body
+					clientConnection.setSoTimeout(config.getReadTimeoutMillis());
+					if (bodyBuffer == null) {
+						bodyBuffer = bufferPool.acquire();
+					}
+					if (chunkedDecoder == null && request.isChunked()) {
+						chunkedDecoder = new ChunkedDecoder(config.getMaxLineBytes(), config.getMaxHeaderBytes());
+					}
+					requestBody = new StreamingRequestBody(request, requestBuffer, requestParser.getHeadLength(),
+							requestStream, responseStream, bodyBuffer, chunkedDecoder,
+							config.getMaxRequestBodyBytes());
+					request = requestParser.toRequest(requestBody, request.getDeadlineNanos());
+				}
+
+				long startNanos = System.nanoTime();
+				HttpResponse response;
+
+				try {
+					response = router.dispatch(request);
+					// NOTE: skip what the handler left unread before answering, so a connection that cannot be
+					// reused says so in its response
+					if (requestBody != null && !requestBody.finish(config.getMaxRequestBodyBytes())) {
+						keepAlive = false;
+					}
+				} catch (ProtocolException protocolException) {
+					if (requestBody == null) {
+						throw protocolException;
+					}
+					// NOTE: a malformed or oversized body leaves the connection at an unknown point in the stream
+					if (requestBody.isTooLarge()) {
+						writeCannedResponse(responseStream, CannedResponses.PAYLOAD_TOO_LARGE, 413, remoteAddress);
+					} else if (requestBody.isTrailerTooLarge()) {
+						writeCannedResponse(responseStream, CannedResponses.HEADERS_TOO_LARGE, 431, remoteAddress);
+					} else {
+						writeCannedResponse(responseStream, CannedResponses.BAD_REQUEST, 400, remoteAddress);
+					}
+					break;
+				} catch (SocketTimeoutException timeoutException) {
+					if (requestBody == null) {
+						throw timeoutException;
+					}
+					// NOTE: the body stalled or missed the request's deadline
+					writeCannedResponse(responseStream, CannedResponses.REQUEST_TIMEOUT, 408, remoteAddress);
+					break;
+				} finally {
+					if (requestBody != null) {
+						metrics.bytesReceived(requestBody.getBytesReceived());
+					}
+				}
+				response = responseCompressor.compress(request, response);
+				// NOTE: without chunked framing (HTTP/1.0) only closing the connection marks the end of the body
+				if (response.getBody().getLength() < 0 && HTTP_1_0.equals(request.getVersion())) {
+					keepAlive = false;
+				}
+				// NOTE: once the server stops accepting, tell the client to take its next request elsewhere
+				if (!isRunning) {
+					keepAlive = false;
+				}
+
+				long responseLength = writeResponseInformation(responseChannel, responseHeadBuffer, response,
+						keepAlive, !"HEAD".equals(request.getMethod()));
+				long durationNanos = System.nanoTime() - startNanos;
+
+				metrics.recordRequest(request.getRoutePattern(), response.getStatusCode(), durationNanos);
+				accessLog.logRequest(remoteAddress, request.getMethod(), request.getPath(), request.getVersion(),
+						response.getStatusCode(), responseLength, durationNanos);
+				if (request.getFailure() != null) {
+					accessLog.logError(remoteAddress, request.getMethod() + " " + request.getPath() + " failed",
+							request.getFailure());
+				}
+
+				// NOTE: drop the consumed request, keeping any pipelined bytes that followed it (a request body
+				// has already moved them to the start of the buffer)
+				if (requestBody == null) {
+					requestBuffer.flip();
+					requestBuffer.position(requestParser.getHeadLength());
+					requestBuffer.compact();
+				}
+				requestParser.reset();
+			}
+		} catch (SocketTimeoutException timeoutException) {
+			// NOTE: the connection sat idle (or stalled part way through a request) for too long
+		} catch (EOFException eofException) {
+			// NOTE: the client went away part way through a request body
+		} catch (SocketException | ClosedChannelException closedException) {
+			// NOTE: drain() or close() closed the connection underneath the read
+			if (isRunning) {
+				throw closedException;
 			}
 		} finally {
-			handleServerShutdown(listener);
+			openConnections.remove(clientConnection);
+			idleConnections.remove(clientConnection);
+			// NOTE: free the slot before the client can see the close and reconnect
+			admissionControl.release();
+			bufferPool.release(requestBuffer);
+			bufferPool.release(responseHeadBuffer);
+			bufferPool.release(bodyBuffer);
+			clientConnection.close();
+			metrics.connectionClosed();
+			accessLog.logConnection(remoteAddress, "connection closed");
 		}
 	}
 
 	/**
+	 * Hands the connection to the worker pool, answering with a 503 when every worker is busy and the queue is full
+	 * (a virtual thread executor never rejects)
 	 *
-	 * @param listener
+	 * @param clientConnection
 	 * @throws IOException
 	 */
-	public void handleServerShutdown(ServerSocket listener) throws IOException {
-		System.out.println("[App.handleServerShutdown()] Shutting down...");
-		listener.close();
-		System.out.println("[App.handleServerShutdown()] Goodbye! 👍");
+	private void dispatchRequest(Socket clientConnection) throws IOException {
+		try {
+			workerPool.execute(() -> {
+				try {
+					handleRequest(clientConnection);
+				} catch (IOException ioException) {
+					accessLog.logError(clientConnection.getInetAddress(), "connection failed", ioException);
+				}
+			});
+		} catch (RejectedExecutionException rejectedException) {
+			admissionControl.release();
+			rejectRequest(clientConnection, CannedResponses.SERVICE_UNAVAILABLE, 503);
+		}
 	}
 
 	/**
+	 * Writes a canned refusal without reading the request, so a saturated server sheds load instead of queueing it
 	 *
 	 * @param clientConnection
+	 * @param response One of the <code>CannedResponses</code>
+	 * @param statusCode The status code of the canned response
 	 * @throws IOException
 	 */
-	public void handleRequest(Socket clientConnection) throws IOException {
-		System.out.println("[App.handleRequest()] Got request");
-
+	private void rejectRequest(Socket clientConnection, byte[] response, int statusCode) throws IOException {
 		try {
-			// parseRequestInformation(clientConnection);
-			// writeResponseInformation(clientConnection);
-			parseRequestInformation(new Scanner(clientConnection.getInputStream()));
-			writeResponseInformation(new PrintWriter(clientConnection.getOutputStream(), true));
+			writeCannedResponse(clientConnection.getOutputStream(), response, statusCode,
+					clientConnection.getInetAddress());
+			// NOTE: closing with unread bytes resets the connection, which can destroy the response before the client
+			// reads it, so skip the part of the request that has already arrived
+			InputStream requestStream = clientConnection.getInputStream();
+			int available;
+
+			while ((available = requestStream.available()) > 0) {
+				requestStream.skip(available);
+			}
+		} catch (IOException ioException) {
+			// NOTE: the client is already gone, which must not stop the accept loop
 		} finally {
 			clientConnection.close();
 		}
 	}
 
+	/**
+	 * Waits (up to the given time) for the threads serving connections to finish
+	 */
+	private void awaitWorkers(long timeoutMillis) {
+		long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+
+		try {
+			if (workerPool != null) {
+				workerPool.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS);
+			}
+			for (Thread acceptThread : acceptThreads) {
+				if (acceptThread != Thread.currentThread()) {
+					TimeUnit.NANOSECONDS.timedJoin(acceptThread, Math.max(0, deadlineNanos - System.nanoTime()));
+				}
+			}
+		} catch (InterruptedException interruptedException) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static void closeQuietly(Socket connection) {
+		try {
+			connection.close();
+		} catch (IOException ioException) {
+			// NOTE: shutting down regardless
+		}
+	}
+
+	/**
+	 * @return Whether connections get a virtual thread each, which takes both asking for them and a JDK that has them
+	 */
+	private boolean isVirtualThreads() {
+		return config.isVirtualThreads() && VirtualThreads.isAvailable();
+	}
+
+	/**
+	 *
+	 * @return The pool to hand connections to, or <code>null</code> when requests are handled inline
+	 */
+	private ExecutorService createWorkerPool() {
+		if (config.isVirtualThreads() && !VirtualThreads.isAvailable()) {
+			System.out.printf("[SimpleServer.createWorkerPool()] Virtual threads need Java 21 or later, running on %s;"
+					+ " using %d platform workers%n", System.getProperty("java.version"), config.getWorkerCount());
+		}
+		if (isVirtualThreads()) {
+			// NOTE: no pool or queue to tune, a parked virtual thread is cheap enough to give every connection one
+			return VirtualThreads.newThreadPerTaskExecutor();
+		}
+		if (config.getWorkerCount() == 0) {
+			return null;
+		}
+
+		// NOTE: a zero capacity queue means a connection is only accepted when a worker is idle
+		BlockingQueue<Runnable> queue = config.getQueueCapacity() == 0
+				? new SynchronousQueue<Runnable>()
+				: new ArrayBlockingQueue<Runnable>(config.getQueueCapacity());
+		AtomicInteger threadCount = new AtomicInteger();
+		ThreadFactory threadFactory = runnable -> {
+			Thread worker = new Thread(runnable, "simple-server-worker-" + threadCount.incrementAndGet());
+			return worker;
+		};
+
+		return new ThreadPoolExecutor(
+				config.getWorkerCount(),
+				config.getWorkerCount(),
+				0L,
+				TimeUnit.MILLISECONDS,
+				queue,
+				threadFactory,
+				new ThreadPoolExecutor.AbortPolicy());
+	}
+
 	/**
 	 * Inspired by: https://jmarshall.com/easy/http/#responseline
 	 *
-	 * @param responseWriter
+	 * @param responseChannel The connection's (blocking) channel
+	 * @param responseHeadBuffer The connection's buffer for encoding response heads, reused for every response
+	 * @param response The handler's response
+	 * @param keepAlive Whether the connection stays open for another request after this response
+	 * @param includeBody Whether to send the body (<code>false</code> for a <code>HEAD</code> request)
+	 * @return The number of bytes written
 	 * @throws IOException
 	 */
-	private void writeResponseInformation(PrintWriter responseWriter) throws IOException {
-		String httpVersion = "HTTP/1.1";
-		int statusCode = 200;
-		String statusText = "OK";
-		String responseHeaderLine = String.format("%s %d %s", httpVersion, statusCode, statusText);
+	private long writeResponseInformation(WritableByteChannel responseChannel, ByteBuffer responseHeadBuffer,
+			HttpResponse response, boolean keepAlive, boolean includeBody) throws IOException {
+		ResponseBody responseBody = response.getBody();
 
-		// NOTE: start the response headers
-		responseWriter.println(responseHeaderLine);
-		// NOTE: end the response headers
-		responseWriter.println();
+		// NOTE: a body of unknown length on a persistent connection goes out in chunks
+		if (responseBody.getLength() < 0 && keepAlive && ResponseEncoder.hasContent(response.getStatusCode())) {
+			responseBody = ResponseBody.chunked(responseBody);
+		}
 
 		try {
-			String responseText = new Date().toString();
+			ByteBuffer responseHead = responseHeadBuffer;
 
-			responseWriter.println(responseText);
-		} finally {
-			if (responseWriter != null) {
-				System.out.println("[App.writeResponseInformation()] closing response writer...");
-				responseWriter.close();
+			responseHead.clear();
+			try {
+				ResponseEncoder.encodeHead(response, keepAlive, responseHead);
+				responseHead.flip();
+			} catch (BufferOverflowException overflowException) {
+				// NOTE: unusually large headers, encode them on their own
+				responseHead = ResponseEncoder.encodeHead(response, keepAlive);
 			}
+
+			// NOTE: the length of a streamed body is not known, only its head is counted
+			long responseLength = responseHead.remaining() + (includeBody ? Math.max(0, responseBody.getLength()) : 0);
+
+			if (!includeBody) {
+				while (responseHead.hasRemaining()) {
+					responseChannel.write(responseHead);
+				}
+				metrics.bytesSent(responseLength);
+				return responseLength;
+			}
+			// NOTE: head and (in-memory) body leave in one gathering write, the channel blocks so this only loops
+			// when a write or file transfer is cut short
+			while (!responseBody.writeTo(responseChannel, responseHead)) {
+				continue;
+			}
+			metrics.bytesSent(responseLength);
+			return responseLength;
+		} finally {
+			responseBody.close();
 		}
 	}
 
 	/**
+	 * Reads until the request buffer holds a complete request head, answering a malformed, oversized or stalled
+	 * head with the matching error. Waiting for the first byte of a request is bounded by the idle timeout; once it
+	 * has arrived each read is bounded by the read timeout and the whole head by the header timeout, so a client
+	 * trickling in a byte at a time cannot hold the connection.
 	 *
-	 * @param requestReader
-	 * @return
+	 * @param clientConnection
+	 * @param requestStream
+	 * @param requestBuffer The connection's read buffer (in write mode), may already hold pipelined bytes
+	 * @param requestParser The connection's parser
+	 * @param responseStream Where to write the error response for a bad request
+	 * @param remoteAddress The client, for the access log
+	 * @param isFirstRequest Whether this is the first request on the connection, whose header timeout starts when
+	 *        the connection is accepted rather than when its first byte arrives
+	 * @return The next request on the connection (with its deadline), or <code>null</code> when the connection
+	 *         should be closed
 	 * @throws IOException
 	 */
-	private String parseRequestInformation(Scanner requestReader) throws IOException {
-		StringBuilder requestBuilder = new StringBuilder("");
-		Dictionary<String, String> requestHeaders = new Hashtable<String, String>();
-		boolean shouldKeepReading = true;
-		int currentLine = 0;
-		String requestMethod = "";
-		String requestPath = "";
-		String requestVersion = "";
-		String result = "";
-
-		while (shouldKeepReading) {
-			String nextLine = requestReader.nextLine();
-			String[] lineParts = nextLine.split(" ");
-			shouldKeepReading = !nextLine.equals("");
-
-			if (currentLine == 0) {
-				if (lineParts.length > 0) {
-					requestMethod = lineParts[0].toUpperCase();
-				}
-				if (lineParts.length > 1) {
-					requestPath = lineParts[1];
-				}
-				if (lineParts.length > 2) {
-					requestVersion = lineParts[2];
+	private HttpRequest parseRequestInformation(Socket clientConnection, InputStream requestStream,
+			ByteBuffer requestBuffer, HttpRequestParser requestParser, OutputStream responseStream,
+			InetAddress remoteAddress, boolean isFirstRequest) throws IOException {
+		boolean isHeadStarted = isFirstRequest || requestBuffer.position() > 0;
+		long headStartNanos = System.nanoTime();
+		long headerTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(config.getHeaderTimeoutMillis());
+		HttpRequestParser.Result result = requestParser.parse(requestBuffer, requestBuffer.position());
+
+		while (result == HttpRequestParser.Result.INCOMPLETE) {
+			if (!requestBuffer.hasRemaining()) {
+				writeCannedResponse(responseStream, CannedResponses.HEADERS_TOO_LARGE, 431, remoteAddress);
+				return null;
+			}
+
+			boolean hasBytes = requestBuffer.position() > 0;
+			long timeoutMillis = hasBytes ? config.getReadTimeoutMillis() : config.getIdleTimeoutMillis();
+
+			if (isHeadStarted) {
+				long remainingNanos = headStartNanos + headerTimeoutNanos - System.nanoTime();
+
+				if (remainingNanos <= 0) {
+					writeCannedResponse(responseStream, CannedResponses.REQUEST_TIMEOUT, 408, remoteAddress);
+					return null;
 				}
-			} else {
-				// NOTE: ensure enough parts from line
-				if (lineParts.length > 1) {
-					// NOTE: ensure properly formatted
-					String headerName = lineParts[0].substring(0, lineParts[0].length() - 1);
-					String headerValue = lineParts[1];
-
-					requestHeaders.put(headerName, headerValue);
+				// NOTE: round up, a zero timeout would wait forever
+				timeoutMillis = Math.min(timeoutMillis, TimeUnit.NANOSECONDS.toMillis(remainingNanos) + 1);
+			}
+			clientConnection.setSoTimeout((int) timeoutMillis);
+
+			int bytesRead;
+
+			try {
+				bytesRead = requestStream.read(requestBuffer.array(),
+						requestBuffer.arrayOffset() + requestBuffer.position(), requestBuffer.remaining());
+			} catch (SocketTimeoutException timeoutException) {
+				if (!hasBytes) {
+					// NOTE: an idle connection is closed without a response
+					throw timeoutException;
 				}
+				writeCannedResponse(responseStream, CannedResponses.REQUEST_TIMEOUT, 408, remoteAddress);
+				return null;
+			}
+
+			if (bytesRead < 0) {
+				return null;
+			}
+			if (!isHeadStarted) {
+				isHeadStarted = true;
+				headStartNanos = System.nanoTime();
 			}
-			// System.out.printf("\t\t'%s'%n", nextLine);
-			requestBuilder.append(String.format("%s%n", nextLine));
-			currentLine++;
+			requestBuffer.position(requestBuffer.position() + bytesRead);
+			metrics.bytesReceived(bytesRead);
+			result = requestParser.parse(requestBuffer, requestBuffer.position());
 		}
 
-		result = requestBuilder.toString();
-		System.out.printf("[App.handleRequest()] %s\t%s %s %n", requestVersion, requestMethod, requestPath);
+		switch (result) {
+			case INVALID:
+				writeCannedResponse(responseStream, CannedResponses.BAD_REQUEST, 400, remoteAddress);
+				return null;
+			case VERSION_NOT_SUPPORTED:
+				writeCannedResponse(responseStream, CannedResponses.VERSION_NOT_SUPPORTED, 505, remoteAddress);
+				return null;
+			case URI_TOO_LONG:
+				writeCannedResponse(responseStream, CannedResponses.URI_TOO_LONG, 414, remoteAddress);
+				return null;
+			case HEADERS_TOO_LARGE:
+				writeCannedResponse(responseStream, CannedResponses.HEADERS_TOO_LARGE, 431, remoteAddress);
+				return null;
+			default:
+				break;
+		}
 
-		return result;
+		long deadlineNanos = config.getRequestTimeoutMillis() == 0
+				? HttpRequest.NO_DEADLINE
+				: headStartNanos + TimeUnit.MILLISECONDS.toNanos(config.getRequestTimeoutMillis());
+
+		return requestParser.toRequest(RequestBody.EMPTY, deadlineNanos);
+	}
+
+	/**
+	 * @param responseStream
+	 * @param response One of the <code>CannedResponses</code>
+	 * @param statusCode The status code of the canned response, for the metrics and access log
+	 * @param remoteAddress The client
+	 * @throws IOException
+	 */
+	private void writeCannedResponse(OutputStream responseStream, byte[] response, int statusCode,
+			InetAddress remoteAddress) throws IOException {
+		responseStream.write(response);
+		responseStream.flush();
+		metrics.recordRejected(statusCode);
+		accessLog.logRejected(remoteAddress, statusCode, response.length);
+		metrics.bytesSent(response.length);
 	}
 }
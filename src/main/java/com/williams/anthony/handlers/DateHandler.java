@@ -0,0 +1,50 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 Anthony Williams.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.williams.anthony.handlers;
+
+import java.util.Date;
+import com.williams.anthony.http.HttpDates;
+import com.williams.anthony.http.HttpRequest;
+import com.williams.anthony.http.HttpResponse;
+import com.williams.anthony.http.HttpStatus;
+import com.williams.anthony.http.RequestHandler;
+
+/**
+ * Answers with the current date and time, as the server always has
+ *
+ * Inspired by http://cs.lmu.edu/~ray/notes/javanetexamples/#date
+ *
+ * @author Anthony Williams
+ */
+public final class DateHandler implements RequestHandler {
+
+	@Override
+	public HttpResponse handle(HttpRequest request) {
+		long nowMillis = System.currentTimeMillis();
+
+		// NOTE: the text has second precision, so it stays correct until the next second starts
+		return HttpResponse.text(HttpStatus.OK, String.format("%s%n", new Date(nowMillis).toString()))
+				.withHeader("Expires", HttpDates.format((nowMillis / 1000 + 1) * 1000));
+	}
+}
@@ -0,0 +1,145 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 Anthony Williams.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.williams.anthony.handlers;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps small, frequently served files memory mapped, so serving them again costs neither a read nor a heap copy.
+ *
+ * Entries are checked against the file's size and modification time on every lookup and remapped when the file
+ * has changed. The cache only grows up to a byte budget; files that do not fit are simply not cached.
+ *
+ * @author Anthony Williams
+ */
+public final class FileCache {
+
+	private final long maxFileBytes;
+	private final long maxTotalBytes;
+	private final ConcurrentHashMap<Path, Entry> entries = new ConcurrentHashMap<Path, Entry>();
+	private final AtomicLong totalBytes = new AtomicLong();
+
+	/**
+	 * @param maxFileBytes The largest file (in bytes) worth caching
+	 * @param maxTotalBytes The most bytes kept mapped across every cached file
+	 */
+	public FileCache(long maxFileBytes, long maxTotalBytes) {
+		this.maxFileBytes = maxFileBytes;
+		this.maxTotalBytes = maxTotalBytes;
+	}
+
+	/**
+	 * @param file The file to look up
+	 * @param size The file's current size
+	 * @param lastModifiedMillis The file's current modification time
+	 * @return A read-only view of the whole file, or <code>null</code> when the file is too big or the cache is full
+	 * @throws IOException
+	 */
+	public ByteBuffer get(Path file, long size, long lastModifiedMillis) throws IOException {
+		if (size > maxFileBytes) {
+			return null;
+		}
+
+		Entry entry = entries.get(file);
+
+		if (entry != null && entry.size == size && entry.lastModifiedMillis == lastModifiedMillis) {
+			return entry.content.duplicate();
+		}
+		if (entry != null && entries.remove(file, entry)) {
+			totalBytes.addAndGet(-entry.size);
+		}
+		if (totalBytes.addAndGet(size) > maxTotalBytes) {
+			totalBytes.addAndGet(-size);
+			return null;
+		}
+
+		ByteBuffer content;
+
+		try {
+			content = map(file, size);
+		} catch (IOException | RuntimeException mapException) {
+			// NOTE: the file changed or went away since it was looked at, give back the bytes reserved for it
+			totalBytes.addAndGet(-size);
+			throw mapException;
+		}
+
+		Entry mapped = new Entry(content, size, lastModifiedMillis);
+		Entry existing = entries.putIfAbsent(file, mapped);
+
+		// NOTE: another thread mapped it first, give back the bytes this copy reserved
+		if (existing != null) {
+			totalBytes.addAndGet(-size);
+			return existing.content.duplicate();
+		}
+
+		return mapped.content.duplicate();
+	}
+
+	/**
+	 * Drops the cached copy of a file (e.g.: because it has been deleted)
+	 *
+	 * @param file The file to forget
+	 */
+	public void invalidate(Path file) {
+		Entry entry = entries.remove(file);
+
+		if (entry != null) {
+			totalBytes.addAndGet(-entry.size);
+		}
+	}
+
+	/**
+	 * @return The bytes kept mapped across every cached file
+	 */
+	public long getTotalBytes() {
+		return totalBytes.get();
+	}
+
+	private static ByteBuffer map(Path file, long size) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			MappedByteBuffer content = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+
+			return content.asReadOnlyBuffer();
+		}
+	}
+
+	private static final class Entry {
+		private final ByteBuffer content;
+		private final long size;
+		private final long lastModifiedMillis;
+
+		private Entry(ByteBuffer content, long size, long lastModifiedMillis) {
+			this.content = content;
+			this.size = size;
+			this.lastModifiedMillis = lastModifiedMillis;
+		}
+	}
+}
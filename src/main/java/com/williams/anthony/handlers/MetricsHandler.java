@@ -0,0 +1,58 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 Anthony Williams.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.williams.anthony.handlers;
+
+import java.nio.charset.StandardCharsets;
+import com.williams.anthony.http.HttpRequest;
+import com.williams.anthony.http.HttpResponse;
+import com.williams.anthony.http.HttpStatus;
+import com.williams.anthony.http.RequestHandler;
+import com.williams.anthony.server.ServerMetrics;
+
+/**
+ * Answers with the server's metrics in the Prometheus text format, for a Prometheus server to scrape
+ *
+ * @author Anthony Williams
+ */
+public final class MetricsHandler implements RequestHandler {
+
+	private static final String CONTENT_TYPE_PROMETHEUS = "text/plain; version=0.0.4; charset=utf-8";
+
+	private final ServerMetrics metrics;
+
+	/**
+	 * @param metrics The metrics of the server answering the scrape
+	 */
+	public MetricsHandler(ServerMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	@Override
+	public HttpResponse handle(HttpRequest request) {
+		byte[] text = metrics.toPrometheusText().getBytes(StandardCharsets.UTF_8);
+
+		return new HttpResponse(HttpStatus.OK, text).withHeader("Content-Type", CONTENT_TYPE_PROMETHEUS)
+				.withHeader("Cache-Control", "no-store");
+	}
+}
@@ -0,0 +1,378 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 Anthony Williams.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.williams.anthony.handlers;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import com.williams.anthony.http.HttpDates;
+import com.williams.anthony.http.HttpRequest;
+import com.williams.anthony.http.HttpResponse;
+import com.williams.anthony.http.HttpStatus;
+import com.williams.anthony.http.RequestHandler;
+
+/**
+ * Keeps handler responses in memory for a while, so a route that returns the same bytes for a window of time only
+ * runs its handler once per window.
+ *
+ * Wrap a route's handler with {@link #cache(RequestHandler, long, String...)} to give it a time to live. Responses are
+ * keyed by method, path and the chosen request headers, and the cache as a whole is held to a byte budget by evicting
+ * the least recently used entries. <code>Cache-Control</code> is honoured both ways: a client asking for
+ * <code>no-cache</code> gets a fresh response, and a handler answering <code>no-store</code>, <code>private</code>,
+ * <code>max-age</code> or <code>Expires</code> decides whether (and for how long) its response is kept. Concurrent
+ * misses on the same key are coalesced, so a thundering herd runs the handler once and every other request waits for
+ * its response; waiting blocks the calling thread, so a cache used from an event loop (where handlers must not block)
+ * is created with coalescing turned off and lets every concurrent miss run the handler.
+ *
+ * @author Anthony Williams
+ */
+public final class ResponseCache {
+
+	private static final int[] CACHEABLE_STATUS_CODES = new int[] { 200, 203, 301, 404, 410 };
+
+	private final long maxBytes;
+	private final boolean isCoalescing;
+	private final LongSupplier clockMillis;
+	// NOTE: access ordered, so the eldest entry is the least recently used
+	private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+	private final ConcurrentHashMap<String, CompletableFuture<Entry>> inFlight =
+			new ConcurrentHashMap<String, CompletableFuture<Entry>>();
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private long totalBytes;
+
+	/**
+	 * @param maxBytes The most body bytes kept across every cached response
+	 */
+	public ResponseCache(long maxBytes) {
+		this(maxBytes, true);
+	}
+
+	/**
+	 * @param maxBytes The most body bytes kept across every cached response
+	 * @param isCoalescing Whether a miss waits for a concurrent miss on the same key (pass <code>false</code> when
+	 *        handlers run on an event loop)
+	 */
+	public ResponseCache(long maxBytes, boolean isCoalescing) {
+		this(maxBytes, isCoalescing, System::currentTimeMillis);
+	}
+
+	/**
+	 * @param maxBytes The most body bytes kept across every cached response
+	 * @param clockMillis The current time, in milliseconds
+	 */
+	ResponseCache(long maxBytes, LongSupplier clockMillis) {
+		this(maxBytes, true, clockMillis);
+	}
+
+	/**
+	 * @param maxBytes The most body bytes kept across every cached response
+	 * @param isCoalescing Whether a miss waits for a concurrent miss on the same key
+	 * @param clockMillis The current time, in milliseconds
+	 */
+	ResponseCache(long maxBytes, boolean isCoalescing, LongSupplier clockMillis) {
+		this.maxBytes = maxBytes;
+		this.isCoalescing = isCoalescing;
+		this.clockMillis = clockMillis;
+	}
+
+	/**
+	 * @param handler The handler of a route
+	 * @param ttlMillis How long a response is served from the cache (unless the response's own <code>max-age</code>
+	 *        says otherwise)
+	 * @param keyHeaders The request headers the response depends on (e.g.: <code>Accept-Language</code>)
+	 * @return A handler answering from the cache, calling the given handler on a miss
+	 */
+	public RequestHandler cache(RequestHandler handler, long ttlMillis, String... keyHeaders) {
+		return request -> handle(handler, ttlMillis, keyHeaders, request);
+	}
+
+	/**
+	 * @return The number of requests answered from the cache (including those that waited for a coalesced miss)
+	 */
+	public long getHitCount() {
+		return hits.sum();
+	}
+
+	/**
+	 * @return The number of requests that ran the handler
+	 */
+	public long getMissCount() {
+		return misses.sum();
+	}
+
+	/**
+	 * @return The number of body bytes currently cached
+	 */
+	public synchronized long getTotalBytes() {
+		return totalBytes;
+	}
+
+	private HttpResponse handle(RequestHandler handler, long ttlMillis, String[] keyHeaders, HttpRequest request)
+			throws IOException {
+		String method = request.getMethod();
+		String cacheControl = request.getHeader("Cache-Control");
+
+		// NOTE: HEAD is answered from (and fills) the GET entry, the server drops the body
+		if ((!"GET".equals(method) && !"HEAD".equals(method)) || hasDirective(cacheControl, "no-store")) {
+			return handler.handle(request);
+		}
+
+		String key = keyOf(request, keyHeaders);
+		boolean isRevalidating = hasDirective(cacheControl, "no-cache") || maxAgeOf(cacheControl) == 0;
+		Entry entry = isRevalidating ? null : lookup(key);
+
+		if (entry != null) {
+			hits.increment();
+			return entry.toResponse(clockMillis.getAsLong());
+		}
+
+		// NOTE: without coalescing the miss never registers itself, so nothing ever waits on it
+		boolean isJoining = isCoalescing && !isRevalidating;
+		CompletableFuture<Entry> pending = new CompletableFuture<Entry>();
+		CompletableFuture<Entry> leader = isJoining ? inFlight.putIfAbsent(key, pending) : null;
+
+		if (leader != null) {
+			// NOTE: another request is already running the handler for this key, share its response (but give up
+			// at this request's deadline rather than queue behind a stuck handler)
+			try {
+				entry = leader.get(request.getRemainingNanos(), TimeUnit.NANOSECONDS);
+			} catch (TimeoutException | ExecutionException timeoutException) {
+				return HttpResponse.empty(HttpStatus.SERVICE_UNAVAILABLE);
+			} catch (InterruptedException interruptedException) {
+				Thread.currentThread().interrupt();
+				return HttpResponse.empty(HttpStatus.SERVICE_UNAVAILABLE);
+			}
+			if (entry != null) {
+				hits.increment();
+				return entry.toResponse(clockMillis.getAsLong());
+			}
+			// NOTE: its response was not cacheable (or the handler failed), so this request needs its own
+			return handler.handle(request);
+		}
+
+		Entry stored = null;
+
+		try {
+			misses.increment();
+			HttpResponse response = handler.handle(request);
+
+			stored = store(key, response, ttlMillis);
+			return response;
+		} finally {
+			if (isJoining) {
+				inFlight.remove(key, pending);
+			}
+			pending.complete(stored);
+		}
+	}
+
+	private synchronized Entry lookup(String key) {
+		Entry entry = entries.get(key);
+
+		if (entry != null && entry.expiresAtMillis <= clockMillis.getAsLong()) {
+			entries.remove(key);
+			totalBytes -= entry.body.length;
+			return null;
+		}
+
+		return entry;
+	}
+
+	/**
+	 * @return The cached entry, or <code>null</code> when the response may not (or cannot) be cached
+	 */
+	private Entry store(String key, HttpResponse response, long ttlMillis) {
+		Map<String, String> headers = response.getHeaders();
+		String cacheControl = headers.get("Cache-Control");
+		ByteBuffer content = response.getBody().asBuffer();
+
+		if (!isCacheable(response.getStatusCode()) || content == null || content.remaining() > maxBytes
+				|| headers.containsKey("Set-Cookie") || hasDirective(cacheControl, "no-store")
+				|| hasDirective(cacheControl, "private") || hasDirective(cacheControl, "no-cache")) {
+			return null;
+		}
+
+		long nowMillis = clockMillis.getAsLong();
+		long lifetimeMillis = lifetimeOf(cacheControl, headers.get("Expires"), nowMillis, ttlMillis);
+
+		if (lifetimeMillis <= 0) {
+			return null;
+		}
+
+		byte[] body = new byte[content.remaining()];
+
+		content.get(body);
+		Entry entry = new Entry(response.getStatusCode(), new LinkedHashMap<String, String>(headers), body,
+				nowMillis, nowMillis + lifetimeMillis);
+
+		synchronized (this) {
+			Entry previous = entries.put(key, entry);
+
+			totalBytes += body.length - (previous == null ? 0 : previous.body.length);
+			while (totalBytes > maxBytes) {
+				Map.Entry<String, Entry> eldest = entries.entrySet().iterator().next();
+
+				totalBytes -= eldest.getValue().body.length;
+				entries.remove(eldest.getKey());
+			}
+		}
+		return entry;
+	}
+
+	private static String keyOf(HttpRequest request, String[] keyHeaders) {
+		StringBuilder key = new StringBuilder("GET ").append(request.getPath());
+
+		for (String header : keyHeaders) {
+			String value = request.getHeader(header);
+
+			// NOTE: header values cannot contain a line feed, so it separates them unambiguously
+			key.append('\n').append(value == null ? "" : value);
+		}
+
+		return key.toString();
+	}
+
+	private static boolean isCacheable(int statusCode) {
+		for (int cacheable : CACHEABLE_STATUS_CODES) {
+			if (cacheable == statusCode) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * @param cacheControl A <code>Cache-Control</code> header, may be <code>null</code>
+	 * @param directive The directive to look for (lower case)
+	 * @return Whether the header contains the directive (with or without an argument)
+	 */
+	private static boolean hasDirective(String cacheControl, String directive) {
+		return argumentOf(cacheControl, directive) != null;
+	}
+
+	/**
+	 * The response's own freshness information, when it has any, takes precedence over the route's time to live
+	 * (RFC 7234 section 4.2.1)
+	 *
+	 * @return How long the response stays fresh, in milliseconds
+	 */
+	private static long lifetimeOf(String cacheControl, String expires, long nowMillis, long ttlMillis) {
+		long maxAgeSeconds = maxAgeOf(cacheControl);
+
+		if (maxAgeSeconds >= 0) {
+			return TimeUnit.SECONDS.toMillis(maxAgeSeconds);
+		}
+		if (expires != null) {
+			long expiresMillis = HttpDates.parse(expires);
+
+			// NOTE: an invalid date means the response is already stale
+			return expiresMillis < 0 ? 0 : expiresMillis - nowMillis;
+		}
+
+		return ttlMillis;
+	}
+
+	/**
+	 * <code>s-maxage</code> is meant for shared caches such as this one, so it wins over <code>max-age</code>
+	 *
+	 * @return The freshness lifetime in seconds, or -1 when the header does not give one
+	 */
+	private static long maxAgeOf(String cacheControl) {
+		String maxAge = argumentOf(cacheControl, "s-maxage");
+
+		if (maxAge == null) {
+			maxAge = argumentOf(cacheControl, "max-age");
+		}
+
+		try {
+			return maxAge == null ? -1 : Long.parseLong(maxAge);
+		} catch (NumberFormatException numberFormatException) {
+			// NOTE: an invalid max-age means the response is stale (RFC 7234 section 4.2.1)
+			return 0;
+		}
+	}
+
+	/**
+	 * @return The directive's argument (empty when it has none), or <code>null</code> when it is absent
+	 */
+	private static String argumentOf(String cacheControl, String directive) {
+		if (cacheControl == null) {
+			return null;
+		}
+
+		for (String part : cacheControl.split(",")) {
+			String trimmed = part.trim();
+			int equals = trimmed.indexOf('=');
+			String name = (equals < 0 ? trimmed : trimmed.substring(0, equals)).trim().toLowerCase(Locale.ROOT);
+
+			if (name.equals(directive)) {
+				return equals < 0 ? "" : trimmed.substring(equals + 1).trim().replace("\"", "");
+			}
+		}
+
+		return null;
+	}
+
+	private static final class Entry {
+		private final int statusCode;
+		private final Map<String, String> headers;
+		private final byte[] body;
+		private final long storedAtMillis;
+		private final long expiresAtMillis;
+
+		private Entry(int statusCode, Map<String, String> headers, byte[] body, long storedAtMillis,
+				long expiresAtMillis) {
+			this.statusCode = statusCode;
+			this.headers = headers;
+			this.body = body;
+			this.storedAtMillis = storedAtMillis;
+			this.expiresAtMillis = expiresAtMillis;
+		}
+
+		/**
+		 * @return A new response sharing the cached body (never modified), with an <code>Age</code> header
+		 */
+		private HttpResponse toResponse(long nowMillis) {
+			HttpResponse response = new HttpResponse(statusCode, body);
+			long ageSeconds = TimeUnit.MILLISECONDS.toSeconds(nowMillis - storedAtMillis);
+
+			for (Map.Entry<String, String> header : headers.entrySet()) {
+				response.withHeader(header.getKey(), header.getValue());
+			}
+
+			return response.withHeader("Age", Long.toString(ageSeconds));
+		}
+	}
+}
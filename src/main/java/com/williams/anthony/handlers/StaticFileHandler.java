@@ -0,0 +1,329 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 Anthony Williams.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.williams.anthony.handlers;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import com.williams.anthony.http.HttpDates;
+import com.williams.anthony.http.HttpRequest;
+import com.williams.anthony.http.HttpResponse;
+import com.williams.anthony.http.HttpStatus;
+import com.williams.anthony.http.RequestHandler;
+import com.williams.anthony.http.ResponseBody;
+import com.williams.anthony.http.Router;
+
+/**
+ * Serves files from a document root, for a route ending in a wildcard (e.g.: <code>GET /static/*</code>).
+ *
+ * Small files are served from a <code>FileCache</code> of memory mapped files, larger ones go out with
+ * <code>FileChannel.transferTo</code>. Every response carries an <code>ETag</code> and <code>Last-Modified</code>
+ * so clients can revalidate with <code>If-None-Match</code> / <code>If-Modified-Since</code> (304), and a single
+ * <code>Range</code> is honoured (206).
+ *
+ * @author Anthony Williams
+ */
+public final class StaticFileHandler implements RequestHandler {
+
+	private static final long DEFAULT_MAX_CACHED_FILE_BYTES = 64 * 1024;
+	private static final long DEFAULT_MAX_CACHED_BYTES = 64 * 1024 * 1024;
+	private static final String INDEX_FILE = "index.html";
+	private static final String DEFAULT_CONTENT_TYPE = "application/octet-stream";
+	private static final Map<String, String> CONTENT_TYPES = new HashMap<String, String>();
+	/** Returned by <code>selectRange</code> when the requested range lies beyond the end of the file */
+	private static final long[] UNSATISFIABLE = new long[0];
+
+	static {
+		CONTENT_TYPES.put("html", "text/html; charset=UTF-8");
+		CONTENT_TYPES.put("htm", "text/html; charset=UTF-8");
+		CONTENT_TYPES.put("css", "text/css; charset=UTF-8");
+		CONTENT_TYPES.put("js", "text/javascript; charset=UTF-8");
+		CONTENT_TYPES.put("json", "application/json");
+		CONTENT_TYPES.put("txt", "text/plain; charset=UTF-8");
+		CONTENT_TYPES.put("xml", "application/xml");
+		CONTENT_TYPES.put("svg", "image/svg+xml");
+		CONTENT_TYPES.put("png", "image/png");
+		CONTENT_TYPES.put("jpg", "image/jpeg");
+		CONTENT_TYPES.put("jpeg", "image/jpeg");
+		CONTENT_TYPES.put("gif", "image/gif");
+		CONTENT_TYPES.put("ico", "image/x-icon");
+		CONTENT_TYPES.put("webp", "image/webp");
+		CONTENT_TYPES.put("pdf", "application/pdf");
+		CONTENT_TYPES.put("wasm", "application/wasm");
+	}
+
+	private final Path documentRoot;
+	private final FileCache fileCache;
+
+	/**
+	 * @param documentRoot The directory to serve files from
+	 */
+	public StaticFileHandler(Path documentRoot) {
+		this(documentRoot, new FileCache(DEFAULT_MAX_CACHED_FILE_BYTES, DEFAULT_MAX_CACHED_BYTES));
+	}
+
+	/**
+	 * @param documentRoot The directory to serve files from
+	 * @param fileCache The cache to serve small files from
+	 */
+	public StaticFileHandler(Path documentRoot, FileCache fileCache) {
+		this.documentRoot = documentRoot.toAbsolutePath().normalize();
+		this.fileCache = fileCache;
+	}
+
+	@Override
+	public HttpResponse handle(HttpRequest request) throws IOException {
+		Path file = resolve(request.getPathParameter(Router.WILDCARD));
+
+		if (file != null && Files.isDirectory(file)) {
+			file = file.resolve(INDEX_FILE);
+		}
+
+		BasicFileAttributes attributes = file == null ? null : readAttributes(file);
+
+		if (attributes == null || !attributes.isRegularFile()) {
+			if (file != null) {
+				fileCache.invalidate(file);
+			}
+			return HttpResponse.text(HttpStatus.NOT_FOUND, String.format("Not Found%n"));
+		}
+
+		long size = attributes.size();
+		long lastModifiedMillis = attributes.lastModifiedTime().toMillis();
+		String entityTag = String.format("\"%x-%x\"", size, lastModifiedMillis);
+
+		if (isNotModified(request, entityTag, lastModifiedMillis)) {
+			return withValidators(HttpResponse.empty(HttpStatus.NOT_MODIFIED), entityTag, lastModifiedMillis);
+		}
+
+		long[] range = selectRange(request, entityTag, size);
+
+		if (range == UNSATISFIABLE) {
+			return HttpResponse.empty(HttpStatus.RANGE_NOT_SATISFIABLE)
+					.withHeader("Content-Range", String.format("bytes */%d", size));
+		}
+
+		long start = range == null ? 0 : range[0];
+		long length = range == null ? size : range[1] - range[0] + 1;
+		HttpResponse response = new HttpResponse(range == null ? HttpStatus.OK : HttpStatus.PARTIAL_CONTENT,
+				openBody(file, size, lastModifiedMillis, start, length));
+
+		response.withHeader("Content-Type", contentTypeOf(file));
+		response.withHeader("Accept-Ranges", "bytes");
+		if (range != null) {
+			response.withHeader("Content-Range", String.format("bytes %d-%d/%d", range[0], range[1], size));
+		}
+
+		return withValidators(response, entityTag, lastModifiedMillis);
+	}
+
+	/**
+	 * Only a single <code>bytes=</code> range is honoured; anything else (including multiple ranges) is answered
+	 * with the whole file, which RFC 7233 allows
+	 *
+	 * @return The first and last (inclusive) byte to send, <code>null</code> for the whole file or
+	 *         <code>UNSATISFIABLE</code>
+	 */
+	private static long[] selectRange(HttpRequest request, String entityTag, long size) {
+		String rangeHeader = request.getHeader("Range");
+
+		if (rangeHeader == null || !rangeHeader.startsWith("bytes=") || rangeHeader.indexOf(',') >= 0) {
+			return null;
+		}
+
+		// NOTE: If-Range only allows the partial response while the client's copy is still current
+		String ifRange = request.getHeader("If-Range");
+
+		if (ifRange != null && !ifRange.equals(entityTag)) {
+			return null;
+		}
+
+		String spec = rangeHeader.substring("bytes=".length()).trim();
+		int dash = spec.indexOf('-');
+
+		if (dash < 0) {
+			return null;
+		}
+
+		try {
+			if (dash == 0) {
+				// NOTE: "bytes=-500" is the last 500 bytes
+				long suffixLength = Long.parseLong(spec.substring(1));
+
+				if (suffixLength <= 0 || size == 0) {
+					return UNSATISFIABLE;
+				}
+				return new long[] { Math.max(0, size - suffixLength), size - 1 };
+			}
+
+			long first = Long.parseLong(spec.substring(0, dash));
+			long last = dash == spec.length() - 1 ? Long.MAX_VALUE : Long.parseLong(spec.substring(dash + 1));
+
+			// NOTE: a range that ends before it starts is malformed, so it is ignored rather than refused
+			if (first > last) {
+				return null;
+			}
+			if (first >= size) {
+				return UNSATISFIABLE;
+			}
+
+			return new long[] { first, Math.min(last, size - 1) };
+		} catch (NumberFormatException numberFormatEx) {
+			return null;
+		}
+	}
+
+	/**
+	 * <code>If-None-Match</code> takes precedence over <code>If-Modified-Since</code> (RFC 7232 section 6)
+	 */
+	private static boolean isNotModified(HttpRequest request, String entityTag, long lastModifiedMillis) {
+		String ifNoneMatch = request.getHeader("If-None-Match");
+
+		if (ifNoneMatch != null) {
+			if (ifNoneMatch.trim().equals("*")) {
+				return true;
+			}
+			for (String candidate : ifNoneMatch.split(",")) {
+				String tag = candidate.trim();
+
+				// NOTE: weak comparison, a W/ prefix added by a proxy still matches
+				if (tag.startsWith("W/")) {
+					tag = tag.substring(2);
+				}
+				if (tag.equals(entityTag)) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		long ifModifiedSince = HttpDates.parse(request.getHeader("If-Modified-Since"));
+
+		// NOTE: HTTP dates have second precision
+		return ifModifiedSince >= 0 && lastModifiedMillis / 1000 <= ifModifiedSince / 1000;
+	}
+
+	private ResponseBody openBody(Path file, long size, long lastModifiedMillis, long start, long length)
+			throws IOException {
+		ByteBuffer cached = fileCache.get(file, size, lastModifiedMillis);
+
+		if (cached != null) {
+			cached.position((int) start);
+			cached.limit((int) (start + length));
+			return ResponseBody.of(cached);
+		}
+
+		return ResponseBody.ofFile(FileChannel.open(file, StandardOpenOption.READ), start, length);
+	}
+
+	/**
+	 * @param relativePath The (still percent-encoded) part of the request path below the route
+	 * @return The file inside the document root, or <code>null</code> when the path escapes it or is malformed
+	 */
+	private Path resolve(String relativePath) {
+		String decodedPath = percentDecode(relativePath == null ? "" : relativePath);
+
+		if (decodedPath == null || decodedPath.indexOf('\0') >= 0) {
+			return null;
+		}
+
+		try {
+			Path file = documentRoot.resolve(decodedPath.startsWith("/") ? decodedPath.substring(1) : decodedPath)
+					.normalize();
+
+			// NOTE: "../" must not climb out of the document root
+			return file.startsWith(documentRoot) ? file : null;
+		} catch (InvalidPathException invalidPathException) {
+			return null;
+		}
+	}
+
+	/**
+	 * Unlike <code>URLDecoder</code>, leaves <code>+</code> alone (it only means a space in form data)
+	 *
+	 * @return The decoded path, or <code>null</code> when an escape is malformed
+	 */
+	private static String percentDecode(String path) {
+		if (path.indexOf('%') < 0) {
+			return path;
+		}
+
+		ByteArrayOutputStream decoded = new ByteArrayOutputStream(path.length());
+
+		for (int a = 0; a < path.length(); a++) {
+			char current = path.charAt(a);
+
+			if (current != '%') {
+				decoded.write(current);
+				continue;
+			}
+			if (a + 2 >= path.length()) {
+				return null;
+			}
+
+			int high = Character.digit(path.charAt(a + 1), 16);
+			int low = Character.digit(path.charAt(a + 2), 16);
+
+			if (high < 0 || low < 0) {
+				return null;
+			}
+			decoded.write((high << 4) + low);
+			a += 2;
+		}
+
+		return new String(decoded.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	private static BasicFileAttributes readAttributes(Path file) {
+		try {
+			return Files.readAttributes(file, BasicFileAttributes.class);
+		} catch (IOException ioException) {
+			return null;
+		}
+	}
+
+	private static String contentTypeOf(Path file) {
+		String name = file.getFileName().toString();
+		int dot = name.lastIndexOf('.');
+		String contentType = dot < 0 ? null : CONTENT_TYPES.get(name.substring(dot + 1).toLowerCase(Locale.ROOT));
+
+		return contentType == null ? DEFAULT_CONTENT_TYPE : contentType;
+	}
+
+	private static HttpResponse withValidators(HttpResponse response, String entityTag, long lastModifiedMillis) {
+		return response
+				.withHeader("ETag", entityTag)
+				.withHeader("Last-Modified", HttpDates.format(lastModifiedMillis));
+	}
+}
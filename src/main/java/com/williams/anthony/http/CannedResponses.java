@@ -0,0 +1,77 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 Anthony Williams.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.williams.anthony.http;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Pre-encoded responses written when a request is refused before (or while) it is parsed
+ *
+ * NOTE: the arrays are shared, never modify them
+ *
+ * @author Anthony Williams
+ */
+public final class CannedResponses {
+
+	/** Written ahead of reading a body the client held back with <code>Expect: 100-continue</code> */
+	public static final byte[] CONTINUE = "HTTP/1.1 100 Continue\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+
+	/** Written when the request head is not valid HTTP */
+	public static final byte[] BAD_REQUEST = encode(400, "Bad Request");
+
+	/** Written when the request head does not fit the read buffer, or has too many or too long header lines */
+	public static final byte[] HEADERS_TOO_LARGE = encode(431, "Request Header Fields Too Large");
+
+	/** Written when the request line is longer than the server accepts */
+	public static final byte[] URI_TOO_LONG = encode(414, "URI Too Long");
+
+	/** Written when the client takes too long to send the request head or body */
+	public static final byte[] REQUEST_TIMEOUT = encode(408, "Request Timeout");
+
+	/** Written when the request body is larger than the server accepts */
+	public static final byte[] PAYLOAD_TOO_LARGE = encode(413, "Payload Too Large");
+
+	/** Written when a client sends requests (or opens connections) faster than its rate limit */
+	public static final byte[] TOO_MANY_REQUESTS = encode(429, "Too Many Requests", "Retry-After: 1\r\n");
+
+	/** Written when the server is too busy to take the request */
+	public static final byte[] SERVICE_UNAVAILABLE = encode(503, "Service Unavailable");
+
+	/** Written when the request line names an HTTP version other than 1.0 or 1.1 */
+	public static final byte[] VERSION_NOT_SUPPORTED = encode(505, "HTTP Version Not Supported");
+
+	private CannedResponses() {
+	}
+
+	private static byte[] encode(int statusCode, String statusText) {
+		return encode(statusCode, statusText, "");
+	}
+
+	private static byte[] encode(int statusCode, String statusText, String extraHeaders) {
+		String response = String.format("HTTP/1.1 %d %s\r\n%sConnection: close\r\nContent-Length: 0\r\n\r\n",
+				statusCode, statusText, extraHeaders);
+
+		return response.getBytes(StandardCharsets.US_ASCII);
+	}
+}
@@ -0,0 +1,241 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 Anthony Williams.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.williams.anthony.http;
+
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+
+/**
+ * Incremental decoder for a body sent with <code>Transfer-Encoding: chunked</code> (RFC 7230 section 4.1).
+ *
+ * Feed it whatever bytes have arrived; it copies the chunk data out and keeps its place in the framing between
+ * calls, so a chunk size line or a chunk can be split anywhere. Chunk extensions and trailers are skipped, but still
+ * counted: a chunk size line longer than the line limit, or trailers longer than the header limits, fail the body.
+ *
+ * @author Anthony Williams
+ */
+public final class ChunkedDecoder {
+
+	// NOTE: in the order they occur in a body, every state from TRAILER_START on belongs to the trailers
+	private enum State {
+		SIZE, SIZE_EXTENSION, SIZE_LF, DATA, DATA_CR, DATA_LF, TRAILER_START, TRAILER, END_LF, DONE
+	}
+
+	private static final int DEFAULT_MAX_LINE_BYTES = 8 * 1024;
+
+	private final int maxLineBytes;
+	private final int maxTrailerBytes;
+	private State state;
+	private long chunkRemaining;
+	private int sizeDigits;
+	private int lineBytes;
+	private int trailerBytes;
+	private boolean isTrailerTooLarge;
+
+	/**
+	 * Constructs a decoder ready for the start of a body, with 8 KiB limits
+	 */
+	public ChunkedDecoder() {
+		this(DEFAULT_MAX_LINE_BYTES, DEFAULT_MAX_LINE_BYTES);
+	}
+
+	/**
+	 * @param maxLineBytes The longest chunk size line (extensions included) or trailer line accepted
+	 * @param maxTrailerBytes The most bytes of trailers accepted after the last chunk
+	 */
+	public ChunkedDecoder(int maxLineBytes, int maxTrailerBytes) {
+		this.maxLineBytes = maxLineBytes;
+		this.maxTrailerBytes = maxTrailerBytes;
+		reset();
+	}
+
+	/**
+	 * Forgets the previous body so the decoder can be fed the next one
+	 */
+	public void reset() {
+		startSizeLine();
+		trailerBytes = 0;
+		isTrailerTooLarge = false;
+	}
+
+	/**
+	 * Decodes from the source into the target until the source is used up, the target is full or the body ends.
+	 * Bytes following the end of the body are left in the source.
+	 *
+	 * @param source The encoded bytes (read mode)
+	 * @param target Receives the chunk data (write mode)
+	 * @return Whether the whole body (including its trailers) has been decoded
+	 * @throws ProtocolException When the bytes are not a valid chunked body, or its framing is longer than the limits
+	 *         (see {@link #isTrailerTooLarge()})
+	 */
+	public boolean decode(ByteBuffer source, ByteBuffer target) throws ProtocolException {
+		while (state != State.DONE && source.hasRemaining()) {
+			if (state == State.DATA) {
+				if (!target.hasRemaining()) {
+					return false;
+				}
+				copyData(source, target);
+				continue;
+			}
+
+			byte next = source.get();
+
+			countFramingByte();
+			switch (state) {
+				case SIZE:
+					readSizeByte(next);
+					break;
+				case SIZE_EXTENSION:
+					if (next == '\r') {
+						state = State.SIZE_LF;
+					} else if (next == '\n') {
+						endSizeLine();
+					}
+					break;
+				case SIZE_LF:
+					expect(next, '\n');
+					endSizeLine();
+					break;
+				case DATA_CR:
+					if (next == '\r') {
+						state = State.DATA_LF;
+					} else {
+						expect(next, '\n');
+						startSizeLine();
+					}
+					break;
+				case DATA_LF:
+					expect(next, '\n');
+					startSizeLine();
+					break;
+				case TRAILER_START:
+					if (next == '\r') {
+						state = State.END_LF;
+					} else if (next == '\n') {
+						state = State.DONE;
+					} else {
+						state = State.TRAILER;
+					}
+					break;
+				case TRAILER:
+					if (next == '\n') {
+						state = State.TRAILER_START;
+						lineBytes = 0;
+					}
+					break;
+				case END_LF:
+					expect(next, '\n');
+					state = State.DONE;
+					break;
+				default:
+					throw new IllegalStateException(state.name());
+			}
+		}
+
+		return state == State.DONE;
+	}
+
+	/**
+	 * @return Whether the whole body has been decoded
+	 */
+	public boolean isDone() {
+		return state == State.DONE;
+	}
+
+	/**
+	 * @return Whether the body failed because of its trailers' size (answered like an oversized head, with a 431)
+	 */
+	public boolean isTrailerTooLarge() {
+		return isTrailerTooLarge;
+	}
+
+	/**
+	 * Holds the skipped parts of the framing to the limits, the chunk data itself is bounded by the caller
+	 */
+	private void countFramingByte() throws ProtocolException {
+		lineBytes++;
+		if (state.compareTo(State.TRAILER_START) >= 0) {
+			if (++trailerBytes > maxTrailerBytes || lineBytes > maxLineBytes) {
+				isTrailerTooLarge = true;
+				throw new ProtocolException("Chunked body trailers too large");
+			}
+		} else if (lineBytes > maxLineBytes) {
+			throw new ProtocolException("Chunk size line too long");
+		}
+	}
+
+	private void readSizeByte(byte next) throws ProtocolException {
+		int digit = Character.digit(next, 16);
+
+		if (digit >= 0) {
+			// NOTE: 15 hex digits is already far more than any body we would accept
+			if (++sizeDigits > 15) {
+				throw new ProtocolException("Chunk size too large");
+			}
+			chunkRemaining = chunkRemaining * 16 + digit;
+		} else if (sizeDigits == 0) {
+			throw new ProtocolException("Missing chunk size");
+		} else if (next == ';' || next == ' ' || next == '\t') {
+			state = State.SIZE_EXTENSION;
+		} else if (next == '\r') {
+			state = State.SIZE_LF;
+		} else if (next == '\n') {
+			endSizeLine();
+		} else {
+			throw new ProtocolException("Invalid chunk size");
+		}
+	}
+
+	private void startSizeLine() {
+		state = State.SIZE;
+		chunkRemaining = 0;
+		sizeDigits = 0;
+		lineBytes = 0;
+	}
+
+	private void endSizeLine() {
+		// NOTE: the last chunk has size 0 and is followed by optional trailers and a blank line
+		state = chunkRemaining == 0 ? State.TRAILER_START : State.DATA;
+		lineBytes = 0;
+	}
+
+	private void copyData(ByteBuffer source, ByteBuffer target) {
+		int length = (int) Math.min(chunkRemaining, Math.min(source.remaining(), target.remaining()));
+		int sourceLimit = source.limit();
+
+		source.limit(source.position() + length);
+		target.put(source);
+		source.limit(sourceLimit);
+		chunkRemaining -= length;
+		if (chunkRemaining == 0) {
+			state = State.DATA_CR;
+		}
+	}
+
+	private static void expect(byte actual, char expected) throws ProtocolException {
+		if (actual != expected) {
+			throw new ProtocolException("Malformed chunked body");
+		}
+	}
+}
@@ -0,0 +1,71 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 Anthony Williams.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.williams.anthony.http;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the encoded <code>Date</code> response header up to date, so responses never format a date themselves.
+ *
+ * A single daemon thread re-encodes the header at the start of every second; the value only has a one second
+ * resolution anyway (RFC 7231 section 7.1.1.2).
+ *
+ * @author Anthony Williams
+ */
+public final class DateTicker {
+
+	private static volatile byte[] dateHeader = encode(System.currentTimeMillis());
+
+	static {
+		ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "http-date-ticker");
+
+			thread.setDaemon(true);
+			return thread;
+		});
+		// NOTE: line the ticks up with the wall clock seconds so the header is never a second behind
+		long initialDelay = 1000 - System.currentTimeMillis() % 1000;
+
+		ticker.scheduleAtFixedRate(() -> dateHeader = encode(System.currentTimeMillis()), initialDelay, 1000,
+				TimeUnit.MILLISECONDS);
+	}
+
+	private DateTicker() {
+	}
+
+	/**
+	 * @return The whole header line (e.g.: <code>Date: Sun, 06 Nov 1994 08:49:37 GMT\r\n</code>), shared, never
+	 *         modify it
+	 */
+	public static byte[] getDateHeader() {
+		return dateHeader;
+	}
+
+	private static byte[] encode(long epochMillis) {
+		return ("Date: " + HttpDates.format(epochMillis) + "\r\n").getBytes(StandardCharsets.US_ASCII);
+	}
+}
@@ -0,0 +1,149 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 Anthony Williams.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.williams.anthony.http;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Open addressing (linear probing) hash index from header name to header number, filled by the parser as it goes so
+ * a lookup costs a probe or two instead of a comparison against every header.
+ *
+ * Names hash ASCII case insensitively. Headers sharing a name sit along the same probe sequence in the order they
+ * were sent, so a lookup finds the first one. Slots hold the header number plus one, 0 marks an empty slot.
+ *
+ * @author Anthony Williams
+ */
+final class HeaderIndex {
+
+	private static final int INITIAL_SLOTS = 32;
+
+	private int[] slots = new int[INITIAL_SLOTS];
+	private int[] hashes = new int[INITIAL_SLOTS / 2];
+	private int count = 0;
+
+	/**
+	 * Empties the index for the next request
+	 */
+	void clear() {
+		if (count > 0) {
+			Arrays.fill(slots, 0);
+			count = 0;
+		}
+	}
+
+	/**
+	 * @param header The number of the header (headers are added in order, starting at 0)
+	 * @param hash The hash of its name, see {@link #hash(ByteBuffer, int, int)}
+	 */
+	void add(int header, int hash) {
+		// NOTE: keep the table at most half full so probe sequences stay short
+		if ((count + 1) * 2 > slots.length) {
+			grow();
+		}
+		if (header >= hashes.length) {
+			hashes = Arrays.copyOf(hashes, Math.max(hashes.length * 2, header + 1));
+		}
+		hashes[header] = hash;
+		insert(header, hash);
+		count++;
+	}
+
+	/**
+	 * @param buffer The buffer holding the header names
+	 * @param headerOffsets The buffer offsets of every header (see <code>HttpRequest.OFFSETS_PER_HEADER</code>)
+	 * @param name The header name (case insensitive)
+	 * @return The index into <code>headerOffsets</code> of the first header with that name, or -1
+	 */
+	int find(ByteBuffer buffer, int[] headerOffsets, String name) {
+		int hash = hash(name);
+		int mask = slots.length - 1;
+
+		for (int slot = hash & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+			int header = slots[slot] - 1;
+			int offset = header * HttpRequest.OFFSETS_PER_HEADER;
+
+			if (hashes[header] == hash
+					&& HttpRequest.equalsIgnoreCase(buffer, headerOffsets[offset], headerOffsets[offset + 1], name)) {
+				return offset;
+			}
+		}
+
+		return -1;
+	}
+
+	/**
+	 * @return The ASCII case insensitive hash of the bytes between <code>start</code> and <code>end</code>
+	 */
+	static int hash(ByteBuffer buffer, int start, int end) {
+		int hash = 0;
+
+		for (int a = start; a < end; a++) {
+			hash = 31 * hash + toLowerCase(buffer.get(a) & 0xff);
+		}
+
+		return spread(hash);
+	}
+
+	/**
+	 * @return The ASCII case insensitive hash of the name, equal to that of the same name in a buffer
+	 */
+	static int hash(String name) {
+		int hash = 0;
+
+		for (int a = 0; a < name.length(); a++) {
+			hash = 31 * hash + toLowerCase(name.charAt(a));
+		}
+
+		return spread(hash);
+	}
+
+	private void grow() {
+		slots = new int[slots.length * 2];
+		for (int header = 0; header < count; header++) {
+			insert(header, hashes[header]);
+		}
+	}
+
+	private void insert(int header, int hash) {
+		int mask = slots.length - 1;
+		int slot = hash & mask;
+
+		while (slots[slot] != 0) {
+			slot = (slot + 1) & mask;
+		}
+		slots[slot] = header + 1;
+	}
+
+	/**
+	 * Mixes the high bits into the low ones, which pick the slot
+	 */
+	private static int spread(int hash) {
+		return hash ^ (hash >>> 16);
+	}
+
+	private static int toLowerCase(int value) {
+		return value >= 'A' && value <= 'Z' ? value + ('a' - 'A') : value;
+	}
+}
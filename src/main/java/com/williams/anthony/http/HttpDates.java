@@ -0,0 +1,71 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 Anthony Williams.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.williams.anthony.http;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Locale;
+
+/**
+ * Formats and parses the RFC 1123 dates used by <code>Date</code>, <code>Last-Modified</code> and
+ * <code>If-Modified-Since</code>
+ *
+ * @author Anthony Williams
+ */
+public final class HttpDates {
+
+	// NOTE: RFC_1123_DATE_TIME drops the leading zero of the day, HTTP wants the fixed-length form (IMF-fixdate)
+	private static final DateTimeFormatter IMF_FIXDATE = DateTimeFormatter
+			.ofPattern("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US).withZone(ZoneOffset.UTC);
+
+	private HttpDates() {
+	}
+
+	/**
+	 * @param epochMillis A point in time
+	 * @return The time as an HTTP date (e.g.: <code>Sun, 06 Nov 1994 08:49:37 GMT</code>)
+	 */
+	public static String format(long epochMillis) {
+		return IMF_FIXDATE.format(Instant.ofEpochMilli(epochMillis));
+	}
+
+	/**
+	 * @param value An HTTP date sent by the client
+	 * @return The date in milliseconds since the epoch, or -1 when it cannot be parsed
+	 */
+	public static long parse(String value) {
+		if (value == null) {
+			return -1;
+		}
+
+		try {
+			return ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+		} catch (DateTimeParseException parseException) {
+			return -1;
+		}
+	}
+}
@@ -0,0 +1,334 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 Anthony Williams.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.williams.anthony.http;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Model used to represent the request line and headers of a single HTTP request.
+ *
+ * Header names and values are not copied out of the connection's read buffer; a header is looked up through the
+ * parser's index and only decoded into a <code>String</code> when it is asked for (once, later calls reuse it), so
+ * the request is only valid while the request is being handled.
+ *
+ * @author Anthony Williams
+ */
+public final class HttpRequest {
+
+	/** Name start, name end, value start and value end of each header */
+	static final int OFFSETS_PER_HEADER = 4;
+
+	/** The deadline of a request that may take as long as it needs */
+	public static final long NO_DEADLINE = Long.MAX_VALUE;
+
+	private static final String HTTP_1_0 = "HTTP/1.0";
+
+	private final ByteBuffer buffer;
+	private final String method;
+	private final String path;
+	private final String version;
+	private final int[] headerOffsets;
+	private final HeaderIndex headerIndex;
+	private final int headerCount;
+	private final long contentLength;
+	private final boolean isChunked;
+	private final RequestBody body;
+	private final long deadlineNanos;
+	private String routePattern;
+	private String[] parameterNames;
+	private String[] parameterValues;
+	private String[] headerValues;
+	private RuntimeException failure;
+
+	/**
+	 * @param buffer The buffer the request was parsed from
+	 * @param method The request method (upper case)
+	 * @param path The request target, as sent by the client
+	 * @param version The protocol version (e.g.: HTTP/1.1)
+	 * @param headerOffsets The buffer offsets of every header (see <code>OFFSETS_PER_HEADER</code>)
+	 * @param headerIndex The index of the headers by name
+	 * @param headerCount The number of headers
+	 * @param contentLength The value of the <code>Content-Length</code> header, or -1
+	 * @param isChunked Whether the body is sent with <code>Transfer-Encoding: chunked</code>
+	 * @param body The body of the request
+	 * @param deadlineNanos The <code>System.nanoTime()</code> by which the request should be answered, or
+	 *        <code>NO_DEADLINE</code>
+	 */
+	HttpRequest(ByteBuffer buffer, String method, String path, String version, int[] headerOffsets,
+			HeaderIndex headerIndex, int headerCount, long contentLength, boolean isChunked, RequestBody body,
+			long deadlineNanos) {
+		this.buffer = buffer;
+		this.method = method;
+		this.path = path;
+		this.version = version;
+		this.headerOffsets = headerOffsets;
+		this.headerIndex = headerIndex;
+		this.headerCount = headerCount;
+		this.contentLength = contentLength;
+		this.isChunked = isChunked;
+		this.body = body;
+		this.deadlineNanos = deadlineNanos;
+	}
+
+	/**
+	 * @return The request method (upper case)
+	 */
+	public String getMethod() {
+		return method;
+	}
+
+	/**
+	 * @return The request target, as sent by the client
+	 */
+	public String getPath() {
+		return path;
+	}
+
+	/**
+	 * @return The protocol version (e.g.: HTTP/1.1)
+	 */
+	public String getVersion() {
+		return version;
+	}
+
+	/**
+	 * @return The value of the <code>Content-Length</code> header, or -1 when the client did not send one
+	 */
+	public long getContentLength() {
+		return contentLength;
+	}
+
+	/**
+	 * @return Whether the body is sent with <code>Transfer-Encoding: chunked</code>
+	 */
+	public boolean isChunked() {
+		return isChunked;
+	}
+
+	/**
+	 * @return Whether the client sent a body
+	 */
+	public boolean hasBody() {
+		return isChunked || contentLength > 0;
+	}
+
+	/**
+	 * @return The body of the request (empty when the client did not send one), readable while the request is being
+	 *         handled
+	 */
+	public RequestBody getBody() {
+		return body;
+	}
+
+	/**
+	 * @return The <code>System.nanoTime()</code> by which the request should be answered, or
+	 *         <code>NO_DEADLINE</code>
+	 */
+	public long getDeadlineNanos() {
+		return deadlineNanos;
+	}
+
+	/**
+	 * A handler that waits on something (another request, a lock, a slow backend) should wait no longer than this;
+	 * past the deadline the server gives up on the request anyway.
+	 *
+	 * @return The nanoseconds left until the deadline (0 once it has passed), or <code>Long.MAX_VALUE</code> when
+	 *         there is none
+	 */
+	public long getRemainingNanos() {
+		if (deadlineNanos == NO_DEADLINE) {
+			return Long.MAX_VALUE;
+		}
+
+		return Math.max(0, deadlineNanos - System.nanoTime());
+	}
+
+	/**
+	 * @return Whether the client waits for <code>100 Continue</code> before sending the body
+	 */
+	public boolean expectsContinue() {
+		return hasBody() && isHeaderValue("Expect", "100-continue");
+	}
+
+	/**
+	 * @return The pattern of the route the request was dispatched to (e.g.: <code>/users/{id}</code>), or
+	 *         <code>null</code> before routing
+	 */
+	public String getRoutePattern() {
+		return routePattern;
+	}
+
+	/**
+	 * @param name The parameter name from the route pattern (<code>*</code> for the wildcard)
+	 * @return The matching part of the request path, or <code>null</code> when the route has no such parameter
+	 */
+	public String getPathParameter(String name) {
+		if (parameterNames == null) {
+			return null;
+		}
+
+		for (int a = 0; a < parameterNames.length; a++) {
+			if (parameterNames[a].equals(name)) {
+				return parameterValues[a];
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Called by the <code>Router</code> once it has picked the route
+	 *
+	 * @param routePattern The pattern of the matched route
+	 * @param parameterNames The parameter names of the route, in path order
+	 * @param parameterValues The matching path segments (at least as many as there are names)
+	 */
+	void bindRoute(String routePattern, String[] parameterNames, String[] parameterValues) {
+		this.routePattern = routePattern;
+		this.parameterNames = parameterNames;
+		this.parameterValues = parameterValues;
+	}
+
+	/**
+	 * Called by the <code>Router</code> when the handler threw, so the server can log the cause off the hot path
+	 *
+	 * @param failure The exception thrown by the handler
+	 */
+	void fail(RuntimeException failure) {
+		this.failure = failure;
+	}
+
+	/**
+	 * @return The exception thrown by the handler (answered with a 500), or <code>null</code> when it returned
+	 */
+	public RuntimeException getFailure() {
+		return failure;
+	}
+
+	/**
+	 * @param name The header name (case insensitive)
+	 * @return The header value, or <code>null</code> when the client did not send it
+	 */
+	public String getHeader(String name) {
+		int offset = findHeader(name);
+
+		if (offset < 0) {
+			return null;
+		}
+		if (headerValues == null) {
+			headerValues = new String[headerCount];
+		}
+
+		int header = offset / OFFSETS_PER_HEADER;
+
+		if (headerValues[header] == null) {
+			headerValues[header] = decode(buffer, headerOffsets[offset + 2], headerOffsets[offset + 3]);
+		}
+
+		return headerValues[header];
+	}
+
+	/**
+	 * Compares a header value without decoding it
+	 *
+	 * @param name The header name (case insensitive)
+	 * @param value The expected value (case insensitive)
+	 * @return Whether the client sent the header with the given value
+	 */
+	public boolean isHeaderValue(String name, String value) {
+		int offset = findHeader(name);
+
+		return offset >= 0 && equalsIgnoreCase(buffer, headerOffsets[offset + 2], headerOffsets[offset + 3], value);
+	}
+
+	/**
+	 * HTTP/1.1 connections persist unless the client asks to close them, HTTP/1.0 ones only persist when the client
+	 * asks for it
+	 *
+	 * @return Whether the client is willing to send another request on the same connection
+	 */
+	public boolean isKeepAlive() {
+		if (HTTP_1_0.equals(version)) {
+			return isHeaderValue("Connection", "keep-alive");
+		}
+
+		return !isHeaderValue("Connection", "close");
+	}
+
+	/**
+	 * @param name The header name (case insensitive)
+	 * @return The index into <code>headerOffsets</code> of the first header with that name, or -1
+	 */
+	private int findHeader(String name) {
+		return headerIndex.find(buffer, headerOffsets, name);
+	}
+
+	/**
+	 * ASCII case insensitive comparison of a run of bytes against a string
+	 *
+	 * @param buffer The buffer holding the bytes
+	 * @param start Index of the first byte
+	 * @param end Index just past the last byte
+	 * @param expected The string to compare against
+	 * @return Whether the bytes spell the expected string
+	 */
+	static boolean equalsIgnoreCase(ByteBuffer buffer, int start, int end, String expected) {
+		if (end - start != expected.length()) {
+			return false;
+		}
+
+		for (int a = 0; a < expected.length(); a++) {
+			if (toLowerCase(buffer.get(start + a)) != toLowerCase(expected.charAt(a))) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * @param buffer The buffer holding the bytes
+	 * @param start Index of the first byte
+	 * @param end Index just past the last byte
+	 * @return The bytes decoded as ISO-8859-1 (the charset of HTTP/1.1 header fields)
+	 */
+	static String decode(ByteBuffer buffer, int start, int end) {
+		if (buffer.hasArray()) {
+			return new String(buffer.array(), buffer.arrayOffset() + start, end - start, StandardCharsets.ISO_8859_1);
+		}
+
+		char[] chars = new char[end - start];
+
+		for (int a = 0; a < chars.length; a++) {
+			chars[a] = (char) (buffer.get(start + a) & 0xff);
+		}
+
+		return new String(chars);
+	}
+
+	private static int toLowerCase(int value) {
+		return value >= 'A' && value <= 'Z' ? value + ('a' - 'A') : value;
+	}
+}
@@ -0,0 +1,409 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 Anthony Williams.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.williams.anthony.http;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Incremental, byte oriented parser for the head (request line and headers) of an HTTP/1.x request.
+ *
+ * The parser works directly on the connection's read buffer and only records where each header name and value
+ * starts and ends (indexed by name as it goes), so nothing is decoded into a <code>String</code> until a handler asks
+ * for it. Feed it the bytes read so far with {@link #parse(ByteBuffer, int)}; calling it again after more bytes
+ * arrive picks up where the previous call stopped instead of rescanning. One parser is reused for every request on a
+ * connection, call {@link #reset()} between requests.
+ *
+ * @author Anthony Williams
+ */
+public final class HttpRequestParser {
+
+	/**
+	 * Outcome of feeding bytes to the parser
+	 */
+	public enum Result {
+		/** The blank line ending the headers has not arrived yet */
+		INCOMPLETE,
+		/** The whole head has been parsed, see {@link HttpRequestParser#toRequest()} */
+		COMPLETE,
+		/** The bytes are not an HTTP request */
+		INVALID,
+		/** The request line is well formed but names an HTTP version other than 1.0 or 1.1 */
+		VERSION_NOT_SUPPORTED,
+		/** The request line is longer than the parser accepts */
+		URI_TOO_LONG,
+		/** A header line, the number of headers or the whole head is larger than the parser accepts */
+		HEADERS_TOO_LARGE
+	}
+
+	/** The default limit on the length of a single line (request line or header) */
+	public static final int DEFAULT_MAX_LINE_BYTES = 8 * 1024;
+	/** The default limit on the number of headers */
+	public static final int DEFAULT_MAX_HEADER_COUNT = 100;
+
+	private static final int INITIAL_HEADER_CAPACITY = 16;
+	private static final String[] KNOWN_METHODS = new String[] {
+		"GET", "HEAD", "POST", "PUT", "DELETE", "OPTIONS", "PATCH", "TRACE", "CONNECT"
+	};
+	private static final String[] KNOWN_VERSIONS = new String[] { "HTTP/1.1", "HTTP/1.0" };
+
+	private final int maxLineBytes;
+	private final int maxHeaderCount;
+	private final int maxHeadBytes;
+	private ByteBuffer buffer;
+	private int scanPosition;
+	private int lineStart;
+	private boolean isRequestLineParsed;
+	private String method;
+	private String path;
+	private String version;
+	private int[] headerOffsets = new int[INITIAL_HEADER_CAPACITY * HttpRequest.OFFSETS_PER_HEADER];
+	private final HeaderIndex headerIndex = new HeaderIndex();
+	private int headerCount;
+	private int headLength;
+	private long contentLength;
+	private boolean isChunked;
+
+	/**
+	 * Constructs a parser ready for the first request on a connection, with the default line and header limits and
+	 * no limit on the head beyond the size of the buffer
+	 */
+	public HttpRequestParser() {
+		this(DEFAULT_MAX_LINE_BYTES, DEFAULT_MAX_HEADER_COUNT, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Constructs a parser ready for the first request on a connection. The limits keep a client from holding on to
+	 * memory (or a worker) by sending an endless head.
+	 *
+	 * @param maxLineBytes The longest request line or header line accepted, not counting the line terminator
+	 * @param maxHeaderCount The most headers accepted
+	 * @param maxHeadBytes The largest head accepted, including the blank line that ends it
+	 */
+	public HttpRequestParser(int maxLineBytes, int maxHeaderCount, int maxHeadBytes) {
+		this.maxLineBytes = maxLineBytes;
+		this.maxHeaderCount = maxHeaderCount;
+		this.maxHeadBytes = maxHeadBytes;
+		reset();
+	}
+
+	/**
+	 * Forgets the previous request so the parser can be fed the next one (starting at index 0 of the buffer)
+	 */
+	public void reset() {
+		buffer = null;
+		scanPosition = 0;
+		lineStart = 0;
+		isRequestLineParsed = false;
+		method = null;
+		path = null;
+		version = null;
+		headerIndex.clear();
+		headerCount = 0;
+		headLength = 0;
+		contentLength = -1;
+		isChunked = false;
+	}
+
+	/**
+	 * Parses the bytes between index 0 and <code>end</code> of the buffer. The buffer's position and limit are left
+	 * untouched, and the request must start at index 0.
+	 *
+	 * @param buffer The buffer holding the bytes read so far (the same buffer for every call until a reset)
+	 * @param end The index just past the last byte read so far
+	 * @return Whether the head is complete, still incomplete, invalid or over one of the limits
+	 */
+	public Result parse(ByteBuffer buffer, int end) {
+		this.buffer = buffer;
+
+		while (scanPosition < end) {
+			if (scanPosition >= maxHeadBytes) {
+				return Result.HEADERS_TOO_LARGE;
+			}
+			if (buffer.get(scanPosition) != '\n') {
+				scanPosition++;
+				continue;
+			}
+
+			// NOTE: accept a bare LF as well as CRLF as the line terminator
+			int lineEnd = scanPosition > lineStart && buffer.get(scanPosition - 1) == '\r'
+					? scanPosition - 1
+					: scanPosition;
+			scanPosition++;
+
+			if (lineEnd - lineStart > maxLineBytes) {
+				return isRequestLineParsed ? Result.HEADERS_TOO_LARGE : Result.URI_TOO_LONG;
+			}
+			if (!isRequestLineParsed) {
+				// NOTE: empty lines ahead of the request line are ignored (RFC 7230 section 3.5)
+				if (lineEnd > lineStart) {
+					if (!parseRequestLine(lineStart, lineEnd)) {
+						return Result.INVALID;
+					}
+					if (version == null) {
+						return Result.VERSION_NOT_SUPPORTED;
+					}
+					isRequestLineParsed = true;
+				}
+			} else if (lineEnd == lineStart) {
+				headLength = scanPosition;
+				return parseFraming() ? Result.COMPLETE : Result.INVALID;
+			} else if (headerCount == maxHeaderCount) {
+				return Result.HEADERS_TOO_LARGE;
+			} else if (!parseHeaderLine(lineStart, lineEnd)) {
+				return Result.INVALID;
+			}
+			lineStart = scanPosition;
+		}
+		// NOTE: refuse an overlong line as soon as it is seen, rather than once it ends (allowing for a trailing CR)
+		if (scanPosition - lineStart > maxLineBytes + 1) {
+			return isRequestLineParsed ? Result.HEADERS_TOO_LARGE : Result.URI_TOO_LONG;
+		}
+
+		return Result.INCOMPLETE;
+	}
+
+	/**
+	 * Only valid after {@link #parse(ByteBuffer, int)} returned {@link Result#COMPLETE}. The request reads its
+	 * headers straight from the buffer, so it must not be used once the buffer has been compacted or the parser
+	 * reset.
+	 *
+	 * @return The parsed request
+	 */
+	public HttpRequest toRequest() {
+		return toRequest(RequestBody.EMPTY);
+	}
+
+	/**
+	 * Same as {@link #toRequest()}, for a request whose body is read by the handler
+	 *
+	 * @param body The body of the request
+	 * @return The parsed request
+	 */
+	public HttpRequest toRequest(RequestBody body) {
+		return toRequest(body, HttpRequest.NO_DEADLINE);
+	}
+
+	/**
+	 * Same as {@link #toRequest(RequestBody)}, for a request that has to be answered by a deadline
+	 *
+	 * @param body The body of the request
+	 * @param deadlineNanos The <code>System.nanoTime()</code> by which the request should be answered, or
+	 *        <code>HttpRequest.NO_DEADLINE</code>
+	 * @return The parsed request
+	 */
+	public HttpRequest toRequest(RequestBody body, long deadlineNanos) {
+		return new HttpRequest(buffer, method, path, version, headerOffsets, headerIndex, headerCount, contentLength,
+				isChunked, body, deadlineNanos);
+	}
+
+	/**
+	 * @return The number of bytes (from index 0) taken by the request line and headers, including the blank line
+	 */
+	public int getHeadLength() {
+		return headLength;
+	}
+
+	/**
+	 * @return The value of the <code>Content-Length</code> header, or -1 when the client did not send one
+	 */
+	public long getContentLength() {
+		return contentLength;
+	}
+
+	/**
+	 * @return Whether the body is sent with <code>Transfer-Encoding: chunked</code>
+	 */
+	public boolean isChunked() {
+		return isChunked;
+	}
+
+	/**
+	 * @return Whether a body follows the head
+	 */
+	public boolean hasBody() {
+		return isChunked || contentLength > 0;
+	}
+
+	/**
+	 * Works out how the body is framed (RFC 7230 section 3.3.3). Requests that could be framed more than one way are
+	 * rejected rather than guessed at, since a proxy in front of us may have guessed differently.
+	 *
+	 * @return Whether the framing headers are usable
+	 */
+	private boolean parseFraming() {
+		for (int a = 0; a < headerCount; a++) {
+			int offset = a * HttpRequest.OFFSETS_PER_HEADER;
+			int nameStart = headerOffsets[offset];
+			int nameEnd = headerOffsets[offset + 1];
+			int valueStart = headerOffsets[offset + 2];
+			int valueEnd = headerOffsets[offset + 3];
+
+			if (HttpRequest.equalsIgnoreCase(buffer, nameStart, nameEnd, "Content-Length")) {
+				long value = parseLength(valueStart, valueEnd);
+
+				if (value < 0 || (contentLength >= 0 && contentLength != value)) {
+					return false;
+				}
+				contentLength = value;
+			} else if (HttpRequest.equalsIgnoreCase(buffer, nameStart, nameEnd, "Transfer-Encoding")) {
+				// NOTE: chunked is the only transfer coding we can decode
+				if (isChunked || !HttpRequest.equalsIgnoreCase(buffer, valueStart, valueEnd, "chunked")) {
+					return false;
+				}
+				isChunked = true;
+			}
+		}
+
+		return !(isChunked && contentLength >= 0);
+	}
+
+	/**
+	 * @return The decimal value of the bytes, or -1 when they are not all digits (or too many of them)
+	 */
+	private long parseLength(int start, int end) {
+		if (start == end || end - start > 18) {
+			return -1;
+		}
+
+		long value = 0;
+
+		for (int a = start; a < end; a++) {
+			int digit = buffer.get(a) - '0';
+
+			if (digit < 0 || digit > 9) {
+				return -1;
+			}
+			value = value * 10 + digit;
+		}
+
+		return value;
+	}
+
+	/**
+	 * @param start Index of the first byte of the line
+	 * @param end Index just past the last byte of the line (excluding the line terminator)
+	 * @return Whether the line is exactly a method, a target and an <code>HTTP/x.y</code> version separated by single
+	 *         spaces (the version is left <code>null</code> when it is well formed but not 1.0 or 1.1)
+	 */
+	private boolean parseRequestLine(int start, int end) {
+		int methodEnd = indexOf(' ', start, end);
+		int pathEnd = methodEnd < 0 ? -1 : indexOf(' ', methodEnd + 1, end);
+
+		if (methodEnd <= start || pathEnd <= methodEnd + 1 || pathEnd + 1 >= end || !isHttpVersion(pathEnd + 1, end)) {
+			return false;
+		}
+
+		method = decodeKnown(KNOWN_METHODS, start, methodEnd);
+		path = HttpRequest.decode(buffer, methodEnd + 1, pathEnd);
+		version = null;
+		for (String candidate : KNOWN_VERSIONS) {
+			if (HttpRequest.equalsIgnoreCase(buffer, pathEnd + 1, end, candidate)) {
+				version = candidate;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * @return Whether the bytes are <code>HTTP/</code> followed by a digit, a dot and a digit (RFC 7230 section 2.6);
+	 *         a stray space in the request line leaves something else here
+	 */
+	private boolean isHttpVersion(int start, int end) {
+		return end - start == 8 && HttpRequest.equalsIgnoreCase(buffer, start, start + 5, "HTTP/")
+				&& isDigit(buffer.get(start + 5)) && buffer.get(start + 6) == '.' && isDigit(buffer.get(start + 7));
+	}
+
+	private static boolean isDigit(byte value) {
+		return value >= '0' && value <= '9';
+	}
+
+	/**
+	 * @param start Index of the first byte of the line
+	 * @param end Index just past the last byte of the line (excluding the line terminator)
+	 * @return Whether the line is a well formed <code>name: value</code> pair
+	 */
+	private boolean parseHeaderLine(int start, int end) {
+		int colon = indexOf(':', start, end);
+
+		// NOTE: whitespace between the name and the colon is not allowed (RFC 7230 section 3.2.4)
+		if (colon <= start || isWhitespace(buffer.get(colon - 1))) {
+			return false;
+		}
+
+		int valueStart = colon + 1;
+		int valueEnd = end;
+
+		while (valueStart < valueEnd && isWhitespace(buffer.get(valueStart))) {
+			valueStart++;
+		}
+		while (valueEnd > valueStart && isWhitespace(buffer.get(valueEnd - 1))) {
+			valueEnd--;
+		}
+
+		int offset = headerCount * HttpRequest.OFFSETS_PER_HEADER;
+
+		if (offset + HttpRequest.OFFSETS_PER_HEADER > headerOffsets.length) {
+			headerOffsets = Arrays.copyOf(headerOffsets, headerOffsets.length * 2);
+		}
+		headerOffsets[offset] = start;
+		headerOffsets[offset + 1] = colon;
+		headerOffsets[offset + 2] = valueStart;
+		headerOffsets[offset + 3] = valueEnd;
+		headerIndex.add(headerCount, HeaderIndex.hash(buffer, start, colon));
+		headerCount++;
+
+		return true;
+	}
+
+	/**
+	 * Methods and versions come from a tiny set, so the common ones are matched against constants rather than
+	 * decoded
+	 */
+	private String decodeKnown(String[] candidates, int start, int end) {
+		for (String candidate : candidates) {
+			if (HttpRequest.equalsIgnoreCase(buffer, start, end, candidate)) {
+				return candidate;
+			}
+		}
+
+		return HttpRequest.decode(buffer, start, end).toUpperCase(Locale.ROOT);
+	}
+
+	private int indexOf(char target, int start, int end) {
+		for (int a = start; a < end; a++) {
+			if (buffer.get(a) == target) {
+				return a;
+			}
+		}
+
+		return -1;
+	}
+
+	private static boolean isWhitespace(byte value) {
+		return value == ' ' || value == '\t';
+	}
+}
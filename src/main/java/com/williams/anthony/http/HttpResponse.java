@@ -0,0 +1,133 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 Anthony Williams.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.williams.anthony.http;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Model used to represent the response a handler produced for a request
+ *
+ * @author Anthony Williams
+ */
+public final class HttpResponse {
+
+	private static final byte[] EMPTY_BODY = new byte[0];
+	private static final String CONTENT_TYPE_TEXT = "text/plain; charset=UTF-8";
+
+	private final int statusCode;
+	private final ResponseBody body;
+	private final Map<String, String> headers = new LinkedHashMap<String, String>();
+	private final Map<String, String> readOnlyHeaders = Collections.unmodifiableMap(headers);
+
+	/**
+	 * @param statusCode The HTTP status code
+	 * @param body The response body (may be empty)
+	 */
+	public HttpResponse(int statusCode, byte[] body) {
+		this(statusCode, ResponseBody.of(body == null ? EMPTY_BODY : body));
+	}
+
+	/**
+	 * @param statusCode The HTTP status code
+	 * @param body The response body (see <code>ResponseBody</code> for files and mapped buffers)
+	 */
+	public HttpResponse(int statusCode, ResponseBody body) {
+		this.statusCode = statusCode;
+		this.body = body;
+	}
+
+	/**
+	 * @param statusCode The HTTP status code
+	 * @param text The response body, sent as UTF-8 plain text
+	 * @return A new response
+	 */
+	public static HttpResponse text(int statusCode, String text) {
+		return new HttpResponse(statusCode, text.getBytes(StandardCharsets.UTF_8))
+				.withHeader("Content-Type", CONTENT_TYPE_TEXT);
+	}
+
+	/**
+	 * @param statusCode The HTTP status code
+	 * @return A new response without a body
+	 */
+	public static HttpResponse empty(int statusCode) {
+		return new HttpResponse(statusCode, EMPTY_BODY);
+	}
+
+	/**
+	 * Adds (or replaces) a header. <code>Content-Length</code> and <code>Connection</code> are set by the server.
+	 *
+	 * @param name The header name (a token: no spaces, colons or control characters)
+	 * @param value The header value (ISO-8859-1, no CR or LF)
+	 * @return This response
+	 * @throws IllegalArgumentException When the name or value cannot be written as given, e.g.: a value echoing
+	 *             request data with a line break in it, which would let the client split the response
+	 */
+	public HttpResponse withHeader(String name, String value) {
+		if (name.isEmpty()) {
+			throw new IllegalArgumentException("Header name must not be empty");
+		}
+		for (int i = 0; i < name.length(); i++) {
+			char c = name.charAt(i);
+
+			if (c <= ' ' || c == ':' || c >= 0x7F) {
+				throw new IllegalArgumentException("Invalid character in header name: " + name);
+			}
+		}
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+
+			if (c == '\r' || c == '\n' || c == 0 || c > 0xFF) {
+				throw new IllegalArgumentException("Invalid character in value of header " + name);
+			}
+		}
+		headers.put(name, value);
+		return this;
+	}
+
+	/**
+	 * @return The HTTP status code
+	 */
+	public int getStatusCode() {
+		return statusCode;
+	}
+
+	/**
+	 * @return The response body (never <code>null</code>)
+	 */
+	public ResponseBody getBody() {
+		return body;
+	}
+
+	/**
+	 * @return The headers set by the handler, in the order they were added (read-only, use
+	 *         {@link #withHeader(String, String)})
+	 */
+	public Map<String, String> getHeaders() {
+		return readOnlyHeaders;
+	}
+}
@@ -0,0 +1,102 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 Anthony Williams.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.williams.anthony.http;
+
+/**
+ * Status codes used by the server, and their reason phrases
+ *
+ * @author Anthony Williams
+ */
+public final class HttpStatus {
+
+	public static final int OK = 200;
+	public static final int PARTIAL_CONTENT = 206;
+	public static final int NOT_MODIFIED = 304;
+	public static final int NOT_FOUND = 404;
+	public static final int METHOD_NOT_ALLOWED = 405;
+	public static final int REQUEST_TIMEOUT = 408;
+	public static final int RANGE_NOT_SATISFIABLE = 416;
+	public static final int INTERNAL_SERVER_ERROR = 500;
+	public static final int SERVICE_UNAVAILABLE = 503;
+
+	private HttpStatus() {
+	}
+
+	/**
+	 * @param statusCode An HTTP status code
+	 * @return The standard reason phrase for the code, or <code>Unknown</code>
+	 */
+	public static String reasonPhrase(int statusCode) {
+		switch (statusCode) {
+			case 200:
+				return "OK";
+			case 201:
+				return "Created";
+			case 204:
+				return "No Content";
+			case 206:
+				return "Partial Content";
+			case 301:
+				return "Moved Permanently";
+			case 302:
+				return "Found";
+			case 304:
+				return "Not Modified";
+			case 400:
+				return "Bad Request";
+			case 403:
+				return "Forbidden";
+			case 404:
+				return "Not Found";
+			case 405:
+				return "Method Not Allowed";
+			case 408:
+				return "Request Timeout";
+			case 411:
+				return "Length Required";
+			case 413:
+				return "Payload Too Large";
+			case 414:
+				return "URI Too Long";
+			case 416:
+				return "Range Not Satisfiable";
+			case 429:
+				return "Too Many Requests";
+			case 431:
+				return "Request Header Fields Too Large";
+			case 500:
+				return "Internal Server Error";
+			case 501:
+				return "Not Implemented";
+			case 503:
+				return "Service Unavailable";
+			case 504:
+				return "Gateway Timeout";
+			case 505:
+				return "HTTP Version Not Supported";
+			default:
+				return "Unknown";
+		}
+	}
+}
@@ -0,0 +1,132 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 Anthony Williams.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.williams.anthony.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * The body of a request, read incrementally by the handler either as an <code>InputStream</code> or, without the
+ * extra copy, as a <code>ReadableByteChannel</code> into a <code>ByteBuffer</code>.
+ *
+ * The body is only readable while the request is being handled. Whatever the handler leaves unread is discarded by
+ * the server before the next request on the connection; closing the body does not close the connection.
+ *
+ * @author Anthony Williams
+ */
+public abstract class RequestBody extends InputStream implements ReadableByteChannel {
+
+	/** The body of a request that has none */
+	public static final RequestBody EMPTY = of(ByteBuffer.allocate(0));
+
+	/**
+	 * @param buffer The whole body, from its position to its limit (the buffer itself is left untouched)
+	 * @return A body reading the remaining bytes of the buffer
+	 */
+	public static RequestBody of(ByteBuffer buffer) {
+		return new BufferBody(buffer.duplicate());
+	}
+
+	/**
+	 * @return The number of bytes in the body as announced by <code>Content-Length</code>, or -1 when it is not
+	 *         known up front (<code>Transfer-Encoding: chunked</code>)
+	 */
+	public abstract long getContentLength();
+
+	/**
+	 * Reads the next part of the body, blocking until at least one byte is available
+	 *
+	 * @param target Receives the bytes (write mode)
+	 * @return The number of bytes read, or -1 at the end of the body
+	 * @throws IOException When the connection fails or the body is malformed (a <code>ProtocolException</code>)
+	 */
+	@Override
+	public abstract int read(ByteBuffer target) throws IOException;
+
+	@Override
+	public int read(byte[] bytes, int offset, int length) throws IOException {
+		if (length == 0) {
+			return 0;
+		}
+
+		return read(ByteBuffer.wrap(bytes, offset, length));
+	}
+
+	@Override
+	public int read() throws IOException {
+		byte[] single = new byte[1];
+
+		return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+	}
+
+	@Override
+	public boolean isOpen() {
+		return true;
+	}
+
+	@Override
+	public void close() {
+	}
+
+	/**
+	 * A body already held in memory
+	 */
+	private static final class BufferBody extends RequestBody {
+		private final ByteBuffer buffer;
+		private final long contentLength;
+
+		private BufferBody(ByteBuffer buffer) {
+			this.buffer = buffer;
+			this.contentLength = buffer.remaining();
+		}
+
+		@Override
+		public long getContentLength() {
+			return contentLength;
+		}
+
+		@Override
+		public int read(ByteBuffer target) {
+			if (!buffer.hasRemaining()) {
+				return -1;
+			}
+
+			int length = Math.min(buffer.remaining(), target.remaining());
+			int limit = buffer.limit();
+
+			buffer.limit(buffer.position() + length);
+			target.put(buffer);
+			buffer.limit(limit);
+
+			return length;
+		}
+
+		@Override
+		public int available() {
+			return buffer.remaining();
+		}
+	}
+}
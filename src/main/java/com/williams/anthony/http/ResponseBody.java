@@ -0,0 +1,359 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 Anthony Williams.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.williams.anthony.http;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The body of a response, written straight to the connection's channel.
+ *
+ * A body keeps track of how much of it has been written, so a non-blocking server can call
+ * {@link #writeTo(WritableByteChannel)} again whenever the socket is writable. A body is sent at most once and is
+ * always closed by the server afterwards (even when it is not sent, e.g. for <code>HEAD</code>).
+ *
+ * @author Anthony Williams
+ */
+public abstract class ResponseBody implements Closeable {
+
+	/**
+	 * @param bytes The body content (not copied, do not modify it afterwards)
+	 * @return A body sending the given bytes
+	 */
+	public static ResponseBody of(byte[] bytes) {
+		return new BufferBody(ByteBuffer.wrap(bytes));
+	}
+
+	/**
+	 * @param buffer The body content, from its position to its limit (the buffer itself is left untouched)
+	 * @return A body sending the remaining bytes of the buffer
+	 */
+	public static ResponseBody of(ByteBuffer buffer) {
+		return new BufferBody(buffer.duplicate());
+	}
+
+	/**
+	 * Sends part of a file with <code>FileChannel.transferTo</code>, which lets the kernel copy straight from the
+	 * page cache to the socket (sendfile) without passing through the heap
+	 *
+	 * @param file An open channel, closed once the body has been sent
+	 * @param position The offset of the first byte to send
+	 * @param length The number of bytes to send
+	 * @return A body sending the file region
+	 */
+	public static ResponseBody ofFile(FileChannel file, long position, long length) {
+		return new FileRegionBody(file, position, length);
+	}
+
+	/**
+	 * Sends whatever the stream produces, for content whose length is not known up front. The server frames it with
+	 * <code>Transfer-Encoding: chunked</code> on a persistent connection and closes the connection after it
+	 * otherwise (HTTP/1.0).
+	 *
+	 * NOTE: reading the stream blocks the thread sending the response, so keep slow producers off the selector
+	 * engine
+	 *
+	 * @param stream The content, closed once the body has been sent
+	 * @return A body of unknown length sending the stream
+	 */
+	public static ResponseBody ofStream(InputStream stream) {
+		return new StreamBody(stream);
+	}
+
+	/**
+	 * Called by the server for a body of unknown length sent on a persistent connection
+	 *
+	 * @param body The body to frame
+	 * @return A body sending the given one as a sequence of chunks, ended by the last (empty) chunk
+	 */
+	public static ResponseBody chunked(ResponseBody body) {
+		return new ChunkedBody(body);
+	}
+
+	/**
+	 * @return The number of bytes in the body, or -1 when it is not known up front
+	 */
+	public abstract long getLength();
+
+	/**
+	 * Writes as much of the rest of the body as the channel accepts
+	 *
+	 * @param channel The connection's channel (blocking or not)
+	 * @return Whether the whole body has now been written
+	 * @throws IOException
+	 */
+	public abstract boolean writeTo(WritableByteChannel channel) throws IOException;
+
+	/**
+	 * Writes as much of the rest of the response head, then of the body, as the channel accepts. An in-memory body
+	 * goes out together with the head in one gathering write, so a small response costs a single system call.
+	 *
+	 * @param channel The connection's channel (blocking or not)
+	 * @param head The unsent part of the response head, consumed by the write
+	 * @return Whether the whole head and body have now been written
+	 * @throws IOException
+	 */
+	public boolean writeTo(WritableByteChannel channel, ByteBuffer head) throws IOException {
+		if (head.hasRemaining()) {
+			channel.write(head);
+			if (head.hasRemaining()) {
+				return false;
+			}
+		}
+
+		return writeTo(channel);
+	}
+
+	/**
+	 * @return The unsent part of the body as a read-only buffer when it is held in memory, otherwise
+	 *         <code>null</code>
+	 */
+	public ByteBuffer asBuffer() {
+		return null;
+	}
+
+	@Override
+	public void close() throws IOException {
+	}
+
+	/**
+	 * A body held in memory (a heap array or a mapped file)
+	 */
+	private static final class BufferBody extends ResponseBody {
+		private final ByteBuffer buffer;
+		private final ByteBuffer[] gather = new ByteBuffer[2];
+
+		private BufferBody(ByteBuffer buffer) {
+			this.buffer = buffer;
+			this.gather[1] = buffer;
+		}
+
+		@Override
+		public long getLength() {
+			return buffer.remaining();
+		}
+
+		@Override
+		public boolean writeTo(WritableByteChannel channel) throws IOException {
+			channel.write(buffer);
+			return !buffer.hasRemaining();
+		}
+
+		@Override
+		public boolean writeTo(WritableByteChannel channel, ByteBuffer head) throws IOException {
+			if (!head.hasRemaining() || !(channel instanceof GatheringByteChannel)) {
+				return super.writeTo(channel, head);
+			}
+
+			gather[0] = head;
+			try {
+				((GatheringByteChannel) channel).write(gather);
+			} finally {
+				gather[0] = null;
+			}
+			return !head.hasRemaining() && !buffer.hasRemaining();
+		}
+
+		@Override
+		public ByteBuffer asBuffer() {
+			return buffer.asReadOnlyBuffer();
+		}
+	}
+
+	/**
+	 * A region of a file, sent without copying it into the heap
+	 */
+	private static final class FileRegionBody extends ResponseBody {
+		private final FileChannel file;
+		private final long length;
+		private long position;
+		private long remaining;
+
+		private FileRegionBody(FileChannel file, long position, long length) {
+			this.file = file;
+			this.position = position;
+			this.length = length;
+			this.remaining = length;
+		}
+
+		@Override
+		public long getLength() {
+			return length;
+		}
+
+		@Override
+		public boolean writeTo(WritableByteChannel channel) throws IOException {
+			while (remaining > 0) {
+				long written = file.transferTo(position, remaining, channel);
+
+				if (written <= 0) {
+					// NOTE: the (non-blocking) socket is full, try again once it is writable
+					return false;
+				}
+				position += written;
+				remaining -= written;
+			}
+
+			return true;
+		}
+
+		@Override
+		public void close() throws IOException {
+			file.close();
+		}
+	}
+
+	/**
+	 * Content read from a stream as it is sent
+	 */
+	private static final class StreamBody extends ResponseBody {
+		private static final int BUFFER_SIZE = 8 * 1024;
+
+		private final InputStream stream;
+		private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).flip();
+
+		private StreamBody(InputStream stream) {
+			this.stream = stream;
+		}
+
+		@Override
+		public long getLength() {
+			return -1;
+		}
+
+		@Override
+		public boolean writeTo(WritableByteChannel channel) throws IOException {
+			while (true) {
+				if (buffer.hasRemaining()) {
+					channel.write(buffer);
+					if (buffer.hasRemaining()) {
+						return false;
+					}
+				}
+
+				int read = stream.read(buffer.array(), 0, buffer.capacity());
+
+				if (read < 0) {
+					return true;
+				}
+				buffer.limit(read).position(0);
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			stream.close();
+		}
+	}
+
+	/**
+	 * Frames another body as <code>Transfer-Encoding: chunked</code> (RFC 7230 section 4.1): the inner body is written
+	 * into a buffer, and each time the buffer fills up (or the inner body ends) its content goes out as one chunk
+	 */
+	private static final class ChunkedBody extends ResponseBody implements WritableByteChannel {
+		private static final int CHUNK_SIZE = 8 * 1024;
+		// NOTE: the size line of a full chunk ("2000\r\n") and the CRLF after its data
+		private static final int FRAMING_SIZE = 8;
+		private static final byte[] LAST_CHUNK = "0\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+
+		private final ResponseBody body;
+		private final ByteBuffer data = ByteBuffer.allocate(CHUNK_SIZE);
+		private final ByteBuffer pending = ByteBuffer.allocate(CHUNK_SIZE + FRAMING_SIZE + LAST_CHUNK.length).flip();
+		private boolean isFinished;
+
+		private ChunkedBody(ResponseBody body) {
+			this.body = body;
+		}
+
+		@Override
+		public long getLength() {
+			return -1;
+		}
+
+		@Override
+		public boolean writeTo(WritableByteChannel channel) throws IOException {
+			while (true) {
+				if (pending.hasRemaining()) {
+					channel.write(pending);
+					if (pending.hasRemaining()) {
+						return false;
+					}
+				}
+				if (isFinished) {
+					return true;
+				}
+
+				// NOTE: the inner body writes into this (see write below) until the chunk is full or it ends
+				boolean isBodyDone = body.writeTo(this);
+
+				pending.clear();
+				if (data.position() > 0) {
+					putChunk();
+				}
+				if (isBodyDone) {
+					pending.put(LAST_CHUNK);
+					isFinished = true;
+				}
+				pending.flip();
+			}
+		}
+
+		@Override
+		public int write(ByteBuffer source) {
+			int length = Math.min(source.remaining(), data.remaining());
+			int limit = source.limit();
+
+			source.limit(source.position() + length);
+			data.put(source);
+			source.limit(limit);
+			return length;
+		}
+
+		@Override
+		public boolean isOpen() {
+			return true;
+		}
+
+		@Override
+		public void close() throws IOException {
+			body.close();
+		}
+
+		private void putChunk() {
+			for (char digit : Integer.toHexString(data.position()).toCharArray()) {
+				pending.put((byte) digit);
+			}
+			pending.put((byte) '\r').put((byte) '\n');
+			pending.put(data.flip());
+			pending.put((byte) '\r').put((byte) '\n');
+			data.clear();
+		}
+	}
+}
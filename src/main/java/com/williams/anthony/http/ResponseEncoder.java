@@ -0,0 +1,175 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 Anthony Williams.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.williams.anthony.http;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Turns an <code>HttpResponse</code> into the bytes sent on the wire.
+ *
+ * Everything that does not change between responses (status lines, the <code>Connection</code> header, header
+ * punctuation) is encoded once up front, and the <code>Date</code> header comes from {@link DateTicker}, so encoding
+ * a head is a handful of array copies straight into the connection's buffer.
+ *
+ * Inspired by: https://jmarshall.com/easy/http/#responseline
+ *
+ * @author Anthony Williams
+ */
+public final class ResponseEncoder {
+
+	private static final String HTTP_VERSION = "HTTP/1.1";
+
+	private static final int MIN_STATUS_CODE = 100;
+	private static final int MAX_STATUS_CODE = 599;
+
+	// NOTE: indexed by status code minus MIN_STATUS_CODE, e.g.: "HTTP/1.1 200 OK\r\n"
+	private static final byte[][] STATUS_LINES = new byte[MAX_STATUS_CODE - MIN_STATUS_CODE + 1][];
+
+	private static final byte[] HEADER_SEPARATOR = ascii(": ");
+	private static final byte[] CRLF = ascii("\r\n");
+	private static final byte[] CONTENT_LENGTH = ascii("Content-Length: ");
+	private static final byte[] TRANSFER_ENCODING_CHUNKED = ascii("Transfer-Encoding: chunked\r\n");
+	private static final byte[] CONNECTION_KEEP_ALIVE = ascii("Connection: keep-alive\r\n");
+	private static final byte[] CONNECTION_CLOSE = ascii("Connection: close\r\n");
+
+	// NOTE: room for the status line, Date, Content-Length and Connection headers on top of the handler's headers
+	private static final int FIXED_HEAD_LENGTH = 256;
+
+	static {
+		for (int statusCode = MIN_STATUS_CODE; statusCode <= MAX_STATUS_CODE; statusCode++) {
+			STATUS_LINES[statusCode - MIN_STATUS_CODE] = encodeStatusLine(statusCode);
+		}
+	}
+
+	private ResponseEncoder() {
+	}
+
+	/**
+	 * @param response The response to encode
+	 * @param keepAlive Whether the connection stays open for another request after this response
+	 * @return The status line and headers, including the blank line that ends them, ready to be written
+	 */
+	public static ByteBuffer encodeHead(HttpResponse response, boolean keepAlive) {
+		int capacity = FIXED_HEAD_LENGTH;
+
+		for (Map.Entry<String, String> header : response.getHeaders().entrySet()) {
+			capacity += header.getKey().length() + header.getValue().length() + 4;
+		}
+
+		ByteBuffer head = ByteBuffer.allocate(capacity);
+
+		encodeHead(response, keepAlive, head);
+		head.flip();
+		return head;
+	}
+
+	/**
+	 * @param response The response to encode
+	 * @param keepAlive Whether the connection stays open for another request after this response
+	 * @param target The buffer (in write mode) the status line and headers are put into
+	 * @throws BufferOverflowException When the head does not fit the buffer, use
+	 *         {@link #encodeHead(HttpResponse, boolean)} instead
+	 */
+	public static void encodeHead(HttpResponse response, boolean keepAlive, ByteBuffer target) {
+		target.put(statusLine(response.getStatusCode()));
+		target.put(DateTicker.getDateHeader());
+		for (Map.Entry<String, String> header : response.getHeaders().entrySet()) {
+			putLatin1(target, header.getKey());
+			target.put(HEADER_SEPARATOR);
+			putLatin1(target, header.getValue());
+			target.put(CRLF);
+		}
+		// NOTE: 204 and 304 never carry a body, so they must not advertise one
+		if (hasContent(response.getStatusCode())) {
+			long length = response.getBody().getLength();
+
+			if (length >= 0) {
+				target.put(CONTENT_LENGTH);
+				putDecimal(target, length);
+				target.put(CRLF);
+			} else if (keepAlive) {
+				target.put(TRANSFER_ENCODING_CHUNKED);
+			}
+			// NOTE: otherwise the end of a body of unknown length is marked by closing the connection
+		}
+		target.put(keepAlive ? CONNECTION_KEEP_ALIVE : CONNECTION_CLOSE);
+		// NOTE: end the response headers
+		target.put(CRLF);
+	}
+
+	/**
+	 * @param statusCode An HTTP status code
+	 * @return Whether responses with this status may carry a body
+	 */
+	public static boolean hasContent(int statusCode) {
+		return statusCode != 204 && statusCode != 304 && statusCode >= 200;
+	}
+
+	private static byte[] statusLine(int statusCode) {
+		if (statusCode < MIN_STATUS_CODE || statusCode > MAX_STATUS_CODE) {
+			return encodeStatusLine(statusCode);
+		}
+
+		return STATUS_LINES[statusCode - MIN_STATUS_CODE];
+	}
+
+	private static byte[] encodeStatusLine(int statusCode) {
+		return ascii(HTTP_VERSION + " " + statusCode + " " + HttpStatus.reasonPhrase(statusCode) + "\r\n");
+	}
+
+	/**
+	 * Header values are ISO-8859-1 on the wire, so each char is one byte (<code>HttpResponse.withHeader</code> has
+	 * already refused anything that does not fit one, or would break the line)
+	 */
+	private static void putLatin1(ByteBuffer target, String value) {
+		if (target.remaining() < value.length()) {
+			throw new BufferOverflowException();
+		}
+
+		for (int i = 0; i < value.length(); i++) {
+			target.put((byte) value.charAt(i));
+		}
+	}
+
+	/**
+	 * Writes a non-negative number as ASCII digits without going through a <code>String</code>
+	 */
+	private static void putDecimal(ByteBuffer target, long value) {
+		long divisor = 1;
+
+		while (divisor <= value / 10) {
+			divisor *= 10;
+		}
+		for (; divisor > 0; divisor /= 10) {
+			target.put((byte) ('0' + (value / divisor) % 10));
+		}
+	}
+
+	private static byte[] ascii(String value) {
+		return value.getBytes(StandardCharsets.US_ASCII);
+	}
+}
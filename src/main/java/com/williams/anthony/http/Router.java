@@ -0,0 +1,233 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 Anthony Williams.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.williams.anthony.http;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dispatches requests to handlers by method and path.
+ *
+ * Routes are kept in a prefix tree with one level per path segment, so finding the handler costs one map lookup
+ * per segment of the request path no matter how many routes are registered. A pattern segment is either literal
+ * text, a named parameter (<code>/users/{id}</code>) or, as the last segment only, a wildcard matching the rest of
+ * the path (<code>/static/*</code>). When several routes could match, literal segments win over parameters, which
+ * win over wildcards.
+ *
+ * Register every route at startup, before the router is handed to a server; it is not safe to add routes while
+ * requests are being dispatched.
+ *
+ * @author Anthony Williams
+ */
+public final class Router {
+
+	/** The name a wildcard's match is bound to (see <code>HttpRequest.getPathParameter</code>) */
+	public static final String WILDCARD = "*";
+
+	private static final String[] NO_CAPTURES = new String[0];
+
+	private final Node root = new Node();
+	private int maxParameterCount = 0;
+
+	/**
+	 * @param method The request method to match (e.g.: GET)
+	 * @param pattern The path pattern to match (e.g.: <code>/users/{id}</code> or <code>/static/*</code>)
+	 * @param handler The handler to run for matching requests
+	 * @return This router
+	 */
+	public Router add(String method, String pattern, RequestHandler handler) {
+		if (!pattern.startsWith("/")) {
+			throw new IllegalArgumentException(String.format("Route '%s' must start with /", pattern));
+		}
+
+		Node node = root;
+		List<String> parameterNames = new ArrayList<String>();
+		String[] segments = pattern.substring(1).split("/", -1);
+
+		for (int a = 0; a < segments.length; a++) {
+			String segment = segments[a];
+
+			if (segment.isEmpty() && a == segments.length - 1) {
+				// NOTE: "/" and "/users/" end on the node they are in
+				break;
+			}
+			if (WILDCARD.equals(segment)) {
+				if (a != segments.length - 1) {
+					throw new IllegalArgumentException(String.format("Route '%s' has a wildcard before its end",
+							pattern));
+				}
+				if (node.wildcardChild == null) {
+					node.wildcardChild = new Node();
+				}
+				node = node.wildcardChild;
+				parameterNames.add(WILDCARD);
+			} else if (segment.startsWith("{") && segment.endsWith("}")) {
+				if (node.parameterChild == null) {
+					node.parameterChild = new Node();
+				}
+				node = node.parameterChild;
+				parameterNames.add(segment.substring(1, segment.length() - 1));
+			} else {
+				Node child = node.staticChildren.get(segment);
+
+				if (child == null) {
+					child = new Node();
+					node.staticChildren.put(segment, child);
+				}
+				node = child;
+			}
+		}
+
+		if (node.handlers.containsKey(method)) {
+			throw new IllegalArgumentException(String.format("Route %s %s is already registered", method, pattern));
+		}
+		if (node.pattern != null && !node.pattern.equals(pattern)) {
+			throw new IllegalArgumentException(String.format("Route '%s' clashes with '%s'", pattern, node.pattern));
+		}
+		node.pattern = pattern;
+		node.parameterNames = parameterNames.toArray(new String[parameterNames.size()]);
+		node.handlers.put(method, handler);
+		maxParameterCount = Math.max(maxParameterCount, parameterNames.size());
+
+		return this;
+	}
+
+	/**
+	 * Runs the handler matching the request, answering 404 when no route matches the path and 405 when routes match
+	 * the path but not the method. <code>HEAD</code> falls back to the <code>GET</code> handler.
+	 *
+	 * @param request The request to dispatch
+	 * @return The handler's response
+	 * @throws IOException
+	 */
+	public HttpResponse dispatch(HttpRequest request) throws IOException {
+		String path = request.getPath();
+		int pathEnd = path.indexOf('?');
+		String[] captures = maxParameterCount == 0 ? NO_CAPTURES : new String[maxParameterCount];
+		Node node = null;
+
+		if (pathEnd < 0) {
+			pathEnd = path.length();
+		}
+		if (path.startsWith("/")) {
+			node = match(root, path, 1, pathEnd, captures, 0);
+		}
+		if (node == null) {
+			return HttpResponse.text(HttpStatus.NOT_FOUND, String.format("Not Found%n"));
+		}
+
+		RequestHandler handler = node.handlers.get(request.getMethod());
+
+		if (handler == null && "HEAD".equals(request.getMethod())) {
+			handler = node.handlers.get("GET");
+		}
+		if (handler == null) {
+			return HttpResponse.text(HttpStatus.METHOD_NOT_ALLOWED, String.format("Method Not Allowed%n"))
+					.withHeader("Allow", String.join(", ", node.handlers.keySet()));
+		}
+
+		request.bindRoute(node.pattern, node.parameterNames, captures);
+
+		try {
+			return handler.handle(request);
+		} catch (RuntimeException handlerException) {
+			// NOTE: no console print here, a failing handler under load would serialize every request on the
+			// PrintStream lock; the server hands the cause to the access log, which formats it on its writer thread
+			request.fail(handlerException);
+			return HttpResponse.text(HttpStatus.INTERNAL_SERVER_ERROR, String.format("Internal Server Error%n"));
+		}
+	}
+
+	/**
+	 * Walks the tree one path segment at a time, backtracking when a more specific branch dead-ends
+	 *
+	 * @param node The node matched so far
+	 * @param path The request path
+	 * @param start Index of the first character of the next segment
+	 * @param end Index just past the path (excluding any query string)
+	 * @param captures Parameter values matched so far
+	 * @param captureCount The number of parameter values matched so far
+	 * @return The node holding the handlers, or <code>null</code> when nothing matches
+	 */
+	private static Node match(Node node, String path, int start, int end, String[] captures, int captureCount) {
+		if (start >= end) {
+			if (node.pattern != null) {
+				return node;
+			}
+			// NOTE: a wildcard also matches nothing at all, so "/static/*" handles "/static/"
+			if (node.wildcardChild != null && node.wildcardChild.pattern != null) {
+				captures[captureCount] = "";
+				return node.wildcardChild;
+			}
+			return null;
+		}
+
+		int segmentEnd = path.indexOf('/', start);
+
+		if (segmentEnd < 0 || segmentEnd > end) {
+			segmentEnd = end;
+		}
+
+		Node staticChild = node.staticChildren.get(path.substring(start, segmentEnd));
+
+		if (staticChild != null) {
+			Node matched = match(staticChild, path, segmentEnd + 1, end, captures, captureCount);
+
+			if (matched != null) {
+				return matched;
+			}
+		}
+		if (node.parameterChild != null && segmentEnd > start) {
+			captures[captureCount] = path.substring(start, segmentEnd);
+
+			Node matched = match(node.parameterChild, path, segmentEnd + 1, end, captures, captureCount + 1);
+
+			if (matched != null) {
+				return matched;
+			}
+		}
+		if (node.wildcardChild != null && node.wildcardChild.pattern != null) {
+			captures[captureCount] = path.substring(start, end);
+			return node.wildcardChild;
+		}
+
+		return null;
+	}
+
+	/**
+	 * One path segment of the route tree
+	 */
+	private static final class Node {
+		private final Map<String, Node> staticChildren = new HashMap<String, Node>();
+		private final Map<String, RequestHandler> handlers = new LinkedHashMap<String, RequestHandler>();
+		private Node parameterChild;
+		private Node wildcardChild;
+		private String pattern;
+		private String[] parameterNames;
+	}
+}
@@ -0,0 +1,239 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 Anthony Williams.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.williams.anthony.http;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ProtocolException;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+
+/**
+ * The body of a request on a blocking connection, read from the socket only as the handler asks for it, so a large
+ * upload never has to fit in memory.
+ *
+ * The first bytes come from the connection's read buffer (whatever arrived together with the head), the rest straight
+ * from the socket. A <code>Content-Length</code> body is never read past its end, a chunked body may be, and whatever
+ * follows it is handed back to the read buffer by {@link #finish(long)} for the next pipelined request.
+ *
+ * @author Anthony Williams
+ */
+public final class StreamingRequestBody extends RequestBody {
+
+	private final InputStream requestStream;
+	private final OutputStream responseStream;
+	private final ByteBuffer requestBuffer;
+	private final long contentLength;
+	private final long maxBodyBytes;
+	private final long deadlineNanos;
+	private final ChunkedDecoder chunkedDecoder;
+	private boolean isContinuePending;
+	private final ByteBuffer overflowBuffer;
+	private ByteBuffer raw;
+	private long bodyBytes;
+	private long bytesReceived;
+	private boolean isDone;
+	private boolean isTooLarge;
+
+	/**
+	 * @param request The request the body belongs to, whose deadline also bounds reading the body
+	 * @param requestBuffer The connection's read buffer (in write mode), holding the head from index 0 to
+	 *        <code>headLength</code> and possibly the start of the body after it
+	 * @param headLength The number of bytes taken by the request head
+	 * @param requestStream The connection's input, for the rest of the body
+	 * @param responseStream The connection's output, for <code>100 Continue</code>
+	 * @param overflowBuffer An array backed buffer for the bytes read from the socket, at most as large as the read
+	 *        buffer and reused across the connection's requests
+	 * @param chunkedDecoder Decodes a chunked body (reset here), reused across the connection's requests
+	 * @param maxBodyBytes The largest chunked body accepted
+	 */
+	public StreamingRequestBody(HttpRequest request, ByteBuffer requestBuffer, int headLength,
+			InputStream requestStream, OutputStream responseStream, ByteBuffer overflowBuffer,
+			ChunkedDecoder chunkedDecoder, long maxBodyBytes) {
+		this.requestStream = requestStream;
+		this.responseStream = responseStream;
+		this.requestBuffer = requestBuffer;
+		this.overflowBuffer = overflowBuffer;
+		this.contentLength = request.isChunked() ? -1 : Math.max(0, request.getContentLength());
+		this.maxBodyBytes = maxBodyBytes;
+		this.deadlineNanos = request.getDeadlineNanos();
+		this.chunkedDecoder = request.isChunked() ? chunkedDecoder : null;
+		this.isContinuePending = request.expectsContinue();
+		this.isDone = !request.hasBody();
+		if (this.chunkedDecoder != null) {
+			this.chunkedDecoder.reset();
+		}
+
+		// NOTE: a view of the bytes that arrived after the head, so the head itself stays intact for the handler
+		raw = requestBuffer.duplicate();
+		raw.limit(requestBuffer.position()).position(headLength);
+	}
+
+	@Override
+	public long getContentLength() {
+		return contentLength;
+	}
+
+	@Override
+	public int read(ByteBuffer target) throws IOException {
+		if (isDone || !target.hasRemaining()) {
+			return isDone ? -1 : 0;
+		}
+
+		return chunkedDecoder == null ? readFixed(target) : readChunked(target);
+	}
+
+	@Override
+	public int available() {
+		return isDone || chunkedDecoder != null ? 0 : (int) Math.min(raw.remaining(), contentLength - bodyBytes);
+	}
+
+	/**
+	 * @return The number of body bytes (including any chunked framing) read from the socket so far, not counting
+	 *         those that arrived together with the head
+	 */
+	public long getBytesReceived() {
+		return bytesReceived;
+	}
+
+	/**
+	 * @return Whether the chunked body turned out larger than the server accepts
+	 */
+	public boolean isTooLarge() {
+		return isTooLarge;
+	}
+
+	/**
+	 * @return Whether the chunked body's trailers turned out larger than the server accepts
+	 */
+	public boolean isTrailerTooLarge() {
+		return chunkedDecoder != null && chunkedDecoder.isTrailerTooLarge();
+	}
+
+	/**
+	 * Called by the server once the handler is done: skips whatever the handler left unread, then moves any bytes
+	 * that followed the body to the start of the read buffer (in write mode) for the next request
+	 *
+	 * @param maxDiscardBytes The most unread body bytes worth reading just to keep the connection open
+	 * @return Whether the connection can carry another request, <code>false</code> when the rest of the body was
+	 *         too large to skip or the client is still waiting for <code>100 Continue</code>
+	 * @throws IOException
+	 */
+	public boolean finish(long maxDiscardBytes) throws IOException {
+		// NOTE: the client never sent the body, and may or may not send it now, so the connection is unusable
+		if ((isContinuePending && !isDone) || isTooLarge) {
+			return false;
+		}
+
+		// NOTE: only allocated when the handler left part of the body unread
+		ByteBuffer discard = isDone ? null : ByteBuffer.allocate(4 * 1024);
+		long discarded = 0;
+
+		while (!isDone) {
+			if (discarded > maxDiscardBytes) {
+				return false;
+			}
+			discard.clear();
+			discarded += Math.max(0, read(discard));
+		}
+
+		if (raw != overflowBuffer) {
+			requestBuffer.limit(raw.limit()).position(raw.position());
+			requestBuffer.compact();
+		} else {
+			requestBuffer.clear();
+			requestBuffer.put(raw);
+		}
+		return true;
+	}
+
+	private int readFixed(ByteBuffer target) throws IOException {
+		long remaining = contentLength - bodyBytes;
+
+		if (!raw.hasRemaining()) {
+			fill(remaining);
+		}
+
+		int length = (int) Math.min(remaining, Math.min(raw.remaining(), target.remaining()));
+		int limit = raw.limit();
+
+		raw.limit(raw.position() + length);
+		target.put(raw);
+		raw.limit(limit);
+		bodyBytes += length;
+		isDone = bodyBytes == contentLength;
+		return length;
+	}
+
+	private int readChunked(ByteBuffer target) throws IOException {
+		int start = target.position();
+
+		// NOTE: a buffer of framing alone (e.g.: a chunk size line) decodes to nothing, keep reading until it does
+		while (target.position() == start && !isDone) {
+			if (!raw.hasRemaining()) {
+				fill(Long.MAX_VALUE);
+			}
+			isDone = chunkedDecoder.decode(raw, target);
+		}
+
+		int length = target.position() - start;
+
+		bodyBytes += length;
+		if (bodyBytes > maxBodyBytes) {
+			isTooLarge = true;
+			throw new ProtocolException("Request body larger than " + maxBodyBytes + " bytes");
+		}
+		return isDone && length == 0 ? -1 : length;
+	}
+
+	/**
+	 * Replaces the used up raw bytes with the next ones from the socket
+	 *
+	 * @param maxBytes The most bytes to read, so a body of known length is never read past its end
+	 * @throws SocketTimeoutException When the request's deadline has passed (a single read is bounded by the
+	 *         socket's timeout)
+	 */
+	private void fill(long maxBytes) throws IOException {
+		// NOTE: a body trickling in a byte at a time must not hold the connection past the deadline
+		if (deadlineNanos != HttpRequest.NO_DEADLINE && System.nanoTime() - deadlineNanos >= 0) {
+			throw new SocketTimeoutException("Request deadline passed part way through the body");
+		}
+		if (isContinuePending) {
+			responseStream.write(CannedResponses.CONTINUE);
+			responseStream.flush();
+			isContinuePending = false;
+		}
+		int bytesRead = requestStream.read(overflowBuffer.array(), overflowBuffer.arrayOffset(),
+				(int) Math.min(maxBytes, overflowBuffer.capacity()));
+
+		if (bytesRead < 0) {
+			throw new EOFException("Connection closed part way through the request body");
+		}
+		overflowBuffer.limit(bytesRead).position(0);
+		raw = overflowBuffer;
+		bytesReceived += bytesRead;
+	}
+}
@@ -32,7 +32,7 @@ package com.williams.anthony.models;
  *
  * @author Anthony Williams
  */
-public class PrompterChoiceResult {
+public class PrompterChoiceResult implements PrompterResult {
 
     private final int attempts;
     private final int choiceIndex;
@@ -55,6 +55,7 @@ public class PrompterChoiceResult {
     /**
      * @return The number of attempts (including the final) it took to obtain a value from the user
      */
+    @Override
     public int getAttempts() {
         return attempts;
     }
@@ -28,7 +28,7 @@ package com.williams.anthony.models;
  *
  * @author Anthony Williams
  */
-public class PrompterIntResult {
+public class PrompterIntResult implements PrompterResult {
 
     private final int attempts;
     private final int value;
@@ -45,6 +45,7 @@ public class PrompterIntResult {
     /**
      * @return The number of attempts (including the final) it took to obtain a value from the user
      */
+    @Override
     public int getAttempts() {
         return attempts;
     }
@@ -0,0 +1,62 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 Anthony Williams.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.williams.anthony.models;
+
+/**
+ * Model used to represent a user response collected from one of many concurrent prompter sessions
+ *   - sessionId
+ *   - result
+ *
+ * @author Anthony Williams
+ */
+public class PrompterSessionResult {
+
+    private final long sessionId;
+    private final PrompterResult result;
+
+    /**
+     * @param sessionId The id of the session the response came from
+     * @param result The response (a <code>PrompterStringResult</code>, <code>PrompterIntResult</code> or
+     *        <code>PrompterChoiceResult</code>)
+     */
+    public PrompterSessionResult(long sessionId, PrompterResult result) {
+        this.sessionId = sessionId;
+        this.result = result;
+    }
+
+    /**
+     * @return The id of the session the response came from
+     */
+    public long getSessionId() {
+        return sessionId;
+    }
+
+    /**
+     * @return The response (a <code>PrompterStringResult</code>, <code>PrompterIntResult</code> or
+     *         <code>PrompterChoiceResult</code>)
+     */
+    public PrompterResult getResult() {
+        return result;
+    }
+}
@@ -0,0 +1,512 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 Anthony Williams.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.williams.anthony.server;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * An access log that never blocks the threads serving requests.
+ *
+ * Request threads claim a slot in a pre-allocated ring buffer with a single compare-and-set, fill it in and publish
+ * it; one background thread formats the published entries and writes them out in batches, to a file rolled over by
+ * size or (without a file) to standard output. When the writer falls behind, successful requests are sampled once
+ * the ring is {@value #SAMPLE_BACKLOG_PERCENT}% full and every entry is dropped once it is full, both counted and
+ * reported in the log itself.
+ *
+ * Inspired by: https://lmax-exchange.github.io/disruptor/
+ *
+ * @author Anthony Williams
+ */
+public final class AccessLog implements Closeable {
+
+	/**
+	 * What gets logged, each level includes the ones before it
+	 */
+	public enum Level {
+		/** Nothing */
+		OFF,
+		/**
+		 * Responses with a 4xx or 5xx status, including requests refused before being parsed, plus the exceptions
+		 * thrown by handlers and connections
+		 */
+		ERROR,
+		/** Every response */
+		INFO,
+		/** Every response, plus connections opening and closing */
+		DEBUG
+	}
+
+	private static final int DEFAULT_CAPACITY = 8192;
+	private static final int SAMPLE_BACKLOG_PERCENT = 75;
+	// NOTE: one in this many successful requests is kept while sampling
+	private static final int SAMPLE_RATE = 8;
+	private static final int MAX_ROLLED_FILES = 5;
+	// NOTE: a handler failing on every request must not drown the requests themselves in stack traces
+	private static final int MAX_STACK_FRAMES = 10;
+	private static final int MAX_CAUSE_DEPTH = 3;
+	private static final long FLUSH_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(200);
+	private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+	private static final long CLOSE_TIMEOUT_MILLIS = 5000;
+	private static final DateTimeFormatter COMMON_LOG_DATE = DateTimeFormatter
+			.ofPattern("dd/MMM/yyyy:HH:mm:ss Z", Locale.US).withZone(ZoneOffset.UTC);
+
+	private final Level level;
+	private final Path file;
+	private final long maxFileBytes;
+	private final Entry[] entries;
+	// NOTE: the sequence last published in each slot, the writer waits for the one it expects
+	private final AtomicLongArray publishedSequences;
+	private final int mask;
+	private final int sampleBacklog;
+	private final AtomicLong claimedSequence = new AtomicLong();
+	private final LongAdder droppedCount = new LongAdder();
+	private final LongAdder sampledOutCount = new LongAdder();
+	private final Thread writerThread;
+	private volatile long consumedSequence = 0;
+	private volatile boolean isRunning = true;
+
+	/**
+	 * @param level What to log
+	 * @param file The file to log to (rolled over to <code>file.1</code>... when it grows past
+	 *        <code>maxFileBytes</code>), or <code>null</code> for standard output
+	 * @param maxFileBytes The size at which the file is rolled over
+	 */
+	public AccessLog(Level level, Path file, long maxFileBytes) {
+		this(level, file, maxFileBytes, DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * @param level What to log
+	 * @param file The file to log to, or <code>null</code> for standard output
+	 * @param maxFileBytes The size at which the file is rolled over
+	 * @param capacity The number of entries the ring buffer holds, a power of two
+	 */
+	public AccessLog(Level level, Path file, long maxFileBytes, int capacity) {
+		if (Integer.bitCount(capacity) != 1) {
+			throw new IllegalArgumentException("capacity must be a power of two");
+		}
+		this.level = level;
+		this.file = file;
+		this.maxFileBytes = maxFileBytes;
+		this.entries = new Entry[capacity];
+		this.publishedSequences = new AtomicLongArray(capacity);
+		this.mask = capacity - 1;
+		this.sampleBacklog = capacity * SAMPLE_BACKLOG_PERCENT / 100;
+
+		for (int index = 0; index < capacity; index++) {
+			entries[index] = new Entry();
+			publishedSequences.set(index, -1);
+		}
+
+		if (level == Level.OFF) {
+			writerThread = null;
+		} else {
+			writerThread = new Thread(this::runWriter, "access-log-writer");
+			writerThread.setDaemon(true);
+			writerThread.start();
+		}
+	}
+
+	/**
+	 * @param config The server settings (see <code>ServerConfig.getAccessLogLevel()</code>)
+	 * @return A new access log, started
+	 */
+	public static AccessLog fromConfig(ServerConfig config) {
+		Path file = config.getAccessLogFile() == null ? null : Path.of(config.getAccessLogFile());
+
+		return new AccessLog(config.getAccessLogLevel(), file, config.getAccessLogMaxFileBytes());
+	}
+
+	/**
+	 * @param candidate A level
+	 * @return Whether entries of the given level are logged
+	 */
+	public boolean isEnabled(Level candidate) {
+		return candidate != Level.OFF && level.compareTo(candidate) >= 0;
+	}
+
+	/**
+	 * @param remoteAddress The client
+	 * @param method The request method
+	 * @param path The request target
+	 * @param version The request's HTTP version
+	 * @param statusCode The response status
+	 * @param responseBytes The number of bytes written for the response
+	 * @param durationNanos From the parsed request head to the last byte of the response written
+	 */
+	public void logRequest(InetAddress remoteAddress, String method, String path, String version, int statusCode,
+			long responseBytes, long durationNanos) {
+		boolean isError = statusCode >= 400;
+
+		if (!isEnabled(isError ? Level.ERROR : Level.INFO)) {
+			return;
+		}
+
+		long sequence = claim(isError);
+
+		if (sequence < 0) {
+			return;
+		}
+
+		Entry entry = entries[(int) (sequence & mask)];
+		entry.timestampMillis = System.currentTimeMillis();
+		entry.remoteAddress = remoteAddress;
+		entry.method = method;
+		entry.path = path;
+		entry.version = version;
+		entry.statusCode = statusCode;
+		entry.responseBytes = responseBytes;
+		entry.durationMicros = TimeUnit.NANOSECONDS.toMicros(durationNanos);
+		entry.event = null;
+		publishedSequences.lazySet((int) (sequence & mask), sequence);
+	}
+
+	/**
+	 * @param remoteAddress The client
+	 * @param statusCode The status of the canned response sent instead of dispatching the request
+	 * @param responseBytes The size of the canned response
+	 */
+	public void logRejected(InetAddress remoteAddress, int statusCode, long responseBytes) {
+		logRequest(remoteAddress, "-", "-", "-", statusCode, responseBytes, 0);
+	}
+
+	/**
+	 * @param remoteAddress The client
+	 * @param event What happened to the connection (e.g.: <code>connection opened</code>), logged at
+	 *        {@link Level#DEBUG}
+	 */
+	public void logConnection(InetAddress remoteAddress, String event) {
+		if (!isEnabled(Level.DEBUG)) {
+			return;
+		}
+
+		long sequence = claim(false);
+
+		if (sequence < 0) {
+			return;
+		}
+
+		Entry entry = entries[(int) (sequence & mask)];
+		entry.timestampMillis = System.currentTimeMillis();
+		entry.remoteAddress = remoteAddress;
+		entry.event = event;
+		publishedSequences.lazySet((int) (sequence & mask), sequence);
+	}
+
+	/**
+	 * Logs an exception at {@link Level#ERROR}; the stack trace is only formatted by the writer thread
+	 *
+	 * @param remoteAddress The client, or <code>null</code> when the failure is not tied to one
+	 * @param context What was being done (e.g.: <code>GET /users failed</code>)
+	 * @param cause The exception
+	 */
+	public void logError(InetAddress remoteAddress, String context, Throwable cause) {
+		if (!isEnabled(Level.ERROR)) {
+			return;
+		}
+
+		long sequence = claim(true);
+
+		if (sequence < 0) {
+			return;
+		}
+
+		Entry entry = entries[(int) (sequence & mask)];
+		entry.timestampMillis = System.currentTimeMillis();
+		entry.remoteAddress = remoteAddress;
+		entry.event = context;
+		entry.cause = cause;
+		publishedSequences.lazySet((int) (sequence & mask), sequence);
+	}
+
+	/**
+	 * @return The number of entries thrown away because the ring buffer was full
+	 */
+	public long getDroppedCount() {
+		return droppedCount.sum();
+	}
+
+	/**
+	 * Stops the writer once it has written every published entry (waiting a few seconds at most)
+	 */
+	@Override
+	public void close() {
+		isRunning = false;
+		if (writerThread == null) {
+			return;
+		}
+		LockSupport.unpark(writerThread);
+
+		try {
+			writerThread.join(CLOSE_TIMEOUT_MILLIS);
+		} catch (InterruptedException interruptedException) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * @param isError Whether the entry is exempt from sampling
+	 * @return The sequence of the claimed slot, or -1 when the entry is dropped or sampled out
+	 */
+	private long claim(boolean isError) {
+		while (true) {
+			long sequence = claimedSequence.get();
+			long backlog = sequence - consumedSequence;
+
+			if (backlog >= entries.length) {
+				droppedCount.increment();
+				return -1;
+			}
+			if (!isError && backlog >= sampleBacklog && ThreadLocalRandom.current().nextInt(SAMPLE_RATE) != 0) {
+				sampledOutCount.increment();
+				return -1;
+			}
+			if (claimedSequence.compareAndSet(sequence, sequence + 1)) {
+				return sequence;
+			}
+		}
+	}
+
+	private void runWriter() {
+		StringBuilder batch = new StringBuilder(64 * 1024);
+		long lastFlushNanos = System.nanoTime();
+		long reportedDropped = 0;
+		long reportedSampledOut = 0;
+		LogOutput output = new LogOutput();
+
+		try {
+			while (isRunning || consumedSequence < claimedSequence.get()) {
+				int entryCount = drainInto(batch);
+				long dropped = droppedCount.sum();
+				long sampledOut = sampledOutCount.sum();
+
+				if (dropped != reportedDropped || sampledOut != reportedSampledOut) {
+					batch.append(String.format("[AccessLog] overloaded: %d entries dropped, %d sampled out%n",
+							dropped - reportedDropped, sampledOut - reportedSampledOut));
+					reportedDropped = dropped;
+					reportedSampledOut = sampledOut;
+				}
+				if (batch.length() > 0) {
+					output.write(batch.toString().getBytes(StandardCharsets.UTF_8));
+					batch.setLength(0);
+				}
+				// NOTE: flush once the burst is over, or every so often while it lasts
+				if (entryCount == 0 || System.nanoTime() - lastFlushNanos > FLUSH_INTERVAL_NANOS) {
+					output.flush();
+					lastFlushNanos = System.nanoTime();
+				}
+				if (entryCount == 0) {
+					LockSupport.parkNanos(IDLE_PARK_NANOS);
+				}
+			}
+		} catch (IOException ioException) {
+			ioException.printStackTrace();
+		} finally {
+			output.close();
+		}
+	}
+
+	/**
+	 * Formats every published entry, in order, stopping at the first slot that is claimed but not yet published
+	 *
+	 * @return The number of entries formatted
+	 */
+	private int drainInto(StringBuilder batch) {
+		int entryCount = 0;
+		long sequence = consumedSequence;
+
+		while (publishedSequences.get((int) (sequence & mask)) == sequence) {
+			Entry entry = entries[(int) (sequence & mask)];
+
+			entry.appendTo(batch);
+			entry.clear();
+			sequence++;
+			entryCount++;
+			// NOTE: hand the slots back a batch at a time, each write of the volatile is a fence
+			if ((entryCount & 63) == 0) {
+				consumedSequence = sequence;
+			}
+		}
+		consumedSequence = sequence;
+
+		return entryCount;
+	}
+
+	/**
+	 * One slot of the ring buffer, re-used for every entry that lands in it
+	 */
+	private static final class Entry {
+		private long timestampMillis;
+		private InetAddress remoteAddress;
+		private String method;
+		private String path;
+		private String version;
+		private int statusCode;
+		private long responseBytes;
+		private long durationMicros;
+		private String event;
+		private Throwable cause;
+
+		/**
+		 * Appends the entry in the Common Log Format, followed by the time taken
+		 * (e.g.: <code>127.0.0.1 - - [10/Oct/2000:13:55:36 +0000] "GET / HTTP/1.1" 200 29 312us</code>)
+		 */
+		private void appendTo(StringBuilder line) {
+			line.append(remoteAddress == null ? "-" : remoteAddress.getHostAddress()).append(" - - [");
+			COMMON_LOG_DATE.formatTo(Instant.ofEpochMilli(timestampMillis), line);
+			line.append("] ");
+			if (event != null) {
+				line.append(event);
+			} else {
+				line.append('"').append(method).append(' ').append(path).append(' ').append(version).append("\" ")
+						.append(statusCode).append(' ').append(responseBytes).append(' ').append(durationMicros)
+						.append("us");
+			}
+			line.append(System.lineSeparator());
+			if (cause != null) {
+				appendStackTrace(line);
+			}
+		}
+
+		/**
+		 * Appends the cause chain like <code>printStackTrace()</code> does, with fewer frames per exception
+		 */
+		private void appendStackTrace(StringBuilder line) {
+			Throwable current = cause;
+
+			for (int depth = 0; current != null && depth < MAX_CAUSE_DEPTH; depth++) {
+				StackTraceElement[] frames = current.getStackTrace();
+				int frameCount = Math.min(frames.length, MAX_STACK_FRAMES);
+
+				line.append(depth == 0 ? "" : "Caused by: ").append(current).append(System.lineSeparator());
+				for (int index = 0; index < frameCount; index++) {
+					line.append("\tat ").append(frames[index]).append(System.lineSeparator());
+				}
+				if (frames.length > frameCount) {
+					line.append("\t... ").append(frames.length - frameCount).append(" more")
+							.append(System.lineSeparator());
+				}
+				current = current.getCause() == current ? null : current.getCause();
+			}
+		}
+
+		private void clear() {
+			remoteAddress = null;
+			method = null;
+			path = null;
+			version = null;
+			event = null;
+			cause = null;
+		}
+	}
+
+	/**
+	 * Where the writer thread puts formatted batches: the log file (rolled over by size) or standard output
+	 */
+	private final class LogOutput {
+		private OutputStream stream;
+		private long fileBytes;
+
+		private void write(byte[] bytes) throws IOException {
+			if (file == null) {
+				System.out.write(bytes, 0, bytes.length);
+				return;
+			}
+			if (stream != null && fileBytes + bytes.length > maxFileBytes) {
+				roll();
+			}
+			if (stream == null) {
+				Path parent = file.toAbsolutePath().getParent();
+
+				if (parent != null) {
+					Files.createDirectories(parent);
+				}
+				fileBytes = Files.exists(file) ? Files.size(file) : 0;
+				stream = new BufferedOutputStream(new FileOutputStream(file.toFile(), true), 64 * 1024);
+			}
+			stream.write(bytes);
+			fileBytes += bytes.length;
+		}
+
+		private void flush() throws IOException {
+			if (file == null) {
+				System.out.flush();
+			} else if (stream != null) {
+				stream.flush();
+			}
+		}
+
+		/**
+		 * Shifts <code>file.1</code>... up by one (dropping the oldest) and moves the current file to
+		 * <code>file.1</code>; the next write starts a new file
+		 */
+		private void roll() throws IOException {
+			stream.close();
+			stream = null;
+
+			for (int index = MAX_ROLLED_FILES - 1; index >= 1; index--) {
+				Path rolled = rolledFile(index);
+
+				if (Files.exists(rolled)) {
+					Files.move(rolled, rolledFile(index + 1), StandardCopyOption.REPLACE_EXISTING);
+				}
+			}
+			Files.move(file, rolledFile(1), StandardCopyOption.REPLACE_EXISTING);
+		}
+
+		private Path rolledFile(int index) {
+			return file.resolveSibling(file.getFileName() + "." + index);
+		}
+
+		private void close() {
+			try {
+				flush();
+				if (stream != null) {
+					stream.close();
+				}
+			} catch (IOException ioException) {
+				ioException.printStackTrace();
+			}
+		}
+	}
+}
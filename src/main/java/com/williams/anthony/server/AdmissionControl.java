@@ -0,0 +1,121 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 Anthony Williams.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.williams.anthony.server;
+
+import java.net.InetAddress;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Decides, straight after <code>accept</code> and before a single byte is read, whether a connection gets served:
+ * the server as a whole holds at most <code>maxConnections</code> open connections, and each client address is held
+ * to its rate limit (when one is configured). A refused connection is answered with a canned 503 or 429 and closed,
+ * which costs far less than letting it queue behind well-behaved clients.
+ *
+ * @author Anthony Williams
+ */
+public final class AdmissionControl {
+
+	/**
+	 * Outcome of {@link AdmissionControl#admit(InetAddress)}
+	 */
+	public enum Decision {
+		/** Serve the connection, and call {@link AdmissionControl#release()} once it is closed */
+		ADMIT,
+		/** Too many connections are open, answer with a 503 */
+		OVER_CAPACITY,
+		/** The client is over its rate limit, answer with a 429 */
+		RATE_LIMITED
+	}
+
+	private final int maxConnections;
+	private final RateLimiter rateLimiter;
+	private final AtomicInteger openConnections = new AtomicInteger();
+
+	/**
+	 * @param maxConnections The most connections open at once
+	 * @param rateLimiter The per-client rate limit, or <code>null</code> for none
+	 */
+	public AdmissionControl(int maxConnections, RateLimiter rateLimiter) {
+		this.maxConnections = maxConnections;
+		this.rateLimiter = rateLimiter;
+	}
+
+	/**
+	 * @param config The admission settings
+	 * @return The admission control configured from the server's settings
+	 */
+	public static AdmissionControl fromConfig(ServerConfig config) {
+		RateLimiter rateLimiter = config.getRateLimitPerSecond() == 0
+				? null
+				: new RateLimiter(config.getRateLimitPerSecond(), config.getRateLimitBurst(),
+						config.getMaxConnections());
+
+		return new AdmissionControl(config.getMaxConnections(), rateLimiter);
+	}
+
+	/**
+	 * Counts the connection as open when it is admitted. The first request on an admitted connection has already
+	 * been paid for.
+	 *
+	 * @param address The client
+	 * @return Whether to serve the connection
+	 */
+	public Decision admit(InetAddress address) {
+		// NOTE: reserve a slot first, so concurrent accepts can never overshoot the cap
+		if (openConnections.incrementAndGet() > maxConnections) {
+			openConnections.decrementAndGet();
+			return Decision.OVER_CAPACITY;
+		}
+		if (rateLimiter != null && !rateLimiter.tryAcquire(address)) {
+			openConnections.decrementAndGet();
+			return Decision.RATE_LIMITED;
+		}
+
+		return Decision.ADMIT;
+	}
+
+	/**
+	 * Charges a further request on an already admitted (persistent) connection to the client's rate limit
+	 *
+	 * @param address The client
+	 * @return Whether to serve the request, a limited client gets a 429 and the connection is closed
+	 */
+	public boolean admitRequest(InetAddress address) {
+		return rateLimiter == null || rateLimiter.tryAcquire(address);
+	}
+
+	/**
+	 * Frees the slot of an admitted connection that has been closed
+	 */
+	public void release() {
+		openConnections.decrementAndGet();
+	}
+
+	/**
+	 * @return The number of admitted connections not yet released
+	 */
+	public int getOpenConnections() {
+		return openConnections.get();
+	}
+}
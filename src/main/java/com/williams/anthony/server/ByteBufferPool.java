@@ -0,0 +1,239 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 Anthony Williams.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.williams.anthony.server;
+
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A pool of equally sized <code>ByteBuffer</code>s, so connections can lease I/O buffers instead of allocating (and
+ * later collecting) fresh ones.
+ *
+ * Buffers are carved out of slabs of {@value #BUFFERS_PER_SLAB}, so the pool makes one large allocation where it
+ * would otherwise make many small ones (each direct allocation reserves memory under a lock and registers a
+ * cleaner). Once <code>maxPooled</code> buffers have been carved, a lease with none idle gets a buffer of its own,
+ * counted as an overflow.
+ *
+ * With leak detection on, every lease remembers where it was taken, releasing a buffer twice fails straight away and
+ * {@link #reportLeaks(PrintStream)} lists the buffers never given back. It costs a stack trace per lease, so it is
+ * meant for debugging.
+ *
+ * @author Anthony Williams
+ */
+public final class ByteBufferPool {
+
+	/** The number of buffers carved from each slab */
+	public static final int BUFFERS_PER_SLAB = 32;
+
+	private final int bufferSize;
+	private final int maxPooled;
+	private final boolean isDirect;
+	// NOTE: last in first out, the buffer released most recently is the likeliest to still be in cache
+	private final ConcurrentLinkedDeque<ByteBuffer> available = new ConcurrentLinkedDeque<ByteBuffer>();
+	private final AtomicInteger pooledCount = new AtomicInteger();
+	private final AtomicInteger leasedCount = new AtomicInteger();
+	private final LongAdder overflowCount = new LongAdder();
+	// NOTE: keyed by identity, ByteBuffer.equals compares contents
+	private final Map<ByteBuffer, Throwable> leases;
+	private int carvedCount = 0;
+
+	/**
+	 * Constructs a pool of direct buffers without leak detection
+	 *
+	 * @param bufferSize The capacity (in bytes) of every buffer handed out by this pool
+	 * @param maxPooled The maximum number of buffers carved from slabs and kept around for reuse
+	 */
+	public ByteBufferPool(int bufferSize, int maxPooled) {
+		this(bufferSize, maxPooled, true, false);
+	}
+
+	/**
+	 * @param bufferSize The capacity (in bytes) of every buffer handed out by this pool
+	 * @param maxPooled The maximum number of buffers carved from slabs and kept around for reuse
+	 * @param isDirect Whether the buffers live outside the heap (a channel writes them without copying) or on it
+	 *        (they have an array, which stream based I/O needs)
+	 * @param isLeakDetection Whether to track every lease, see {@link #reportLeaks(PrintStream)}
+	 */
+	public ByteBufferPool(int bufferSize, int maxPooled, boolean isDirect, boolean isLeakDetection) {
+		if (bufferSize < 1) {
+			throw new IllegalArgumentException("bufferSize must be positive");
+		}
+		if (maxPooled < 0) {
+			throw new IllegalArgumentException("maxPooled must not be negative");
+		}
+		this.bufferSize = bufferSize;
+		this.maxPooled = maxPooled;
+		this.isDirect = isDirect;
+		this.leases = isLeakDetection
+				? Collections.synchronizedMap(new IdentityHashMap<ByteBuffer, Throwable>())
+				: null;
+	}
+
+	/**
+	 * @return A cleared buffer, reused from the pool when one is idle
+	 */
+	public ByteBuffer acquire() {
+		ByteBuffer buffer = available.pollFirst();
+
+		if (buffer == null) {
+			buffer = carve();
+		} else {
+			pooledCount.decrementAndGet();
+		}
+		leasedCount.incrementAndGet();
+		if (leases != null) {
+			leases.put(buffer, new Throwable("Buffer leased by " + Thread.currentThread().getName()));
+		}
+
+		return buffer;
+	}
+
+	/**
+	 * Returns a buffer to the pool; the caller must not touch it afterwards
+	 *
+	 * @param buffer A buffer previously obtained from {@link #acquire()}
+	 * @throws IllegalStateException With leak detection on, when the buffer is not currently leased from this pool
+	 */
+	public void release(ByteBuffer buffer) {
+		if (buffer == null || buffer.capacity() != bufferSize) {
+			return;
+		}
+		if (leases != null && leases.remove(buffer) == null) {
+			throw new IllegalStateException("Buffer released twice, or never leased from this pool");
+		}
+		leasedCount.decrementAndGet();
+		buffer.clear();
+
+		// NOTE: buffers beyond the idle limit are simply left for the garbage collector
+		if (pooledCount.incrementAndGet() <= maxPooled) {
+			available.offerFirst(buffer);
+		} else {
+			pooledCount.decrementAndGet();
+		}
+	}
+
+	/**
+	 * Prints where each buffer still leased was taken. Call once every connection is closed, when nothing should be
+	 * leased any more.
+	 *
+	 * @param out Where to print the leaks
+	 * @return The number of buffers still leased (always 0 without leak detection)
+	 */
+	public int reportLeaks(PrintStream out) {
+		if (leases == null) {
+			return 0;
+		}
+
+		List<Throwable> leaks;
+
+		synchronized (leases) {
+			leaks = new ArrayList<Throwable>(leases.values());
+		}
+		for (Throwable leak : leaks) {
+			out.printf("[ByteBufferPool.reportLeaks()] %d byte buffer never released%n", bufferSize);
+			leak.printStackTrace(out);
+		}
+
+		return leaks.size();
+	}
+
+	/**
+	 * @return The capacity (in bytes) of every buffer handed out by this pool
+	 */
+	public int getBufferSize() {
+		return bufferSize;
+	}
+
+	/**
+	 * @return The number of buffers carved from slabs so far
+	 */
+	public synchronized int getCapacity() {
+		return carvedCount;
+	}
+
+	/**
+	 * @return The number of buffers currently leased
+	 */
+	public int getLeasedCount() {
+		return leasedCount.get();
+	}
+
+	/**
+	 * @return The number of buffers waiting in the pool to be leased
+	 */
+	public int getIdleCount() {
+		return pooledCount.get();
+	}
+
+	/**
+	 * @return The number of leases that found the pool exhausted and got a buffer of their own
+	 */
+	public long getOverflowCount() {
+		return overflowCount.sum();
+	}
+
+	/**
+	 * Carves a new slab into buffers, keeping the first and pooling the rest, or allocates a single buffer once the
+	 * pool has carved all it may
+	 */
+	private ByteBuffer carve() {
+		synchronized (this) {
+			// NOTE: a slab has to fit in a single buffer, which only matters for very large buffers
+			int slabBuffers = Math.min(Math.min(BUFFERS_PER_SLAB, Integer.MAX_VALUE / bufferSize),
+					maxPooled - carvedCount);
+
+			if (slabBuffers > 0) {
+				ByteBuffer slab = allocate(slabBuffers * bufferSize);
+
+				carvedCount += slabBuffers;
+				for (int a = 1; a < slabBuffers; a++) {
+					available.offerLast(slice(slab, a));
+					pooledCount.incrementAndGet();
+				}
+				return slice(slab, 0);
+			}
+		}
+		overflowCount.increment();
+
+		return allocate(bufferSize);
+	}
+
+	private ByteBuffer slice(ByteBuffer slab, int index) {
+		slab.limit((index + 1) * bufferSize).position(index * bufferSize);
+
+		return slab.slice();
+	}
+
+	private ByteBuffer allocate(int capacity) {
+		return isDirect ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+	}
+}
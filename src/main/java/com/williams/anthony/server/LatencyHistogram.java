@@ -0,0 +1,141 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 Anthony Williams.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.williams.anthony.server;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free latency histogram in the style of HdrHistogram: values (in microseconds) fall into buckets that double
+ * in width every power of two, each split into {@value #SUB_BUCKET_COUNT} linear sub-buckets, so any recorded value
+ * is known to within about 6% however large it is.
+ *
+ * Recording is a couple of shifts and one atomic increment; reading a quantile walks a few hundred counters, which is
+ * fine for a scrape every few seconds.
+ *
+ * @author Anthony Williams
+ */
+public final class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 4;
+	private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+	// NOTE: 2^40 microseconds is about 12 days, anything slower is recorded as that
+	private static final int MAX_VALUE_BITS = 40;
+	private static final long MAX_VALUE = (1L << MAX_VALUE_BITS) - 1;
+	private static final int BUCKET_COUNT = (MAX_VALUE_BITS - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+	private final LongAdder totalCount = new LongAdder();
+	private final LongAdder totalMicros = new LongAdder();
+	private final LongAccumulator maxMicros = new LongAccumulator(Math::max, 0);
+
+	/**
+	 * @param durationNanos How long the measured operation took
+	 */
+	public void record(long durationNanos) {
+		long micros = Math.min(Math.max(TimeUnit.NANOSECONDS.toMicros(durationNanos), 0), MAX_VALUE);
+
+		counts.incrementAndGet(bucketIndex(micros));
+		totalCount.increment();
+		totalMicros.add(micros);
+		maxMicros.accumulate(micros);
+	}
+
+	/**
+	 * @return The number of recorded values
+	 */
+	public long getCount() {
+		return totalCount.sum();
+	}
+
+	/**
+	 * @return The sum of the recorded values, in microseconds
+	 */
+	public long getTotalMicros() {
+		return totalMicros.sum();
+	}
+
+	/**
+	 * @return The largest recorded value, in microseconds
+	 */
+	public long getMaxMicros() {
+		return maxMicros.get();
+	}
+
+	/**
+	 * @param quantile Between 0 and 1 (e.g.: 0.99 for the 99th percentile)
+	 * @return The smallest value (in microseconds, rounded up to its bucket) that the given fraction of the recorded
+	 *         values do not exceed, or 0 when nothing has been recorded
+	 */
+	public long getQuantileMicros(double quantile) {
+		long[] snapshot = new long[BUCKET_COUNT];
+		long count = 0;
+
+		// NOTE: recording carries on while we read, so count what we actually saw rather than trusting totalCount
+		for (int index = 0; index < BUCKET_COUNT; index++) {
+			snapshot[index] = counts.get(index);
+			count += snapshot[index];
+		}
+		if (count == 0) {
+			return 0;
+		}
+
+		long rank = Math.max(1, (long) Math.ceil(quantile * count));
+		long seen = 0;
+
+		for (int index = 0; index < BUCKET_COUNT; index++) {
+			seen += snapshot[index];
+			if (seen >= rank) {
+				return Math.min(bucketUpperBound(index), getMaxMicros());
+			}
+		}
+
+		return getMaxMicros();
+	}
+
+	private static int bucketIndex(long micros) {
+		if (micros < SUB_BUCKET_COUNT) {
+			return (int) micros;
+		}
+
+		// NOTE: keep the top SUB_BUCKET_BITS + 1 bits, the shift says which power of two bucket the value is in
+		int shift = (63 - Long.numberOfLeadingZeros(micros)) - SUB_BUCKET_BITS;
+		int subBucket = (int) (micros >>> shift) - SUB_BUCKET_COUNT;
+
+		return (shift + 1) * SUB_BUCKET_COUNT + subBucket;
+	}
+
+	private static long bucketUpperBound(int index) {
+		if (index < SUB_BUCKET_COUNT) {
+			return index;
+		}
+
+		int shift = index / SUB_BUCKET_COUNT - 1;
+		long subBucket = index % SUB_BUCKET_COUNT + SUB_BUCKET_COUNT;
+
+		return ((subBucket + 1) << shift) - 1;
+	}
+}
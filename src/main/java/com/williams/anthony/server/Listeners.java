@@ -0,0 +1,106 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 Anthony Williams.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.williams.anthony.server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.ServerSocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Binds the listening sockets of a server. With <code>SO_REUSEPORT</code> several sockets (in this process or in
+ * others) share one port and the kernel spreads incoming connections across them, which lets each accepting thread
+ * run on its own core and lets a new server start on the port before the old one stops accepting.
+ *
+ * NOTE: Linux hands each connection to one socket when it arrives, so connections still waiting in the queue of a
+ * socket that is closed are reset; a new instance should be accepting before the old one stops.
+ *
+ * @author Anthony Williams
+ */
+public final class Listeners {
+
+	private Listeners() {
+	}
+
+	/**
+	 * @param port The TCP port to listen on (0 picks a free port, shared by every listener)
+	 * @param config The listener count and <code>SO_REUSEPORT</code> setting
+	 * @return The bound listeners, a single one when the platform does not support <code>SO_REUSEPORT</code>
+	 * @throws IOException When the port cannot be bound
+	 */
+	public static List<ServerSocketChannel> bind(int port, ServerConfig config) throws IOException {
+		List<ServerSocketChannel> listeners = new ArrayList<ServerSocketChannel>();
+
+		try {
+			ServerSocketChannel first = open(config.isReusePort());
+
+			first.bind(new InetSocketAddress(port));
+			listeners.add(first);
+			if (config.isReusePort() && !first.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT)) {
+				System.out.println("[Listeners.bind()] SO_REUSEPORT is not supported, using a single listener");
+				return listeners;
+			}
+
+			// NOTE: bind the rest to the port the first one got, which matters when asked for any free port
+			InetSocketAddress address = new InetSocketAddress(first.socket().getLocalPort());
+
+			for (int a = 1; a < config.getListenerCount(); a++) {
+				listeners.add(open(true).bind(address));
+			}
+
+			return listeners;
+		} catch (IOException | RuntimeException bindException) {
+			close(listeners);
+			throw bindException;
+		}
+	}
+
+	/**
+	 * Closes every listener, which makes blocked <code>accept</code> calls fail and lets the kernel route new
+	 * connections to any other socket sharing the port
+	 *
+	 * @param listeners The listeners to close
+	 */
+	public static void close(List<ServerSocketChannel> listeners) {
+		for (ServerSocketChannel listener : listeners) {
+			try {
+				listener.close();
+			} catch (IOException ioException) {
+				ioException.printStackTrace();
+			}
+		}
+	}
+
+	private static ServerSocketChannel open(boolean isReusePort) throws IOException {
+		ServerSocketChannel listener = ServerSocketChannel.open();
+
+		if (isReusePort && listener.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT)) {
+			listener.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+		}
+
+		return listener;
+	}
+}
@@ -0,0 +1,139 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 Anthony Williams.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.williams.anthony.server;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * A token bucket per client address, so one noisy client runs out of tokens without slowing down anyone else.
+ *
+ * Each bucket is a single <code>AtomicLong</code> updated with compare-and-set, using the generic cell rate algorithm
+ * (GCRA): instead of a token count and a refill time it stores the "theoretical arrival time" at which the bucket
+ * would be full again, which behaves exactly like a token bucket but fits in one word. Buckets live in independent
+ * stripes (by address hash) so neither lookups nor the pruning of idle clients contend on a single map.
+ *
+ * Inspired by: https://brandur.org/rate-limiting
+ *
+ * @author Anthony Williams
+ */
+public final class RateLimiter {
+
+	private static final int STRIPE_COUNT = 64;
+
+	private final long intervalNanos;
+	private final long burstNanos;
+	private final int maxClientsPerStripe;
+	private final LongSupplier clockNanos;
+	private final List<ConcurrentHashMap<InetAddress, AtomicLong>> stripes =
+			new ArrayList<ConcurrentHashMap<InetAddress, AtomicLong>>(STRIPE_COUNT);
+
+	/**
+	 * @param permitsPerSecond The sustained rate each client is allowed
+	 * @param burst The number of permits a client can use at once after being idle
+	 * @param maxClients The number of clients tracked before idle ones are forgotten
+	 */
+	public RateLimiter(double permitsPerSecond, int burst, int maxClients) {
+		this(permitsPerSecond, burst, maxClients, System::nanoTime);
+	}
+
+	/**
+	 * @param permitsPerSecond The sustained rate each client is allowed
+	 * @param burst The number of permits a client can use at once after being idle
+	 * @param maxClients The number of clients tracked before idle ones are forgotten
+	 * @param clockNanos The current time, in nanoseconds
+	 */
+	RateLimiter(double permitsPerSecond, int burst, int maxClients, LongSupplier clockNanos) {
+		if (permitsPerSecond <= 0 || burst < 1) {
+			throw new IllegalArgumentException("permitsPerSecond and burst must be positive");
+		}
+		this.intervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond));
+		this.burstNanos = intervalNanos * burst;
+		this.maxClientsPerStripe = Math.max(1, maxClients / STRIPE_COUNT);
+		this.clockNanos = clockNanos;
+		for (int a = 0; a < STRIPE_COUNT; a++) {
+			stripes.add(new ConcurrentHashMap<InetAddress, AtomicLong>());
+		}
+	}
+
+	/**
+	 * Takes a permit from the client's bucket
+	 *
+	 * @param address The client
+	 * @return Whether the client had a permit left
+	 */
+	public boolean tryAcquire(InetAddress address) {
+		AtomicLong bucket = bucketOf(address);
+		long nowNanos = clockNanos.getAsLong();
+
+		while (true) {
+			long arrivalNanos = bucket.get();
+			// NOTE: an idle bucket is full, it does not bank time beyond the burst
+			long nextArrivalNanos = Math.max(arrivalNanos, nowNanos) + intervalNanos;
+
+			if (nextArrivalNanos - nowNanos > burstNanos) {
+				return false;
+			}
+			if (bucket.compareAndSet(arrivalNanos, nextArrivalNanos)) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * @return The number of clients currently tracked
+	 */
+	public int getTrackedClients() {
+		int count = 0;
+
+		for (ConcurrentHashMap<InetAddress, AtomicLong> stripe : stripes) {
+			count += stripe.size();
+		}
+
+		return count;
+	}
+
+	private AtomicLong bucketOf(InetAddress address) {
+		ConcurrentHashMap<InetAddress, AtomicLong> stripe = stripes.get((address.hashCode() * 0x9E3779B9 >>> 16)
+				& (STRIPE_COUNT - 1));
+		AtomicLong bucket = stripe.get(address);
+
+		if (bucket != null) {
+			return bucket;
+		}
+		if (stripe.size() >= maxClientsPerStripe) {
+			long nowNanos = clockNanos.getAsLong();
+
+			// NOTE: a bucket that has refilled completely is no different from a new one, so it can go
+			stripe.values().removeIf(idle -> idle.get() <= nowNanos);
+		}
+
+		return stripe.computeIfAbsent(address, ignored -> new AtomicLong(Long.MIN_VALUE / 2));
+	}
+}
@@ -0,0 +1,429 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 Anthony Williams.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.williams.anthony.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import com.williams.anthony.http.HttpRequest;
+import com.williams.anthony.http.HttpResponse;
+import com.williams.anthony.http.HttpStatus;
+import com.williams.anthony.http.ResponseBody;
+import com.williams.anthony.http.ResponseEncoder;
+
+/**
+ * Compresses responses with <code>gzip</code> or <code>deflate</code> when the client's <code>Accept-Encoding</code>
+ * allows it and the body is text-like and large enough to be worth it.
+ *
+ * A response carrying an <code>ETag</code> is the same bytes every time, so its compressed variant is kept in a
+ * byte-bounded LRU cache and compressed only once. Any other in-memory body is compressed in one go, and a body of
+ * unknown or large size (a stream or a file region) is compressed on the fly as it is sent, in chunks.
+ *
+ * @author Anthony Williams
+ */
+public final class ResponseCompressor {
+
+	/** The gzip file format (RFC 1952) */
+	public static final String GZIP = "gzip";
+
+	/** The zlib format (RFC 1950), which is what HTTP calls <code>deflate</code> */
+	public static final String DEFLATE = "deflate";
+
+	// NOTE: past level 6 the extra CPU buys very little for typical web content
+	private static final int COMPRESSION_LEVEL = 6;
+	private static final int MAX_CACHED_ENTRY_BYTES = 1024 * 1024;
+	private static final int BUFFER_SIZE = 8 * 1024;
+	// NOTE: magic, deflate, no flags, no modification time, no extra flags, unknown OS (RFC 1952)
+	private static final byte[] GZIP_HEADER = new byte[] { 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0,
+		(byte) 0xff };
+	private static final String[] COMPRESSIBLE_TYPES = new String[] {
+		"text/", "application/json", "application/javascript", "application/xml", "image/svg+xml", "application/wasm"
+	};
+
+	private final boolean isEnabled;
+	private final int minBytes;
+	private final long maxCachedBytes;
+	// NOTE: access ordered, so the eldest entry is the least recently used
+	private final LinkedHashMap<String, byte[]> cache = new LinkedHashMap<String, byte[]>(16, 0.75f, true);
+	private long cachedBytes;
+
+	/**
+	 * @param isEnabled Whether to compress at all
+	 * @param minBytes The smallest body (in bytes) worth compressing
+	 * @param maxCachedBytes The most compressed bytes kept across every cached variant
+	 */
+	public ResponseCompressor(boolean isEnabled, int minBytes, long maxCachedBytes) {
+		this.isEnabled = isEnabled;
+		this.minBytes = minBytes;
+		this.maxCachedBytes = maxCachedBytes;
+	}
+
+	/**
+	 * @param config The compression settings
+	 * @return A compressor configured from the server's settings
+	 */
+	public static ResponseCompressor fromConfig(ServerConfig config) {
+		return new ResponseCompressor(config.isCompression(), config.getCompressionMinBytes(),
+				config.getCompressionCacheBytes());
+	}
+
+	/**
+	 * @param request The request, for its <code>Accept-Encoding</code>
+	 * @param response The handler's response
+	 * @return The response to send: the same one, or a compressed copy (whose body replaces and closes the original)
+	 * @throws IOException
+	 */
+	public HttpResponse compress(HttpRequest request, HttpResponse response) throws IOException {
+		int statusCode = response.getStatusCode();
+		Map<String, String> headers = response.getHeaders();
+		ResponseBody body = response.getBody();
+		long length = body.getLength();
+
+		// NOTE: a range is a slice of the uncompressed representation, so compressing it would be wrong
+		if (!isEnabled || !ResponseEncoder.hasContent(statusCode) || statusCode == HttpStatus.PARTIAL_CONTENT
+				|| headers.containsKey("Content-Encoding") || !isCompressible(headers.get("Content-Type"))
+				|| (length >= 0 && length < minBytes)) {
+			return response;
+		}
+
+		// NOTE: from here on the bytes sent depend on Accept-Encoding, so shared caches must key on it
+		response.withHeader("Vary", withVary(headers.get("Vary")));
+
+		String encoding = selectEncoding(request.getHeader("Accept-Encoding"));
+
+		if (encoding == null) {
+			return response;
+		}
+
+		String entityTag = headers.get("ETag");
+		ByteBuffer content = body.asBuffer();
+		ResponseBody compressed;
+
+		if (entityTag != null && length >= 0 && length <= MAX_CACHED_ENTRY_BYTES) {
+			compressed = ResponseBody.of(compressCached(encoding + ' ' + request.getPath() + ' ' + entityTag, body,
+					encoding));
+			body.close();
+		} else if (content != null) {
+			compressed = ResponseBody.of(compress(content, encoding));
+			body.close();
+		} else {
+			compressed = new CompressingBody(body, encoding);
+		}
+
+		HttpResponse result = new HttpResponse(statusCode, compressed);
+
+		for (Map.Entry<String, String> header : headers.entrySet()) {
+			result.withHeader(header.getKey(), header.getValue());
+		}
+		result.withHeader("Content-Encoding", encoding);
+		// NOTE: the compressed bytes differ from the original ones, a weak tag still lets the client revalidate
+		if (entityTag != null && !entityTag.startsWith("W/")) {
+			result.withHeader("ETag", "W/" + entityTag);
+		}
+		return result;
+	}
+
+	/**
+	 * @return The number of compressed bytes currently cached
+	 */
+	public synchronized long getCachedBytes() {
+		return cachedBytes;
+	}
+
+	/**
+	 * Picks the coding the client prefers (by <code>q</code> value) among the ones we produce, <code>gzip</code>
+	 * winning ties
+	 *
+	 * @param acceptEncoding The <code>Accept-Encoding</code> header, may be <code>null</code>
+	 * @return <code>gzip</code>, <code>deflate</code>, or <code>null</code> to send the body as is
+	 */
+	static String selectEncoding(String acceptEncoding) {
+		if (acceptEncoding == null) {
+			return null;
+		}
+
+		float gzipQuality = -1;
+		float deflateQuality = -1;
+		float anyQuality = -1;
+
+		for (String candidate : acceptEncoding.split(",")) {
+			int semicolon = candidate.indexOf(';');
+			String coding = (semicolon < 0 ? candidate : candidate.substring(0, semicolon)).trim()
+					.toLowerCase(Locale.ROOT);
+			float quality = semicolon < 0 ? 1 : parseQuality(candidate.substring(semicolon + 1));
+
+			if (coding.equals(GZIP) || coding.equals("x-gzip")) {
+				gzipQuality = quality;
+			} else if (coding.equals(DEFLATE)) {
+				deflateQuality = quality;
+			} else if (coding.equals("*")) {
+				anyQuality = quality;
+			}
+		}
+
+		// NOTE: a coding the client did not name is acceptable with the quality of "*" (if any)
+		gzipQuality = gzipQuality < 0 ? anyQuality : gzipQuality;
+		deflateQuality = deflateQuality < 0 ? anyQuality : deflateQuality;
+
+		if (gzipQuality > 0 && gzipQuality >= deflateQuality) {
+			return GZIP;
+		}
+
+		return deflateQuality > 0 ? DEFLATE : null;
+	}
+
+	/**
+	 * @param parameters The part after the coding, e.g.: <code>q=0.5</code>
+	 * @return The quality, 1 when it is missing and 0 when it is malformed
+	 */
+	private static float parseQuality(String parameters) {
+		for (String parameter : parameters.split(";")) {
+			String trimmed = parameter.trim();
+
+			if (trimmed.startsWith("q=") || trimmed.startsWith("Q=")) {
+				try {
+					return Float.parseFloat(trimmed.substring(2));
+				} catch (NumberFormatException numberFormatException) {
+					return 0;
+				}
+			}
+		}
+
+		return 1;
+	}
+
+	private static boolean isCompressible(String contentType) {
+		if (contentType == null) {
+			return false;
+		}
+
+		String lowerCase = contentType.toLowerCase(Locale.ROOT);
+
+		for (String type : COMPRESSIBLE_TYPES) {
+			if (lowerCase.startsWith(type)) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	private static String withVary(String vary) {
+		if (vary == null || vary.isEmpty()) {
+			return "Accept-Encoding";
+		}
+
+		return vary.toLowerCase(Locale.ROOT).contains("accept-encoding") ? vary : vary + ", Accept-Encoding";
+	}
+
+	/**
+	 * @return The cached variant, compressing (and caching) it first on a miss
+	 */
+	private byte[] compressCached(String key, ResponseBody body, String encoding) throws IOException {
+		synchronized (this) {
+			byte[] cached = cache.get(key);
+
+			if (cached != null) {
+				return cached;
+			}
+		}
+
+		ByteBuffer content = body.asBuffer();
+
+		if (content == null) {
+			// NOTE: a file region, read it into memory once
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream((int) body.getLength());
+			WritableByteChannel sink = Channels.newChannel(bytes);
+
+			while (!body.writeTo(sink)) {
+				continue;
+			}
+			content = ByteBuffer.wrap(bytes.toByteArray());
+		}
+
+		byte[] compressed = compress(content, encoding);
+
+		// NOTE: two threads may compress the same variant on a cold cache, the second put just replaces the first
+		synchronized (this) {
+			if (compressed.length <= maxCachedBytes) {
+				byte[] previous = cache.put(key, compressed);
+
+				cachedBytes += compressed.length - (previous == null ? 0 : previous.length);
+				while (cachedBytes > maxCachedBytes) {
+					Map.Entry<String, byte[]> eldest = cache.entrySet().iterator().next();
+
+					cachedBytes -= eldest.getValue().length;
+					cache.remove(eldest.getKey());
+				}
+			}
+		}
+		return compressed;
+	}
+
+	/**
+	 * @param content The bytes to compress, from position to limit (left untouched)
+	 * @param encoding <code>gzip</code> or <code>deflate</code>
+	 * @return The compressed bytes
+	 */
+	static byte[] compress(ByteBuffer content, String encoding) {
+		boolean isGzip = GZIP.equals(encoding);
+		Deflater deflater = new Deflater(COMPRESSION_LEVEL, isGzip);
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream(Math.max(64, content.remaining() / 4));
+		byte[] chunk = new byte[BUFFER_SIZE];
+
+		try {
+			if (isGzip) {
+				compressed.write(GZIP_HEADER, 0, GZIP_HEADER.length);
+			}
+			deflater.setInput(content.duplicate());
+			deflater.finish();
+			while (!deflater.finished()) {
+				compressed.write(chunk, 0, deflater.deflate(chunk));
+			}
+			if (isGzip) {
+				CRC32 checksum = new CRC32();
+
+				checksum.update(content.duplicate());
+				writeIntLittleEndian(compressed, (int) checksum.getValue());
+				writeIntLittleEndian(compressed, content.remaining());
+			}
+		} finally {
+			deflater.end();
+		}
+
+		return compressed.toByteArray();
+	}
+
+	private static void writeIntLittleEndian(ByteArrayOutputStream target, int value) {
+		target.write(value);
+		target.write(value >> 8);
+		target.write(value >> 16);
+		target.write(value >> 24);
+	}
+
+	/**
+	 * Compresses another body as it is sent: each time the socket takes the pending output, the next part of the
+	 * inner body is written into an input buffer and deflated, so neither side has to fit in memory
+	 */
+	private static final class CompressingBody extends ResponseBody implements WritableByteChannel {
+		private final ResponseBody body;
+		private final Deflater deflater;
+		// NOTE: only gzip carries a checksum of its own, zlib's is written by the deflater
+		private final CRC32 checksum;
+		// NOTE: not leased from the servers' pools, the deflater needs arrays and the selector engine's are direct
+		private final ByteBuffer input = ByteBuffer.allocate(BUFFER_SIZE);
+		private final ByteBuffer output = ByteBuffer.allocate(BUFFER_SIZE);
+		private boolean isBodyDone;
+		private boolean isFinished;
+
+		private CompressingBody(ResponseBody body, String encoding) {
+			boolean isGzip = GZIP.equals(encoding);
+
+			this.body = body;
+			this.deflater = new Deflater(COMPRESSION_LEVEL, isGzip);
+			this.checksum = isGzip ? new CRC32() : null;
+			if (isGzip) {
+				output.put(GZIP_HEADER);
+			}
+			output.flip();
+		}
+
+		@Override
+		public long getLength() {
+			return -1;
+		}
+
+		@Override
+		public boolean writeTo(WritableByteChannel channel) throws IOException {
+			while (true) {
+				if (output.hasRemaining()) {
+					channel.write(output);
+					if (output.hasRemaining()) {
+						return false;
+					}
+				}
+				if (isFinished) {
+					return true;
+				}
+
+				output.clear();
+				if (deflater.finished()) {
+					if (checksum != null) {
+						putIntLittleEndian((int) checksum.getValue());
+						putIntLittleEndian(deflater.getTotalIn());
+					}
+					isFinished = true;
+				} else {
+					if (deflater.needsInput() && !isBodyDone) {
+						// NOTE: the inner body writes into this (see write below) until the input buffer is full
+						input.clear();
+						isBodyDone = body.writeTo(this);
+						if (checksum != null) {
+							checksum.update(input.array(), 0, input.position());
+						}
+						deflater.setInput(input.array(), 0, input.position());
+						if (isBodyDone) {
+							deflater.finish();
+						}
+					}
+					output.position(deflater.deflate(output.array(), 0, output.capacity()));
+				}
+				output.flip();
+			}
+		}
+
+		@Override
+		public int write(ByteBuffer source) {
+			int length = Math.min(source.remaining(), input.remaining());
+			int limit = source.limit();
+
+			source.limit(source.position() + length);
+			input.put(source);
+			source.limit(limit);
+			return length;
+		}
+
+		@Override
+		public boolean isOpen() {
+			return true;
+		}
+
+		@Override
+		public void close() throws IOException {
+			deflater.end();
+			body.close();
+		}
+
+		private void putIntLittleEndian(int value) {
+			output.put((byte) value).put((byte) (value >> 8)).put((byte) (value >> 16)).put((byte) (value >> 24));
+		}
+	}
+}
@@ -0,0 +1,749 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 Anthony Williams.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.williams.anthony.server;
+
+import java.util.Locale;
+
+/**
+ * Settings shared by the server engines, read from <code>server.*</code> system properties by default
+ *
+ * @author Anthony Williams
+ */
+public final class ServerConfig {
+
+	private String engine = "blocking";
+	private boolean isVirtualThreads = false;
+	private int workerCount = 0;
+	private int queueCapacity = 64;
+	private int eventLoopCount = Runtime.getRuntime().availableProcessors();
+	private int listenerCount = 1;
+	private boolean isReusePort = false;
+	private long drainTimeoutMillis = 30_000;
+	private int idleTimeoutMillis = 5000;
+	private int headerTimeoutMillis = 10_000;
+	private int readTimeoutMillis = 10_000;
+	private long requestTimeoutMillis = 30_000;
+	private int maxHeaderBytes = 8 * 1024;
+	private int maxLineBytes = 8 * 1024;
+	private int maxHeaderCount = 100;
+	private int maxPooledBuffers = 1024;
+	private boolean isBufferLeakDetection = false;
+	private int sessionTimeoutMillis = 300000;
+	private int maxRequestsPerConnection = 100;
+	private long maxRequestBodyBytes = 1024L * 1024;
+	private long maxBufferedBodyBytes = 64L * 1024 * 1024;
+	private int maxConnections = 10_000;
+	private double rateLimitPerSecond = 0;
+	private int rateLimitBurst = 100;
+	private String documentRoot = null;
+	private String metricsPath = "/metrics";
+	private boolean isCompression = true;
+	private int compressionMinBytes = 1024;
+	private long compressionCacheBytes = 16L * 1024 * 1024;
+	private long responseCacheBytes = 8L * 1024 * 1024;
+	private AccessLog.Level accessLogLevel = AccessLog.Level.INFO;
+	private String accessLogFile = null;
+	private long accessLogMaxFileBytes = 10L * 1024 * 1024;
+
+	/**
+	 * Reads every setting from its system property, falling back to the default when it is not set
+	 * (e.g.: <code>-Dserver.workers=8</code>)
+	 *
+	 * @return A new configuration
+	 */
+	public static ServerConfig fromSystemProperties() {
+		ServerConfig config = new ServerConfig();
+
+		config.setEngine(System.getProperty("server.engine", config.engine));
+		config.setVirtualThreads(Boolean.parseBoolean(System.getProperty("server.virtualThreads", "false")));
+		config.setWorkerCount(Integer.getInteger("server.workers", config.workerCount));
+		config.setQueueCapacity(Integer.getInteger("server.queue", config.queueCapacity));
+		config.setEventLoopCount(Integer.getInteger("server.eventLoops", config.eventLoopCount));
+		config.setListenerCount(Integer.getInteger("server.listeners", config.listenerCount));
+		config.setReusePort(Boolean.parseBoolean(System.getProperty("server.reusePort", "false")));
+		config.setDrainTimeoutMillis(Long.getLong("server.drainTimeoutMillis", config.drainTimeoutMillis));
+		config.setIdleTimeoutMillis(Integer.getInteger("server.idleTimeoutMillis", config.idleTimeoutMillis));
+		config.setHeaderTimeoutMillis(Integer.getInteger("server.headerTimeoutMillis", config.headerTimeoutMillis));
+		config.setReadTimeoutMillis(Integer.getInteger("server.readTimeoutMillis", config.readTimeoutMillis));
+		config.setRequestTimeoutMillis(Long.getLong("server.requestTimeoutMillis", config.requestTimeoutMillis));
+		config.setMaxHeaderBytes(Integer.getInteger("server.maxHeaderBytes", config.maxHeaderBytes));
+		config.setMaxLineBytes(Integer.getInteger("server.maxLineBytes", config.maxLineBytes));
+		config.setMaxHeaderCount(Integer.getInteger("server.maxHeaderCount", config.maxHeaderCount));
+		config.setMaxPooledBuffers(Integer.getInteger("server.maxPooledBuffers", config.maxPooledBuffers));
+		config.setBufferLeakDetection(Boolean.parseBoolean(System.getProperty("server.bufferLeakDetection", "false")));
+		config.setSessionTimeoutMillis(Integer.getInteger("server.sessionTimeoutMillis", config.sessionTimeoutMillis));
+		config.setMaxRequestsPerConnection(Integer.getInteger("server.maxRequestsPerConnection",
+				config.maxRequestsPerConnection));
+		config.setMaxRequestBodyBytes(Long.getLong("server.maxRequestBodyBytes", config.maxRequestBodyBytes));
+		config.setMaxBufferedBodyBytes(Long.getLong("server.maxBufferedBodyBytes", config.maxBufferedBodyBytes));
+		config.setMaxConnections(Integer.getInteger("server.maxConnections", config.maxConnections));
+		config.setRateLimitPerSecond(Double.parseDouble(
+				System.getProperty("server.rateLimitPerSecond", Double.toString(config.rateLimitPerSecond))));
+		config.setRateLimitBurst(Integer.getInteger("server.rateLimitBurst", config.rateLimitBurst));
+		config.setDocumentRoot(System.getProperty("server.documentRoot", config.documentRoot));
+		config.setMetricsPath(System.getProperty("server.metricsPath", config.metricsPath));
+		config.setCompression(Boolean.parseBoolean(System.getProperty("server.compression", "true")));
+		config.setCompressionMinBytes(Integer.getInteger("server.compressionMinBytes", config.compressionMinBytes));
+		config.setCompressionCacheBytes(Long.getLong("server.compressionCacheBytes", config.compressionCacheBytes));
+		config.setResponseCacheBytes(Long.getLong("server.responseCacheBytes", config.responseCacheBytes));
+		config.setAccessLogLevel(AccessLog.Level.valueOf(
+				System.getProperty("server.accessLogLevel", config.accessLogLevel.name()).toUpperCase(Locale.ROOT)));
+		config.setAccessLogFile(System.getProperty("server.accessLogFile", config.accessLogFile));
+		config.setAccessLogMaxFileBytes(Long.getLong("server.accessLogMaxFileBytes", config.accessLogMaxFileBytes));
+
+		return config;
+	}
+
+	/**
+	 * @return The name of the server implementation to run (<code>blocking</code>, <code>selector</code> or
+	 *            <code>prompter</code>)
+	 */
+	public String getEngine() {
+		return engine;
+	}
+
+	/**
+	 * @param engine The name of the server implementation to run (<code>blocking</code>, <code>selector</code> or
+	 *            <code>prompter</code>)
+	 * @return This configuration
+	 */
+	public ServerConfig setEngine(String engine) {
+		this.engine = engine;
+		return this;
+	}
+
+	/**
+	 * @return Whether the <code>blocking</code> engine serves each connection on its own virtual thread (instead of
+	 *         the worker pool)
+	 */
+	public boolean isVirtualThreads() {
+		return isVirtualThreads;
+	}
+
+	/**
+	 * @param isVirtualThreads Whether the <code>blocking</code> engine serves each connection on its own virtual
+	 *        thread (instead of the worker pool, which it still uses on a JDK older than 21)
+	 * @return This configuration
+	 */
+	public ServerConfig setVirtualThreads(boolean isVirtualThreads) {
+		this.isVirtualThreads = isVirtualThreads;
+		return this;
+	}
+
+	/**
+	 * @return The number of worker threads (0 handles every request on the accepting thread)
+	 */
+	public int getWorkerCount() {
+		return workerCount;
+	}
+
+	/**
+	 * @param workerCount The number of worker threads (0 handles every request on the accepting thread)
+	 * @return This configuration
+	 */
+	public ServerConfig setWorkerCount(int workerCount) {
+		if (workerCount < 0) {
+			throw new IllegalArgumentException("workerCount must not be negative");
+		}
+		this.workerCount = workerCount;
+		return this;
+	}
+
+	/**
+	 * @return The number of connections allowed to wait for a worker before new ones are rejected with a 503
+	 */
+	public int getQueueCapacity() {
+		return queueCapacity;
+	}
+
+	/**
+	 * @param queueCapacity The number of connections allowed to wait for a worker before new ones are rejected
+	 * @return This configuration
+	 */
+	public ServerConfig setQueueCapacity(int queueCapacity) {
+		if (queueCapacity < 0) {
+			throw new IllegalArgumentException("queueCapacity must not be negative");
+		}
+		this.queueCapacity = queueCapacity;
+		return this;
+	}
+
+	/**
+	 * @return The number of selector threads used by the <code>selector</code> engine
+	 */
+	public int getEventLoopCount() {
+		return eventLoopCount;
+	}
+
+	/**
+	 * @param eventLoopCount The number of selector threads used by the <code>selector</code> engine
+	 * @return This configuration
+	 */
+	public ServerConfig setEventLoopCount(int eventLoopCount) {
+		if (eventLoopCount < 1) {
+			throw new IllegalArgumentException("eventLoopCount must be positive");
+		}
+		this.eventLoopCount = eventLoopCount;
+		return this;
+	}
+
+	/**
+	 * @return The number of listening sockets (each with its own accepting thread) bound to the port
+	 */
+	public int getListenerCount() {
+		return listenerCount;
+	}
+
+	/**
+	 * @param listenerCount The number of listening sockets (each with its own accepting thread) bound to the port,
+	 *        more than one needs <code>SO_REUSEPORT</code>
+	 * @return This configuration
+	 */
+	public ServerConfig setListenerCount(int listenerCount) {
+		if (listenerCount < 1) {
+			throw new IllegalArgumentException("listenerCount must be positive");
+		}
+		this.listenerCount = listenerCount;
+		return this;
+	}
+
+	/**
+	 * @return Whether the listening sockets are bound with <code>SO_REUSEPORT</code>, so other listeners (in this
+	 *         process or another) can share the port
+	 */
+	public boolean isReusePort() {
+		return isReusePort || listenerCount > 1;
+	}
+
+	/**
+	 * @param isReusePort Whether the listening sockets are bound with <code>SO_REUSEPORT</code>, so other listeners
+	 *        (in this process or another) can share the port
+	 * @return This configuration
+	 */
+	public ServerConfig setReusePort(boolean isReusePort) {
+		this.isReusePort = isReusePort;
+		return this;
+	}
+
+	/**
+	 * @return How long (in milliseconds) a graceful shutdown waits for in-flight requests before closing anyway
+	 */
+	public long getDrainTimeoutMillis() {
+		return drainTimeoutMillis;
+	}
+
+	/**
+	 * @param drainTimeoutMillis How long (in milliseconds) a graceful shutdown waits for in-flight requests before
+	 *        closing anyway
+	 * @return This configuration
+	 */
+	public ServerConfig setDrainTimeoutMillis(long drainTimeoutMillis) {
+		if (drainTimeoutMillis < 0) {
+			throw new IllegalArgumentException("drainTimeoutMillis must not be negative");
+		}
+		this.drainTimeoutMillis = drainTimeoutMillis;
+		return this;
+	}
+
+	/**
+	 * @return How long (in milliseconds) a persistent connection may sit between requests before it is closed
+	 */
+	public int getIdleTimeoutMillis() {
+		return idleTimeoutMillis;
+	}
+
+	/**
+	 * @param idleTimeoutMillis How long (in milliseconds) a persistent connection may sit between requests
+	 * @return This configuration
+	 */
+	public ServerConfig setIdleTimeoutMillis(int idleTimeoutMillis) {
+		if (idleTimeoutMillis < 1) {
+			throw new IllegalArgumentException("idleTimeoutMillis must be positive");
+		}
+		this.idleTimeoutMillis = idleTimeoutMillis;
+		return this;
+	}
+
+	/**
+	 * @return How long (in milliseconds) a client may take to send a whole request head, however steadily the bytes
+	 *         trickle in
+	 */
+	public int getHeaderTimeoutMillis() {
+		return headerTimeoutMillis;
+	}
+
+	/**
+	 * @param headerTimeoutMillis How long (in milliseconds) a client may take to send a whole request head
+	 * @return This configuration
+	 */
+	public ServerConfig setHeaderTimeoutMillis(int headerTimeoutMillis) {
+		if (headerTimeoutMillis < 1) {
+			throw new IllegalArgumentException("headerTimeoutMillis must be positive");
+		}
+		this.headerTimeoutMillis = headerTimeoutMillis;
+		return this;
+	}
+
+	/**
+	 * @return How long (in milliseconds) a read in the middle of a request (head or body) may wait for more bytes
+	 */
+	public int getReadTimeoutMillis() {
+		return readTimeoutMillis;
+	}
+
+	/**
+	 * @param readTimeoutMillis How long (in milliseconds) a read in the middle of a request may wait for more bytes
+	 * @return This configuration
+	 */
+	public ServerConfig setReadTimeoutMillis(int readTimeoutMillis) {
+		if (readTimeoutMillis < 1) {
+			throw new IllegalArgumentException("readTimeoutMillis must be positive");
+		}
+		this.readTimeoutMillis = readTimeoutMillis;
+		return this;
+	}
+
+	/**
+	 * @return How long (in milliseconds) after its first byte a request has to be answered, handed to handlers as
+	 *         the request's deadline (0 for no deadline)
+	 */
+	public long getRequestTimeoutMillis() {
+		return requestTimeoutMillis;
+	}
+
+	/**
+	 * @param requestTimeoutMillis How long (in milliseconds) after its first byte a request has to be answered (0
+	 *        for no deadline)
+	 * @return This configuration
+	 */
+	public ServerConfig setRequestTimeoutMillis(long requestTimeoutMillis) {
+		if (requestTimeoutMillis < 0) {
+			throw new IllegalArgumentException("requestTimeoutMillis must not be negative");
+		}
+		this.requestTimeoutMillis = requestTimeoutMillis;
+		return this;
+	}
+
+	/**
+	 * @return The largest request head (request line and headers) accepted, a larger one is answered with a 431
+	 */
+	public int getMaxHeaderBytes() {
+		return maxHeaderBytes;
+	}
+
+	/**
+	 * @param maxHeaderBytes The largest request head (request line and headers) accepted
+	 * @return This configuration
+	 */
+	public ServerConfig setMaxHeaderBytes(int maxHeaderBytes) {
+		if (maxHeaderBytes < 64) {
+			throw new IllegalArgumentException("maxHeaderBytes must be at least 64");
+		}
+		this.maxHeaderBytes = maxHeaderBytes;
+		return this;
+	}
+
+	/**
+	 * @return The longest request line (a 414 past it) or header line (a 431 past it) accepted
+	 */
+	public int getMaxLineBytes() {
+		return maxLineBytes;
+	}
+
+	/**
+	 * @param maxLineBytes The longest request line or header line accepted
+	 * @return This configuration
+	 */
+	public ServerConfig setMaxLineBytes(int maxLineBytes) {
+		if (maxLineBytes < 16) {
+			throw new IllegalArgumentException("maxLineBytes must be at least 16");
+		}
+		this.maxLineBytes = maxLineBytes;
+		return this;
+	}
+
+	/**
+	 * @return The most headers accepted on one request, a 431 past it
+	 */
+	public int getMaxHeaderCount() {
+		return maxHeaderCount;
+	}
+
+	/**
+	 * @param maxHeaderCount The most headers accepted on one request
+	 * @return This configuration
+	 */
+	public ServerConfig setMaxHeaderCount(int maxHeaderCount) {
+		if (maxHeaderCount < 0) {
+			throw new IllegalArgumentException("maxHeaderCount must not be negative");
+		}
+		this.maxHeaderCount = maxHeaderCount;
+		return this;
+	}
+
+	/**
+	 * @return The most I/O buffers the server keeps for reuse, each connection leases one or two
+	 */
+	public int getMaxPooledBuffers() {
+		return maxPooledBuffers;
+	}
+
+	/**
+	 * @param maxPooledBuffers The most I/O buffers the server keeps for reuse
+	 * @return This configuration
+	 */
+	public ServerConfig setMaxPooledBuffers(int maxPooledBuffers) {
+		if (maxPooledBuffers < 0) {
+			throw new IllegalArgumentException("maxPooledBuffers must not be negative");
+		}
+		this.maxPooledBuffers = maxPooledBuffers;
+		return this;
+	}
+
+	/**
+	 * @return Whether every leased I/O buffer is tracked, so buffers never given back are reported when the server
+	 *         closes (costs a stack trace per lease)
+	 */
+	public boolean isBufferLeakDetection() {
+		return isBufferLeakDetection;
+	}
+
+	/**
+	 * @param isBufferLeakDetection Whether every leased I/O buffer is tracked, so buffers never given back are
+	 *        reported when the server closes
+	 * @return This configuration
+	 */
+	public ServerConfig setBufferLeakDetection(boolean isBufferLeakDetection) {
+		this.isBufferLeakDetection = isBufferLeakDetection;
+		return this;
+	}
+
+	/**
+	 * @return How long (in milliseconds) a prompter session waits for the user to answer before it is closed
+	 */
+	public int getSessionTimeoutMillis() {
+		return sessionTimeoutMillis;
+	}
+
+	/**
+	 * @param sessionTimeoutMillis How long (in milliseconds) a prompter session waits for the user to answer
+	 * @return This configuration
+	 */
+	public ServerConfig setSessionTimeoutMillis(int sessionTimeoutMillis) {
+		if (sessionTimeoutMillis < 1) {
+			throw new IllegalArgumentException("sessionTimeoutMillis must be positive");
+		}
+		this.sessionTimeoutMillis = sessionTimeoutMillis;
+		return this;
+	}
+
+	/**
+	 * @return The number of requests served on one connection before the server closes it
+	 */
+	public int getMaxRequestsPerConnection() {
+		return maxRequestsPerConnection;
+	}
+
+	/**
+	 * @param maxRequestsPerConnection The number of requests served on one connection before the server closes it
+	 *        (1 disables persistent connections)
+	 * @return This configuration
+	 */
+	public ServerConfig setMaxRequestsPerConnection(int maxRequestsPerConnection) {
+		if (maxRequestsPerConnection < 1) {
+			throw new IllegalArgumentException("maxRequestsPerConnection must be positive");
+		}
+		this.maxRequestsPerConnection = maxRequestsPerConnection;
+		return this;
+	}
+
+	/**
+	 * @return The largest request body (in bytes) the server accepts, larger ones are answered with a 413
+	 */
+	public long getMaxRequestBodyBytes() {
+		return maxRequestBodyBytes;
+	}
+
+	/**
+	 * @param maxRequestBodyBytes The largest request body (in bytes) the server accepts, larger ones are answered
+	 *        with a 413 (the <code>selector</code> engine holds the whole body in memory)
+	 * @return This configuration
+	 */
+	public ServerConfig setMaxRequestBodyBytes(long maxRequestBodyBytes) {
+		if (maxRequestBodyBytes < 0) {
+			throw new IllegalArgumentException("maxRequestBodyBytes must not be negative");
+		}
+		this.maxRequestBodyBytes = maxRequestBodyBytes;
+		return this;
+	}
+
+	/**
+	 * @return The most request body bytes the <code>selector</code> engine holds in memory at once, across every
+	 *         connection; a body that does not fit is answered with a 503
+	 */
+	public long getMaxBufferedBodyBytes() {
+		return maxBufferedBodyBytes;
+	}
+
+	/**
+	 * @param maxBufferedBodyBytes The most request body bytes the <code>selector</code> engine holds in memory at
+	 *        once, across every connection (the <code>blocking</code> engine streams bodies instead)
+	 * @return This configuration
+	 */
+	public ServerConfig setMaxBufferedBodyBytes(long maxBufferedBodyBytes) {
+		if (maxBufferedBodyBytes < 0) {
+			throw new IllegalArgumentException("maxBufferedBodyBytes must not be negative");
+		}
+		this.maxBufferedBodyBytes = maxBufferedBodyBytes;
+		return this;
+	}
+
+	/**
+	 * @return The most connections open at once, further ones are answered with a 503 as soon as they are accepted
+	 */
+	public int getMaxConnections() {
+		return maxConnections;
+	}
+
+	/**
+	 * @param maxConnections The most connections open at once, further ones are answered with a 503 as soon as they
+	 *        are accepted
+	 * @return This configuration
+	 */
+	public ServerConfig setMaxConnections(int maxConnections) {
+		if (maxConnections < 1) {
+			throw new IllegalArgumentException("maxConnections must be positive");
+		}
+		this.maxConnections = maxConnections;
+		return this;
+	}
+
+	/**
+	 * @return The sustained number of requests per second allowed from one client address, where opening a
+	 *         connection pays for its first request (0 for no limit)
+	 */
+	public double getRateLimitPerSecond() {
+		return rateLimitPerSecond;
+	}
+
+	/**
+	 * @param rateLimitPerSecond The sustained number of requests per second allowed from one client address, where
+	 *        opening a connection pays for its first request; further ones are answered with a 429 (0 for no limit)
+	 * @return This configuration
+	 */
+	public ServerConfig setRateLimitPerSecond(double rateLimitPerSecond) {
+		if (rateLimitPerSecond < 0 || Double.isNaN(rateLimitPerSecond)) {
+			throw new IllegalArgumentException("rateLimitPerSecond must not be negative");
+		}
+		this.rateLimitPerSecond = rateLimitPerSecond;
+		return this;
+	}
+
+	/**
+	 * @return The number of requests a client can send at once after being idle
+	 */
+	public int getRateLimitBurst() {
+		return rateLimitBurst;
+	}
+
+	/**
+	 * @param rateLimitBurst The number of requests a client can send at once after being idle
+	 * @return This configuration
+	 */
+	public ServerConfig setRateLimitBurst(int rateLimitBurst) {
+		if (rateLimitBurst < 1) {
+			throw new IllegalArgumentException("rateLimitBurst must be positive");
+		}
+		this.rateLimitBurst = rateLimitBurst;
+		return this;
+	}
+
+	/**
+	 * @return The directory served under <code>/static/</code>, or <code>null</code> to serve no files
+	 */
+	public String getDocumentRoot() {
+		return documentRoot;
+	}
+
+	/**
+	 * @param documentRoot The directory served under <code>/static/</code>, or <code>null</code> to serve no files
+	 * @return This configuration
+	 */
+	public ServerConfig setDocumentRoot(String documentRoot) {
+		this.documentRoot = documentRoot;
+		return this;
+	}
+
+	/**
+	 * @return The path the Prometheus metrics are served at, or <code>null</code> to not serve them
+	 */
+	public String getMetricsPath() {
+		return metricsPath;
+	}
+
+	/**
+	 * @param metricsPath The path the Prometheus metrics are served at (e.g.: <code>/metrics</code>), empty or
+	 *        <code>null</code> to not serve them
+	 * @return This configuration
+	 */
+	public ServerConfig setMetricsPath(String metricsPath) {
+		if (metricsPath != null && !metricsPath.isEmpty() && !metricsPath.startsWith("/")) {
+			throw new IllegalArgumentException("metricsPath must start with '/'");
+		}
+		this.metricsPath = metricsPath == null || metricsPath.isEmpty() ? null : metricsPath;
+		return this;
+	}
+
+	/**
+	 * @return Whether text-like responses are compressed when the client accepts <code>gzip</code> or
+	 *         <code>deflate</code>
+	 */
+	public boolean isCompression() {
+		return isCompression;
+	}
+
+	/**
+	 * @param isCompression Whether text-like responses are compressed when the client accepts <code>gzip</code> or
+	 *        <code>deflate</code>
+	 * @return This configuration
+	 */
+	public ServerConfig setCompression(boolean isCompression) {
+		this.isCompression = isCompression;
+		return this;
+	}
+
+	/**
+	 * @return The smallest response body (in bytes) worth compressing
+	 */
+	public int getCompressionMinBytes() {
+		return compressionMinBytes;
+	}
+
+	/**
+	 * @param compressionMinBytes The smallest response body (in bytes) worth compressing
+	 * @return This configuration
+	 */
+	public ServerConfig setCompressionMinBytes(int compressionMinBytes) {
+		if (compressionMinBytes < 0) {
+			throw new IllegalArgumentException("compressionMinBytes must not be negative");
+		}
+		this.compressionMinBytes = compressionMinBytes;
+		return this;
+	}
+
+	/**
+	 * @return The most bytes kept across the cached compressed variants of responses carrying an <code>ETag</code>
+	 */
+	public long getCompressionCacheBytes() {
+		return compressionCacheBytes;
+	}
+
+	/**
+	 * @param compressionCacheBytes The most bytes kept across the cached compressed variants of responses carrying
+	 *        an <code>ETag</code> (0 compresses them every time)
+	 * @return This configuration
+	 */
+	public ServerConfig setCompressionCacheBytes(long compressionCacheBytes) {
+		if (compressionCacheBytes < 0) {
+			throw new IllegalArgumentException("compressionCacheBytes must not be negative");
+		}
+		this.compressionCacheBytes = compressionCacheBytes;
+		return this;
+	}
+
+	/**
+	 * @return The most body bytes kept across the responses cached in front of handlers
+	 */
+	public long getResponseCacheBytes() {
+		return responseCacheBytes;
+	}
+
+	/**
+	 * @param responseCacheBytes The most body bytes kept across the responses cached in front of handlers (0 turns
+	 *        the cache off)
+	 * @return This configuration
+	 */
+	public ServerConfig setResponseCacheBytes(long responseCacheBytes) {
+		if (responseCacheBytes < 0) {
+			throw new IllegalArgumentException("responseCacheBytes must not be negative");
+		}
+		this.responseCacheBytes = responseCacheBytes;
+		return this;
+	}
+
+	/**
+	 * @return What the access log records
+	 */
+	public AccessLog.Level getAccessLogLevel() {
+		return accessLogLevel;
+	}
+
+	/**
+	 * @param accessLogLevel What the access log records (<code>OFF</code>, <code>ERROR</code>, <code>INFO</code> or
+	 *        <code>DEBUG</code>)
+	 * @return This configuration
+	 */
+	public ServerConfig setAccessLogLevel(AccessLog.Level accessLogLevel) {
+		if (accessLogLevel == null) {
+			throw new IllegalArgumentException("accessLogLevel must not be null");
+		}
+		this.accessLogLevel = accessLogLevel;
+		return this;
+	}
+
+	/**
+	 * @return The file the access log is written to, or <code>null</code> for standard output
+	 */
+	public String getAccessLogFile() {
+		return accessLogFile;
+	}
+
+	/**
+	 * @param accessLogFile The file the access log is written to, or <code>null</code> for standard output
+	 * @return This configuration
+	 */
+	public ServerConfig setAccessLogFile(String accessLogFile) {
+		this.accessLogFile = accessLogFile == null || accessLogFile.isEmpty() ? null : accessLogFile;
+		return this;
+	}
+
+	/**
+	 * @return The size (in bytes) at which the access log file is rolled over
+	 */
+	public long getAccessLogMaxFileBytes() {
+		return accessLogMaxFileBytes;
+	}
+
+	/**
+	 * @param accessLogMaxFileBytes The size (in bytes) at which the access log file is rolled over
+	 * @return This configuration
+	 */
+	public ServerConfig setAccessLogMaxFileBytes(long accessLogMaxFileBytes) {
+		if (accessLogMaxFileBytes < 1) {
+			throw new IllegalArgumentException("accessLogMaxFileBytes must be positive");
+		}
+		this.accessLogMaxFileBytes = accessLogMaxFileBytes;
+		return this;
+	}
+}
@@ -0,0 +1,254 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 Anthony Williams.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.williams.anthony.server;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+/**
+ * Counters, gauges and latency histograms for one server, rendered in the Prometheus text format.
+ *
+ * Everything on the request path is a <code>LongAdder</code> or an atomic array slot, so recording never takes a
+ * lock and threads hitting the same counter do not fight over one cache line.
+ *
+ * Inspired by: https://prometheus.io/docs/instrumenting/exposition_formats/
+ *
+ * @author Anthony Williams
+ */
+public final class ServerMetrics {
+
+	/** The <code>route</code> label of requests that matched no route */
+	public static final String UNMATCHED_ROUTE = "unmatched";
+
+	private static final int MAX_STATUS_CODE = 599;
+	private static final double[] QUANTILES = { 0.5, 0.9, 0.99, 0.999 };
+
+	// NOTE: route pattern -> histograms indexed by status code, a slot is filled the first time the pair is seen
+	private final ConcurrentMap<String, AtomicReferenceArray<LatencyHistogram>> requestLatencies =
+			new ConcurrentHashMap<String, AtomicReferenceArray<LatencyHistogram>>();
+	private final ConcurrentMap<Integer, LongAdder> rejectedRequests = new ConcurrentHashMap<Integer, LongAdder>();
+	private final LongAdder openedConnections = new LongAdder();
+	private final LongAdder activeConnections = new LongAdder();
+	private final LongAdder bytesReceived = new LongAdder();
+	private final LongAdder bytesSent = new LongAdder();
+	private volatile IntSupplier queueDepth = () -> 0;
+	private volatile ByteBufferPool bufferPool = null;
+
+	/**
+	 * Call once a connection is accepted and about to be served
+	 */
+	public void connectionOpened() {
+		openedConnections.increment();
+		activeConnections.increment();
+	}
+
+	/**
+	 * Call once for every {@link #connectionOpened()}, when the connection is closed
+	 */
+	public void connectionClosed() {
+		activeConnections.decrement();
+	}
+
+	/**
+	 * @param byteCount Bytes read from a client
+	 */
+	public void bytesReceived(long byteCount) {
+		bytesReceived.add(byteCount);
+	}
+
+	/**
+	 * @param byteCount Bytes written to a client
+	 */
+	public void bytesSent(long byteCount) {
+		bytesSent.add(byteCount);
+	}
+
+	/**
+	 * @param route The pattern of the route that handled the request, or <code>null</code> when none matched
+	 * @param statusCode The status code of the response
+	 * @param durationNanos From the parsed request head to the last byte of the response written
+	 */
+	public void recordRequest(String route, int statusCode, long durationNanos) {
+		histogramFor(route == null ? UNMATCHED_ROUTE : route, statusCode).record(durationNanos);
+	}
+
+	/**
+	 * @param statusCode The status code of a canned response sent without dispatching the request (e.g.: a 503 when
+	 *        the server is saturated, a 400 for a malformed request)
+	 */
+	public void recordRejected(int statusCode) {
+		rejectedRequests.computeIfAbsent(statusCode, code -> new LongAdder()).increment();
+	}
+
+	/**
+	 * @param queueDepth Reports the number of connections waiting to be served, read on every scrape
+	 */
+	public void setQueueDepth(IntSupplier queueDepth) {
+		this.queueDepth = queueDepth;
+	}
+
+	/**
+	 * @param bufferPool The pool the server leases its I/O buffers from, read on every scrape
+	 */
+	public void setBufferPool(ByteBufferPool bufferPool) {
+		this.bufferPool = bufferPool;
+	}
+
+	/**
+	 * @return The number of connections currently open
+	 */
+	public long getActiveConnections() {
+		return activeConnections.sum();
+	}
+
+	/**
+	 * @param route The route pattern (see {@link #UNMATCHED_ROUTE})
+	 * @param statusCode The status code
+	 * @return The latency histogram of the pair, or <code>null</code> when no such request was recorded
+	 */
+	public LatencyHistogram getLatencies(String route, int statusCode) {
+		AtomicReferenceArray<LatencyHistogram> byStatus = requestLatencies.get(route);
+
+		return byStatus == null || !isTrackedStatus(statusCode) ? null : byStatus.get(statusCode);
+	}
+
+	/**
+	 * @return Every metric in the Prometheus text exposition format (version 0.0.4)
+	 */
+	public String toPrometheusText() {
+		StringBuilder text = new StringBuilder(4096);
+
+		text.append("# HELP http_server_requests_seconds Time from a parsed request head to its response written\n");
+		text.append("# TYPE http_server_requests_seconds summary\n");
+		for (Map.Entry<String, AtomicReferenceArray<LatencyHistogram>> route : requestLatencies.entrySet()) {
+			AtomicReferenceArray<LatencyHistogram> byStatus = route.getValue();
+
+			for (int statusCode = 0; statusCode < byStatus.length(); statusCode++) {
+				LatencyHistogram histogram = byStatus.get(statusCode);
+
+				if (histogram != null) {
+					appendSummary(text, route.getKey(), statusCode, histogram);
+				}
+			}
+		}
+
+		appendHeader(text, "http_server_rejected_total", "counter",
+				"Requests answered with a canned error without being dispatched");
+		for (Map.Entry<Integer, LongAdder> rejected : rejectedRequests.entrySet()) {
+			text.append("http_server_rejected_total{status=\"").append(rejected.getKey()).append("\"} ")
+					.append(rejected.getValue().sum()).append('\n');
+		}
+
+		appendMetric(text, "http_server_connections_total", "counter", "Connections accepted and served",
+				openedConnections.sum());
+		appendMetric(text, "http_server_active_connections", "gauge", "Connections currently open",
+				activeConnections.sum());
+		appendMetric(text, "http_server_queue_depth", "gauge", "Connections waiting to be served",
+				queueDepth.getAsInt());
+		appendMetric(text, "http_server_received_bytes_total", "counter", "Bytes read from clients",
+				bytesReceived.sum());
+		appendMetric(text, "http_server_sent_bytes_total", "counter", "Bytes written to clients", bytesSent.sum());
+
+		ByteBufferPool pool = bufferPool;
+
+		if (pool != null) {
+			appendMetric(text, "http_server_buffer_pool_capacity", "gauge", "I/O buffers carved from pool slabs",
+					pool.getCapacity());
+			appendMetric(text, "http_server_buffer_pool_leased", "gauge", "I/O buffers leased by connections",
+					pool.getLeasedCount());
+			appendMetric(text, "http_server_buffer_pool_idle", "gauge", "I/O buffers waiting in the pool",
+					pool.getIdleCount());
+			appendMetric(text, "http_server_buffer_pool_overflow_total", "counter",
+					"I/O buffers allocated because the pool was exhausted", pool.getOverflowCount());
+		}
+
+		return text.toString();
+	}
+
+	private LatencyHistogram histogramFor(String route, int statusCode) {
+		if (!isTrackedStatus(statusCode)) {
+			statusCode = 0;
+		}
+
+		AtomicReferenceArray<LatencyHistogram> byStatus = requestLatencies.get(route);
+
+		if (byStatus == null) {
+			byStatus = requestLatencies.computeIfAbsent(route,
+					key -> new AtomicReferenceArray<LatencyHistogram>(MAX_STATUS_CODE + 1));
+		}
+
+		LatencyHistogram histogram = byStatus.get(statusCode);
+
+		if (histogram == null) {
+			// NOTE: two threads may race to create it, only the first one is kept
+			byStatus.compareAndSet(statusCode, null, new LatencyHistogram());
+			histogram = byStatus.get(statusCode);
+		}
+
+		return histogram;
+	}
+
+	private static boolean isTrackedStatus(int statusCode) {
+		return statusCode >= 0 && statusCode <= MAX_STATUS_CODE;
+	}
+
+	private static void appendSummary(StringBuilder text, String route, int statusCode, LatencyHistogram histogram) {
+		String labels = String.format("route=\"%s\",status=\"%d\"", escapeLabel(route), statusCode);
+
+		for (double quantile : QUANTILES) {
+			text.append("http_server_requests_seconds{").append(labels).append(",quantile=\"").append(quantile)
+					.append("\"} ").append(toSeconds(histogram.getQuantileMicros(quantile))).append('\n');
+		}
+		text.append("http_server_requests_seconds_sum{").append(labels).append("} ")
+				.append(toSeconds(histogram.getTotalMicros())).append('\n');
+		text.append("http_server_requests_seconds_count{").append(labels).append("} ").append(histogram.getCount())
+				.append('\n');
+	}
+
+	private static void appendHeader(StringBuilder text, String name, String type, String help) {
+		text.append("# HELP ").append(name).append(' ').append(help).append('\n');
+		text.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+	}
+
+	private static void appendMetric(StringBuilder text, String name, String type, String help, long value) {
+		appendHeader(text, name, type, help);
+		text.append(name).append(' ').append(value).append('\n');
+	}
+
+	private static String toSeconds(long micros) {
+		return String.format(Locale.ROOT, "%.6f", micros / 1_000_000.0);
+	}
+
+	/**
+	 * Label values escape backslash, double quote and line feed
+	 */
+	private static String escapeLabel(String value) {
+		return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+	}
+}
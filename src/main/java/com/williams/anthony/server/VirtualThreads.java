@@ -0,0 +1,79 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 Anthony Williams.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.williams.anthony.server;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Access to virtual threads (final in Java 21) from code compiled for an older release. The factory method is
+ * looked up once, so running on a JDK without them is detected up front rather than failing mid-request.
+ *
+ * @author Anthony Williams
+ */
+public final class VirtualThreads {
+
+	private static final MethodHandle NEW_EXECUTOR = findNewExecutor();
+
+	private VirtualThreads() {
+	}
+
+	/**
+	 * @return Whether the running JDK can start virtual threads
+	 */
+	public static boolean isAvailable() {
+		return NEW_EXECUTOR != null;
+	}
+
+	/**
+	 * @return An executor starting a new virtual thread for every task
+	 * @throws UnsupportedOperationException When the running JDK has no virtual threads
+	 */
+	public static ExecutorService newThreadPerTaskExecutor() {
+		if (NEW_EXECUTOR == null) {
+			throw new UnsupportedOperationException(String.format(
+					"Virtual threads need Java 21 or later, running on %s", System.getProperty("java.version")));
+		}
+
+		try {
+			return (ExecutorService) NEW_EXECUTOR.invoke();
+		} catch (RuntimeException | Error unchecked) {
+			throw unchecked;
+		} catch (Throwable throwable) {
+			throw new IllegalStateException(throwable);
+		}
+	}
+
+	private static MethodHandle findNewExecutor() {
+		try {
+			return MethodHandles.publicLookup().findStatic(Executors.class, "newVirtualThreadPerTaskExecutor",
+					MethodType.methodType(ExecutorService.class));
+		} catch (NoSuchMethodException | IllegalAccessException notAvailable) {
+			return null;
+		}
+	}
+}
@@ -17,6 +17,8 @@ import com.williams.anthony.models.PrompterStringResult;
 
 public class AppTest {
 
+    private static final String MENU = String.format("1.) c1%n2.) c2%n3.) c3%n");
+
     @Mock
     PrintStream mockPrintStream;
 
@@ -271,9 +273,7 @@ public class AppTest {
         // Assert
         InOrder inOrder = Mockito.inOrder(mockPrintStream);
         inOrder.verify(mockPrintStream).println("prompt for val");
-        inOrder.verify(mockPrintStream).println("1.) c1");
-        inOrder.verify(mockPrintStream).println("2.) c2");
-        inOrder.verify(mockPrintStream).println("3.) c3");
+        inOrder.verify(mockPrintStream).print(MENU);
         verifyNoMoreInteractions(mockPrintStream);
 
         assertEquals(1, actual.getChoiceIndex());
@@ -298,14 +298,10 @@ public class AppTest {
         // Assert
         InOrder inOrder = Mockito.inOrder(mockPrintStream);
         inOrder.verify(mockPrintStream).println("prompt for val");
-        inOrder.verify(mockPrintStream).println("1.) c1");
-        inOrder.verify(mockPrintStream).println("2.) c2");
-        inOrder.verify(mockPrintStream).println("3.) c3");
+        inOrder.verify(mockPrintStream).print(MENU);
         inOrder.verify(mockPrintStream).println("err");
         inOrder.verify(mockPrintStream).println("prompt for val");
-        inOrder.verify(mockPrintStream).println("1.) c1");
-        inOrder.verify(mockPrintStream).println("2.) c2");
-        inOrder.verify(mockPrintStream).println("3.) c3");
+        inOrder.verify(mockPrintStream).print(MENU);
         verifyNoMoreInteractions(mockPrintStream);
 
         assertEquals(0, actual.getChoiceIndex());
@@ -383,9 +379,7 @@ public class AppTest {
         // Assert
         InOrder inOrder = Mockito.inOrder(mockPrintStream);
         inOrder.verify(mockPrintStream).println("prompt for val");
-        inOrder.verify(mockPrintStream).println("1.) c1");
-        inOrder.verify(mockPrintStream).println("2.) c2");
-        inOrder.verify(mockPrintStream).println("3.) c3");
+        inOrder.verify(mockPrintStream).print(MENU);
     
         verify(mockPrintStream, never()).println("err");
         verifyNoMoreInteractions(mockPrintStream);
@@ -394,4 +388,75 @@ public class AppTest {
         assertEquals("c1", actual.getChoiceText());
         assertEquals(1, actual.getAttempts());
     }
+
+    @Test
+    public void TryParseInt_WhenProvidedEdgeCases_ShouldAgreeWithIntegerParseInt() {
+        // Arrange
+        String[] inputs = new String[]{
+            "0", "42", "+7", "-25", "007", "2147483647", "-2147483648", "2147483648", "-2147483649",
+            "99999999999999999999", "", "-", "+", " 7", "7 ", "2.5", "0x10", "abc", "1_000", "--1", "\u0663"
+        };
+
+        for (String input : inputs) {
+            // Act
+            long actual = Prompter.TryParseInt(input);
+
+            // Assert
+            try {
+                assertEquals(input, Integer.parseInt(input), actual);
+            } catch (NumberFormatException numberFormatEx) {
+                assertEquals(input, Prompter.NOT_AN_INT, actual);
+            }
+        }
+    }
+
+    @Test
+    public void PromptUserForChoice_WhenProvidedNumberPastLastChoice_ShouldRejectIt() {
+        // Arrange
+        PrompterChoiceResult actual;
+        Scanner scanner = new Scanner(String.format("4%n3"));
+
+        // Act
+        actual = Prompter.PromptUserForChoice(
+            scanner,
+            mockPrintStream,
+            "prompt for val",
+            "err",
+            new String[]{ "c1", "c2", "c3" });
+
+        // Assert
+        InOrder inOrder = Mockito.inOrder(mockPrintStream);
+        inOrder.verify(mockPrintStream).println("prompt for val");
+        inOrder.verify(mockPrintStream).print(MENU);
+        inOrder.verify(mockPrintStream).println("err");
+        inOrder.verify(mockPrintStream).println("prompt for val");
+        inOrder.verify(mockPrintStream).print(MENU);
+        verifyNoMoreInteractions(mockPrintStream);
+
+        assertEquals(2, actual.getChoiceIndex());
+        assertEquals("c3", actual.getChoiceText());
+        assertEquals(2, actual.getAttempts());
+    }
+
+    @Test
+    public void PromptUserForChoice_WhenProvidedTextOrUniquePrefix_ShouldSelectMatchingChoice() {
+        // Arrange
+        ChoiceMenu menu = new ChoiceMenu(new String[]{ "Untrained", "Trained", "Skilled", "Skill", "Expert" });
+        Scanner scanner = new Scanner(String.format("tra%nSK%nski%nskill%nexp%n"));
+        Prompter fixture = new Prompter(scanner, mockPrintStream);
+
+        // Act
+        PrompterChoiceResult byPrefix = fixture.PromptUserForChoice("prompt for val", "err", menu);
+        PrompterChoiceResult byText = fixture.PromptUserForChoice("prompt for val", "err", menu);
+        PrompterChoiceResult byLowerCasePrefix = fixture.PromptUserForChoice("prompt for val", "err", menu);
+
+        // Assert
+        assertEquals("Trained", byPrefix.getChoiceText());
+        assertEquals(1, byPrefix.getAttempts());
+        // NOTE: "SK" and "ski" start both Skilled and Skill, "skill" spells Skill exactly
+        assertEquals(3, byText.getChoiceIndex());
+        assertEquals(3, byText.getAttempts());
+        assertEquals("Expert", byLowerCasePrefix.getChoiceText());
+        assertEquals(1, byLowerCasePrefix.getAttempts());
+    }
 }
@@ -0,0 +1,126 @@
+package com.williams.anthony;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.junit.Test;
+import com.williams.anthony.models.PrompterChoiceResult;
+import com.williams.anthony.models.PrompterIntResult;
+import com.williams.anthony.models.PrompterStringResult;
+
+public class AsyncPrompterTest {
+
+    private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    private final AsyncPrompter fixture = new AsyncPrompter(new PrintStream(output, true, StandardCharsets.UTF_8));
+
+    private String output() {
+        return output.toString(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void PromptUserForIntAsync_WhenInputArrivesInChunks_ShouldCompleteOnceValidLineArrives() throws Exception {
+        // Arrange
+        CompletableFuture<PrompterIntResult> result = fixture.PromptUserForIntAsync("Age?", "Not a number");
+
+        // Act
+        fixture.offerInput("ol");
+        fixture.offerInput("d\r\n4");
+        boolean isDoneMidLine = result.isDone();
+        fixture.offerInput("2\n");
+
+        // Assert
+        assertFalse(isDoneMidLine);
+        assertEquals(42, result.get().getValue());
+        assertEquals(2, result.get().getAttempts());
+        assertEquals(String.format("Age?%nNot a number%nAge?%n"), output());
+    }
+
+    @Test
+    public void PromptUserForStringAsync_WhenComposed_ShouldDisplayEachPromptOnceTheOneBeforeIsAnswered()
+            throws Exception {
+        // Arrange
+        fixture.offerLine("Anthony");
+
+        // Act
+        CompletableFuture<PrompterChoiceResult> result = fixture.PromptUserForStringAsync("Name?", "Empty")
+                .thenCompose(name -> fixture.PromptUserForChoiceAsync("Skill?", "Invalid",
+                        new String[] { "Untrained", "Expert" }));
+        String beforeAnswer = output();
+        fixture.offerLine("exp");
+
+        // Assert
+        assertEquals(String.format("Name?%nSkill?%n1.) Untrained%n2.) Expert%n"), beforeAnswer);
+        assertEquals("Expert", result.get().getChoiceText());
+        assertEquals(0, fixture.getPendingCount());
+    }
+
+    @Test
+    public void PromptUserForStringAsync_WhenTimedOutOrCancelled_ShouldGiveLinesToTheNextPrompt() throws Exception {
+        // Arrange
+        CompletableFuture<PrompterStringResult> timedOut = fixture.PromptUserForStringAsync("First?", "Empty")
+                .orTimeout(10, TimeUnit.MILLISECONDS);
+        CompletableFuture<PrompterStringResult> cancelled = fixture.PromptUserForStringAsync("Second?", "Empty");
+        CompletableFuture<PrompterStringResult> answered = fixture.PromptUserForStringAsync("Third?", "Empty");
+
+        // Act
+        ExecutionException timeout = null;
+        try {
+            timedOut.get();
+        } catch (ExecutionException executionException) {
+            timeout = executionException;
+        }
+        cancelled.cancel(false);
+        fixture.offerLine("answer");
+
+        // Assert
+        assertTrue(timeout.getCause() instanceof TimeoutException);
+        assertEquals("answer", answered.get().getValue());
+        assertEquals(String.format("First?%nSecond?%nThird?%n"), output());
+    }
+
+    @Test
+    public void PromptUserForIntAsync_WhenComposedFlowTimesOut_ShouldGiveLinesToTheNextPrompt() throws Exception {
+        // Arrange
+        CompletableFuture<PrompterIntResult> flow = fixture.PromptUserForStringAsync("Name?", "Empty")
+                .thenCompose(name -> fixture.PromptUserForIntAsync("Age?", "Not a number", 10, TimeUnit.MILLISECONDS));
+        fixture.offerLine("Anthony");
+
+        // Act
+        Throwable failure = flow.handle((result, exception) -> exception).get();
+        CompletableFuture<PrompterStringResult> next = fixture.PromptUserForStringAsync("Next?", "Empty");
+        fixture.offerLine("42");
+
+        // Assert
+        assertTrue(failure.getCause() instanceof TimeoutException);
+        assertEquals("42", next.get(5, TimeUnit.SECONDS).getValue());
+        assertEquals(String.format("Name?%nAge?%nNext?%n"), output());
+    }
+
+    @Test
+    public void EndOfInput_WhenPromptsAreWaiting_ShouldFailThemWithNoSuchElementException() throws Exception {
+        // Arrange
+        CompletableFuture<PrompterIntResult> first = fixture.PromptUserForIntAsync("First?", "Not a number");
+        CompletableFuture<PrompterIntResult> second = fixture.PromptUserForIntAsync("Second?", "Not a number");
+        fixture.offerInput("7");
+
+        // Act
+        fixture.endOfInput();
+        CompletableFuture<PrompterIntResult> afterEnd = fixture.PromptUserForIntAsync("Third?", "Not a number");
+
+        Throwable failure = second.handle((result, exception) -> exception).get();
+
+        // Assert
+        assertEquals(7, first.get().getValue());
+        assertTrue(failure instanceof NoSuchElementException);
+        assertTrue(afterEnd.isCompletedExceptionally());
+    }
+}
@@ -0,0 +1,93 @@
+package com.williams.anthony;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.stream.Collectors;
+import org.junit.Test;
+import com.williams.anthony.models.PrompterIntResult;
+
+public class BatchPrompterTest {
+
+    private static InputStream inputOf(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void ReadLine_WhenLinesSpanTheBuffer_ShouldSplitOnLfAndCrLf() {
+        // Arrange
+        LineReader fixture = new LineReader(inputOf("first\r\n\r\na much longer line\nlast"), StandardCharsets.UTF_8, 4);
+
+        // Act
+        String first = fixture.readLine();
+        String empty = fixture.readLine();
+        String longer = fixture.readLine();
+        String last = fixture.readLine();
+        String end = fixture.readLine();
+
+        // Assert
+        assertEquals("first", first);
+        assertEquals("", empty);
+        assertEquals("a much longer line", longer);
+        assertEquals("last", last);
+        assertNull(end);
+    }
+
+    @Test
+    public void PromptUserForIntsInRange_WhenAnswersPiped_ShouldStreamOneResultPerValidAnswer() throws IOException {
+        // Arrange
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        BatchPrompter fixture = new BatchPrompter(inputOf("5\nabc\n99\n7\n\n3"), output, false);
+
+        // Act
+        List<PrompterIntResult> actual = fixture.PromptUserForIntsInRange("prompt for val", "err", 1, 10)
+            .collect(Collectors.toList());
+        fixture.close();
+
+        // Assert
+        assertEquals(3, actual.size());
+        assertEquals(5, actual.get(0).getValue());
+        assertEquals(1, actual.get(0).getAttempts());
+        assertEquals(7, actual.get(1).getValue());
+        assertEquals(3, actual.get(1).getAttempts());
+        assertEquals(3, actual.get(2).getValue());
+        assertEquals(2, actual.get(2).getAttempts());
+        assertEquals(0, output.size());
+    }
+
+    @Test
+    public void PromptUserForChoice_WhenEchoed_ShouldWritePromptsOnlyOnFlush() throws IOException {
+        // Arrange
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        BatchPrompter fixture = new BatchPrompter(inputOf("4\n2\n"), output, true);
+        String newLine = System.lineSeparator();
+
+        // Act
+        int choiceIndex = fixture.PromptUserForChoice("prompt for val", "err", new String[]{ "c1", "c2", "c3" })
+            .getChoiceIndex();
+        int sizeBeforeFlush = output.size();
+        fixture.flush();
+
+        // Assert
+        assertEquals(1, choiceIndex);
+        assertEquals(0, sizeBeforeFlush);
+        String menu = "prompt for val" + newLine + "1.) c1" + newLine + "2.) c2" + newLine + "3.) c3" + newLine;
+        assertEquals(menu + "err" + newLine + menu, output.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void PromptUserForString_WhenInputEndsBeforeValidAnswer_ShouldThrow() {
+        // Arrange
+        BatchPrompter fixture = new BatchPrompter(inputOf("\n\n"), new ByteArrayOutputStream(), false);
+
+        // Act
+        fixture.PromptUserForString("prompt for val", "err");
+    }
+}
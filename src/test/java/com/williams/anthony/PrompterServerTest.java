@@ -0,0 +1,152 @@
+package com.williams.anthony;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import com.williams.anthony.models.PrompterIntResult;
+import com.williams.anthony.models.PrompterSessionResult;
+import com.williams.anthony.models.PrompterStringResult;
+import com.williams.anthony.server.ServerConfig;
+
+public class PrompterServerTest {
+
+    private static String converse(int port, String answers) throws IOException {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            socket.setSoTimeout(5000);
+            socket.getOutputStream().write(answers.getBytes(StandardCharsets.UTF_8));
+            socket.getOutputStream().flush();
+
+            InputStream in = socket.getInputStream();
+            ByteArrayOutputStream received = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1024];
+            int bytesRead;
+            while ((bytesRead = in.read(buffer)) >= 0) {
+                received.write(buffer, 0, bytesRead);
+            }
+            return received.toString(StandardCharsets.UTF_8);
+        }
+    }
+
+    @Test
+    public void Start_WhenManyUsersConnect_ShouldCollectEverySessionsResults() throws Exception {
+        // Arrange
+        int userCount = 50;
+        PrompterResults results = new PrompterResults();
+        PrompterServer fixture = new PrompterServer(new ServerConfig(), (prompter, writer) -> {
+            PrompterStringResult name = prompter.PromptUserForString("Name?", "Empty");
+            PrompterIntResult age = prompter.PromptUserForInt("Age?", "Not a number");
+            writer.printf("Bye %s (%d)%n", name.getValue(), age.getValue());
+        }, results);
+        fixture.start(0);
+        ExecutorService users = Executors.newFixedThreadPool(userCount);
+
+        try {
+            // Act
+            List<Future<String>> replies = new ArrayList<>();
+            for (int u = 0; u < userCount; u++) {
+                String answers = String.format("%nuser%d%nold%n%d%n", u, u);
+                replies.add(users.submit(() -> converse(fixture.getLocalPort(), answers)));
+            }
+            for (int u = 0; u < userCount; u++) {
+                assertTrue(replies.get(u).get(5, TimeUnit.SECONDS).contains(String.format("Bye user%d (%d)", u, u)));
+            }
+
+            // Assert
+            assertEquals(2 * userCount, results.getTotalCount());
+            Map<Long, List<Object>> valuesBySession = new HashMap<>();
+            PrompterSessionResult sessionResult;
+            while ((sessionResult = results.poll()) != null) {
+                Object value = sessionResult.getResult() instanceof PrompterIntResult
+                        ? ((PrompterIntResult) sessionResult.getResult()).getValue()
+                        : ((PrompterStringResult) sessionResult.getResult()).getValue();
+                valuesBySession.computeIfAbsent(sessionResult.getSessionId(), id -> new ArrayList<>()).add(value);
+                assertEquals(2, sessionResult.getResult().getAttempts());
+            }
+            assertEquals(userCount, valuesBySession.size());
+            for (List<Object> values : valuesBySession.values()) {
+                assertEquals("user" + values.get(1), values.get(0));
+            }
+        } finally {
+            users.shutdownNow();
+            fixture.close();
+        }
+    }
+
+    @Test
+    public void Start_WhenUserStopsAnswering_ShouldCloseSessionAfterTimeout() throws Exception {
+        // Arrange
+        PrompterResults results = new PrompterResults();
+        ServerConfig config = new ServerConfig().setSessionTimeoutMillis(100);
+        PrompterServer fixture = new PrompterServer(config,
+                (prompter, writer) -> prompter.PromptUserForString("Name?", "Empty"), results);
+        fixture.start(0);
+
+        try {
+            // Act
+            String transcript = converse(fixture.getLocalPort(), "");
+
+            // Assert
+            assertEquals(String.format("Name?%n"), transcript);
+            assertEquals(0, results.getTotalCount());
+        } finally {
+            fixture.close();
+        }
+    }
+
+    @Test
+    public void Start_WhenClientIsRateLimited_ShouldSayItIsRateLimited() throws Exception {
+        // Arrange
+        ServerConfig config = new ServerConfig().setRateLimitPerSecond(0.001).setRateLimitBurst(1);
+        PrompterServer fixture = new PrompterServer(config,
+                (prompter, writer) -> prompter.PromptUserForString("Name?", "Empty"), new PrompterResults());
+        fixture.start(0);
+
+        try {
+            // Act
+            String first = converse(fixture.getLocalPort(), String.format("me%n"));
+            String second = converse(fixture.getLocalPort(), "");
+
+            // Assert
+            assertEquals(String.format("Name?%n"), first);
+            assertTrue(second.startsWith("Too many connections from your address"));
+        } finally {
+            fixture.close();
+        }
+    }
+
+    @Test
+    public void Add_WhenResultsAreFull_ShouldDropAndCountTheRest() {
+        // Arrange
+        PrompterResults fixture = new PrompterResults(2);
+
+        // Act
+        boolean isFirstKept = fixture.add(1, new PrompterIntResult(1, 1));
+        boolean isSecondKept = fixture.add(1, new PrompterIntResult(2, 1));
+        boolean isThirdKept = fixture.add(2, new PrompterIntResult(3, 1));
+        fixture.poll();
+        boolean isFourthKept = fixture.add(2, new PrompterIntResult(4, 1));
+
+        // Assert
+        assertTrue(isFirstKept && isSecondKept && isFourthKept);
+        assertFalse(isThirdKept);
+        assertEquals(1, fixture.getDroppedCount());
+        assertEquals(4, fixture.getTotalCount());
+        assertEquals(2, fixture.getPendingCount());
+    }
+}
@@ -0,0 +1,487 @@
+package com.williams.anthony;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Test;
+import com.williams.anthony.handlers.ResponseCache;
+import com.williams.anthony.http.HttpResponse;
+import com.williams.anthony.http.Router;
+import com.williams.anthony.server.AccessLog;
+import com.williams.anthony.server.ServerConfig;
+import com.williams.anthony.server.ServerMetrics;
+import com.williams.anthony.server.VirtualThreads;
+
+public class ServerEngineTest {
+
+    private static ServerConfig config(String engine) {
+        return new ServerConfig()
+                .setEngine(engine)
+                .setWorkerCount(2)
+                .setEventLoopCount(1)
+                .setCompression(false)
+                .setAccessLogLevel(AccessLog.Level.OFF);
+    }
+
+    private static ServerEngine server(ServerConfig config, Router router) {
+        return "selector".equals(config.getEngine())
+                ? new SelectorServer(config, router)
+                : new SimpleServer(config, router);
+    }
+
+    private static Socket send(int port, String request) throws IOException {
+        Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+        socket.setSoTimeout(5000);
+        socket.getOutputStream().write(request.getBytes(StandardCharsets.ISO_8859_1));
+        return socket;
+    }
+
+    private static String readUntilClosed(Socket socket) throws IOException {
+        InputStream in = socket.getInputStream();
+        ByteArrayOutputStream received = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int bytesRead;
+        while ((bytesRead = in.read(buffer)) >= 0) {
+            received.write(buffer, 0, bytesRead);
+        }
+        return received.toString(StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Reads one response framed by its Content-Length, leaving whatever follows it unread
+     */
+    private static String readResponse(InputStream in) throws IOException {
+        ByteArrayOutputStream received = new ByteArrayOutputStream();
+        while (!received.toString(StandardCharsets.ISO_8859_1).endsWith("\r\n\r\n")) {
+            int next = in.read();
+            if (next < 0) {
+                throw new EOFException("connection closed inside a response head");
+            }
+            received.write(next);
+        }
+        String head = received.toString(StandardCharsets.ISO_8859_1);
+        int lengthStart = head.indexOf("Content-Length: ") + "Content-Length: ".length();
+        int length = Integer.parseInt(head.substring(lengthStart, head.indexOf("\r\n", lengthStart)));
+        received.write(in.readNBytes(length));
+        return received.toString(StandardCharsets.ISO_8859_1);
+    }
+
+    private static Router echoingPath() {
+        return new Router().add("GET", "/*", request -> HttpResponse.text(200, request.getPath()));
+    }
+
+    private static void assertRoundTrip(ServerConfig config) throws Exception {
+        // Arrange
+        ServerEngine fixture = server(config, echoingPath());
+        fixture.start(0);
+
+        try (Socket client = send(fixture.getLocalPort(), "GET /round/trip HTTP/1.1\r\nHost: x\r\n\r\n")) {
+            // Act
+            String response = readResponse(client.getInputStream());
+
+            // Assert
+            assertTrue(response, response.startsWith("HTTP/1.1 200"));
+            assertTrue(response, response.endsWith("/round/trip"));
+        } finally {
+            fixture.close();
+        }
+    }
+
+    private static void assertInFlightRequestFinishes(String engine) throws Exception {
+        // Arrange
+        CountDownLatch handlerStarted = new CountDownLatch(1);
+        Router router = new Router().add("GET", "/slow", request -> {
+            handlerStarted.countDown();
+            try {
+                Thread.sleep(300);
+            } catch (InterruptedException interruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            return HttpResponse.text(200, "done");
+        });
+        ServerEngine fixture = server(config(engine), router);
+        fixture.start(0);
+        ExecutorService stopper = Executors.newSingleThreadExecutor();
+
+        try (Socket client = send(fixture.getLocalPort(), "GET /slow HTTP/1.1\r\nHost: x\r\n\r\n")) {
+            // Act
+            handlerStarted.await(5, TimeUnit.SECONDS);
+            Future<Boolean> drained = stopper.submit(() -> fixture.shutdown(5, TimeUnit.SECONDS));
+            String response = readUntilClosed(client);
+
+            // Assert
+            assertTrue(response, response.startsWith("HTTP/1.1 200"));
+            assertTrue(response, response.contains("Connection: close"));
+            assertTrue(response, response.endsWith("done"));
+            assertTrue(drained.get(5, TimeUnit.SECONDS));
+            assertFalse(fixture.isRunning());
+        } finally {
+            stopper.shutdownNow();
+            fixture.close();
+        }
+    }
+
+    @Test
+    public void Start_WhenSelectorEngine_ShouldAnswerARequest() throws Exception {
+        assertRoundTrip(config("selector"));
+    }
+
+    @Test
+    public void Start_WhenBlockingEngineHasNoWorkers_ShouldAnswerARequestOnTheAcceptingThread() throws Exception {
+        assertRoundTrip(config("blocking").setWorkerCount(0));
+    }
+
+    @Test
+    public void Start_WhenVirtualThreadsAreAsked_ShouldUseThemOrFallBackToTheWorkerPool() throws Exception {
+        // Arrange
+        AtomicReference<String> handlerThread = new AtomicReference<String>();
+        ServerEngine fixture = server(config("blocking").setVirtualThreads(true), new Router().add("GET", "/*",
+                request -> {
+                    handlerThread.set(Thread.currentThread().getName());
+                    return HttpResponse.text(200, request.getPath());
+                }));
+        fixture.start(0);
+
+        try (Socket client = send(fixture.getLocalPort(), "GET /round/trip HTTP/1.1\r\nHost: x\r\n\r\n")) {
+            // Act
+            String response = readResponse(client.getInputStream());
+
+            // Assert
+            assertTrue(response, response.endsWith("/round/trip"));
+            // NOTE: virtual threads are unnamed, a JDK without them (e.g.: 17) runs the request on a pool worker
+            if (VirtualThreads.isAvailable()) {
+                assertEquals("", handlerThread.get());
+            } else {
+                assertTrue(handlerThread.get(), handlerThread.get().startsWith("simple-server-worker-"));
+            }
+        } finally {
+            fixture.close();
+        }
+    }
+
+    @Test
+    public void Shutdown_WhenBlockingEngineHasRequestInFlight_ShouldFinishItFirst() throws Exception {
+        assertInFlightRequestFinishes("blocking");
+    }
+
+    @Test
+    public void Shutdown_WhenSelectorEngineHasRequestInFlight_ShouldFinishItFirst() throws Exception {
+        assertInFlightRequestFinishes("selector");
+    }
+
+    @Test
+    public void Drain_WhenPersistentConnectionIsIdle_ShouldCloseItStraightAway() throws Exception {
+        for (String engine : new String[] { "blocking", "selector" }) {
+            // Arrange
+            ServerEngine fixture = server(config(engine).setIdleTimeoutMillis(60_000),
+                    new Router().add("GET", "/*", request -> HttpResponse.text(200, "hi")));
+            fixture.start(0);
+
+            try (Socket client = send(fixture.getLocalPort(), "GET / HTTP/1.1\r\nHost: x\r\n\r\n")) {
+                byte[] firstResponse = new byte[1024];
+                client.getInputStream().read(firstResponse);
+
+                // Act
+                fixture.stopAccepting();
+                boolean drained = fixture.drain(5, TimeUnit.SECONDS);
+
+                // Assert
+                assertTrue(engine, drained);
+                assertEquals(engine, -1, client.getInputStream().read());
+            } finally {
+                fixture.close();
+            }
+        }
+    }
+
+    @Test
+    public void Start_WhenReusePortIsOn_ShouldLetASecondServerTakeOverThePort() throws Exception {
+        // Arrange
+        ServerEngine oldServer = server(config("blocking").setReusePort(true),
+                new Router().add("GET", "/*", request -> HttpResponse.text(200, "old")));
+        oldServer.start(0);
+        ServerEngine newServer = server(config("selector").setReusePort(true),
+                new Router().add("GET", "/*", request -> HttpResponse.text(200, "new")));
+
+        try {
+            // Act
+            newServer.start(oldServer.getLocalPort());
+            oldServer.shutdown(5, TimeUnit.SECONDS);
+            String response;
+            try (Socket client = send(newServer.getLocalPort(), "GET / HTTP/1.0\r\n\r\n")) {
+                response = readUntilClosed(client);
+            }
+
+            // Assert
+            assertEquals(oldServer.getLocalPort(), newServer.getLocalPort());
+            assertTrue(response, response.endsWith("new"));
+        } finally {
+            oldServer.close();
+            newServer.close();
+        }
+    }
+
+    @Test
+    public void Cache_WhenSelectorEngineGetsConcurrentMisses_ShouldNotBlockTheOtherEventLoop() throws Exception {
+        // Arrange
+        ServerConfig config = config("selector").setEventLoopCount(2).setResponseCacheBytes(1024);
+        CountDownLatch handlersEntered = new CountDownLatch(2);
+        CountDownLatch release = new CountDownLatch(1);
+        ResponseCache cache = App.createResponseCache(config);
+        ServerEngine fixture = server(config, new Router().add("GET", "/slow", cache.cache(request -> {
+            handlersEntered.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException interruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            return HttpResponse.text(200, "slow");
+        }, 60_000)));
+        fixture.start(0);
+
+        // NOTE: connections are handed to the event loops in turn, so each miss runs on its own loop
+        try (Socket first = send(fixture.getLocalPort(), "GET /slow HTTP/1.0\r\n\r\n");
+                Socket second = send(fixture.getLocalPort(), "GET /slow HTTP/1.0\r\n\r\n")) {
+            // Act
+            boolean bothRan = handlersEntered.await(5, TimeUnit.SECONDS);
+            release.countDown();
+
+            // Assert
+            assertTrue("the second miss waited for the first on its event loop", bothRan);
+            assertTrue(readUntilClosed(first).endsWith("slow"));
+            assertTrue(readUntilClosed(second).endsWith("slow"));
+        } finally {
+            release.countDown();
+            fixture.close();
+        }
+    }
+
+    @Test
+    public void Post_WhenSelectorEngineBodyBudgetIsUsedUp_ShouldAnswerServiceUnavailable() throws Exception {
+        // Arrange
+        ServerEngine fixture = server(config("selector").setMaxBufferedBodyBytes(100),
+                new Router().add("POST", "/upload", request -> HttpResponse.text(200, "stored")));
+        fixture.start(0);
+
+        try (Socket client = send(fixture.getLocalPort(),
+                "POST /upload HTTP/1.1\r\nHost: x\r\nContent-Length: 200\r\n\r\n" + "x".repeat(200))) {
+            // Act
+            String response = readUntilClosed(client);
+
+            // Assert
+            assertTrue(response, response.startsWith("HTTP/1.1 503"));
+        } finally {
+            fixture.close();
+        }
+    }
+
+    @Test
+    public void Post_WhenChunkedTrailersAreTooLarge_ShouldAnswer431() throws Exception {
+        for (String engine : new String[] { "blocking", "selector" }) {
+            // Arrange
+            ServerEngine fixture = server(config(engine).setMaxHeaderBytes(1024),
+                    new Router().add("POST", "/upload", request -> HttpResponse.text(200, "stored")));
+            fixture.start(0);
+
+            try (Socket client = send(fixture.getLocalPort(),
+                    "POST /upload HTTP/1.1\r\nHost: x\r\nTransfer-Encoding: chunked\r\n\r\n4\r\nWiki\r\n0\r\n"
+                            + "X-Padding: " + "x".repeat(2000) + "\r\n\r\n")) {
+                // Act
+                String response = readUntilClosed(client);
+
+                // Assert
+                assertTrue(engine + ": " + response, response.startsWith("HTTP/1.1 431"));
+            } finally {
+                fixture.close();
+            }
+        }
+    }
+
+    @Test
+    public void KeepAlive_WhenTwoRequestsArePipelinedInOneWrite_ShouldAnswerBothInOrder() throws Exception {
+        for (String engine : new String[] { "blocking", "selector" }) {
+            // Arrange
+            ServerEngine fixture = server(config(engine), echoingPath());
+            fixture.start(0);
+
+            try (Socket client = send(fixture.getLocalPort(),
+                    "GET /first HTTP/1.1\r\nHost: x\r\n\r\nGET /second HTTP/1.1\r\nHost: x\r\n\r\n")) {
+                // Act
+                String first = readResponse(client.getInputStream());
+                String second = readResponse(client.getInputStream());
+
+                // Assert
+                assertTrue(engine + ": " + first, first.startsWith("HTTP/1.1 200") && first.endsWith("/first"));
+                assertTrue(engine + ": " + second, second.startsWith("HTTP/1.1 200") && second.endsWith("/second"));
+            } finally {
+                fixture.close();
+            }
+        }
+    }
+
+    @Test
+    public void KeepAlive_WhenClientSendsConnectionClose_ShouldCloseAfterTheResponse() throws Exception {
+        for (String engine : new String[] { "blocking", "selector" }) {
+            // Arrange
+            ServerEngine fixture = server(config(engine).setIdleTimeoutMillis(60_000), echoingPath());
+            fixture.start(0);
+
+            try (Socket client = send(fixture.getLocalPort(),
+                    "GET /only HTTP/1.1\r\nHost: x\r\nConnection: close\r\n\r\n")) {
+                // Act
+                String response = readResponse(client.getInputStream());
+                int next = client.getInputStream().read();
+
+                // Assert
+                assertTrue(engine + ": " + response, response.contains("Connection: close"));
+                assertEquals(engine, -1, next);
+            } finally {
+                fixture.close();
+            }
+        }
+    }
+
+    @Test
+    public void KeepAlive_WhenMaxRequestsPerConnectionIsReached_ShouldCloseTheSocket() throws Exception {
+        for (String engine : new String[] { "blocking", "selector" }) {
+            // Arrange
+            ServerEngine fixture = server(config(engine).setIdleTimeoutMillis(60_000).setMaxRequestsPerConnection(2),
+                    echoingPath());
+            fixture.start(0);
+
+            try (Socket client = send(fixture.getLocalPort(),
+                    "GET /1 HTTP/1.1\r\nHost: x\r\n\r\nGET /2 HTTP/1.1\r\nHost: x\r\n\r\n")) {
+                // Act
+                String first = readResponse(client.getInputStream());
+                String second = readResponse(client.getInputStream());
+                int next = client.getInputStream().read();
+
+                // Assert
+                assertFalse(engine + ": " + first, first.contains("Connection: close"));
+                assertTrue(engine + ": " + second, second.contains("Connection: close"));
+                assertEquals(engine, -1, next);
+            } finally {
+                fixture.close();
+            }
+        }
+    }
+
+    @Test
+    public void KeepAlive_WhenConnectionStaysIdlePastTheTimeout_ShouldCloseTheSocket() throws Exception {
+        for (String engine : new String[] { "blocking", "selector" }) {
+            // Arrange
+            ServerEngine fixture = server(config(engine).setIdleTimeoutMillis(200), echoingPath());
+            fixture.start(0);
+
+            try (Socket client = send(fixture.getLocalPort(), "GET / HTTP/1.1\r\nHost: x\r\n\r\n")) {
+                String response = readResponse(client.getInputStream());
+                long startNanos = System.nanoTime();
+
+                // Act
+                int next = client.getInputStream().read();
+
+                // Assert
+                assertTrue(engine + ": " + response, response.startsWith("HTTP/1.1 200"));
+                assertEquals(engine, -1, next);
+                assertTrue(engine, System.nanoTime() - startNanos < TimeUnit.SECONDS.toNanos(4));
+            } finally {
+                fixture.close();
+            }
+        }
+    }
+
+    @Test
+    public void Dispatch_WhenOnlyWorkerIsBusyAndThereIsNoQueue_ShouldAnswerServiceUnavailable() throws Exception {
+        // Arrange
+        CountDownLatch handlerStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Router router = new Router().add("GET", "/slow", request -> {
+            handlerStarted.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException interruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            return HttpResponse.text(200, "done");
+        });
+        ServerEngine fixture = server(config("blocking").setWorkerCount(1).setQueueCapacity(0), router);
+        fixture.start(0);
+
+        try (Socket busy = send(fixture.getLocalPort(), "GET /slow HTTP/1.0\r\n\r\n")) {
+            handlerStarted.await(5, TimeUnit.SECONDS);
+
+            // Act
+            String refused;
+            try (Socket second = send(fixture.getLocalPort(), "GET /slow HTTP/1.0\r\n\r\n")) {
+                refused = readUntilClosed(second);
+            }
+            release.countDown();
+
+            // Assert
+            assertTrue(refused, refused.startsWith("HTTP/1.1 503"));
+            assertTrue(readUntilClosed(busy).endsWith("done"));
+        } finally {
+            release.countDown();
+            fixture.close();
+        }
+    }
+
+    @Test
+    public void Post_WhenSelectorEngineBuffersBodies_ShouldHandTheirPooledBuffersBack() throws Exception {
+        // Arrange
+        ServerMetrics metrics = new ServerMetrics();
+        Router router = new Router().add("POST", "/upload", request -> {
+            long length = 0;
+            byte[] chunk = new byte[1024];
+            int bytesRead;
+            while ((bytesRead = request.getBody().read(chunk, 0, chunk.length)) >= 0) {
+                length += bytesRead;
+            }
+            return HttpResponse.text(200, Long.toString(length));
+        });
+        SelectorServer fixture = new SelectorServer(config("selector").setBufferLeakDetection(true), router, metrics);
+        fixture.start(0);
+        String largeChunk = "x".repeat(20_000);
+
+        try {
+            // Act
+            String small;
+            try (Socket client = send(fixture.getLocalPort(),
+                    "POST /upload HTTP/1.0\r\nContent-Length: 5\r\n\r\nhello")) {
+                small = readUntilClosed(client);
+            }
+            String large;
+            try (Socket client = send(fixture.getLocalPort(),
+                    "POST /upload HTTP/1.1\r\nHost: x\r\nConnection: close\r\nTransfer-Encoding: chunked\r\n\r\n"
+                            + Integer.toHexString(largeChunk.length()) + "\r\n" + largeChunk + "\r\n0\r\n\r\n")) {
+                large = readUntilClosed(client);
+            }
+            long deadlineNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (!metrics.toPrometheusText().contains("http_server_buffer_pool_leased 0\n")
+                    && System.nanoTime() < deadlineNanos) {
+                Thread.sleep(10);
+            }
+
+            // Assert
+            assertTrue(small, small.endsWith("\r\n5"));
+            assertTrue(large, large.endsWith("\r\n20000"));
+            assertTrue(metrics.toPrometheusText().contains("http_server_buffer_pool_leased 0\n"));
+        } finally {
+            fixture.close();
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.williams.anthony.handlers;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Test;
+import com.williams.anthony.http.HttpRequest;
+import com.williams.anthony.http.HttpRequestParser;
+import com.williams.anthony.http.HttpResponse;
+import com.williams.anthony.http.HttpStatus;
+import com.williams.anthony.http.RequestBody;
+import com.williams.anthony.http.RequestHandler;
+
+public class ResponseCacheTest {
+
+    private static HttpRequest request(String path, String... headerLines) {
+        StringBuilder head = new StringBuilder(String.format("GET %s HTTP/1.1\r\n", path));
+        for (String headerLine : headerLines) {
+            head.append(headerLine).append("\r\n");
+        }
+        head.append("\r\n");
+
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        HttpRequestParser parser = new HttpRequestParser();
+        buffer.put(head.toString().getBytes(StandardCharsets.ISO_8859_1));
+        parser.parse(buffer, buffer.position());
+        return parser.toRequest();
+    }
+
+    private static String bodyOf(HttpResponse response) {
+        ByteBuffer body = response.getBody().asBuffer();
+        byte[] bytes = new byte[body.remaining()];
+        body.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void Handle_WhenRequestedWithinTtl_ShouldServeCachedResponseUntilItExpires() throws IOException {
+        // Arrange
+        AtomicLong clock = new AtomicLong(1000);
+        AtomicInteger calls = new AtomicInteger();
+        ResponseCache cache = new ResponseCache(1024, clock::get);
+        RequestHandler counting = request -> HttpResponse.text(HttpStatus.OK, "call " + calls.incrementAndGet());
+        RequestHandler fixture = cache.cache(counting, 500);
+
+        // Act
+        String first = bodyOf(fixture.handle(request("/date")));
+        clock.addAndGet(499);
+        String second = bodyOf(fixture.handle(request("/date")));
+        clock.addAndGet(1);
+        String third = bodyOf(fixture.handle(request("/date")));
+        String other = bodyOf(fixture.handle(request("/date?other")));
+
+        // Assert
+        assertEquals("call 1", first);
+        assertEquals("call 1", second);
+        assertEquals("call 2", third);
+        assertEquals("call 3", other);
+        assertEquals(1, cache.getHitCount());
+    }
+
+    @Test
+    public void Handle_WhenCacheControlForbidsStoring_ShouldCallHandlerEveryTime() throws IOException {
+        // Arrange
+        AtomicInteger calls = new AtomicInteger();
+        ResponseCache cache = new ResponseCache(1024);
+        RequestHandler counting = request -> HttpResponse.text(HttpStatus.OK, "call " + calls.incrementAndGet())
+                .withHeader("Cache-Control", "no-store");
+        RequestHandler fixture = cache.cache(counting, 60_000);
+        RequestHandler revalidated = cache.cache(request -> HttpResponse.text(HttpStatus.OK, "fresh"), 60_000);
+
+        // Act
+        fixture.handle(request("/private"));
+        fixture.handle(request("/private"));
+        revalidated.handle(request("/public"));
+        revalidated.handle(request("/public", "Cache-Control: no-cache"));
+
+        // Assert
+        assertEquals(2, calls.get());
+        assertEquals(0, cache.getHitCount());
+        assertEquals("fresh".length(), cache.getTotalBytes());
+    }
+
+    @Test
+    public void Handle_WhenManyConcurrentMisses_ShouldCallHandlerOnce() throws Exception {
+        // Arrange
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ResponseCache cache = new ResponseCache(1024);
+        RequestHandler fixture = cache.cache(request -> {
+            calls.incrementAndGet();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException interruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            return HttpResponse.text(HttpStatus.OK, "slow");
+        }, 60_000);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        Future<?>[] results = new Future<?>[8];
+
+        // Act
+        for (int a = 0; a < results.length; a++) {
+            results[a] = pool.submit(() -> bodyOf(fixture.handle(request("/herd"))));
+        }
+        Thread.sleep(200);
+        release.countDown();
+        for (Future<?> result : results) {
+            assertEquals("slow", result.get(5, TimeUnit.SECONDS));
+        }
+        pool.shutdown();
+
+        // Assert
+        assertEquals(1, calls.get());
+        assertEquals(7, cache.getHitCount());
+    }
+
+    @Test
+    public void Handle_WhenWaitingForAnotherMissPastTheDeadline_ShouldGiveUpWithServiceUnavailable() throws Exception {
+        // Arrange
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        RequestHandler fixture = new ResponseCache(1024).cache(request -> {
+            started.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException interruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            return HttpResponse.text(HttpStatus.OK, "slow");
+        }, 60_000);
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        Future<HttpResponse> leader = pool.submit(() -> fixture.handle(request("/stuck")));
+        started.await(5, TimeUnit.SECONDS);
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        HttpRequestParser parser = new HttpRequestParser();
+        buffer.put("GET /stuck HTTP/1.1\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1));
+        parser.parse(buffer, buffer.position());
+        HttpRequest follower = parser.toRequest(RequestBody.EMPTY,
+                System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(50));
+
+        // Act
+        HttpResponse actual = fixture.handle(follower);
+        release.countDown();
+
+        // Assert
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, actual.getStatusCode());
+        assertEquals(HttpStatus.OK, leader.get(5, TimeUnit.SECONDS).getStatusCode());
+        pool.shutdown();
+    }
+}
@@ -0,0 +1,128 @@
+package com.williams.anthony.handlers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import com.williams.anthony.http.HttpRequest;
+import com.williams.anthony.http.HttpRequestParser;
+import com.williams.anthony.http.HttpResponse;
+import com.williams.anthony.http.HttpStatus;
+import com.williams.anthony.http.Router;
+
+public class StaticFileHandlerTest {
+
+    @Rule
+    public TemporaryFolder documentRoot = new TemporaryFolder();
+
+    private Router router;
+
+    @Before
+    public void setUp() throws IOException {
+        Path root = documentRoot.getRoot().toPath();
+        Files.write(root.resolve("hello.txt"), "hello world".getBytes(StandardCharsets.UTF_8));
+        router = new Router().add("GET", "/static/*", new StaticFileHandler(root));
+    }
+
+    private HttpResponse get(String path, String... headerLines) throws IOException {
+        StringBuilder head = new StringBuilder(String.format("GET %s HTTP/1.1\r\n", path));
+        for (String headerLine : headerLines) {
+            head.append(headerLine).append("\r\n");
+        }
+        head.append("\r\n");
+
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        HttpRequestParser parser = new HttpRequestParser();
+        buffer.put(head.toString().getBytes(StandardCharsets.ISO_8859_1));
+        parser.parse(buffer, buffer.position());
+        HttpRequest request = parser.toRequest();
+
+        return router.dispatch(request);
+    }
+
+    private static String bodyOf(HttpResponse response) {
+        return StandardCharsets.UTF_8.decode(response.getBody().asBuffer()).toString();
+    }
+
+    @Test
+    public void Handle_WhenFileExists_ShouldServeContentWithValidators() throws IOException {
+        // Act
+        HttpResponse actual = get("/static/hello.txt");
+
+        // Assert
+        assertEquals(HttpStatus.OK, actual.getStatusCode());
+        assertEquals("hello world", bodyOf(actual));
+        assertEquals("text/plain; charset=UTF-8", actual.getHeaders().get("Content-Type"));
+        assertEquals("bytes", actual.getHeaders().get("Accept-Ranges"));
+    }
+
+    @Test
+    public void Handle_WhenEntityTagMatches_ShouldReturnNotModified() throws IOException {
+        // Arrange
+        String entityTag = get("/static/hello.txt").getHeaders().get("ETag");
+
+        // Act
+        HttpResponse actual = get("/static/hello.txt", "If-None-Match: " + entityTag);
+
+        // Assert
+        assertEquals(HttpStatus.NOT_MODIFIED, actual.getStatusCode());
+        assertEquals(0, actual.getBody().getLength());
+    }
+
+    @Test
+    public void Handle_WhenSingleRangeRequested_ShouldReturnPartialContent() throws IOException {
+        // Act
+        HttpResponse actual = get("/static/hello.txt", "Range: bytes=6-");
+
+        // Assert
+        assertEquals(HttpStatus.PARTIAL_CONTENT, actual.getStatusCode());
+        assertEquals("world", bodyOf(actual));
+        assertEquals("bytes 6-10/11", actual.getHeaders().get("Content-Range"));
+    }
+
+    @Test
+    public void Handle_WhenRangeStartsPastEnd_ShouldReturnRangeNotSatisfiable() throws IOException {
+        // Act
+        HttpResponse actual = get("/static/hello.txt", "Range: bytes=50-60");
+
+        // Assert
+        assertEquals(HttpStatus.RANGE_NOT_SATISFIABLE, actual.getStatusCode());
+        assertEquals("bytes */11", actual.getHeaders().get("Content-Range"));
+    }
+
+    @Test
+    public void Handle_WhenPathClimbsOutOfDocumentRoot_ShouldReturnNotFound() throws IOException {
+        // Act
+        HttpResponse actual = get("/static/%2e%2e/%2e%2e/etc/passwd");
+
+        // Assert
+        assertEquals(HttpStatus.NOT_FOUND, actual.getStatusCode());
+    }
+
+    @Test
+    public void Get_WhenFileCannotBeMapped_ShouldGiveBackReservedBytes() {
+        // Arrange
+        FileCache fixture = new FileCache(1024, 4096);
+        Path missing = documentRoot.getRoot().toPath().resolve("missing.txt");
+
+        // Act
+        boolean isThrown = false;
+        try {
+            fixture.get(missing, 100, 0);
+        } catch (IOException ioException) {
+            isThrown = true;
+        }
+
+        // Assert
+        assertTrue(isThrown);
+        assertEquals(0, fixture.getTotalBytes());
+    }
+}
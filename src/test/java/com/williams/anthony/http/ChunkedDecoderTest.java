@@ -0,0 +1,105 @@
+package com.williams.anthony.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+
+public class ChunkedDecoderTest {
+
+    private static ByteBuffer bufferOf(String text) {
+        return ByteBuffer.wrap(text.getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    private static String decoded(ByteBuffer target) {
+        return new String(target.array(), 0, target.position(), StandardCharsets.ISO_8859_1);
+    }
+
+    @Test
+    public void Decode_WhenProvidedWholeBody_ShouldCopyChunkDataAndLeaveFollowingBytes() throws ProtocolException {
+        // Arrange
+        ChunkedDecoder fixture = new ChunkedDecoder();
+        ByteBuffer source = bufferOf("4;name=value\r\nWiki\r\n5\r\npedia\r\n0\r\nExpires: never\r\n\r\nGET /");
+        ByteBuffer target = ByteBuffer.allocate(64);
+
+        // Act
+        boolean actual = fixture.decode(source, target);
+
+        // Assert
+        assertTrue(actual);
+        assertEquals("Wikipedia", decoded(target));
+        assertEquals("GET /".length(), source.remaining());
+    }
+
+    @Test
+    public void Decode_WhenBodyArrivesOneByteAtATime_ShouldResumeWhereItStopped() throws ProtocolException {
+        // Arrange
+        ChunkedDecoder fixture = new ChunkedDecoder();
+        byte[] body = "a\r\n0123456789\r\n0\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1);
+        ByteBuffer target = ByteBuffer.allocate(64);
+        boolean actual = false;
+
+        // Act
+        for (byte next : body) {
+            assertFalse(actual);
+            actual = fixture.decode(ByteBuffer.wrap(new byte[] { next }), target);
+        }
+
+        // Assert
+        assertTrue(actual);
+        assertEquals("0123456789", decoded(target));
+    }
+
+    @Test(expected = ProtocolException.class)
+    public void Decode_WhenChunkSizeIsNotHex_ShouldThrow() throws ProtocolException {
+        // Arrange
+        ChunkedDecoder fixture = new ChunkedDecoder();
+
+        // Act
+        fixture.decode(bufferOf("zz\r\n"), ByteBuffer.allocate(64));
+    }
+
+    @Test
+    public void Decode_WhenChunkExtensionIsLongerThanLineLimit_ShouldThrow() {
+        // Arrange
+        ChunkedDecoder fixture = new ChunkedDecoder(16, 1024);
+        boolean isThrown = false;
+
+        // Act
+        try {
+            fixture.decode(bufferOf("4;name=" + "x".repeat(64) + "\r\nWiki\r\n0\r\n\r\n"), ByteBuffer.allocate(64));
+        } catch (ProtocolException protocolException) {
+            isThrown = true;
+        }
+
+        // Assert
+        assertTrue(isThrown);
+        assertFalse(fixture.isTrailerTooLarge());
+    }
+
+    @Test
+    public void Decode_WhenTrailersAreLargerThanLimit_ShouldThrowAndReportTrailerTooLarge() {
+        // Arrange
+        ChunkedDecoder fixture = new ChunkedDecoder(64, 64);
+        StringBuilder body = new StringBuilder("4\r\nWiki\r\n0\r\n");
+        for (int a = 0; a < 8; a++) {
+            body.append("X-Trailer-").append(a).append(": value\r\n");
+        }
+        boolean isThrown = false;
+
+        // Act
+        try {
+            fixture.decode(bufferOf(body.append("\r\n").toString()), ByteBuffer.allocate(64));
+        } catch (ProtocolException protocolException) {
+            isThrown = true;
+        }
+
+        // Assert
+        assertTrue(isThrown);
+        assertTrue(fixture.isTrailerTooLarge());
+    }
+}
@@ -0,0 +1,282 @@
+package com.williams.anthony.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+
+public class HttpRequestParserTest {
+
+    private static ByteBuffer bufferOf(String text) {
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        buffer.put(text.getBytes(StandardCharsets.ISO_8859_1));
+        return buffer;
+    }
+
+    @Test
+    public void Parse_WhenProvidedCompleteHead_ShouldExposeRequestLineAndHeaders() {
+        // Arrange
+        HttpRequestParser fixture = new HttpRequestParser();
+        String head = "get /index.html HTTP/1.1\r\nHost: example.com\r\nUser-Agent: Mozilla/5.0 (X11; Linux)\r\n\r\n";
+        ByteBuffer buffer = bufferOf(head);
+
+        // Act
+        HttpRequestParser.Result actual = fixture.parse(buffer, buffer.position());
+        HttpRequest request = fixture.toRequest();
+
+        // Assert
+        assertEquals(HttpRequestParser.Result.COMPLETE, actual);
+        assertEquals(head.length(), fixture.getHeadLength());
+        assertEquals("GET", request.getMethod());
+        assertEquals("/index.html", request.getPath());
+        assertEquals("HTTP/1.1", request.getVersion());
+        assertEquals("example.com", request.getHeader("Host"));
+        assertEquals("Mozilla/5.0 (X11; Linux)", request.getHeader("user-agent"));
+        assertNull(request.getHeader("Accept"));
+    }
+
+    @Test
+    public void Parse_WhenHeadArrivesInPieces_ShouldReportIncompleteUntilBlankLine() {
+        // Arrange
+        HttpRequestParser fixture = new HttpRequestParser();
+        ByteBuffer buffer = bufferOf("GET / HTTP/1.1\r\nHo");
+
+        // Act
+        HttpRequestParser.Result first = fixture.parse(buffer, buffer.position());
+        buffer.put("st: a\r\n\r".getBytes(StandardCharsets.ISO_8859_1));
+        HttpRequestParser.Result second = fixture.parse(buffer, buffer.position());
+        buffer.put("\nGET /next".getBytes(StandardCharsets.ISO_8859_1));
+        HttpRequestParser.Result third = fixture.parse(buffer, buffer.position());
+
+        // Assert
+        assertEquals(HttpRequestParser.Result.INCOMPLETE, first);
+        assertEquals(HttpRequestParser.Result.INCOMPLETE, second);
+        assertEquals(HttpRequestParser.Result.COMPLETE, third);
+        assertEquals("a", fixture.toRequest().getHeader("HOST"));
+        assertEquals("GET / HTTP/1.1\r\nHost: a\r\n\r\n".length(), fixture.getHeadLength());
+    }
+
+    @Test
+    public void Parse_WhenHeaderHasNoColon_ShouldReturnInvalid() {
+        // Arrange
+        HttpRequestParser fixture = new HttpRequestParser();
+        ByteBuffer buffer = bufferOf("GET / HTTP/1.1\r\nHost example.com\r\n\r\n");
+
+        // Act
+        HttpRequestParser.Result actual = fixture.parse(buffer, buffer.position());
+
+        // Assert
+        assertEquals(HttpRequestParser.Result.INVALID, actual);
+    }
+
+    @Test
+    public void Parse_WhenRequestLineHasNoVersion_ShouldReturnInvalid() {
+        // Arrange
+        HttpRequestParser fixture = new HttpRequestParser();
+        ByteBuffer buffer = bufferOf("GET /\r\n\r\n");
+
+        // Act
+        HttpRequestParser.Result actual = fixture.parse(buffer, buffer.position());
+
+        // Assert
+        assertEquals(HttpRequestParser.Result.INVALID, actual);
+    }
+
+    @Test
+    public void IsKeepAlive_WhenHttp11WithoutConnectionHeader_ShouldReturnTrue() {
+        // Arrange
+        HttpRequestParser fixture = new HttpRequestParser();
+        ByteBuffer buffer = bufferOf("GET / HTTP/1.1\r\n\r\n");
+
+        // Act
+        fixture.parse(buffer, buffer.position());
+
+        // Assert
+        assertTrue(fixture.toRequest().isKeepAlive());
+    }
+
+    @Test
+    public void IsKeepAlive_WhenClientAsksToClose_ShouldReturnFalse() {
+        // Arrange
+        HttpRequestParser fixture = new HttpRequestParser();
+        ByteBuffer buffer = bufferOf("GET / HTTP/1.1\r\nConnection: Close\r\n\r\n");
+
+        // Act
+        fixture.parse(buffer, buffer.position());
+
+        // Assert
+        assertFalse(fixture.toRequest().isKeepAlive());
+    }
+
+    @Test
+    public void IsKeepAlive_WhenHttp10AsksToKeepAlive_ShouldReturnTrue() {
+        // Arrange
+        HttpRequestParser fixture = new HttpRequestParser();
+        ByteBuffer buffer = bufferOf("GET / HTTP/1.0\r\nConnection: keep-alive\r\n\r\n");
+
+        // Act
+        fixture.parse(buffer, buffer.position());
+
+        // Assert
+        assertTrue(fixture.toRequest().isKeepAlive());
+    }
+
+    @Test
+    public void Parse_WhenContentLengthSent_ShouldExposeBodyFraming() {
+        // Arrange
+        HttpRequestParser fixture = new HttpRequestParser();
+        ByteBuffer buffer = bufferOf("POST /upload HTTP/1.1\r\nContent-Length: 42\r\n\r\n");
+
+        // Act
+        HttpRequestParser.Result actual = fixture.parse(buffer, buffer.position());
+        HttpRequest request = fixture.toRequest();
+
+        // Assert
+        assertEquals(HttpRequestParser.Result.COMPLETE, actual);
+        assertEquals(42, fixture.getContentLength());
+        assertFalse(fixture.isChunked());
+        assertTrue(request.hasBody());
+        assertEquals(42, request.getContentLength());
+    }
+
+    @Test
+    public void Parse_WhenRequestLineHasExtraSpaces_ShouldReturnInvalid() {
+        // Arrange
+        String[] lines = { "GET /a b HTTP/1.1", "GET  / HTTP/1.1", "GET / HTTP/1.1 ", "GET / garbage" };
+        int invalidCount = 0;
+
+        // Act
+        for (String line : lines) {
+            ByteBuffer buffer = bufferOf(line + "\r\nHost: a\r\n\r\n");
+            if (new HttpRequestParser().parse(buffer, buffer.position()) == HttpRequestParser.Result.INVALID) {
+                invalidCount++;
+            }
+        }
+
+        // Assert
+        assertEquals(lines.length, invalidCount);
+    }
+
+    @Test
+    public void Parse_WhenVersionIsNotHttp10Or11_ShouldReturnVersionNotSupported() {
+        // Arrange
+        HttpRequestParser fixture = new HttpRequestParser();
+        ByteBuffer buffer = bufferOf("GET / HTTP/2.0\r\nHost: a\r\n\r\n");
+        ByteBuffer older = bufferOf("GET / HTTP/1.0\r\n\r\n");
+
+        // Act
+        HttpRequestParser.Result actual = fixture.parse(buffer, buffer.position());
+        fixture.reset();
+        HttpRequestParser.Result supported = fixture.parse(older, older.position());
+
+        // Assert
+        assertEquals(HttpRequestParser.Result.VERSION_NOT_SUPPORTED, actual);
+        assertEquals(HttpRequestParser.Result.COMPLETE, supported);
+        assertEquals("HTTP/1.0", fixture.toRequest().getVersion());
+    }
+
+    @Test
+    public void Parse_WhenBothContentLengthAndChunkedSent_ShouldReturnInvalid() {
+        // Arrange
+        HttpRequestParser fixture = new HttpRequestParser();
+        ByteBuffer buffer = bufferOf(
+                "POST / HTTP/1.1\r\nContent-Length: 3\r\nTransfer-Encoding: chunked\r\n\r\n");
+
+        // Act
+        HttpRequestParser.Result actual = fixture.parse(buffer, buffer.position());
+
+        // Assert
+        assertEquals(HttpRequestParser.Result.INVALID, actual);
+    }
+
+    @Test
+    public void Parse_WhenContentLengthIsNotANumber_ShouldReturnInvalid() {
+        // Arrange
+        HttpRequestParser fixture = new HttpRequestParser();
+        ByteBuffer buffer = bufferOf("POST / HTTP/1.1\r\nContent-Length: -1\r\n\r\n");
+
+        // Act
+        HttpRequestParser.Result actual = fixture.parse(buffer, buffer.position());
+
+        // Assert
+        assertEquals(HttpRequestParser.Result.INVALID, actual);
+    }
+
+    @Test
+    public void Parse_WhenRequestLineIsTooLong_ShouldReturnUriTooLongBeforeItEnds() {
+        // Arrange
+        HttpRequestParser fixture = new HttpRequestParser(32, 10, 1024);
+        ByteBuffer buffer = bufferOf("GET /" + "a".repeat(40));
+
+        // Act
+        HttpRequestParser.Result actual = fixture.parse(buffer, buffer.position());
+
+        // Assert
+        assertEquals(HttpRequestParser.Result.URI_TOO_LONG, actual);
+    }
+
+    @Test
+    public void Parse_WhenHeaderCountOrHeadSizeIsOverTheLimit_ShouldReturnHeadersTooLarge() {
+        // Arrange
+        HttpRequestParser countLimited = new HttpRequestParser(1024, 2, 1024);
+        HttpRequestParser sizeLimited = new HttpRequestParser(1024, 10, 40);
+        ByteBuffer manyHeaders = bufferOf("GET / HTTP/1.1\r\nA: 1\r\nB: 2\r\nC: 3\r\n\r\n");
+        ByteBuffer largeHead = bufferOf("GET / HTTP/1.1\r\nHost: example.com\r\nAccept: text/html\r\n");
+
+        // Act
+        HttpRequestParser.Result countResult = countLimited.parse(manyHeaders, manyHeaders.position());
+        HttpRequestParser.Result sizeResult = sizeLimited.parse(largeHead, largeHead.position());
+
+        // Assert
+        assertEquals(HttpRequestParser.Result.HEADERS_TOO_LARGE, countResult);
+        assertEquals(HttpRequestParser.Result.HEADERS_TOO_LARGE, sizeResult);
+    }
+
+    @Test
+    public void GetHeader_WhenManyHeadersSent_ShouldFindFirstOfEachNameCaseInsensitively() {
+        // Arrange
+        HttpRequestParser fixture = new HttpRequestParser();
+        StringBuilder head = new StringBuilder("GET / HTTP/1.1\r\n");
+        for (int a = 0; a < 40; a++) {
+            head.append("X-Header-").append(a).append(": value ").append(a).append("\r\n");
+        }
+        head.append("Accept: text/html\r\naccept: text/plain\r\n\r\n");
+        ByteBuffer buffer = ByteBuffer.allocate(2048);
+        buffer.put(head.toString().getBytes(StandardCharsets.ISO_8859_1));
+
+        // Act
+        HttpRequestParser.Result actual = fixture.parse(buffer, buffer.position());
+        HttpRequest request = fixture.toRequest();
+
+        // Assert
+        assertEquals(HttpRequestParser.Result.COMPLETE, actual);
+        assertEquals("value 0", request.getHeader("x-header-0"));
+        assertEquals("value 39", request.getHeader("X-HEADER-39"));
+        assertEquals("text/html", request.getHeader("ACCEPT"));
+        assertSame(request.getHeader("Accept"), request.getHeader("accept"));
+        assertNull(request.getHeader("X-Header-40"));
+    }
+
+    @Test
+    public void GetHeader_WhenParserResetForNextRequest_ShouldNotFindPreviousHeaders() {
+        // Arrange
+        HttpRequestParser fixture = new HttpRequestParser();
+        ByteBuffer first = bufferOf("GET / HTTP/1.1\r\nCookie: a=1\r\nHost: one\r\n\r\n");
+        ByteBuffer second = bufferOf("GET / HTTP/1.1\r\nHost: two\r\n\r\n");
+        fixture.parse(first, first.position());
+        fixture.reset();
+
+        // Act
+        fixture.parse(second, second.position());
+        HttpRequest request = fixture.toRequest();
+
+        // Assert
+        assertEquals("two", request.getHeader("Host"));
+        assertNull(request.getHeader("Cookie"));
+    }
+}
@@ -0,0 +1,83 @@
+package com.williams.anthony.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+
+public class ResponseEncoderTest {
+
+    private static String headOf(ByteBuffer head) {
+        return StandardCharsets.ISO_8859_1.decode(head).toString();
+    }
+
+    @Test
+    public void EncodeHead_WhenResponseHasBody_ShouldWriteStatusDateLengthAndConnection() {
+        // Arrange
+        HttpResponse fixture = HttpResponse.text(HttpStatus.OK, "hello").withHeader("X-Test", "1");
+
+        // Act
+        String head = headOf(ResponseEncoder.encodeHead(fixture, true));
+
+        // Assert
+        assertTrue(head.startsWith("HTTP/1.1 200 OK\r\nDate: "));
+        assertTrue(head.contains("\r\nX-Test: 1\r\n"));
+        assertTrue(head.contains("\r\nContent-Length: 5\r\n"));
+        assertTrue(head.endsWith("\r\nConnection: keep-alive\r\n\r\n"));
+    }
+
+    @Test
+    public void EncodeHead_WhenStatusHasNoContent_ShouldOmitContentLength() {
+        // Arrange
+        HttpResponse fixture = HttpResponse.empty(HttpStatus.NOT_MODIFIED);
+
+        // Act
+        String head = headOf(ResponseEncoder.encodeHead(fixture, false));
+
+        // Assert
+        assertTrue(head.startsWith("HTTP/1.1 304 Not Modified\r\n"));
+        assertEquals(-1, head.indexOf("Content-Length"));
+        assertTrue(head.endsWith("\r\nConnection: close\r\n\r\n"));
+    }
+
+    @Test(expected = BufferOverflowException.class)
+    public void EncodeHead_WhenTargetTooSmall_ShouldThrowOverflow() {
+        // Arrange
+        HttpResponse fixture = HttpResponse.text(HttpStatus.OK, "hello");
+
+        // Act
+        ResponseEncoder.encodeHead(fixture, true, ByteBuffer.allocate(16));
+    }
+
+    @Test
+    public void WithHeader_WhenValueHasLineBreakOrNonLatin1_ShouldRejectIt() {
+        // Arrange
+        HttpResponse fixture = HttpResponse.text(HttpStatus.OK, "hello");
+        String[] values = { "a\r\nSet-Cookie: evil=1", "a\nb", "\u20ac" };
+        int rejected = 0;
+
+        // Act
+        for (String value : values) {
+            try {
+                fixture.withHeader("X-Echo", value);
+            } catch (IllegalArgumentException illegalArgumentException) {
+                rejected++;
+            }
+        }
+        String head = headOf(ResponseEncoder.encodeHead(fixture.withHeader("X-Echo", "caf\u00e9"), true));
+
+        // Assert
+        assertEquals(values.length, rejected);
+        assertTrue(head.contains("\r\nX-Echo: caf\u00e9\r\n"));
+        assertEquals(-1, head.indexOf("Set-Cookie"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void WithHeader_WhenNameHasColon_ShouldRejectIt() {
+        // Act
+        HttpResponse.text(HttpStatus.OK, "hello").withHeader("X-Bad: 1\r\nX-Other", "2");
+    }
+}
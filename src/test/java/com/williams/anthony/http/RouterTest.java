@@ -0,0 +1,138 @@
+package com.williams.anthony.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+
+public class RouterTest {
+
+    private static HttpRequest requestOf(String method, String path) {
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        HttpRequestParser parser = new HttpRequestParser();
+        buffer.put(String.format("%s %s HTTP/1.1\r\n\r\n", method, path).getBytes(StandardCharsets.ISO_8859_1));
+        parser.parse(buffer, buffer.position());
+        return parser.toRequest();
+    }
+
+    private static RequestHandler answering(String text) {
+        return request -> HttpResponse.text(HttpStatus.OK, text);
+    }
+
+    private static String bodyOf(HttpResponse response) {
+        return StandardCharsets.UTF_8.decode(response.getBody().asBuffer()).toString();
+    }
+
+    @Test
+    public void Dispatch_WhenLiteralAndParameterBothMatch_ShouldPreferLiteral() throws IOException {
+        // Arrange
+        Router fixture = new Router()
+            .add("GET", "/users/{id}", answering("param"))
+            .add("GET", "/users/me", answering("literal"));
+
+        // Act
+        HttpResponse literal = fixture.dispatch(requestOf("GET", "/users/me"));
+        HttpResponse param = fixture.dispatch(requestOf("GET", "/users/42"));
+
+        // Assert
+        assertEquals("literal", bodyOf(literal));
+        assertEquals("param", bodyOf(param));
+    }
+
+    @Test
+    public void Dispatch_WhenRouteHasParameters_ShouldBindThemToRequest() throws IOException {
+        // Arrange
+        Router fixture = new Router().add("GET", "/users/{userId}/posts/{postId}",
+            request -> HttpResponse.text(HttpStatus.OK,
+                request.getPathParameter("userId") + ":" + request.getPathParameter("postId")));
+
+        // Act
+        HttpResponse actual = fixture.dispatch(requestOf("GET", "/users/7/posts/99?sort=asc"));
+
+        // Assert
+        assertEquals(HttpStatus.OK, actual.getStatusCode());
+        assertEquals("7:99", bodyOf(actual));
+    }
+
+    @Test
+    public void Dispatch_WhenOnlyWildcardMatches_ShouldBindRemainingPath() throws IOException {
+        // Arrange
+        Router fixture = new Router()
+            .add("GET", "/static/*", request -> HttpResponse.text(HttpStatus.OK, request.getPathParameter("*")))
+            .add("GET", "/static/{name}/info", answering("info"));
+
+        // Act
+        HttpResponse actual = fixture.dispatch(requestOf("GET", "/static/css/site.css"));
+
+        // Assert
+        assertEquals("css/site.css", bodyOf(actual));
+    }
+
+    @Test
+    public void Dispatch_WhenNoRouteMatches_ShouldReturnNotFound() throws IOException {
+        // Arrange
+        Router fixture = new Router().add("GET", "/a", answering("a"));
+
+        // Act
+        HttpResponse actual = fixture.dispatch(requestOf("GET", "/b"));
+
+        // Assert
+        assertEquals(HttpStatus.NOT_FOUND, actual.getStatusCode());
+    }
+
+    @Test
+    public void Dispatch_WhenMethodDoesNotMatch_ShouldReturnMethodNotAllowed() throws IOException {
+        // Arrange
+        Router fixture = new Router()
+            .add("GET", "/a", answering("get"))
+            .add("PUT", "/a", answering("put"));
+
+        // Act
+        HttpResponse actual = fixture.dispatch(requestOf("DELETE", "/a"));
+
+        // Assert
+        assertEquals(HttpStatus.METHOD_NOT_ALLOWED, actual.getStatusCode());
+        assertEquals("GET, PUT", actual.getHeaders().get("Allow"));
+    }
+
+    @Test
+    public void Dispatch_WhenHeadHasNoRoute_ShouldFallBackToGet() throws IOException {
+        // Arrange
+        Router fixture = new Router().add("GET", "/", answering("root"));
+
+        // Act
+        HttpResponse actual = fixture.dispatch(requestOf("HEAD", "/"));
+
+        // Assert
+        assertEquals("root", bodyOf(actual));
+    }
+
+    @Test
+    public void Dispatch_WhenHandlerThrows_ShouldAnswer500AndKeepCause() throws IOException {
+        // Arrange
+        IllegalStateException failure = new IllegalStateException("boom");
+        Router fixture = new Router().add("GET", "/fail", request -> {
+            throw failure;
+        });
+        HttpRequest request = requestOf("GET", "/fail");
+
+        // Act
+        HttpResponse actual = fixture.dispatch(request);
+
+        // Assert
+        assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, actual.getStatusCode());
+        assertSame(failure, request.getFailure());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void Add_WhenRouteAlreadyRegistered_ShouldThrow() {
+        // Arrange
+        Router fixture = new Router().add("GET", "/a/{id}", answering("first"));
+
+        // Act
+        fixture.add("GET", "/a/{id}", answering("second"));
+    }
+}
@@ -0,0 +1,97 @@
+package com.williams.anthony.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class AccessLogTest {
+
+    @Rule
+    public TemporaryFolder logFolder = new TemporaryFolder();
+
+    @Test
+    public void LogRequest_WhenClosed_ShouldHaveWrittenCommonLogFormatLine() throws IOException {
+        // Arrange
+        Path file = logFolder.getRoot().toPath().resolve("access.log");
+        AccessLog fixture = new AccessLog(AccessLog.Level.INFO, file, 1024 * 1024);
+
+        // Act
+        fixture.logRequest(InetAddress.getLoopbackAddress(), "GET", "/hello", "HTTP/1.1", 200, 29, 312_000);
+        fixture.close();
+
+        // Assert
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        assertEquals(1, lines.size());
+        assertTrue(lines.get(0), lines.get(0).startsWith("127.0.0.1 - - ["));
+        assertTrue(lines.get(0), lines.get(0).endsWith("] \"GET /hello HTTP/1.1\" 200 29 312us"));
+    }
+
+    @Test
+    public void LogRequest_WhenLevelIsError_ShouldOnlyWriteFailures() throws IOException {
+        // Arrange
+        Path file = logFolder.getRoot().toPath().resolve("access.log");
+        AccessLog fixture = new AccessLog(AccessLog.Level.ERROR, file, 1024 * 1024);
+
+        // Act
+        fixture.logRequest(InetAddress.getLoopbackAddress(), "GET", "/ok", "HTTP/1.1", 200, 29, 0);
+        fixture.logConnection(InetAddress.getLoopbackAddress(), "connection opened");
+        fixture.logRejected(InetAddress.getLoopbackAddress(), 503, 76);
+        fixture.close();
+
+        // Assert
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        assertEquals(1, lines.size());
+        assertTrue(lines.get(0), lines.get(0).endsWith("\"- - -\" 503 76 0us"));
+    }
+
+    @Test
+    public void LogRequest_WhenFileOutgrowsLimit_ShouldRollItOver() throws IOException {
+        // Arrange
+        Path file = logFolder.getRoot().toPath().resolve("access.log");
+        AccessLog fixture = new AccessLog(AccessLog.Level.INFO, file, 100);
+
+        // Act
+        for (int a = 0; a < 3; a++) {
+            fixture.logRequest(InetAddress.getLoopbackAddress(), "GET", "/" + a, "HTTP/1.1", 200, 29, 0);
+            // NOTE: give the writer a chance to write each entry in its own batch
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException interruptedException) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        fixture.close();
+
+        // Assert
+        assertTrue(Files.exists(logFolder.getRoot().toPath().resolve("access.log.1")));
+        assertTrue(Files.readAllLines(file, StandardCharsets.UTF_8).get(0).contains("\"GET /2 HTTP/1.1\""));
+    }
+
+    @Test
+    public void LogError_WhenLevelIsError_ShouldWriteContextAndCauseChain() throws IOException {
+        // Arrange
+        Path file = logFolder.getRoot().toPath().resolve("access.log");
+        AccessLog fixture = new AccessLog(AccessLog.Level.ERROR, file, 1024 * 1024);
+        IllegalStateException failure = new IllegalStateException("boom", new IOException("disk"));
+
+        // Act
+        fixture.logError(InetAddress.getLoopbackAddress(), "GET /fail failed", failure);
+        fixture.close();
+
+        // Assert
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        assertTrue(lines.get(0), lines.get(0).endsWith("] GET /fail failed"));
+        assertEquals("java.lang.IllegalStateException: boom", lines.get(1));
+        assertTrue(lines.get(2), lines.get(2).startsWith("\tat "));
+        assertTrue(lines.contains("Caused by: java.io.IOException: disk"));
+    }
+}
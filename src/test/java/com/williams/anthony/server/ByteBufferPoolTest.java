@@ -0,0 +1,76 @@
+package com.williams.anthony.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import org.junit.Test;
+
+public class ByteBufferPoolTest {
+
+    @Test
+    public void Acquire_WhenBufferReleased_ShouldReuseItFromTheSlab() {
+        // Arrange
+        ByteBufferPool fixture = new ByteBufferPool(64, 40);
+        ByteBuffer first = fixture.acquire();
+        first.put((byte) 1);
+        fixture.release(first);
+
+        // Act
+        ByteBuffer second = fixture.acquire();
+
+        // Assert
+        assertSame(first, second);
+        assertEquals(0, second.position());
+        assertEquals(64, second.remaining());
+        assertTrue(second.isDirect());
+        assertEquals(ByteBufferPool.BUFFERS_PER_SLAB, fixture.getCapacity());
+        assertEquals(1, fixture.getLeasedCount());
+        assertEquals(ByteBufferPool.BUFFERS_PER_SLAB - 1, fixture.getIdleCount());
+    }
+
+    @Test
+    public void Acquire_WhenPoolExhausted_ShouldCountOverflow() {
+        // Arrange
+        ByteBufferPool fixture = new ByteBufferPool(64, 2, false, false);
+
+        // Act
+        fixture.acquire();
+        fixture.acquire();
+        ByteBuffer overflow = fixture.acquire();
+
+        // Assert
+        assertEquals(2, fixture.getCapacity());
+        assertEquals(3, fixture.getLeasedCount());
+        assertEquals(1, fixture.getOverflowCount());
+        assertEquals(64, overflow.capacity());
+    }
+
+    @Test
+    public void ReportLeaks_WhenBufferNeverReleased_ShouldReportItAndRejectDoubleRelease() {
+        // Arrange
+        ByteBufferPool fixture = new ByteBufferPool(64, 8, true, true);
+        ByteBuffer leaked = fixture.acquire();
+        ByteBuffer returned = fixture.acquire();
+        fixture.release(returned);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // Act
+        int leaks = fixture.reportLeaks(new PrintStream(out, true));
+
+        // Assert
+        assertEquals(1, leaks);
+        assertTrue(out.toString().contains("never released"));
+        try {
+            fixture.release(returned);
+            throw new AssertionError("Expected a second release to fail");
+        } catch (IllegalStateException expected) {
+            // NOTE: released twice
+        }
+        fixture.release(leaked);
+        assertEquals(0, fixture.reportLeaks(new PrintStream(out, true)));
+    }
+}
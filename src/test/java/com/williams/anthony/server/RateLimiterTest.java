@@ -0,0 +1,75 @@
+package com.williams.anthony.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.net.InetAddress;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Test;
+
+public class RateLimiterTest {
+
+    @Test
+    public void TryAcquire_WhenBurstUsedUp_ShouldRefuseUntilTokensRefill() throws Exception {
+        // Arrange
+        AtomicLong clock = new AtomicLong(0);
+        RateLimiter fixture = new RateLimiter(10, 3, 1000, clock::get);
+        InetAddress client = InetAddress.getByName("10.0.0.1");
+
+        // Act
+        boolean first = fixture.tryAcquire(client);
+        boolean second = fixture.tryAcquire(client);
+        boolean third = fixture.tryAcquire(client);
+        boolean fourth = fixture.tryAcquire(client);
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+        boolean afterRefill = fixture.tryAcquire(client);
+        boolean afterRefillAgain = fixture.tryAcquire(client);
+
+        // Assert
+        assertTrue(first && second && third);
+        assertFalse(fourth);
+        assertTrue(afterRefill);
+        assertFalse(afterRefillAgain);
+    }
+
+    @Test
+    public void TryAcquire_WhenOneClientIsLimited_ShouldStillAdmitOthers() throws Exception {
+        // Arrange
+        RateLimiter fixture = new RateLimiter(1, 1, 1000, () -> 0L);
+        InetAddress noisy = InetAddress.getByName("10.0.0.1");
+        InetAddress quiet = InetAddress.getByName("10.0.0.2");
+
+        // Act
+        fixture.tryAcquire(noisy);
+        boolean noisyAgain = fixture.tryAcquire(noisy);
+        boolean quietFirst = fixture.tryAcquire(quiet);
+
+        // Assert
+        assertFalse(noisyAgain);
+        assertTrue(quietFirst);
+        assertEquals(2, fixture.getTrackedClients());
+    }
+
+    @Test
+    public void Admit_WhenConnectionCapReached_ShouldRefuseUntilOneIsReleased() throws Exception {
+        // Arrange
+        AdmissionControl fixture = new AdmissionControl(2, null);
+        InetAddress client = InetAddress.getByName("10.0.0.1");
+
+        // Act
+        AdmissionControl.Decision first = fixture.admit(client);
+        AdmissionControl.Decision second = fixture.admit(client);
+        AdmissionControl.Decision third = fixture.admit(client);
+        fixture.release();
+        AdmissionControl.Decision afterRelease = fixture.admit(client);
+
+        // Assert
+        assertEquals(AdmissionControl.Decision.ADMIT, first);
+        assertEquals(AdmissionControl.Decision.ADMIT, second);
+        assertEquals(AdmissionControl.Decision.OVER_CAPACITY, third);
+        assertEquals(AdmissionControl.Decision.ADMIT, afterRelease);
+        assertEquals(2, fixture.getOpenConnections());
+    }
+}
@@ -0,0 +1,76 @@
+package com.williams.anthony.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import com.williams.anthony.http.HttpRequest;
+import com.williams.anthony.http.HttpRequestParser;
+import com.williams.anthony.http.HttpResponse;
+import org.junit.Test;
+
+public class ResponseCompressorTest {
+
+    private static HttpRequest requestWith(String acceptEncoding) {
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        buffer.put(("GET /page HTTP/1.1\r\nAccept-Encoding: " + acceptEncoding + "\r\n\r\n")
+                .getBytes(StandardCharsets.ISO_8859_1));
+        HttpRequestParser parser = new HttpRequestParser();
+        parser.parse(buffer, buffer.position());
+        return parser.toRequest();
+    }
+
+    @Test
+    public void SelectEncoding_WhenClientWeighsCodings_ShouldPickHighestAcceptableQuality() {
+        // Arrange, Act, Assert
+        assertEquals("gzip", ResponseCompressor.selectEncoding("deflate, gzip"));
+        assertEquals("deflate", ResponseCompressor.selectEncoding("gzip;q=0.4, deflate;q=0.8"));
+        assertEquals("deflate", ResponseCompressor.selectEncoding("gzip;q=0, *"));
+        assertNull(ResponseCompressor.selectEncoding("br, identity"));
+        assertNull(ResponseCompressor.selectEncoding("*;q=0"));
+        assertNull(ResponseCompressor.selectEncoding(null));
+    }
+
+    @Test
+    public void Compress_WhenResponseHasEntityTag_ShouldCompressOnceAndServeCachedVariant() throws IOException {
+        // Arrange
+        ResponseCompressor fixture = new ResponseCompressor(true, 16, 1024 * 1024);
+        String text = "compress me please, ".repeat(100);
+
+        // Act
+        HttpResponse first = fixture.compress(requestWith("gzip"),
+                HttpResponse.text(200, text).withHeader("ETag", "\"abc\""));
+        HttpResponse second = fixture.compress(requestWith("gzip"),
+                HttpResponse.text(200, text).withHeader("ETag", "\"abc\""));
+        byte[] compressed = new byte[(int) first.getBody().getLength()];
+        first.getBody().asBuffer().get(compressed);
+        byte[] decompressed = new GZIPInputStream(new ByteArrayInputStream(compressed)).readAllBytes();
+
+        // Assert
+        assertEquals("gzip", first.getHeaders().get("Content-Encoding"));
+        assertEquals("W/\"abc\"", first.getHeaders().get("ETag"));
+        assertEquals("Accept-Encoding", first.getHeaders().get("Vary"));
+        assertEquals(text, new String(decompressed, StandardCharsets.UTF_8));
+        assertEquals(compressed.length, fixture.getCachedBytes());
+        assertEquals(first.getBody().asBuffer(), second.getBody().asBuffer());
+    }
+
+    @Test
+    public void Compress_WhenBodyBelowThreshold_ShouldReturnResponseUnchanged() throws IOException {
+        // Arrange
+        ResponseCompressor fixture = new ResponseCompressor(true, 1024, 1024 * 1024);
+        HttpResponse response = HttpResponse.text(200, "tiny");
+
+        // Act
+        HttpResponse actual = fixture.compress(requestWith("gzip"), response);
+
+        // Assert
+        assertSame(response, actual);
+        assertNull(actual.getHeaders().get("Content-Encoding"));
+    }
+}
@@ -0,0 +1,69 @@
+package com.williams.anthony.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class ServerMetricsTest {
+
+    @Test
+    public void GetQuantileMicros_WhenValuesRecorded_ShouldStayWithinBucketPrecision() {
+        // Arrange
+        LatencyHistogram fixture = new LatencyHistogram();
+
+        for (long micros = 1; micros <= 1000; micros++) {
+            fixture.record(TimeUnit.MICROSECONDS.toNanos(micros));
+        }
+
+        // Act
+        long median = fixture.getQuantileMicros(0.5);
+        long p99 = fixture.getQuantileMicros(0.99);
+
+        // Assert
+        assertEquals(1000, fixture.getCount());
+        assertEquals(1000, fixture.getMaxMicros());
+        assertTrue("median was " + median, median >= 500 && median <= 500 * 1.07);
+        assertTrue("p99 was " + p99, p99 >= 990 && p99 <= 1000);
+    }
+
+    @Test
+    public void RecordRequest_WhenRouteUnmatched_ShouldUseUnmatchedLabel() {
+        // Arrange
+        ServerMetrics fixture = new ServerMetrics();
+
+        // Act
+        fixture.recordRequest(null, 404, 1000);
+
+        // Assert
+        assertEquals(1, fixture.getLatencies(ServerMetrics.UNMATCHED_ROUTE, 404).getCount());
+    }
+
+    @Test
+    public void ToPrometheusText_WhenTrafficRecorded_ShouldRenderSummaryAndGauges() {
+        // Arrange
+        ServerMetrics fixture = new ServerMetrics();
+        fixture.connectionOpened();
+        fixture.bytesReceived(100);
+        fixture.recordRequest("/users/{id}", 200, TimeUnit.MILLISECONDS.toNanos(2));
+        fixture.recordRejected(503);
+        fixture.setQueueDepth(() -> 7);
+        ByteBufferPool bufferPool = new ByteBufferPool(64, 4);
+        bufferPool.acquire();
+        fixture.setBufferPool(bufferPool);
+
+        // Act
+        String text = fixture.toPrometheusText();
+
+        // Assert
+        assertTrue(text.contains("# TYPE http_server_requests_seconds summary\n"));
+        assertTrue(text.contains("http_server_requests_seconds_count{route=\"/users/{id}\",status=\"200\"} 1\n"));
+        assertTrue(text.contains("http_server_rejected_total{status=\"503\"} 1\n"));
+        assertTrue(text.contains("http_server_active_connections 1\n"));
+        assertTrue(text.contains("http_server_queue_depth 7\n"));
+        assertTrue(text.contains("http_server_received_bytes_total 100\n"));
+        assertTrue(text.contains("http_server_buffer_pool_capacity 4\n"));
+        assertTrue(text.contains("http_server_buffer_pool_leased 1\n"));
+    }
+}